@@ -1,19 +1,47 @@
 package ph.alephzero.finance;
 
+/**
+ * Day count basis. Codes follow the Excel <code>basis</code> argument (0 = US 30/360,
+ * 1 = actual/actual, 2 = actual/360, 3 = actual/365, 4 = European 30/360), for array
+ * versions that take primitive basis codes.
+ * 
+ * @author jon
+ *
+ */
 public enum DayCountBasis {
-	NASD_30_360(30, 360),
-	EUR_30_360(30, 360),
-	ACT_360(-1, 360),
-	ACT_365(-1, 365),
-	ACT_ACT(-1, -1);
+	NASD_30_360(0, 30, 360),
+	EUR_30_360(4, 30, 360),
+	ACT_360(2, -1, 360),
+	ACT_365(3, -1, 365),
+	ACT_ACT(1, -1, -1);
 	
-	private int daysPerMonth, daysPerYear;
+	private static final DayCountBasis[] BY_CODE = { NASD_30_360, ACT_ACT, ACT_360, ACT_365, EUR_30_360 };
 	
-	private DayCountBasis(int daysPerMonth, int daysPerYear) {
+	private int code, daysPerMonth, daysPerYear;
+	
+	private DayCountBasis(int code, int daysPerMonth, int daysPerYear) {
+		this.code = code;
 		this.daysPerMonth = daysPerMonth;
 		this.daysPerYear = daysPerYear;
 	}
 	
+	/**
+	 * Returns the basis for an Excel basis code.
+	 * 
+	 * @param code 0 to 4
+	 * @return basis
+	 */
+	public static DayCountBasis fromCode(int code) {
+		if (code < 0 || code >= BY_CODE.length) {
+			throw new IllegalArgumentException("Unknown day count basis code " + Integer.toString(code) + ".");
+		}
+		return BY_CODE[code];
+	}
+	
+	public int getCode() {
+		return code;
+	}
+	
 	public int getDaysPerMonth() {
 		return daysPerMonth;
 	}
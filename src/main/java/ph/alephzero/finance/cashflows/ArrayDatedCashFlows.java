@@ -0,0 +1,397 @@
+package ph.alephzero.finance.cashflows;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Dated cash flows stored column-wise in primitive arrays: a sorted <code>int[]</code> of
+ * epoch days (see {@link DateUtil#toEpochDay(Date)}), one <code>double[]</code> per component,
+ * and a total column.
+ *
+ * Dates are located by binary search. Adding a date after the current last date is an
+ * amortized O(1) append, so schedules generated in date order are built in linear time.
+ *
+ * The total column is maintained on every add, i.e. it is the sum of all components plus
+ * amounts added without a component (e.g. through {@link #add(Date, double)}).
+ *
+ * The base date is always present (with zero cash flow if nothing is added to it).
+ *
+ * Components are addressed internally by their {@link CashFlowComponent} handle, names
+ * are resolved to handles once per call.
+ *
+ * NOT THREAD-SAFE!!
+ *
+ * @author jon
+ *
+ */
+public class ArrayDatedCashFlows implements MutableDatedCashFlows, EpochDayCashFlows {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Date baseDate;
+    private int baseDay;
+    private int count;
+    private int[] days;
+    private double[] total;
+    private double[][] components;                    // components[c][i]
+    private int[] columnByHandle;                     // component handle -> c, or -1
+    private LinkedHashSet<String> componentNames;
+    private Date[] dateCache;                         // built lazily by getDates()
+
+    public ArrayDatedCashFlows(Date baseDate) {
+        this(baseDate, DEFAULT_CAPACITY);
+    }
+
+    /**
+     *
+     * @param baseDate base date
+     * @param capacity expected number of dates, including the base date
+     */
+    public ArrayDatedCashFlows(Date baseDate, int capacity) {
+        capacity = Math.max(capacity, 1);
+
+        this.baseDay = DateUtil.toEpochDay(baseDate);
+        this.baseDate = DateUtil.fromEpochDay(baseDay);
+        this.days = new int[capacity];
+        this.total = new double[capacity];
+        this.components = new double[0][];
+        this.columnByHandle = new int[0];
+        this.componentNames = new LinkedHashSet<String>();
+
+        days[0] = baseDay;
+        count = 1;
+    }
+
+    public Date getBaseDate() {
+        return baseDate;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Not equally spaced in general.
+     *
+     * @return false
+     */
+    public boolean isEquallySpaced() {
+        return false;
+    }
+
+    public boolean isDated() {
+        return true;
+    }
+
+    public List<Date> getDates() {
+        if (dateCache == null) {
+            Date[] cache = new Date[count];
+            for (int i = 0; i < count; i++) {
+                cache[i] = DateUtil.fromEpochDay(days[i]);
+            }
+            dateCache = cache;
+        }
+
+        final Date[] cache = dateCache;
+
+        return new AbstractList<Date>() {
+            @Override
+            public Date get(int index) {
+                return cache[index];
+            }
+
+            @Override
+            public int size() {
+                return cache.length;
+            }
+        };
+    }
+
+    /**
+     * Returns the epoch day of the i-th date.
+     *
+     * @param i index of the date
+     * @return days since 1970-01-01
+     */
+    public int getEpochDay(int i) {
+        checkIndex(i);
+        return days[i];
+    }
+
+    /**
+     * Returns a copy of the epoch days of all dates, in ascending order.
+     *
+     * @return epoch days of the dates
+     */
+    public int[] getEpochDays() {
+        return Arrays.copyOf(days, count);
+    }
+
+    /**
+     * Returns the index of the date, or <code>-(insertion point) - 1</code> if the date has
+     * no cash flow (same convention as {@link Arrays#binarySearch(int[], int)}).
+     *
+     * @param date
+     * @return index of the date
+     */
+    public int indexOf(Date date) {
+        return indexOfEpochDay(DateUtil.toEpochDay(date));
+    }
+
+    /**
+     * Epoch day version of {@link #indexOf(Date)}.
+     *
+     * @param epochDay
+     * @return index of the date
+     */
+    public int indexOfEpochDay(int epochDay) {
+        return Arrays.binarySearch(days, 0, count, epochDay);
+    }
+
+    public double getCashFlow(int i) {
+        checkIndex(i);
+        return total[i];
+    }
+
+    public double getCashFlow(int i, String component) {
+        int c = column(component);
+        checkIndex(i);
+        return components[c][i];
+    }
+
+    public double getCashFlow(int i, int component) {
+        int c = column(component);
+        checkIndex(i);
+        return components[c][i];
+    }
+
+    public double getCashFlow(Date date) {
+        int i = indexOf(date);
+        return (i < 0) ? 0.0 : total[i];
+    }
+
+    public double getCashFlow(Date date, String component) {
+        int c = column(component);
+        int i = indexOf(date);
+        return (i < 0) ? 0.0 : components[c][i];
+    }
+
+    public double getCashFlow(Date date, int component) {
+        int c = column(component);
+        int i = indexOf(date);
+        return (i < 0) ? 0.0 : components[c][i];
+    }
+
+    public Set<String> getComponents() {
+        return Collections.unmodifiableSet(componentNames);
+    }
+
+    public SortedMap<Date, Double> toMap() {
+        TreeMap<Date, Double> map = new TreeMap<Date, Double>();
+        List<Date> dates = getDates();
+
+        for (int i = 0; i < count; i++) {
+            map.put(dates.get(i), total[i]);
+        }
+
+        return map;
+    }
+
+    /**
+     * Registers a component with zero cash flows for all dates. Does nothing if the
+     * component already exists.
+     *
+     * @param component
+     */
+    public void addComponent(String component) {
+        addComponent(CashFlowComponent.register(component));
+    }
+
+    /**
+     * Handle version of {@link #addComponent(String)}.
+     *
+     * @param component component handle
+     */
+    public void addComponent(int component) {
+        if (component >= 0 && component < columnByHandle.length && columnByHandle[component] >= 0) return;
+
+        String name = CashFlowComponent.name(component);
+        if (component >= columnByHandle.length) {
+            int n = columnByHandle.length;
+            columnByHandle = Arrays.copyOf(columnByHandle, component + 1);
+            Arrays.fill(columnByHandle, n, columnByHandle.length, -1);
+        }
+
+        int c = components.length;
+        components = Arrays.copyOf(components, c + 1);
+        components[c] = new double[days.length];
+        columnByHandle[component] = c;
+        componentNames.add(name);
+    }
+
+    /**
+     * Amount is added to the total only, see class documentation.
+     */
+    public void add(Date date, double amount) {
+        addEpochDay(DateUtil.toEpochDay(date), amount);
+    }
+
+    public void add(Date date, double amount, String component) {
+        addEpochDay(DateUtil.toEpochDay(date), amount, CashFlowComponent.register(component));
+    }
+
+    /**
+     * Handle version of {@link #add(Date, double, String)}.
+     *
+     * @param date
+     * @param amount
+     * @param component component handle
+     */
+    public void add(Date date, double amount, int component) {
+        addEpochDay(DateUtil.toEpochDay(date), amount, component);
+    }
+
+    /**
+     * Epoch day version of {@link #add(Date, double)}.
+     *
+     * @param epochDay
+     * @param amount
+     */
+    public void addEpochDay(int epochDay, double amount) {
+        int i = slot(epochDay);
+        total[i] += amount;
+    }
+
+    /**
+     * Epoch day version of {@link #add(Date, double, String)}.
+     *
+     * @param epochDay
+     * @param amount
+     * @param component
+     */
+    public void addEpochDay(int epochDay, double amount, String component) {
+        addEpochDay(epochDay, amount, CashFlowComponent.register(component));
+    }
+
+    /**
+     * Epoch day version of {@link #add(Date, double, int)}.
+     *
+     * @param epochDay
+     * @param amount
+     * @param component component handle
+     */
+    public void addEpochDay(int epochDay, double amount, int component) {
+        addComponent(component);
+        int c = columnByHandle[component];
+        int i = slot(epochDay);
+        components[c][i] += amount;
+        total[i] += amount;
+    }
+
+    public void remove(Date date) {
+        int i = indexOf(date);
+        if (i < 0) return;
+
+        int tail = count - i - 1;
+        System.arraycopy(days, i + 1, days, i, tail);
+        System.arraycopy(total, i + 1, total, i, tail);
+        for (double[] column : components) {
+            System.arraycopy(column, i + 1, column, i, tail);
+            column[count - 1] = 0.0;
+        }
+        total[count - 1] = 0.0;
+        count--;
+        dateCache = null;
+    }
+
+    public void remove(Date date, String component) {
+        int c = column(component);
+        int i = indexOf(date);
+        if (i < 0) return;
+
+        total[i] -= components[c][i];
+        components[c][i] = 0.0;
+    }
+
+    /**
+     * Returns the index for the date, inserting it if necessary.
+     *
+     * @param epochDay
+     * @return index of the date
+     */
+    private int slot(int epochDay) {
+        if (epochDay < baseDay) {
+            throw new UnsupportedOperationException("Date cannot be earlier than cash flow's base date.");
+        }
+
+        if (count == 0 || epochDay > days[count - 1]) {
+            // common case: dates added in ascending order (or all dates, including the base date, removed)
+            ensureCapacity(count + 1);
+            days[count] = epochDay;
+            dateCache = null;
+            return count++;
+        }
+
+        int i = Arrays.binarySearch(days, 0, count, epochDay);
+        if (i >= 0) return i;
+
+        i = -(i + 1);
+        ensureCapacity(count + 1);
+
+        int tail = count - i;
+        System.arraycopy(days, i, days, i + 1, tail);
+        System.arraycopy(total, i, total, i + 1, tail);
+        for (double[] column : components) {
+            System.arraycopy(column, i, column, i + 1, tail);
+            column[i] = 0.0;
+        }
+        days[i] = epochDay;
+        total[i] = 0.0;
+        count++;
+        dateCache = null;
+        return i;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= days.length) return;
+
+        int newCapacity = Math.max(capacity, days.length + (days.length >> 1));
+        days = Arrays.copyOf(days, newCapacity);
+        total = Arrays.copyOf(total, newCapacity);
+        for (int c = 0; c < components.length; c++) {
+            components[c] = Arrays.copyOf(components[c], newCapacity);
+        }
+    }
+
+    private int column(String component) {
+        int id = CashFlowComponent.id(component);
+        int c = (id >= 0 && id < columnByHandle.length) ? columnByHandle[id] : -1;
+        if (c < 0) {
+            throw new UnsupportedOperationException("Cash flow component " + component + " is not available.");
+        }
+        return c;
+    }
+
+    private int column(int component) {
+        int c = (component >= 0 && component < columnByHandle.length) ? columnByHandle[component] : -1;
+        if (c < 0) {
+            throw new UnsupportedOperationException("Cash flow component handle " + component + " is not available.");
+        }
+        return c;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= count) {
+            throw new ArrayIndexOutOfBoundsException("Only cash flows from 0 to " + (count-1) + " are available.");
+        }
+    }
+
+}
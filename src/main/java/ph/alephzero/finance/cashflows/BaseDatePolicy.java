@@ -0,0 +1,13 @@
+package ph.alephzero.finance.cashflows;
+
+/**
+ * How the base date of merged cash flows is chosen, see {@link CashFlowMerger}.
+ * 
+ * @author jon
+ *
+ */
+public enum BaseDatePolicy {
+    SAME,                      // all base dates must be the same
+    EARLIEST,                  // earliest base date of the cash flows
+    SPECIFIED;                 // given base date, earlier cash flows are excluded
+}
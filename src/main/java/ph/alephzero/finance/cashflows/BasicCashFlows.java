@@ -63,6 +63,10 @@ public class BasicCashFlows implements MutableCashFlows {
 		throw new UnsupportedOperationException("Components are not supported.");
 	}
 
+	public double getCashFlow(int i, int component) {
+		throw new UnsupportedOperationException("Components are not supported.");
+	}
+
 	public double getCashFlow(Date date)  {
 		throw new UnsupportedOperationException("Cash flow is not dated.");
 	}
@@ -71,6 +75,10 @@ public class BasicCashFlows implements MutableCashFlows {
 		throw new UnsupportedOperationException("Cash flow is not dated.");
 	}
 
+	public double getCashFlow(Date date, int component) {
+		throw new UnsupportedOperationException("Cash flow is not dated.");
+	}
+
 	public void add(int i, double amount) {
 		if (i < cashFlows.size()) {
 			// cash flow already exists
@@ -2,32 +2,21 @@ package ph.alephzero.finance.cashflows;
 
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.TreeMap;
-
-import ph.alephzero.finance.util.DateUtil;
-import ph.alephzero.finance.util.SortedList;
 
 /**
+ * Dated cash flow without components. Storage is delegated to an {@link ArrayDatedCashFlows}.
  * 
  * @author jon
  *
  */
-public class BasicDatedCashFlows implements MutableDatedCashFlows {
-    private Date baseDate;
-    private SortedList<Date> dates;
-    private HashMap<Date, Double> cashFlows;
+public class BasicDatedCashFlows implements MutableDatedCashFlows, EpochDayCashFlows {
+    private ArrayDatedCashFlows store;
     
     public BasicDatedCashFlows(Date baseDate) {
-        this.baseDate = DateUtil.normalize(baseDate);
-        dates = new SortedList<Date>();
-        cashFlows = new HashMap<Date, Double>();
-        
-        dates.add(baseDate);
-        cashFlows.put(baseDate, 0.0);        
+        store = new ArrayDatedCashFlows(baseDate);
     }
     
     /**
@@ -49,35 +38,32 @@ public class BasicDatedCashFlows implements MutableDatedCashFlows {
         }        
         
         // initialize storage
-        dates = new SortedList<Date>();
-        cashFlows = new HashMap<Date, Double>();
-        
-        this.baseDate = date = DateUtil.normalize((Date) cashFlowSpec[0]);        
+        date = (Date) cashFlowSpec[0];
+        store = new ArrayDatedCashFlows(date, cashFlowSpec.length / 2);
         
         for (int i = 1; i < cashFlowSpec.length; i++) {            
             if (i % 2 == 0) { // date
                 if (!(cashFlowSpec[i] instanceof Date)) {
                     throw new UnsupportedOperationException("Invalid cash flow spec: element " + i + " is not a Date object.");
                 } else {
-                    date = DateUtil.normalize((Date) cashFlowSpec[i]);                    
+                    date = (Date) cashFlowSpec[i];                    
                 }
             } else {
                 if (!(cashFlowSpec[i] instanceof Double)) {
                     throw new UnsupportedOperationException("Invalid cash flow spec: element " + i + " is not a Double object.");
                 } else {
-                    dates.add(date);
-                    cashFlows.put(date, (Double) cashFlowSpec[i]);                    
+                    store.add(date, (Double) cashFlowSpec[i]);                    
                 }
             }
         }
     }
 
     public Date getBaseDate() {        
-        return baseDate;
+        return store.getBaseDate();
     }
     
     public int getCount() {
-        return dates.size();
+        return store.getCount();
     }
 
     /**
@@ -94,48 +80,51 @@ public class BasicDatedCashFlows implements MutableDatedCashFlows {
     }
 
     public List<Date> getDates() {        
-        return dates.list();
+        return store.getDates();
+    }
+
+    public int getEpochDay(int i) {
+        return store.getEpochDay(i);
+    }
+    
+    public int indexOfEpochDay(int epochDay) {
+        return store.indexOfEpochDay(epochDay);
     }
 
     public double getCashFlow(int i) {        
-        return cashFlows.get(dates.get(i));
+        return store.getCashFlow(i);
     }
 
     public double getCashFlow(int i, String component) { 
         throw new UnsupportedOperationException("Components are not supported.");
     }
 
+    public double getCashFlow(int i, int component) {
+        throw new UnsupportedOperationException("Components are not supported.");
+    }
+
     public double getCashFlow(Date date) {        
-        return cashFlows.containsKey(date) ? cashFlows.get(date) : 0.0;
+        return store.getCashFlow(date);
     }
 
     public double getCashFlow(Date date, String component) {
         throw new UnsupportedOperationException("Components are not supported.");
     }
 
+    public double getCashFlow(Date date, int component) {
+        throw new UnsupportedOperationException("Components are not supported.");
+    }
+
     public Set<String> getComponents() {
         return Collections.emptySet();
     }
 
     public SortedMap<Date, Double> toMap() {        
-        return new TreeMap<Date, Double>(cashFlows);
+        return store.toMap();
     }
 
     public void add(Date date, double amount) {
-        date = DateUtil.normalize(date);
-        
-        if (date.compareTo(baseDate) < 0) {
-            throw new UnsupportedOperationException("Date cannot be earlier than cash flow's base date.");
-        }
-
-        if (dates.contains(date)) {
-            double curamt = cashFlows.get(date);
-            cashFlows.put(date, curamt + amount);
-        } else {
-            dates.add(date);
-            cashFlows.put(date, amount);
-        }
-        
+        store.add(date, amount);
     }
 
     public void add(Date date, double amount, String component) {
@@ -143,13 +132,20 @@ public class BasicDatedCashFlows implements MutableDatedCashFlows {
     }
 
     public void remove(Date date) {
-        date = DateUtil.normalize(date);
-        dates.remove(date);
-        cashFlows.remove(date);        
+        store.remove(date);
     }
 
     public void remove(Date date, String component) {
         throw new UnsupportedOperationException("Components are not supported.");        
     }    
 
+    /**
+     * Underlying storage, for reading without Date conversions within the package.
+     * 
+     * @return underlying storage
+     */
+    ArrayDatedCashFlows getStore() {
+        return store;
+    }
+
 }
@@ -1,6 +1,11 @@
 package ph.alephzero.finance.cashflows;
 
-import ph.alephzero.finance.util.MathUtil;
+import java.util.Date;
+import java.util.List;
+
+import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.Message;
+import ph.alephzero.finance.util.DateUtil;
 
 /**
  * Time value of money calculations (PV, PMT, FV) return the same sign as the input cash flows
@@ -52,17 +57,175 @@ public final class CashFlowCalculator {
         double value = 0.0;
         double discountFactor = 1 / (1 + rate);
         
+        double df = 1.0;
+        
         if (cashflows.isDated()) {
             throw new UnsupportedOperationException("Dated cash flow is not supported.");        
         }
 
-        for (int i = 0; i < cashflows.getCount(); i++) {
-            value += cashflows.getCashFlow(i) * Math.pow(discountFactor, i);
+        int count = cashflows.getCount();
+        for (int i = 0; i < count; i++) {
+            value += cashflows.getCashFlow(i) * df;
+            df *= discountFactor;
+        }
+        
+        return value;
+    }
+    
+    /**
+     * Array version of {@link #presentValue(CashFlows, double)}. Element i is the cash flow
+     * at period i.
+     * 
+     * @param cashflows cash flow amounts
+     * @param rate rate to be used for discounting
+     * @return present value of cash flows
+     */
+    public static double presentValue(double[] cashflows, double rate) {
+        double value = 0.0;
+        double discountFactor = 1 / (1 + rate);
+        double df = 1.0;
+        
+        for (int i = 0; i < cashflows.length; i++) {
+            value += cashflows[i] * df;
+            df *= discountFactor;
+        }
+        
+        return value;
+    }
+    
+    /**
+     * Present value of the same cash flows at many rates, in one pass over the cash flows.
+     * 
+     * @param cashflows cash flow amounts, element i is the cash flow at period i
+     * @param rates rates to be used for discounting
+     * @param values output, values[j] is the present value at rates[j]
+     */
+    public static void presentValue(double[] cashflows, double[] rates, double[] values) {
+        int nrates = rates.length;
+        
+        if (values.length != nrates) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+        
+        double[] discountFactor = new double[nrates];
+        double[] df = new double[nrates];
+        
+        for (int j = 0; j < nrates; j++) {
+            discountFactor[j] = 1 / (1 + rates[j]);
+            df[j] = 1.0;
+            values[j] = 0.0;
+        }
+        
+        for (int i = 0; i < cashflows.length; i++) {
+            double cf = cashflows[i];
+            for (int j = 0; j < nrates; j++) {
+                values[j] += cf * df[j];
+                df[j] *= discountFactor[j];
+            }
+        }
+    }
+    
+    /**
+     * Present value of the same cash flows at many rates.
+     * 
+     * @ipc:calculation
+     * @param cashflows non-dated cash flow
+     * @param rates rates to be used for discounting
+     * @return present values, element j is the present value at rates[j]
+     */
+    public static double[] presentValue(CashFlows cashflows, double[] rates) {
+        if (cashflows.isDated()) {
+            throw new UnsupportedOperationException("Dated cash flow is not supported.");        
+        }
+        
+        double[] values = new double[rates.length];
+        presentValue(CashFlowUtil.toArray(cashflows), rates, values);
+        return values;
+    }
+    
+    /**
+     * Excel: XNPV(rate, values, dates)
+     * 
+     * Present value of dated cash flows as of the base date. Cash flows are discounted with
+     * <code>(1 + rate)^-t</code>, where t is the year fraction from the base date (see 
+     * {@link #yearFractions(CashFlows, DayCountBasis, double[])}).
+     * 
+     * @ipc:calculation
+     * @param cashflows dated cash flow
+     * @param rate annual rate to be used for discounting
+     * @param basis day count basis for the year fractions
+     * @return present value of cash flows
+     */
+    public static double presentValue(CashFlows cashflows, double rate, DayCountBasis basis) {
+        double[] times = yearFractions(cashflows, basis, null);
+        return presentValue(CashFlowUtil.toArray(cashflows), times, rate);
+    }
+    
+    /**
+     * Present value of cash flows at arbitrary times, discounted with <code>(1 + rate)^-t</code>.
+     * 
+     * @param cashflows cash flow amounts
+     * @param times time of each cash flow, in the same unit as the rate's period
+     * @param rate rate to be used for discounting
+     * @return present value of cash flows
+     */
+    public static double presentValue(double[] cashflows, double[] times, double rate) {
+        if (cashflows.length != times.length) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+        
+        double logv = -Math.log1p(rate);
+        double value = 0.0;
+        
+        for (int i = 0; i < cashflows.length; i++) {
+            value += cashflows[i] * Math.exp(times[i] * logv);
         }
         
         return value;
     }
     
+    /**
+     * Returns the year fraction of each date of a dated cash flow from its base date, i.e.
+     * days between the base date and the date (according to basis) over the days in the 
+     * base date's year.
+     * 
+     * @param cashflows dated cash flow
+     * @param basis day count basis
+     * @param times output array of length <code>cashflows.getCount()</code>, may be null
+     * @return times, or a new array if times is null
+     */
+    public static double[] yearFractions(CashFlows cashflows, DayCountBasis basis, double[] times) {
+        if (!cashflows.isDated()) {
+            throw new UnsupportedOperationException("Non-dated cash flow is not supported.");        
+        }
+        
+        int count = cashflows.getCount();
+        Date baseDate = cashflows.getBaseDate();
+        double daysPerYear = DateUtil.daysOfYear(basis, baseDate);
+        
+        if (times == null) {
+            times = new double[count];
+        } else if (times.length != count) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+        
+        if (cashflows instanceof EpochDayCashFlows && basis.getDaysPerMonth() < 0) {
+            // actual day counts, straight from the epoch days
+            EpochDayCashFlows cf = (EpochDayCashFlows) cashflows;
+            int baseDay = DateUtil.toEpochDay(baseDate);
+            for (int i = 0; i < count; i++) {
+                times[i] = (cf.getEpochDay(i) - baseDay) / daysPerYear;
+            }
+        } else {
+            List<Date> dates = cashflows.getDates();
+            for (int i = 0; i < count; i++) {
+                times[i] = DateUtil.diffDays(baseDate, dates.get(i), basis) / daysPerYear;
+            }
+        }
+        
+        return times;
+    }
+    
     /**
      * Excel: FV(rate, nper, pmt, [pv=0], [type=0])
      * 
@@ -106,9 +269,32 @@ public final class CashFlowCalculator {
         if (cashflows.isDated()) {
             throw new UnsupportedOperationException("Dated cash flow is not supported.");        
         }
+        
+        if (periods < 0) periods = cashflows.getCount() - 1;
 
+        // Horner's rule: (((cf0 * (1+r) + cf1) * (1+r) + cf2) ...
         for (int i = 0; i <= periods; i++) {
-            value += cashflows.getCashFlow(i) * Math.pow(compoundFactor, periods - i);
+            value = value * compoundFactor + cashflows.getCashFlow(i);
+        }
+        return value;
+    }
+    
+    /**
+     * Array version of {@link #futureValue(CashFlows, double, int)}.
+     * 
+     * @param cashflows cash flow amounts, element i is the cash flow at period i
+     * @param rate rate to be used for compounding
+     * @param periods number of periods. If -1 then use cashflows.length - 1.
+     * @return future value of cash flows
+     */
+    public static double futureValue(double[] cashflows, double rate, int periods) {
+        double value = 0.0;
+        double compoundFactor = (1+rate);
+        
+        if (periods < 0) periods = cashflows.length - 1;
+        
+        for (int i = 0; i <= periods; i++) {
+            value = value * compoundFactor + cashflows[i];
         }
         return value;
     }
@@ -164,22 +350,17 @@ public final class CashFlowCalculator {
      * @return
      */
     public static double internalRateOfReturn(int periods, double annuity, double presentValue, double futureValue, boolean arrears) {
-        final int _periods = periods;
-        final double _annuity = annuity;
-        final double _presentValue = presentValue;
-        final double _futureValue = futureValue;
-        final int _from = (arrears) ? 1 : 0;
-        final int _to = (arrears) ? periods : (periods - 1);        
-        
-        MathUtil.Function1 f = new MathUtil.Function1() {            
-            public double f(double rate) {
-                double df = 1 + rate;
-                return _presentValue + 
-                       MathUtil.geometricSeriesSum(_annuity, 1.0/df, _from, _to) + 
-                       _futureValue * Math.pow(1.0/df, _periods);                                                
-            }
-        };
-        return MathUtil.rootNewton(f, 0.10);
+        double[] cashflows = new double[periods + 1];
+        int from = (arrears) ? 1 : 0;
+        int to = (arrears) ? periods : (periods - 1);
+        
+        for (int i = from; i <= to; i++) {
+            cashflows[i] = annuity;
+        }
+        cashflows[0] += presentValue;
+        cashflows[periods] += futureValue;
+        
+        return internalRateOfReturn(cashflows, 0.10);
     }
     
     /**
@@ -190,14 +371,69 @@ public final class CashFlowCalculator {
      * @return
      */
     public static double internalRateOfReturn(CashFlows cashflows) {        
-        final CashFlows _cashflows = cashflows;
-        
-        MathUtil.Function1 f = new MathUtil.Function1() {            
-            public double f(double rate) {                
-                return presentValue(_cashflows, rate);
-            }                        
-        };
-        return MathUtil.rootNewton(f, 0.10);
+        if (cashflows.isDated()) {
+            throw new UnsupportedOperationException("Dated cash flow is not supported.");        
+        }
+        
+        return internalRateOfReturn(CashFlowUtil.toArray(cashflows), 0.10);
+    }
+    
+    /**
+     * Excel: XIRR(values, dates, [guess=0.10])
+     * 
+     * Annual IRR of dated cash flows, using year fractions from the base date (see 
+     * {@link #yearFractions(CashFlows, DayCountBasis, double[])}). Excel's XIRR corresponds
+     * to ACT_365.
+     * 
+     * @ipc:calculation
+     * @param cashflows dated cash flow
+     * @param basis day count basis for the year fractions
+     * @return annual IRR
+     * @throws ArithmeticException if no rate is found
+     */
+    public static double internalRateOfReturn(CashFlows cashflows, DayCountBasis basis) {
+        double[] times = yearFractions(cashflows, basis, null);
+        return internalRateOfReturn(CashFlowUtil.toArray(cashflows), times, 0.10);
+    }
+    
+    /**
+     * Array version of {@link #internalRateOfReturn(CashFlows, DayCountBasis)}. Reuse 
+     * <code>times</code> when solving many cash flow sets on the same dates.
+     * 
+     * @param cashflows cash flow amounts
+     * @param times time of each cash flow, e.g. year fractions
+     * @param guess initial guess
+     * @return IRR per unit of time
+     * @throws ArithmeticException if no rate is found
+     */
+    public static double internalRateOfReturn(double[] cashflows, double[] times, double guess) {
+        IRRSolver solver = new IRRSolver();
+        double rate = solver.solve(cashflows, times, guess);
+        
+        if (!solver.isConverged()) {
+            throw new ArithmeticException("No internal rate of return found after " + solver.getEvaluations() + " evaluations.");
+        }
+        
+        return rate;
+    }
+    
+    /**
+     * Array version of {@link #internalRateOfReturn(CashFlows)}, see {@link IRRSolver}.
+     * 
+     * @param cashflows cash flow amounts, element i is the cash flow at period i
+     * @param guess initial guess
+     * @return IRR per period
+     * @throws ArithmeticException if no rate is found
+     */
+    public static double internalRateOfReturn(double[] cashflows, double guess) {
+        IRRSolver solver = new IRRSolver();
+        double rate = solver.solve(cashflows, guess);
+        
+        if (!solver.isConverged()) {
+            throw new ArithmeticException("No internal rate of return found after " + solver.getEvaluations() + " evaluations.");
+        }
+        
+        return rate;
     }
     
 }
@@ -0,0 +1,95 @@
+package ph.alephzero.finance.cashflows;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of cash flow component names (e.g. PRINCIPAL, INTEREST). Each name is assigned
+ * a stable integer handle on registration, which can be used with
+ * {@link CashFlows#getCashFlow(int, int)} to skip the name lookup. Handles are small,
+ * dense and never reused, so implementations can index arrays with them.
+ *
+ * The components used by the library are pre-registered as constants.
+ *
+ * Thread-safe.
+ *
+ * @author jon
+ *
+ */
+public final class CashFlowComponent {
+    /**
+     * Returned by {@link #id(String)} for unregistered names.
+     */
+    public static final int NONE = -1;
+
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    private static volatile String[] names = new String[0];
+
+    public static final int PRINCIPAL = register("PRINCIPAL");
+    public static final int INTEREST = register("INTEREST");
+    public static final int TIME_FACTOR = register("TIME_FACTOR");
+    public static final int COUPON = register("COUPON");
+    public static final int EFFECTIVE_INTEREST = register("EFFECTIVE_INTEREST");
+    public static final int PREMIUM = register("PREMIUM");
+    public static final int DISCOUNT = register("DISCOUNT");
+
+    private CashFlowComponent() {
+    }
+
+    /**
+     * Returns the handle for the component name, registering it if needed.
+     *
+     * @param name component name
+     * @return component handle
+     */
+    public static int register(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+
+        synchronized (CashFlowComponent.class) {
+            id = ids.get(name);
+            if (id == null) {
+                String[] _names = Arrays.copyOf(names, names.length + 1);
+                id = _names.length - 1;
+                _names[id] = name;
+                names = _names;
+                ids.put(name, id);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Returns the handle for a registered component name, or {@link #NONE}.
+     *
+     * @param name component name
+     * @return component handle or NONE
+     */
+    public static int id(String name) {
+        Integer id = ids.get(name);
+        return (id == null) ? NONE : id;
+    }
+
+    /**
+     * Returns the name of the component handle.
+     *
+     * @param id component handle
+     * @return component name
+     */
+    public static String name(int id) {
+        String[] _names = names;
+        if (id < 0 || id >= _names.length) {
+            throw new IllegalArgumentException("Unknown cash flow component handle " + id + ".");
+        }
+        return _names[id];
+    }
+
+    /**
+     * Returns the number of registered components. Handles are in <code>[0, count())</code>.
+     *
+     * @return number of registered components
+     */
+    public static int count() {
+        return names.length;
+    }
+}
@@ -0,0 +1,204 @@
+package ph.alephzero.finance.cashflows;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Merges any number of dated cash flows into a single net ladder (total and per component),
+ * e.g. contract schedules into a portfolio for gap and liquidity reports.
+ * 
+ * Each input is already sorted by date, so the inputs are merged with a min-heap keyed on
+ * the next date of each input: O(total cash flows * log N) for N inputs, and dates come out
+ * in ascending order so the ladder is built by appending.
+ * 
+ * Use {@link CashFlowUtil#scale(CashFlows, double)} to weight unit cash flows by position.
+ * 
+ * @author jon
+ *
+ */
+public class CashFlowMerger {
+    private static final int DEFAULT_CAPACITY = 64;
+    
+    /**
+     * Merges cash flows with base dates chosen by policy ({@link BaseDatePolicy#SAME} or
+     * {@link BaseDatePolicy#EARLIEST}).
+     * 
+     * @param cashFlows dated cash flows
+     * @param policy base date policy
+     * @return net cash flows
+     */
+    public static ImmutableDatedCashFlows merge(List<? extends CashFlows> cashFlows, BaseDatePolicy policy) {
+        if (cashFlows.isEmpty()) {
+            throw new IllegalArgumentException("No cash flows to merge.");
+        }
+        
+        int baseDay = Integer.MAX_VALUE;
+        int first = DateUtil.toEpochDay(cashFlows.get(0).getBaseDate());
+        
+        for (CashFlows cf : cashFlows) {
+            int day = DateUtil.toEpochDay(cf.getBaseDate());
+            
+            switch (policy) {
+            case SAME:
+                if (day != first) {
+                    throw new UnsupportedOperationException("Only cash flows with the same base date can be merged.");
+                }
+                baseDay = day;
+                break;
+            case EARLIEST:
+                baseDay = Math.min(baseDay, day);
+                break;
+            default:
+                throw new UnsupportedOperationException("Base date must be given for policy " + policy + ".");
+            }
+        }
+        
+        return merge(cashFlows, baseDay);
+    }
+    
+    /**
+     * Merges cash flows as of a base date ({@link BaseDatePolicy#SPECIFIED}). Cash flows
+     * earlier than the base date are excluded.
+     * 
+     * @param cashFlows dated cash flows
+     * @param baseDate base date of the result
+     * @return net cash flows
+     */
+    public static ImmutableDatedCashFlows merge(List<? extends CashFlows> cashFlows, Date baseDate) {
+        return merge(cashFlows, DateUtil.toEpochDay(baseDate));
+    }
+    
+    private static ImmutableDatedCashFlows merge(List<? extends CashFlows> cashFlows, int baseDay) {
+        int n = cashFlows.size();
+        CashFlows[] sources = new CashFlows[n];
+        int[][] sourceHandles = new int[n][];
+        int[] cursor = new int[n];
+        int[] key = new int[n];
+        
+        // union of components
+        int[] columnByHandle = new int[0];
+        int[] columnHandles = new int[0];
+        
+        for (int s = 0; s < n; s++) {
+            CashFlows cf = cashFlows.get(s);
+            if (!cf.isDated()) {
+                throw new UnsupportedOperationException("Cannot merge with non-dated cash flows.");
+            }
+            sources[s] = cf;
+            
+            int[] handles = new int[cf.getComponents().size()];
+            int k = 0;
+            for (String name : cf.getComponents()) {
+                int h = CashFlowComponent.register(name);
+                handles[k++] = h;
+                
+                if (h >= columnByHandle.length) {
+                    int len = columnByHandle.length;
+                    columnByHandle = Arrays.copyOf(columnByHandle, h + 1);
+                    Arrays.fill(columnByHandle, len, h + 1, -1);
+                }
+                if (columnByHandle[h] < 0) {
+                    columnByHandle[h] = columnHandles.length;
+                    columnHandles = Arrays.copyOf(columnHandles, columnHandles.length + 1);
+                    columnHandles[columnHandles.length - 1] = h;
+                }
+            }
+            sourceHandles[s] = handles;
+        }
+        
+        // heap of sources with remaining cash flows, ordered by their next date
+        int[] heap = new int[n];
+        int size = 0;
+        
+        for (int s = 0; s < n; s++) {
+            int count = sources[s].getCount();
+            int i = 0;
+            while (i < count && epochDay(sources[s], i) < baseDay) i++;
+            
+            if (i < count) {
+                cursor[s] = i;
+                key[s] = epochDay(sources[s], i);
+                heap[size++] = s;
+            }
+        }
+        for (int k = size / 2 - 1; k >= 0; k--) {
+            siftDown(heap, size, k, key);
+        }
+        
+        // ladder, base date always present
+        int capacity = DEFAULT_CAPACITY;
+        int[] days = new int[capacity];
+        double[] total = new double[capacity];
+        double[][] components = new double[columnHandles.length][capacity];
+        int count = 1;
+        days[0] = baseDay;
+        
+        while (size > 0) {
+            int s = heap[0];
+            int day = key[s];
+            int i = cursor[s];
+            CashFlows cf = sources[s];
+            
+            if (day != days[count - 1]) {
+                if (count == capacity) {
+                    capacity += (capacity >> 1);
+                    days = Arrays.copyOf(days, capacity);
+                    total = Arrays.copyOf(total, capacity);
+                    for (int c = 0; c < components.length; c++) {
+                        components[c] = Arrays.copyOf(components[c], capacity);
+                    }
+                }
+                days[count++] = day;
+            }
+            
+            int j = count - 1;
+            total[j] += cf.getCashFlow(i);
+            for (int h : sourceHandles[s]) {
+                components[columnByHandle[h]][j] += cf.getCashFlow(i, h);
+            }
+            
+            // advance the source, or drop it from the heap
+            if (++i < cf.getCount()) {
+                cursor[s] = i;
+                key[s] = epochDay(cf, i);
+            } else {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, size, 0, key);
+        }
+        
+        days = Arrays.copyOf(days, count);
+        total = Arrays.copyOf(total, count);
+        for (int c = 0; c < components.length; c++) {
+            components[c] = Arrays.copyOf(components[c], count);
+        }
+        
+        return new ImmutableDatedCashFlows(baseDay, days, total, components, columnHandles);
+    }
+    
+    private static int epochDay(CashFlows cashFlows, int i) {
+        if (cashFlows instanceof EpochDayCashFlows) {
+            return ((EpochDayCashFlows) cashFlows).getEpochDay(i);
+        }
+        return DateUtil.toEpochDay(cashFlows.getDates().get(i));
+    }
+    
+    private static void siftDown(int[] heap, int size, int k, int[] key) {
+        int s = heap[k];
+        int half = size >>> 1;
+        
+        while (k < half) {
+            int child = 2 * k + 1;
+            int right = child + 1;
+            if (right < size && key[heap[right]] < key[heap[child]]) child = right;
+            if (key[s] <= key[heap[child]]) break;
+            heap[k] = heap[child];
+            k = child;
+        }
+        
+        if (size > 0) heap[k] = s;
+    }
+}
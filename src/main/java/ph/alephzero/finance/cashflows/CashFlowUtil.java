@@ -15,6 +15,10 @@ public class CashFlowUtil {
      * Convert a non-dated cash flow to a dated cash flow. If the input cash flow is
      * already dated, then it will be returned as-is.
      * 
+     * If the dates are in ascending order, the result is a view over the original 
+     * cash flow (no copying). Otherwise the cash flows are copied and sorted by date,
+     * amounts on the same date are added. The first date is the base date.
+     * 
      * @param cashFlows original cash flows
      * @param dates dates 
      * @return a dated cash flow
@@ -26,44 +30,88 @@ public class CashFlowUtil {
             throw new UnsupportedOperationException("Length of cash flow & dates do not match.");
         }
         
-        Object[] cf0 = new Object[dates.length * 2];
+        if (DatedCashFlowsView.isAscending(dates)) {
+            return new DatedCashFlowsView(cashFlows, dates);
+        }
+        
+        BasicDatedCashFlows out = new BasicDatedCashFlows(dates[0]);
+        ArrayDatedCashFlows store = out.getStore();
         for (int i = 0; i < dates.length; i++) {
-            cf0[i*2] = dates[i];
-            cf0[i*2+1] = cashFlows.getCashFlow(i);
+            store.add(dates[i], cashFlows.getCashFlow(i));
         }
         
-        return new BasicDatedCashFlows(cf0);
+        return out;
     }
     
     /**
-     * Extract from a cash flow component into a separate cash flow object.
+     * Returns a view of a cash flow component as a separate cash flow object. If the
+     * component is not available, the cash flows are all zero. No amounts are copied.
      *  
      * @param cashFlows original cash flow
      * @param component
      * @return cash flow object with the component
      */
-    public static CashFlows extractComponent(CashFlows cashFlows, String component) {                        
-        CashFlows out;
-        if (cashFlows.isDated()) {
-            BasicDatedCashFlows cf0 = new BasicDatedCashFlows(cashFlows.getBaseDate());
-            
-            if (cashFlows.getComponents().contains(component)) {
-                for (Date date : cashFlows.getDates()) {
-                    cf0.add(date, cashFlows.getCashFlow(date, component));                
-                }                
-            }            
-            
-            out = cf0;
-        } else {
-            BasicCashFlows cf0 = new BasicCashFlows();
-            if (cashFlows.getComponents().contains(component)) {
-                for (int i = 0; i < cashFlows.getCount(); i++) {
-                    cf0.add(cf0.getCashFlow(i));
-                }
-            }
-            out = cf0;
+    public static CashFlows extractComponent(CashFlows cashFlows, String component) {
+        return new ComponentCashFlows(cashFlows, component);
+    }
+    
+    /**
+     * Handle version of {@link #extractComponent(CashFlows, String)}.
+     *  
+     * @param cashFlows original cash flow
+     * @param component component handle
+     * @return cash flow object with the component
+     */
+    public static CashFlows extractComponent(CashFlows cashFlows, int component) {
+        return new ComponentCashFlows(cashFlows, component);
+    }
+    
+    /**
+     * Returns a view of a cash flow with all amounts (including components) multiplied 
+     * by a factor, e.g. for scaling unit cash flows to a position. No amounts are copied.
+     * 
+     * @param cashFlows original cash flow
+     * @param factor multiplier
+     * @return scaled cash flow
+     */
+    public static CashFlows scale(CashFlows cashFlows, double factor) {
+        if (cashFlows instanceof ScaledCashFlows) {
+            ScaledCashFlows scaled = (ScaledCashFlows) cashFlows;
+            return new ScaledCashFlows(scaled.getSource(), scaled.getFactor() * factor);
+        }
+        return new ScaledCashFlows(cashFlows, factor);
+    }
+    
+    /**
+     * Returns a view of the cash flows of a dated cash flow from <code>from</code> up to
+     * <code>to</code> (both inclusive). The base date of the view is <code>from</code>, with
+     * a zero cash flow if the original has none on that date. No amounts are copied.
+     * 
+     * @param cashFlows original dated cash flow
+     * @param from start date, inclusive
+     * @param to end date, inclusive
+     * @return cash flows within the dates
+     */
+    public static CashFlows window(CashFlows cashFlows, Date from, Date to) {
+        return new WindowCashFlows(cashFlows, from, to);
+    }
+    
+    /**
+     * Returns the total cash flows as a primitive array, element i being 
+     * <code>cashFlows.getCashFlow(i)</code>.
+     * 
+     * @param cashFlows
+     * @return total cash flows
+     */
+    public static double[] toArray(CashFlows cashFlows) {
+        int count = cashFlows.getCount();
+        double[] out = new double[count];
+        
+        for (int i = 0; i < count; i++) {
+            out[i] = cashFlows.getCashFlow(i);
         }
-        return out;        
+        
+        return out;
     }
     
     public static String asString(CashFlows cashFlows) {
@@ -73,6 +73,16 @@ public interface CashFlows {
 	 */
 	double getCashFlow(int i, String component);
 	
+	/***
+	 * Returns a specific cash flow component for the i-th period, with the component
+	 * given as a handle from {@link CashFlowComponent}.
+	 * 
+	 * @param i index of the cash flow to be retrieved
+	 * @param component the cash flow component handle (e.g. {@link CashFlowComponent#PRINCIPAL})
+	 * @return i-th cash flow component
+	 */
+	double getCashFlow(int i, int component);
+	
 	/***
 	 * Returns the total cash flow for the specified date.
 	 * 
@@ -90,6 +100,16 @@ public interface CashFlows {
 	 */
 	double getCashFlow(Date date, String component);		
 	
+	/***
+	 * Returns a specific cash flow component for the specified date, with the component
+	 * given as a handle from {@link CashFlowComponent}.
+	 * 
+	 * @param date date of the cash flow to be retrieved
+	 * @param component the cash flow component handle (e.g. {@link CashFlowComponent#PRINCIPAL})
+	 * @return cash flow component for the specified date
+	 */
+	double getCashFlow(Date date, int component);
+	
 	/**
 	 * Return components available. May return an empty set if underlying
 	 * implementation does not support components.
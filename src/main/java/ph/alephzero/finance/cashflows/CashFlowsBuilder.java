@@ -0,0 +1,284 @@
+package ph.alephzero.finance.cashflows;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Collects dated cash flow amounts and builds an {@link ImmutableDatedCashFlows}. 
+ * 
+ * Adding is an append to primitive arrays, in any date order. Entries are sorted 
+ * (skipped if they were added in date order) and amounts on the same date and component
+ * are added once, at {@link #build()}. The builder can be reused after build, later 
+ * additions do not affect snapshots already built.
+ * 
+ * NOT THREAD-SAFE!! (the snapshots are) 
+ * 
+ * @author jon
+ *
+ */
+public class CashFlowsBuilder {
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    private int baseDay;
+    private int size;
+    private int[] days;
+    private double[] amounts;
+    private int[] handles;                          // component handle, CashFlowComponent.NONE for the
+                                                    // total only, or -(handle + 2) for the component only
+    private boolean sorted;
+    private boolean[] declared;                     // components added without amounts
+    
+    public CashFlowsBuilder(Date baseDate) {
+        this(baseDate, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * 
+     * @param baseDate base date
+     * @param capacity expected number of entries
+     */
+    public CashFlowsBuilder(Date baseDate, int capacity) {
+        capacity = Math.max(capacity, 1);
+        
+        this.baseDay = DateUtil.toEpochDay(baseDate);
+        this.days = new int[capacity];
+        this.amounts = new double[capacity];
+        this.handles = new int[capacity];
+        this.declared = new boolean[0];
+        this.sorted = true;
+        this.size = 0;
+    }
+    
+    /**
+     * Number of entries added so far (not the number of distinct dates).
+     * 
+     * @return number of entries
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Declares a component, so that it is available in the snapshot even if no amount is 
+     * added to it.
+     * 
+     * @param component
+     * @return this builder
+     */
+    public CashFlowsBuilder addComponent(String component) {
+        return addComponent(CashFlowComponent.register(component));
+    }
+    
+    /**
+     * Handle version of {@link #addComponent(String)}.
+     * 
+     * @param component component handle
+     * @return this builder
+     */
+    public CashFlowsBuilder addComponent(int component) {
+        CashFlowComponent.name(component);          // validates the handle
+        if (component >= declared.length) {
+            declared = Arrays.copyOf(declared, component + 1);
+        }
+        declared[component] = true;
+        return this;
+    }
+    
+    /**
+     * Amount is added to the total only.
+     * 
+     * @param date
+     * @param amount
+     * @return this builder
+     */
+    public CashFlowsBuilder add(Date date, double amount) {
+        return addEpochDay(DateUtil.toEpochDay(date), amount, CashFlowComponent.NONE);
+    }
+    
+    public CashFlowsBuilder add(Date date, double amount, String component) {
+        return addEpochDay(DateUtil.toEpochDay(date), amount, CashFlowComponent.register(component));
+    }
+    
+    public CashFlowsBuilder add(Date date, double amount, int component) {
+        return addEpochDay(DateUtil.toEpochDay(date), amount, component);
+    }
+    
+    public CashFlowsBuilder addEpochDay(int epochDay, double amount) {
+        return addEpochDay(epochDay, amount, CashFlowComponent.NONE);
+    }
+    
+    /**
+     * 
+     * @param epochDay date as days since 1970-01-01
+     * @param amount
+     * @param component component handle, or {@link CashFlowComponent#NONE} for the total only
+     * @return this builder
+     */
+    public CashFlowsBuilder addEpochDay(int epochDay, double amount, int component) {
+        if (epochDay < baseDay) {
+            throw new UnsupportedOperationException("Date cannot be earlier than cash flow's base date.");
+        }
+        
+        if (component != CashFlowComponent.NONE) {
+            CashFlowComponent.name(component);      // validates the handle
+        }
+        
+        append(epochDay, amount, component);
+        return this;
+    }
+    
+    private void append(int epochDay, double amount, int handle) {
+        if (size == days.length) {
+            int capacity = days.length + (days.length >> 1) + 1;
+            days = Arrays.copyOf(days, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            handles = Arrays.copyOf(handles, capacity);
+        }
+        
+        if (size > 0 && epochDay < days[size - 1]) sorted = false;
+        
+        days[size] = epochDay;
+        amounts[size] = amount;
+        handles[size] = handle;
+        size++;
+    }
+    
+    /**
+     * Adds all cash flows (totals and components) of a dated cash flow. All its dates are
+     * kept, even those with zero cash flows.
+     * 
+     * @param cashFlows dated cash flow
+     * @return this builder
+     */
+    public CashFlowsBuilder addAll(CashFlows cashFlows) {
+        if (!cashFlows.isDated()) {
+            throw new UnsupportedOperationException("Cash flow is not dated.");
+        }
+        
+        if (DateUtil.toEpochDay(cashFlows.getBaseDate()) < baseDay) {
+            throw new UnsupportedOperationException("Date cannot be earlier than cash flow's base date.");
+        }
+        
+        int count = cashFlows.getCount();
+        int[] _days = new int[count];
+        
+        if (cashFlows instanceof EpochDayCashFlows) {
+            EpochDayCashFlows cf = (EpochDayCashFlows) cashFlows;
+            for (int i = 0; i < count; i++) {
+                _days[i] = cf.getEpochDay(i);
+            }
+        } else {
+            List<Date> dates = cashFlows.getDates();
+            for (int i = 0; i < count; i++) {
+                _days[i] = DateUtil.toEpochDay(dates.get(i));
+            }
+        }
+        
+        int[] _handles = new int[cashFlows.getComponents().size()];
+        int k = 0;
+        for (String name : cashFlows.getComponents()) {
+            _handles[k] = CashFlowComponent.register(name);
+            addComponent(_handles[k++]);
+        }
+        
+        // the total is copied as-is (it may include amounts without a component), 
+        // components do not add to it again
+        for (int i = 0; i < count; i++) {
+            append(_days[i], cashFlows.getCashFlow(i), CashFlowComponent.NONE);
+            for (int h : _handles) {
+                double amount = cashFlows.getCashFlow(i, h);
+                if (amount != 0.0) {
+                    append(_days[i], amount, -(h + 2));
+                }
+            }
+        }
+        
+        return this;
+    }
+    
+    /**
+     * Builds an immutable snapshot of the cash flows added so far. The base date is always 
+     * present.
+     * 
+     * @return immutable cash flows
+     */
+    public ImmutableDatedCashFlows build() {
+        int[] order = null;
+        
+        if (!sorted) {
+            // sort by (day, entry) in one primitive sort, keeping entry order within a day
+            long[] keys = new long[size];
+            for (int e = 0; e < size; e++) {
+                keys[e] = ((long) (days[e] - baseDay) << 32) | e;
+            }
+            Arrays.sort(keys);
+            
+            order = new int[size];
+            for (int e = 0; e < size; e++) {
+                order[e] = (int) keys[e];
+            }
+        }
+        
+        // component columns, in order of first appearance
+        int[] columnByHandle = new int[CashFlowComponent.count()];
+        Arrays.fill(columnByHandle, -1);
+        int[] columnHandles = new int[0];
+        for (int h = 0; h < declared.length; h++) {
+            if (declared[h]) columnHandles = addColumn(columnByHandle, columnHandles, h);
+        }
+        for (int e = 0; e < size; e++) {
+            int h = component(handles[e]);
+            if (h != CashFlowComponent.NONE && columnByHandle[h] < 0) {
+                columnHandles = addColumn(columnByHandle, columnHandles, h);
+            }
+        }
+        
+        // distinct dates
+        int n = 1;
+        int last = baseDay;
+        for (int k = 0; k < size; k++) {
+            int day = days[(order == null) ? k : order[k]];
+            if (day != last) {
+                n++;
+                last = day;
+            }
+        }
+        
+        int[] _days = new int[n];
+        double[] total = new double[n];
+        double[][] components = new double[columnHandles.length][n];
+        
+        int i = 0;
+        _days[0] = baseDay;
+        for (int k = 0; k < size; k++) {
+            int e = (order == null) ? k : order[k];
+            if (days[e] != _days[i]) {
+                _days[++i] = days[e];
+            }
+            int h = handles[e];
+            if (h >= CashFlowComponent.NONE) {
+                total[i] += amounts[e];
+            }
+            if (h != CashFlowComponent.NONE) {
+                components[columnByHandle[component(h)]][i] += amounts[e];
+            }
+        }
+        
+        return new ImmutableDatedCashFlows(baseDay, _days, total, components, columnHandles);
+    }
+    
+    private static int component(int handle) {
+        return (handle < CashFlowComponent.NONE) ? -handle - 2 : handle;
+    }
+    
+    private static int[] addColumn(int[] columnByHandle, int[] columnHandles, int handle) {
+        int c = columnHandles.length;
+        columnHandles = Arrays.copyOf(columnHandles, c + 1);
+        columnHandles[c] = handle;
+        columnByHandle[handle] = c;
+        return columnHandles;
+    }
+}
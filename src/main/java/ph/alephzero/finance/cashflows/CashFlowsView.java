@@ -0,0 +1,98 @@
+package ph.alephzero.finance.cashflows;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Base class for read-only views over another cash flow. Views do not copy the underlying
+ * amounts, reads are delegated to the source (so changes to a mutable source are visible
+ * through the view). 
+ * 
+ * Subclasses override the methods that they transform, everything else is passed through.
+ * 
+ * @author jon
+ *
+ */
+abstract class CashFlowsView implements CashFlows {
+    protected final CashFlows source;
+    
+    protected CashFlowsView(CashFlows source) {
+        this.source = source;
+    }
+    
+    public Date getBaseDate() {
+        return source.getBaseDate();
+    }
+
+    public int getCount() {
+        return source.getCount();
+    }
+
+    public boolean isEquallySpaced() {
+        return source.isEquallySpaced();
+    }
+
+    public boolean isDated() {
+        return source.isDated();
+    }
+
+    public List<Date> getDates() {
+        return source.getDates();
+    }
+
+    public double getCashFlow(int i) {
+        return source.getCashFlow(i);
+    }
+
+    public double getCashFlow(int i, String component) {
+        return source.getCashFlow(i, component);
+    }
+
+    public double getCashFlow(int i, int component) {
+        return source.getCashFlow(i, component);
+    }
+
+    public double getCashFlow(Date date) {
+        return source.getCashFlow(date);
+    }
+
+    public double getCashFlow(Date date, String component) {
+        return source.getCashFlow(date, component);
+    }
+
+    public double getCashFlow(Date date, int component) {
+        return source.getCashFlow(date, component);
+    }
+
+    public Set<String> getComponents() {
+        return source.getComponents();
+    }
+
+    public SortedMap<Date, Double> toMap() {
+        if (!isDated()) {
+            throw new UnsupportedOperationException("Cash flow is not dated.");
+        }
+        
+        TreeMap<Date, Double> map = new TreeMap<Date, Double>();
+        List<Date> dates = getDates();
+        int count = getCount();
+        
+        for (int i = 0; i < count; i++) {
+            map.put(dates.get(i), getCashFlow(i));
+        }
+        
+        return map;
+    }
+    
+    /**
+     * Returns the underlying cash flow.
+     * 
+     * @return source of the view
+     */
+    CashFlows getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,64 @@
+package ph.alephzero.finance.cashflows;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * View of a single component of a cash flow as the total. The view itself has no components. 
+ * If the source does not have the component, all amounts are zero.
+ * 
+ * @author jon
+ *
+ */
+class ComponentCashFlows extends CashFlowsView {
+    private final int component;
+    private final boolean available;
+    
+    ComponentCashFlows(CashFlows source, String component) {
+        // look up only, an unknown name is not registered and has no cash flows
+        this(source, CashFlowComponent.id(component));
+    }
+    
+    ComponentCashFlows(CashFlows source, int component) {
+        super(source);
+        this.component = component;
+        this.available = component >= 0 && component < CashFlowComponent.count()
+                && source.getComponents().contains(CashFlowComponent.name(component));
+    }
+
+    @Override
+    public double getCashFlow(int i) {
+        return available ? source.getCashFlow(i, component) : 0.0;
+    }
+
+    @Override
+    public double getCashFlow(int i, String component) {
+        throw new UnsupportedOperationException("Components are not supported.");
+    }
+
+    @Override
+    public double getCashFlow(int i, int component) {
+        throw new UnsupportedOperationException("Components are not supported.");
+    }
+
+    @Override
+    public double getCashFlow(Date date) {
+        return available ? source.getCashFlow(date, component) : 0.0;
+    }
+
+    @Override
+    public double getCashFlow(Date date, String component) {
+        throw new UnsupportedOperationException("Components are not supported.");
+    }
+
+    @Override
+    public double getCashFlow(Date date, int component) {
+        throw new UnsupportedOperationException("Components are not supported.");
+    }
+
+    @Override
+    public Set<String> getComponents() {
+        return Collections.emptySet();
+    }
+}
@@ -0,0 +1,93 @@
+package ph.alephzero.finance.cashflows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * View of a non-dated cash flow with a date attached to each index. Dates must be in
+ * strictly ascending order, the first date being the base date.
+ * 
+ * @author jon
+ *
+ */
+class DatedCashFlowsView extends CashFlowsView {
+    private final List<Date> dates;
+    private final int[] days;
+    
+    DatedCashFlowsView(CashFlows source, Date[] dates) {
+        super(source);
+        
+        if (source.getCount() != dates.length) {
+            throw new UnsupportedOperationException("Length of cash flow & dates do not match.");
+        }
+        
+        if (!isAscending(dates)) {
+            throw new UnsupportedOperationException("Dates are not in ascending order.");
+        }
+        
+        this.dates = Collections.unmodifiableList(Arrays.asList(dates));
+        this.days = new int[dates.length];
+        for (int i = 0; i < dates.length; i++) {
+            days[i] = DateUtil.toEpochDay(dates[i]);
+        }
+    }
+    
+    /**
+     * Returns true if the dates (ignoring time of day) are strictly ascending.
+     * 
+     * @param dates
+     * @return true if dates are strictly ascending
+     */
+    static boolean isAscending(Date[] dates) {
+        for (int i = 1; i < dates.length; i++) {
+            if (DateUtil.toEpochDay(dates[i-1]) >= DateUtil.toEpochDay(dates[i])) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Date getBaseDate() {
+        return (dates.isEmpty()) ? null : DateUtil.normalize(dates.get(0));
+    }
+
+    @Override
+    public boolean isEquallySpaced() {
+        return false;
+    }
+
+    @Override
+    public boolean isDated() {
+        return true;
+    }
+
+    @Override
+    public List<Date> getDates() {
+        return dates;
+    }
+
+    @Override
+    public double getCashFlow(Date date) {
+        int i = indexOf(date);
+        return (i < 0) ? 0.0 : source.getCashFlow(i);
+    }
+
+    @Override
+    public double getCashFlow(Date date, String component) {
+        int i = indexOf(date);
+        return (i < 0) ? 0.0 : source.getCashFlow(i, component);
+    }
+
+    @Override
+    public double getCashFlow(Date date, int component) {
+        int i = indexOf(date);
+        return (i < 0) ? 0.0 : source.getCashFlow(i, component);
+    }
+    
+    private int indexOf(Date date) {
+        return Arrays.binarySearch(days, DateUtil.toEpochDay(date));
+    }
+}
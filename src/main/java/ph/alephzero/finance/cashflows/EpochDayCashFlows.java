@@ -0,0 +1,30 @@
+package ph.alephzero.finance.cashflows;
+
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Dated cash flows that store their dates as epoch days (see {@link DateUtil#toEpochDay(java.util.Date)}),
+ * so dates can be read and located without creating <code>Date</code> objects.
+ * 
+ * @author jon
+ *
+ */
+public interface EpochDayCashFlows extends CashFlows {
+    
+    /**
+     * Returns the epoch day of the i-th date.
+     * 
+     * @param i index of the date
+     * @return days since 1970-01-01
+     */
+    int getEpochDay(int i);
+    
+    /**
+     * Returns the index of the date, or <code>-(insertion point) - 1</code> if the date has
+     * no cash flow (same convention as {@link java.util.Arrays#binarySearch(int[], int)}).
+     * 
+     * @param epochDay
+     * @return index of the date
+     */
+    int indexOfEpochDay(int epochDay);
+}
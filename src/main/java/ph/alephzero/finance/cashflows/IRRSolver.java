@@ -0,0 +1,255 @@
+package ph.alephzero.finance.cashflows;
+
+import org.apache.commons.math3.analysis.UnivariateFunction;
+import org.apache.commons.math3.analysis.solvers.BrentSolver;
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+import org.apache.commons.math3.exception.MathIllegalStateException;
+
+import ph.alephzero.finance.Message;
+
+/**
+ * Internal rate of return solver. Newton's method is run with the analytic derivative
+ * dNPV/dr, computed in the same pass over the cash flows as the NPV. If Newton's method
+ * fails (zero or non-finite derivative, rate at or below -100%, or no convergence within
+ * the iteration limit), the root is bracketed by scanning outwards from the guess and then
+ * solved with Brent's method.
+ *
+ * Cash flows are at times <code>t[i]</code> measured in periods, discounted with
+ * <code>(1 + r)^-t[i]</code>. If no times are given, cash flow i is at period i.
+ *
+ * The status of the last {@link #solve} (iterations, evaluations, convergence) is kept
+ * in the solver, so an instance must not be shared between threads.
+ *
+ * @author jon
+ *
+ */
+public class IRRSolver {
+    public static final double DEFAULT_ACCURACY = 1e-10;
+    public static final int DEFAULT_MAX_ITERATES = 50;
+    public static final int DEFAULT_MAX_EVALUATIONS = 1000;
+    private static final int MAX_BRACKET_STEPS = 60;
+
+    private double accuracy;
+    private int maxIterates;
+    private int maxEvaluations;
+
+    // state of the last solve()
+    private double[] cashflows;
+    private double[] times;
+    private double npv, dnpv;
+    private int newtonIterations;
+    private int evaluations;
+    private boolean bracketed;
+    private boolean converged;
+
+    public IRRSolver() {
+        this(DEFAULT_ACCURACY, DEFAULT_MAX_ITERATES, DEFAULT_MAX_EVALUATIONS);
+    }
+
+    /**
+     *
+     * @param accuracy absolute accuracy of the rate
+     * @param maxIterates max Newton iterations before falling back to bracketing
+     * @param maxEvaluations max function evaluations for the bracketing solver
+     */
+    public IRRSolver(double accuracy, int maxIterates, int maxEvaluations) {
+        this.accuracy = accuracy;
+        this.maxIterates = maxIterates;
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    /**
+     * Solves for the rate where the NPV of cash flow i at period i is zero.
+     *
+     * @param cashflows cash flow amounts
+     * @param guess initial guess, e.g. 0.10
+     * @return IRR per period, or NaN if no root was found (see {@link #isConverged()})
+     */
+    public double solve(double[] cashflows, double guess) {
+        return solve(cashflows, null, guess);
+    }
+
+    /**
+     * Solves for the rate where the NPV of cash flow i at time <code>times[i]</code> is zero.
+     *
+     * @param cashflows cash flow amounts
+     * @param times time of each cash flow in periods, or null for 0, 1, 2, ...
+     * @param guess initial guess, e.g. 0.10
+     * @return IRR per period, or NaN if no root was found (see {@link #isConverged()})
+     */
+    public double solve(double[] cashflows, double[] times, double guess) {
+        if (times != null && times.length != cashflows.length) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+
+        this.cashflows = cashflows;
+        this.times = times;
+        newtonIterations = 0;
+        evaluations = 0;
+        bracketed = false;
+        converged = false;
+
+        double rate = newton(guess);
+        if (!converged) {
+            bracketed = true;
+            rate = brent(guess);
+        }
+
+        this.cashflows = null;
+        this.times = null;
+        return rate;
+    }
+
+    /**
+     * Number of Newton iterations in the last solve.
+     *
+     * @return Newton iterations
+     */
+    public int getNewtonIterations() {
+        return newtonIterations;
+    }
+
+    /**
+     * Number of NPV evaluations in the last solve, including those of the bracketing fallback.
+     *
+     * @return NPV evaluations
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Returns true if the last solve fell back to bracketing.
+     *
+     * @return true if the bracketing solver was used
+     */
+    public boolean isBracketed() {
+        return bracketed;
+    }
+
+    /**
+     * Returns true if the last solve found a root.
+     *
+     * @return true if converged
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    private double newton(double guess) {
+        double x0, x1 = guess;
+
+        while (newtonIterations < maxIterates) {
+            x0 = x1;
+            evaluate(x0);
+            newtonIterations++;
+
+            if (dnpv == 0.0 || Double.isNaN(npv) || Double.isInfinite(npv) || Double.isInfinite(dnpv)) break;
+
+            x1 = x0 - npv / dnpv;
+            if (Double.isNaN(x1) || x1 <= -1.0) break;
+
+            if (Math.abs(x1 - x0) <= accuracy) {
+                converged = true;
+                return x1;
+            }
+        }
+
+        return Double.NaN;
+    }
+
+    private double brent(double guess) {
+        double lo, hi;
+        double start = (guess > -1.0) ? guess : 0.0;
+
+        // scan upwards (doubling steps) and downwards (halving distance to -1) from the guess
+        double up = start, fup = npv(up);
+        double down = start, fdown = fup;
+        double step = 0.1;
+        lo = hi = Double.NaN;
+
+        if (fup == 0.0) {
+            converged = true;
+            return start;
+        }
+
+        for (int k = 0; k < MAX_BRACKET_STEPS; k++) {
+            double up2 = up + step;
+            double fup2 = npv(up2);
+            if (fup * fup2 <= 0.0) {
+                lo = up;
+                hi = up2;
+                break;
+            }
+            up = up2;
+            fup = fup2;
+            step *= 2;
+
+            double down2 = -1.0 + (1.0 + down) / 2;
+            double fdown2 = npv(down2);
+            if (fdown * fdown2 <= 0.0) {
+                lo = down2;
+                hi = down;
+                break;
+            }
+            down = down2;
+            fdown = fdown2;
+        }
+
+        if (Double.isNaN(lo)) return Double.NaN;
+
+        UnivariateFunction f = new UnivariateFunction() {
+            @Override
+            public double value(double rate) {
+                return npv(rate);
+            }
+        };
+
+        try {
+            double rate = new BrentSolver(accuracy).solve(maxEvaluations, f, lo, hi);
+            converged = true;
+            return rate;
+        } catch (MathIllegalStateException | MathIllegalArgumentException e) {
+            return Double.NaN;
+        }
+    }
+
+    private double npv(double rate) {
+        evaluate(rate);
+        return npv;
+    }
+
+    /**
+     * Computes NPV and dNPV/dr at the rate in a single pass.
+     *
+     * @param rate
+     */
+    private void evaluate(double rate) {
+        double v = 1.0 / (1.0 + rate);
+        double value = 0.0, derivative = 0.0;
+        int n = cashflows.length;
+
+        evaluations++;
+
+        if (times == null) {
+            // cf_i * v^i, d/dr = -i * cf_i * v^(i+1)
+            double df = 1.0;
+            for (int i = 0; i < n; i++) {
+                double pv = cashflows[i] * df;
+                value += pv;
+                derivative -= i * pv;
+                df *= v;
+            }
+        } else {
+            double logv = Math.log(v);
+            for (int i = 0; i < n; i++) {
+                double pv = cashflows[i] * Math.exp(times[i] * logv);
+                value += pv;
+                derivative -= times[i] * pv;
+            }
+        }
+
+        npv = value;
+        dnpv = derivative * v;
+    }
+}
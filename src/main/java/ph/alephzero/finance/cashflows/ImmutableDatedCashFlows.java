@@ -0,0 +1,209 @@
+package ph.alephzero.finance.cashflows;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Frozen dated cash flows in primitive arrays, built by {@link CashFlowsBuilder}. Same 
+ * layout as {@link ArrayDatedCashFlows} (sorted epoch days, a total column and one 
+ * column per component), but all state is final and never modified after construction,
+ * so a snapshot can be shared between threads without locking.
+ * 
+ * @author jon
+ *
+ */
+public final class ImmutableDatedCashFlows implements EpochDayCashFlows {
+    private final int baseDay;
+    private final int[] days;
+    private final double[] total;
+    private final double[][] components;             // components[c][i]
+    private final int[] columnByHandle;              // component handle -> c, or -1
+    private final Set<String> componentNames;
+    private final List<Date> dates;
+    
+    /**
+     * Arrays are used as-is (not copied), callers must not modify them afterwards.
+     */
+    ImmutableDatedCashFlows(int baseDay, int[] days, double[] total, double[][] components, int[] handles) {
+        this.baseDay = baseDay;
+        this.days = days;
+        this.total = total;
+        this.components = components;
+        
+        int maxHandle = -1;
+        for (int h : handles) {
+            maxHandle = Math.max(maxHandle, h);
+        }
+        
+        int[] _columnByHandle = new int[maxHandle + 1];
+        Arrays.fill(_columnByHandle, -1);
+        LinkedHashSet<String> names = new LinkedHashSet<String>();
+        for (int c = 0; c < handles.length; c++) {
+            _columnByHandle[handles[c]] = c;
+            names.add(CashFlowComponent.name(handles[c]));
+        }
+        this.columnByHandle = _columnByHandle;
+        this.componentNames = Collections.unmodifiableSet(names);
+        
+        this.dates = new AbstractList<Date>() {
+            @Override
+            public Date get(int index) {
+                return DateUtil.fromEpochDay(ImmutableDatedCashFlows.this.days[index]);
+            }
+
+            @Override
+            public int size() {
+                return ImmutableDatedCashFlows.this.days.length;
+            }
+        };
+    }
+    
+    /**
+     * Returns an immutable copy of a dated cash flow, including its components.
+     * 
+     * @param cashFlows dated cash flow
+     * @return immutable copy
+     */
+    public static ImmutableDatedCashFlows copyOf(CashFlows cashFlows) {
+        if (cashFlows instanceof ImmutableDatedCashFlows) {
+            return (ImmutableDatedCashFlows) cashFlows;
+        }
+        
+        CashFlowsBuilder builder = new CashFlowsBuilder(cashFlows.getBaseDate(), cashFlows.getCount());
+        builder.addAll(cashFlows);
+        return builder.build();
+    }
+
+    public Date getBaseDate() {
+        return DateUtil.fromEpochDay(baseDay);
+    }
+
+    public int getCount() {
+        return days.length;
+    }
+
+    /**
+     * Not equally spaced in general.
+     * 
+     * @return false 
+     */
+    public boolean isEquallySpaced() {
+        return false;
+    }
+
+    public boolean isDated() {
+        return true;
+    }
+
+    /**
+     * Dates are created on access, use {@link #getEpochDay(int)} in loops.
+     */
+    public List<Date> getDates() {
+        return dates;
+    }
+    
+    public int getEpochDay(int i) {
+        return days[i];
+    }
+    
+    /**
+     * Returns a copy of the epoch days of all dates, in ascending order.
+     * 
+     * @return epoch days of the dates
+     */
+    public int[] getEpochDays() {
+        return days.clone();
+    }
+    
+    public int indexOfEpochDay(int epochDay) {
+        return Arrays.binarySearch(days, epochDay);
+    }
+    
+    /**
+     * Returns the index of the date, see {@link #indexOfEpochDay(int)}.
+     * 
+     * @param date
+     * @return index of the date
+     */
+    public int indexOf(Date date) {
+        return Arrays.binarySearch(days, DateUtil.toEpochDay(date));
+    }
+
+    public double getCashFlow(int i) {
+        return total[i];
+    }
+
+    public double getCashFlow(int i, String component) {
+        return components[column(component)][i];
+    }
+
+    public double getCashFlow(int i, int component) {
+        return components[column(component)][i];
+    }
+
+    public double getCashFlow(Date date) {
+        int i = indexOf(date);
+        return (i < 0) ? 0.0 : total[i];
+    }
+
+    public double getCashFlow(Date date, String component) {
+        int c = column(component);
+        int i = indexOf(date);
+        return (i < 0) ? 0.0 : components[c][i];
+    }
+
+    public double getCashFlow(Date date, int component) {
+        int c = column(component);
+        int i = indexOf(date);
+        return (i < 0) ? 0.0 : components[c][i];
+    }
+    
+    /**
+     * Returns a copy of the total cash flows.
+     * 
+     * @return total cash flows
+     */
+    public double[] toArray() {
+        return total.clone();
+    }
+
+    public Set<String> getComponents() {
+        return componentNames;
+    }
+
+    public SortedMap<Date, Double> toMap() {
+        TreeMap<Date, Double> map = new TreeMap<Date, Double>();
+        
+        for (int i = 0; i < days.length; i++) {
+            map.put(DateUtil.fromEpochDay(days[i]), total[i]);
+        }
+        
+        return map;
+    }
+    
+    private int column(String component) {
+        int id = CashFlowComponent.id(component);
+        int c = (id >= 0 && id < columnByHandle.length) ? columnByHandle[id] : -1;
+        if (c < 0) {
+            throw new UnsupportedOperationException("Cash flow component " + component + " is not available.");
+        }
+        return c;
+    }
+    
+    private int column(int component) {
+        int c = (component >= 0 && component < columnByHandle.length) ? columnByHandle[component] : -1;
+        if (c < 0) {
+            throw new UnsupportedOperationException("Cash flow component handle " + component + " is not available.");
+        }
+        return c;
+    }
+}
@@ -68,6 +68,10 @@ public class MergedCashFlows implements CashFlows {
         return cashFlows.get(component).get(i);
     }
 
+    public double getCashFlow(int i, int component) {
+        return getCashFlow(i, CashFlowComponent.name(component));
+    }
+
     public double getCashFlow(Date date) {
         throw new UnsupportedOperationException("Cash flow is not dated.");        
     }
@@ -76,6 +80,10 @@ public class MergedCashFlows implements CashFlows {
         throw new UnsupportedOperationException("Cash flow is not dated.");        
     }
 
+    public double getCashFlow(Date date, int component) {
+        throw new UnsupportedOperationException("Cash flow is not dated.");        
+    }
+
     public Set<String> getComponents() {        
         return Collections.unmodifiableSet(cashFlows.keySet());
     }
@@ -1,42 +1,36 @@
 package ph.alephzero.finance.cashflows;
 
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
-import ph.alephzero.finance.util.SortedList;
+import ph.alephzero.finance.util.DateUtil;
 
 /**
- * 
+ * Dated cash flows merged from several component cash flows. Components are stored as a
+ * dense dates x components matrix (see {@link ArrayDatedCashFlows}) with a total column
+ * that is maintained on merge, so reads by index or date do not walk the components.
+ *
  * @author jon
  *
  */
 public class MergedDatedCashFlows implements CashFlows {
-    private Date baseDate;
     private String totalComponentName;
-    private SortedList<Date> dates;  
-    private HashMap<String, HashMap<Date, Double>> cashFlows; 
-    
+    private ArrayDatedCashFlows store;
+
     public MergedDatedCashFlows(Date baseDate) {
-        dates = new SortedList<Date>();
-        cashFlows = new HashMap<String, HashMap<Date,Double>>();
-        this.baseDate = baseDate;        
+        store = new ArrayDatedCashFlows(baseDate);
         totalComponentName = null;
-        
-        dates.add(baseDate);
-    }    
+    }
 
-    public Date getBaseDate() {        
-        return baseDate;
+    public Date getBaseDate() {
+        return store.getBaseDate();
     }
 
     public int getCount() {
-        return dates.size();
+        return store.getCount();
     }
 
     public boolean isEquallySpaced() {
@@ -48,88 +42,81 @@ public class MergedDatedCashFlows implements CashFlows {
     }
 
     public List<Date> getDates() {
-        return dates.list();
+        return store.getDates();
     }
 
     public double getCashFlow(int i) {
-        return getCashFlow(dates.get(i));        
+        return (totalComponentName == null) ? store.getCashFlow(i) : store.getCashFlow(i, totalComponentName);
     }
 
     public double getCashFlow(int i, String component) {
-        return getCashFlow(dates.get(i), component);
-    }
-
-    public double getCashFlow(Date date) {        
-        double cf = 0.0;
-        Map<Date, Double> cfmap;
-        
-        if (dates.contains(date)) {
-            if (totalComponentName == null) {
-                for (String comp : cashFlows.keySet()) {
-                    cfmap = cashFlows.get(comp);
-                    if (cfmap.containsKey(date)) cf += cfmap.get(date);
-                }
-            } else {
-                cfmap = cashFlows.get(totalComponentName);
-                cf = cfmap.containsKey(date) ? cfmap.get(date) : 0.0;
-            }
-        }
+        return store.getCashFlow(i, component);
+    }
 
-        return cf;        
+    public double getCashFlow(Date date) {
+        return (totalComponentName == null) ? store.getCashFlow(date) : store.getCashFlow(date, totalComponentName);
     }
 
-    public double getCashFlow(Date date, String component) {        
-        if (!cashFlows.containsKey(component)) {
-            throw new UnsupportedOperationException("Cash flow component " + component + " is not available.");
-        }
+    public double getCashFlow(Date date, String component) {
+        return store.getCashFlow(date, component);
+    }
+
+    public double getCashFlow(int i, int component) {
+        return store.getCashFlow(i, component);
+    }
 
-        Map<Date, Double> cf = cashFlows.get(component);
-        return cf.containsKey(date) ? cf.get(date) : 0.0;
+    public double getCashFlow(Date date, int component) {
+        return store.getCashFlow(date, component);
     }
 
-    public Set<String> getComponents() {        
-        return Collections.unmodifiableSet(cashFlows.keySet());
+    public Set<String> getComponents() {
+        return store.getComponents();
     }
 
     public SortedMap<Date, Double> toMap() {
+        if (totalComponentName == null) return store.toMap();
+
         TreeMap<Date, Double> map = new TreeMap<Date, Double>();
-        
-        for (Date date : dates.list()) {
-            map.put(date, getCashFlow(date));
+        List<Date> dates = store.getDates();
+
+        for (int i = 0; i < dates.size(); i++) {
+            map.put(dates.get(i), store.getCashFlow(i, totalComponentName));
         }
-        
+
         return map;
     }
-    
+
     public void merge(CashFlows cashFlows, String component) {
         merge(cashFlows, component, false);
     }
-    
+
     public void merge(CashFlows cashFlows, String component, boolean overwrite) {
         if (!cashFlows.isDated()) {
-            throw new UnsupportedOperationException("Cannot merge with non-dated cash flows.");        
+            throw new UnsupportedOperationException("Cannot merge with non-dated cash flows.");
         }
-        
-        if (this.cashFlows.containsKey(component) && !overwrite) {
+
+        if (store.getComponents().contains(component) && !overwrite) {
             throw new UnsupportedOperationException("Component [" + component + "] already exists and overwrite is false.");
         }
-        
-        if (!baseDate.equals(cashFlows.getBaseDate())) {
+
+        if (!store.getBaseDate().equals(DateUtil.normalize(cashFlows.getBaseDate()))) {
             throw new UnsupportedOperationException("Only cash flows with the same base date can be merged.");
         }
-        
-        HashMap<Date, Double> cf;
-        
-        if (this.cashFlows.containsKey(component)) {
-            cf = this.cashFlows.get(component);
+
+        store.addComponent(component);
+        int count = cashFlows.getCount();
+
+        if (cashFlows instanceof EpochDayCashFlows) {
+            // no Date round trip
+            EpochDayCashFlows cf = (EpochDayCashFlows) cashFlows;
+            for (int i = 0; i < count; i++) {
+                store.addEpochDay(cf.getEpochDay(i), cf.getCashFlow(i), component);
+            }
         } else {
-            cf = new HashMap<Date, Double>();            
-            this.cashFlows.put(component, cf);
-        }
-        
-        for (Date date : cashFlows.getDates()) {
-            if (!dates.contains(date)) dates.add(date);
-            cf.put(date, (cf.containsKey(date) ? cf.get(date) : 0.0) + cashFlows.getCashFlow(date));
+            List<Date> dates = cashFlows.getDates();
+            for (int i = 0; i < count; i++) {
+                store.add(dates.get(i), cashFlows.getCashFlow(i), component);
+            }
         }
     }
 
@@ -138,10 +125,10 @@ public class MergedDatedCashFlows implements CashFlows {
     }
 
     public void setTotalComponentName(String totalComponentName) {
-        if (!cashFlows.containsKey(totalComponentName)) {
+        if (!store.getComponents().contains(totalComponentName)) {
             throw new UnsupportedOperationException("Merge the cash flow component first before setting the TOTAL component name.");
         }
-        
+
         this.totalComponentName = totalComponentName;
     }
 
@@ -0,0 +1,53 @@
+package ph.alephzero.finance.cashflows;
+
+import java.util.Date;
+
+/**
+ * View of a cash flow with all amounts (total and components) multiplied by a factor,
+ * e.g. unit-par bond cash flows scaled to a position's face amount.
+ * 
+ * @author jon
+ *
+ */
+class ScaledCashFlows extends CashFlowsView {
+    private final double factor;
+    
+    ScaledCashFlows(CashFlows source, double factor) {
+        super(source);
+        this.factor = factor;
+    }
+    
+    public double getFactor() {
+        return factor;
+    }
+
+    @Override
+    public double getCashFlow(int i) {
+        return factor * source.getCashFlow(i);
+    }
+
+    @Override
+    public double getCashFlow(int i, String component) {
+        return factor * source.getCashFlow(i, component);
+    }
+
+    @Override
+    public double getCashFlow(int i, int component) {
+        return factor * source.getCashFlow(i, component);
+    }
+
+    @Override
+    public double getCashFlow(Date date) {
+        return factor * source.getCashFlow(date);
+    }
+
+    @Override
+    public double getCashFlow(Date date, String component) {
+        return factor * source.getCashFlow(date, component);
+    }
+
+    @Override
+    public double getCashFlow(Date date, int component) {
+        return factor * source.getCashFlow(date, component);
+    }
+}
@@ -0,0 +1,133 @@
+package ph.alephzero.finance.cashflows;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * View of the dates of a dated cash flow within <code>[from, to]</code> (inclusive). The
+ * base date of the view is <code>from</code> and, as for any dated cash flow, index 0 is the
+ * base date: if the source has no cash flow on <code>from</code>, the view starts with a
+ * zero amount on <code>from</code>, followed by the source dates after it.
+ * 
+ * The index range is located by binary search when the view is created, dates added to 
+ * or removed from the source afterwards are not reflected in the range.
+ * 
+ * @author jon
+ *
+ */
+class WindowCashFlows extends CashFlowsView {
+    private final Date from, to;
+    private final int lo, hi;        // source indices [lo, hi)
+    private final int offset;        // 1 if the base date is not a source date, else 0
+    
+    WindowCashFlows(CashFlows source, Date from, Date to) {
+        super(source);
+        
+        if (!source.isDated()) {
+            throw new UnsupportedOperationException("Cash flow is not dated.");
+        }
+        
+        this.from = DateUtil.normalize(from);
+        this.to = DateUtil.normalize(to);
+        this.lo = lowerBound(source, this.from, false);
+        this.hi = Math.max(lo, lowerBound(source, this.to, true));
+        this.offset = (lo < hi && source.getDates().get(lo).equals(this.from)) ? 0 : 1;
+    }
+    
+    @Override
+    public Date getBaseDate() {
+        return from;
+    }
+
+    @Override
+    public int getCount() {
+        return hi - lo + offset;
+    }
+
+    @Override
+    public List<Date> getDates() {
+        final List<Date> dates = source.getDates().subList(lo, hi);
+        if (offset == 0) return dates;
+        
+        return new AbstractList<Date>() {
+            @Override
+            public Date get(int index) {
+                return (index == 0) ? from : dates.get(index - 1);
+            }
+
+            @Override
+            public int size() {
+                return dates.size() + 1;
+            }
+        };
+    }
+
+    @Override
+    public double getCashFlow(int i) {
+        int j = index(i);
+        return (j < lo) ? 0.0 : source.getCashFlow(j);
+    }
+
+    @Override
+    public double getCashFlow(int i, String component) {
+        int j = index(i);
+        return (j < lo) ? 0.0 : source.getCashFlow(j, component);
+    }
+
+    @Override
+    public double getCashFlow(int i, int component) {
+        int j = index(i);
+        return (j < lo) ? 0.0 : source.getCashFlow(j, component);
+    }
+
+    @Override
+    public double getCashFlow(Date date) {
+        return contains(date) ? source.getCashFlow(date) : 0.0;
+    }
+
+    @Override
+    public double getCashFlow(Date date, String component) {
+        return contains(date) ? source.getCashFlow(date, component) : 0.0;
+    }
+
+    @Override
+    public double getCashFlow(Date date, int component) {
+        return contains(date) ? source.getCashFlow(date, component) : 0.0;
+    }
+    
+    private boolean contains(Date date) {
+        date = DateUtil.normalize(date);
+        return !date.before(from) && !date.after(to);
+    }
+    
+    /**
+     * Source index of view index i, <code>lo - 1</code> for the added base date.
+     */
+    private int index(int i) {
+        int count = hi - lo + offset;
+        if (i < 0 || i >= count) {
+            throw new ArrayIndexOutOfBoundsException("Only cash flows from 0 to " + (count-1) + " are available.");
+        }
+        return lo + i - offset;
+    }
+    
+    /**
+     * Index of the first date after (if <code>after</code>) or on/after the date.
+     */
+    private static int lowerBound(CashFlows cashFlows, Date date, boolean after) {
+        int i;
+        
+        if (cashFlows instanceof EpochDayCashFlows) {
+            i = ((EpochDayCashFlows) cashFlows).indexOfEpochDay(DateUtil.toEpochDay(date));
+        } else {
+            i = Collections.binarySearch(cashFlows.getDates(), date);
+        }
+        
+        if (i < 0) return -(i + 1);
+        return after ? i + 1 : i;
+    }
+}
@@ -6,21 +6,26 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
+import ph.alephzero.finance.market.DiscountFactorCache;
 import ph.alephzero.finance.market.Quote;
 import ph.alephzero.finance.market.YieldTermStructure;
+import ph.alephzero.finance.util.DateUtil;
 
 public class BasicContext implements Context {
     private Date baseDate;
     private String baseCurrency;
     private HashMap<String, Quote> quotes;
-    private HashMap<String, YieldTermStructure> yieldCurves;
+    private ConcurrentHashMap<String, YieldTermStructure> yieldCurves;
+    private ConcurrentHashMap<String, DiscountFactorCache> discountFactors;
 
     public BasicContext(Date baseDate, String baseCurrency) {
         this.baseDate = baseDate;
         this.baseCurrency = baseCurrency;
         this.quotes = new HashMap<>();
-        this.yieldCurves = new HashMap<>();
+        this.yieldCurves = new ConcurrentHashMap<>();
+        this.discountFactors = new ConcurrentHashMap<>();
     }
     
     @Override
@@ -98,14 +103,18 @@ public class BasicContext implements Context {
 
     @Override
     public List<String> getYieldCurveNames() {
-        // TODO Auto-generated method stub
-        return null;
+        ArrayList<String> names = new ArrayList<>(yieldCurves.keySet());
+        Collections.sort(names);
+        return Collections.unmodifiableList(names);
     }
 
     @Override
     public List<Date> getYieldCurveDates(String name) {
-        // TODO Auto-generated method stub
-        return null;
+        List<Date> ret = null;
+        if (yieldCurves.containsKey(name)) {
+            ret = Collections.singletonList(yieldCurves.get(name).getBaseDate());
+        }
+        return ret;
     }
 
     @Override
@@ -130,20 +139,50 @@ public class BasicContext implements Context {
 
     @Override
     public YieldTermStructure getCurve(String name) {
-        // TODO Auto-generated method stub
-        return null;
+        return yieldCurves.get(name);
     }
 
+    /**
+     * Only the curves as of the base date are kept, so this returns the curve for dates
+     * on or after the base date, and for earlier dates only if the curve has that base date.
+     */
     @Override
     public YieldTermStructure getCurve(String name, Date date) {
-        // TODO Auto-generated method stub
-        return null;
+        YieldTermStructure curve = yieldCurves.get(name);
+        if (curve != null && date.compareTo(baseDate) < 0 && !DateUtil.normalize(date).equals(DateUtil.normalize(curve.getBaseDate()))) {
+            curve = null;
+        }
+        return curve;
     }
 
     @Override
     public Double getDiscount(String name, Date date) {
-        // TODO Auto-generated method stub
-        return null;
+        DiscountFactorCache cache = getDiscountFactorCache(name);
+        return (cache == null) ? null : cache.getDiscount(date);
+    }
+
+    /**
+     * Returns the discount factors of the curve, cached per date and shared by all callers
+     * until the curve is replaced. Safe to call from concurrent readers, also while a curve
+     * is replaced: a cache is only returned for the current curve of the name.
+     *
+     * @param name yield curve name
+     * @return discount factor cache or null if there is no such curve
+     */
+    public DiscountFactorCache getDiscountFactorCache(String name) {
+        for (;;) {
+            YieldTermStructure curve = yieldCurves.get(name);
+            if (curve == null) return null;
+
+            DiscountFactorCache cache = discountFactors.get(name);
+            if (cache != null && cache.getCurve() == curve) return cache;
+
+            // missing, or installed for a curve since replaced
+            DiscountFactorCache created = new DiscountFactorCache(curve);
+            if ((cache == null) ? discountFactors.putIfAbsent(name, created) == null : discountFactors.replace(name, cache, created)) {
+                return created;
+            }
+        }
     }
     
     public void addQuote(Quote quote) {
@@ -152,6 +191,7 @@ public class BasicContext implements Context {
     
     public void addYieldCurve(YieldTermStructure yieldCurve) {
         yieldCurves.put(yieldCurve.getName(), yieldCurve);
+        discountFactors.remove(yieldCurve.getName());
     }
 
 }
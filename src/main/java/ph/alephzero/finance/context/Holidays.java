@@ -2,72 +2,362 @@ package ph.alephzero.finance.context;
 
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
 
 import ph.alephzero.finance.util.DateUtil;
 
 /***
- * 
+ * Business day calendar: weekends (Saturday and Sunday) and holidays are non-working days.
+ *
+ * The calendar is compiled on construction into a bitset of non-working days (one bit per
+ * day, see {@link DateUtil#toEpochDay(Date)}) over a range of years, plus the number of
+ * working days before each 64-day word. Checks and adjustments are array lookups, and
+ * counting or adding business days is a prefix sum difference or a binary search over the
+ * words. Outside the compiled range only weekends are non-working.
+ *
+ * Calendars with the same holidays are equal, e.g. as keys of cached schedules.
+ *
+ * Immutable, thus thread-safe.
+ *
  * @author jon
  *
  */
 public class Holidays {
-	
-	private Set<Date> dates;
-	
+	private static final int DEFAULT_FIRST_YEAR = 1900;
+	private static final int DEFAULT_LAST_YEAR = 2199;
+
+	private final int[] holidays;          // sorted epoch days
+	private final int firstDay;            // compiled range [firstDay, endDay)
+	private final int endDay;
+	private final long[] nonWorking;       // bit (day - firstDay)
+	private final int[] workingBefore;     // working days in [firstDay, firstDay + 64*w)
+	private final int hash;
+
 	public Holidays() {
-		new Holidays(new Date[0]);
+		this(new int[0]);
 	}
-	
+
 	public Holidays(Date[] dates) {
-		this.dates = new HashSet<Date>();
-		this.dates.addAll(Arrays.asList(dates));		
+		this(toEpochDays(dates));
+	}
+
+	/**
+	 *
+	 * @param epochDays holidays as epoch days, in any order
+	 */
+	public Holidays(int[] epochDays) {
+		int[] days = epochDays.clone();
+		Arrays.sort(days);
+
+		int n = 0;
+		for (int i = 0; i < days.length; i++) {
+			if (n == 0 || days[i] != days[n - 1]) days[n++] = days[i];
+		}
+		holidays = Arrays.copyOf(days, n);
+		hash = Arrays.hashCode(holidays);
+
+		int first = DateUtil.epochDayOf(DEFAULT_FIRST_YEAR, 1, 1);
+		int end = DateUtil.epochDayOf(DEFAULT_LAST_YEAR + 1, 1, 1);
+		if (n > 0) {
+			first = Math.min(first, DateUtil.epochDayOf(DateUtil.yearOf(holidays[0]), 1, 1));
+			end = Math.max(end, DateUtil.epochDayOf(DateUtil.yearOf(holidays[n - 1]) + 1, 1, 1));
+		}
+		firstDay = first;
+		endDay = end;
+
+		int nwords = (endDay - firstDay + 63) >>> 6;
+		nonWorking = new long[nwords];
+		workingBefore = new int[nwords + 1];
+
+		// weekends repeat every 7 words (64 = 1 mod 7), word w starts w % 7 days after firstDay
+		long[] weekends = new long[7];
+		for (int k = 0; k < 7; k++) {
+			for (int j = 0; j < 64; j++) {
+				if (DateUtil.isWeekend(firstDay + k + j)) weekends[k] |= 1L << j;
+			}
+		}
+		for (int w = 0; w < nwords; w++) {
+			nonWorking[w] = weekends[w % 7];
+		}
+		for (int d : holidays) {
+			setBit(d);
+		}
+		// padding after endDay is non-working, so it is never counted
+		for (int d = endDay; d < firstDay + (nwords << 6); d++) {
+			setBit(d);
+		}
+
+		for (int w = 0; w < nwords; w++) {
+			workingBefore[w + 1] = workingBefore[w] + 64 - Long.bitCount(nonWorking[w]);
+		}
+	}
+
+	/**
+	 * Returns a calendar where a day is a non-working day if it is a non-working day in
+	 * any of the calendars, e.g. for cross-border settlement.
+	 *
+	 * @param calendars
+	 * @return joint calendar
+	 */
+	public static Holidays join(Holidays... calendars) {
+		int len = 0;
+		for (Holidays h : calendars) {
+			len += h.holidays.length;
+		}
+
+		int[] days = new int[len];
+		int k = 0;
+		for (Holidays h : calendars) {
+			System.arraycopy(h.holidays, 0, days, k, h.holidays.length);
+			k += h.holidays.length;
+		}
+
+		return new Holidays(days);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
 	}
-	
+
+	/**
+	 * Calendars are equal if they have the same holidays, and thus the same non-working days.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof Holidays)) return false;
+		Holidays h = (Holidays) obj;
+		return hash == h.hash && Arrays.equals(holidays, h.holidays);
+	}
+
+	/**
+	 * Returns the holidays (excluding weekends) as sorted epoch days.
+	 *
+	 * @return holidays
+	 */
+	public int[] getHolidays() {
+		return holidays.clone();
+	}
+
 	public boolean isHoliday(Date date) {
-		return dates.contains(date);
+		return isHoliday(DateUtil.toEpochDay(date));
 	}
-	
+
+	public boolean isHoliday(int epochDay) {
+		return Arrays.binarySearch(holidays, epochDay) >= 0;
+	}
+
 	public boolean isWeekend(Date date) {
 	    return DateUtil.isWeekend(date);
 	}
-	
+
 	public boolean isNonWorkingDay(Date date) {
-	    return isWeekend(date) || isHoliday(date); 
+	    return isNonWorkingDay(DateUtil.toEpochDay(date));
+	}
+
+	public boolean isNonWorkingDay(int epochDay) {
+		if (epochDay < firstDay || epochDay >= endDay) return DateUtil.isWeekend(epochDay);
+
+		int i = epochDay - firstDay;
+		return (nonWorking[i >>> 6] & (1L << (i & 63))) != 0;
 	}
-	
+
 	public Date adjustDate(Date date, BusinessDayConvention conv) {
-		if (isNonWorkingDay(date)) {
-			Date newDate;
-			switch(conv) {
-			case PREVIOUS: 				
-				date = adjustDate(DateUtil.previousWorkingDate(date), conv);
-				break;
-			case FORWARD:				
-				date = adjustDate(DateUtil.nextWorkingDate(date), conv);
-				break;
-			case PREVIOUS_MODIFIED:
-				newDate = DateUtil.previousWorkingDate(date);
-				if (!DateUtil.isSameMonth(date, newDate)) {
-					date = adjustDate(DateUtil.nextWorkingDate(date), BusinessDayConvention.FORWARD);
-				} else {
-					date = adjustDate(newDate, conv);
-				}
-				break;
-			case FORWARD_MODIFIED:
-				newDate = DateUtil.nextWorkingDate(date);
-				if (!DateUtil.isSameMonth(date, newDate)) {
-					date = adjustDate(DateUtil.previousWorkingDate(date), BusinessDayConvention.PREVIOUS);
-				} else {
-					date = adjustDate(newDate, conv);
-				}
-				break;
-			case NONE:				
-			}			
-		}
-		
-		return date;
-	}
-	
+		if (!isNonWorkingDay(date)) return date;
+
+		return DateUtil.fromEpochDay(adjustDate(DateUtil.toEpochDay(date), conv));
+	}
+
+	/**
+	 * Epoch day version of {@link #adjustDate(Date, BusinessDayConvention)}.
+	 *
+	 * @param epochDay
+	 * @param conv
+	 * @return adjusted epoch day
+	 */
+	public int adjustDate(int epochDay, BusinessDayConvention conv) {
+		if (!isNonWorkingDay(epochDay)) return epochDay;
+
+		int day;
+		switch (conv) {
+		case PREVIOUS:
+			return previousWorkingDay(epochDay);
+		case FORWARD:
+			return nextWorkingDay(epochDay);
+		case PREVIOUS_MODIFIED:
+			day = previousWorkingDay(epochDay);
+			return isSameMonth(day, epochDay) ? day : nextWorkingDay(epochDay);
+		case FORWARD_MODIFIED:
+			day = nextWorkingDay(epochDay);
+			return isSameMonth(day, epochDay) ? day : previousWorkingDay(epochDay);
+		default:
+			return epochDay;
+		}
+	}
+
+	/**
+	 * Returns the first working day on or after the date.
+	 *
+	 * @param epochDay
+	 * @return working day
+	 */
+	public int nextWorkingDay(int epochDay) {
+		return select(rank(epochDay));
+	}
+
+	/**
+	 * Returns the last working day on or before the date.
+	 *
+	 * @param epochDay
+	 * @return working day
+	 */
+	public int previousWorkingDay(int epochDay) {
+		return select(rank(epochDay + 1) - 1);
+	}
+
+	/**
+	 * Moves the date by business days: for positive <code>days</code>, returns the
+	 * <code>days</code>-th working day after the date; for negative, the
+	 * <code>-days</code>-th working day before it. Returns the date as-is for 0.
+	 *
+	 * @param date
+	 * @param days business days
+	 * @return date
+	 */
+	public Date addBusinessDays(Date date, int days) {
+		if (days == 0) return date;
+
+		return DateUtil.fromEpochDay(addBusinessDays(DateUtil.toEpochDay(date), days));
+	}
+
+	/**
+	 * Epoch day version of {@link #addBusinessDays(Date, int)}.
+	 *
+	 * @param epochDay
+	 * @param days business days
+	 * @return epoch day
+	 */
+	public int addBusinessDays(int epochDay, int days) {
+		if (days == 0) return epochDay;
+
+		return (days > 0) ? select(rank(epochDay + 1) + days - 1) : select(rank(epochDay) + days);
+	}
+
+	/**
+	 * Returns the number of working days from <code>from</code> (inclusive) to
+	 * <code>to</code> (exclusive), negative if <code>to</code> is before <code>from</code>.
+	 *
+	 * @param from
+	 * @param to
+	 * @return number of working days
+	 */
+	public int countBusinessDays(Date from, Date to) {
+		return countBusinessDays(DateUtil.toEpochDay(from), DateUtil.toEpochDay(to));
+	}
+
+	/**
+	 * Epoch day version of {@link #countBusinessDays(Date, Date)}.
+	 *
+	 * @param from
+	 * @param to
+	 * @return number of working days
+	 */
+	public int countBusinessDays(int from, int to) {
+		return rank(to) - rank(from);
+	}
+
+	/**
+	 * Number of working days in <code>[firstDay, epochDay)</code>, negative before firstDay.
+	 */
+	private int rank(int epochDay) {
+		if (epochDay < firstDay) {
+			return -countWeekdays(epochDay, firstDay);
+		}
+		if (epochDay >= endDay) {
+			return workingBefore[workingBefore.length - 1] + countWeekdays(endDay, epochDay);
+		}
+
+		int i = epochDay - firstDay;
+		int w = i >>> 6;
+		int b = i & 63;
+		return workingBefore[w] + b - Long.bitCount(nonWorking[w] & ((1L << b) - 1));
+	}
+
+	/**
+	 * Inverse of rank: returns the working day with k working days before it (from firstDay).
+	 */
+	private int select(int k) {
+		int total = workingBefore[workingBefore.length - 1];
+
+		if (k < 0) {
+			return addWeekdays(firstDay, k);
+		}
+		if (k >= total) {
+			return addWeekdays(endDay - 1, k - total + 1);
+		}
+
+		// last word with workingBefore[w] <= k
+		int lo = 0, hi = nonWorking.length - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (workingBefore[mid] <= k) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+
+		long working = ~nonWorking[lo];
+		for (int r = k - workingBefore[lo]; r > 0; r--) {
+			working &= working - 1;      // clear lowest working day
+		}
+
+		return firstDay + (lo << 6) + Long.numberOfTrailingZeros(working);
+	}
+
+	private void setBit(int epochDay) {
+		int i = epochDay - firstDay;
+		nonWorking[i >>> 6] |= 1L << (i & 63);
+	}
+
+	private static boolean isSameMonth(int day1, int day2) {
+		return DateUtil.toYyyymmdd(day1) / 100 == DateUtil.toYyyymmdd(day2) / 100;
+	}
+
+	/**
+	 * Number of weekdays in <code>[from, to)</code>, from <= to.
+	 */
+	private static int countWeekdays(int from, int to) {
+		int n = (to - from) / 7 * 5;
+		for (int d = from + (to - from) / 7 * 7; d < to; d++) {
+			if (!DateUtil.isWeekend(d)) n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the n-th weekday after (n > 0) or before (n < 0) the day.
+	 */
+	private static int addWeekdays(int day, int n) {
+		int step = (n > 0) ? 1 : -1;
+		int remaining = Math.abs(n);
+
+		// every 7 days pass exactly 5 weekdays
+		day += step * 7 * ((remaining - 1) / 5);
+		remaining = (remaining - 1) % 5 + 1;
+
+		while (remaining > 0) {
+			day += step;
+			if (!DateUtil.isWeekend(day)) remaining--;
+		}
+		return day;
+	}
+
+	private static int[] toEpochDays(Date[] dates) {
+		int[] days = new int[dates.length];
+		for (int i = 0; i < dates.length; i++) {
+			days[i] = DateUtil.toEpochDay(dates[i]);
+		}
+		return days;
+	}
 }
@@ -0,0 +1,473 @@
+package ph.alephzero.finance.market;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import ph.alephzero.finance.Message;
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Columnar {@link Quote} for long histories. Dates are stored as a sorted <code>int[]</code> of
+ * epoch days (see {@link DateUtil#toEpochDay(Date)}) and each quote type as a <code>double[]</code>
+ * column, with NaN for missing quotes, so a quote costs 8 bytes instead of a boxed
+ * <code>Double</code> plus a map entry per date as in {@link BasicQuote}. Each type also keeps an
+ * availability bitmap (one bit per date), used by {@link #getAvailableQuoteDates(String)}
+ * without scanning the columns.
+ *
+ * Lookups are binary searches on the date axis. Dates after the last date are appended in
+ * amortized O(1), see {@link #appendQuotes(int[], double[][])} for loading history in order;
+ * other dates are inserted, shifting the later dates.
+ *
+ * NaN cannot be stored as a quote, it means missing (null in the {@link Quote} methods).
+ *
+ * NOT THREAD-SAFE!!
+ *
+ * @author jon
+ *
+ */
+public class ArrayQuote implements EpochDayQuote {
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private String symbol;
+    private String[] quoteTypes;
+    private ArrayList<String> interpTypes;   // interpolated types
+    private String defaultQuoteType;
+    private HashMap<String, Integer> quoteTypesIndex;
+    private HashMap<String, Interpolator> interpolators;
+
+    private int count;
+    private int[] days;              // sorted epoch days
+    private double[][] values;       // per type, NaN = missing
+    private long[][] available;      // per type, bit i set if values[type][i] is not NaN
+
+    public ArrayQuote(String symbol, String... quoteTypes) {
+        this(DEFAULT_CAPACITY, symbol, quoteTypes);
+    }
+
+    /**
+     *
+     * @param capacity expected number of dates
+     * @param symbol
+     * @param quoteTypes
+     */
+    public ArrayQuote(int capacity, String symbol, String... quoteTypes) {
+        this.symbol = symbol;
+        this.quoteTypes = Arrays.copyOf(quoteTypes, quoteTypes.length);
+        this.defaultQuoteType = quoteTypes[0];
+        this.quoteTypesIndex = new HashMap<>(quoteTypes.length);
+        this.interpTypes = new ArrayList<>();
+        this.interpolators = new HashMap<>();
+
+        for (int i = 0; i < quoteTypes.length; i++) {
+            quoteTypesIndex.put(quoteTypes[i], i);
+        }
+
+        capacity = Math.max(capacity, 1);
+        days = new int[capacity];
+        values = new double[quoteTypes.length][capacity];
+        available = new long[quoteTypes.length][words(capacity)];
+    }
+
+    @Override
+    public String getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    public Double getQuote(Date date) {
+        return getQuote(date, defaultQuoteType);
+    }
+
+    @Override
+    public Double getQuote(Date date, String type) {
+        Integer idx = quoteTypesIndex.get(type);
+
+        if (idx != null) {
+            double quote = getValue(DateUtil.toEpochDay(date), idx);
+            return Double.isNaN(quote) ? null : quote;
+        } else if (interpolators.containsKey(type)) {
+            return interpolators.get(type).getQuote(date);
+        }
+
+        return null;
+    }
+
+    /**
+     * Primitive version of {@link #getQuote(Date, String)} for stored (not interpolated) types.
+     *
+     * @param epochDay
+     * @param type index of the quote type, see {@link #getTypeIndex(String)}
+     * @return quote, NaN if missing
+     */
+    public double getValue(int epochDay, int type) {
+        int i = Arrays.binarySearch(days, 0, count, epochDay);
+        return (i < 0) ? Double.NaN : values[type][i];
+    }
+
+    /**
+     * Not thread-safe, thus the quote itself.
+     *
+     * @return this
+     */
+    @Override
+    public EpochDayQuote snapshot() {
+        return this;
+    }
+
+    /**
+     * Quote at date index i.
+     *
+     * @param i date index, see {@link #indexOf(int)}
+     * @param type index of the quote type
+     * @return quote, NaN if missing
+     */
+    public double getValueAt(int i, int type) {
+        checkIndex(i);
+        return values[type][i];
+    }
+
+    /**
+     * Index of the quote type, or -1 if not a stored type.
+     *
+     * @param type
+     * @return index of the quote type
+     */
+    public int getTypeIndex(String type) {
+        Integer idx = quoteTypesIndex.get(type);
+        return (idx == null) ? -1 : idx;
+    }
+
+    /**
+     * Number of dates with at least 1 quote type.
+     *
+     * @return number of dates
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public int getEpochDay(int i) {
+        checkIndex(i);
+        return days[i];
+    }
+
+    /**
+     * Index of the date, or -1 if not present.
+     *
+     * @param epochDay
+     * @return date index
+     */
+    public int indexOf(int epochDay) {
+        int i = Arrays.binarySearch(days, 0, count, epochDay);
+        return (i < 0) ? -1 : i;
+    }
+
+    /**
+     * Returns the index of the first date strictly after the date, or the count if there is none.
+     *
+     * @param epochDay
+     * @return index of first date after epochDay
+     */
+    public int indexAfter(int epochDay) {
+        int i = Arrays.binarySearch(days, 0, count, epochDay);
+        return (i < 0) ? -(i + 1) : i + 1;
+    }
+
+    /**
+     * Returns true if the quote type is available at date index i.
+     *
+     * @param i date index
+     * @param type index of the quote type
+     * @return true if available
+     */
+    public boolean isAvailable(int i, int type) {
+        checkIndex(i);
+        return (available[type][i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Number of dates where the quote type is available.
+     *
+     * @param type index of the quote type
+     * @return number of available dates
+     */
+    public int getAvailableCount(int type) {
+        int n = 0;
+        for (long word : available[type]) {
+            n += Long.bitCount(word);
+        }
+        return n;
+    }
+
+    public void setQuote(Date date, Double quote) {
+        setQuote(date, defaultQuoteType, quote);
+    }
+
+    public void setQuote(Date date, String type, Double quote) {
+        setValue(DateUtil.toEpochDay(date), quoteTypesIndex.get(type), (quote == null) ? Double.NaN : quote);
+    }
+
+    /**
+     * Primitive version of {@link #setQuote(Date, String, Double)}.
+     *
+     * @param epochDay
+     * @param type index of the quote type
+     * @param quote quote, NaN to clear
+     */
+    public void setValue(int epochDay, int type, double quote) {
+        int i = insert(epochDay);
+        values[type][i] = quote;
+        setAvailable(type, i, !Double.isNaN(quote));
+        resetInterpolators(quoteTypes[type], epochDay, epochDay);
+    }
+
+    public void addQuote(Date date, Double[] quotes) {
+        int epochDay = DateUtil.toEpochDay(date);
+        addQuoteNoReset(epochDay, quotes);
+        resetInterpolators(null, epochDay, epochDay);
+    }
+
+    /**
+     * Bulk upload quotes, as in {@link BasicQuote#addQuotes(Date[], Double[][])}.
+     *
+     * @param dates
+     * @param quotes
+     */
+    public void addQuotes(Date[] dates, Double[][] quotes) {
+        if (dates.length != quotes.length) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+
+        int[] epochDays = new int[dates.length];
+        ensureCapacity(count + dates.length);
+        for (int i = 0; i < dates.length; i++) {
+            epochDays[i] = DateUtil.toEpochDay(dates[i]);
+            addQuoteNoReset(epochDays[i], quotes[i]);
+        }
+        resetInterpolators(null, epochDays);
+    }
+
+    /**
+     * Bulk append of columns: <code>quotes[type][j]</code> is the quote of the type at
+     * <code>epochDays[j]</code> (NaN if missing). Dates sorted in ascending order and after the
+     * last date (e.g. loading history in order) are copied as whole columns; otherwise dates
+     * are merged one at a time.
+     *
+     * @param epochDays dates
+     * @param quotes one column per quote type, each the same length as epochDays
+     */
+    public void appendQuotes(int[] epochDays, double[][] quotes) {
+        int m = epochDays.length;
+
+        if (quotes.length != quoteTypes.length) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+        for (double[] column : quotes) {
+            if (column.length != m) {
+                throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+            }
+        }
+
+        if (isAppend(epochDays)) {
+            ensureCapacity(count + m);
+            System.arraycopy(epochDays, 0, days, count, m);
+            for (int t = 0; t < quoteTypes.length; t++) {
+                System.arraycopy(quotes[t], 0, values[t], count, m);
+                for (int j = 0; j < m; j++) {
+                    setAvailable(t, count + j, !Double.isNaN(quotes[t][j]));
+                }
+            }
+            count += m;
+        } else {
+            ensureCapacity(count + m);
+            for (int j = 0; j < m; j++) {
+                int i = insert(epochDays[j]);
+                for (int t = 0; t < quoteTypes.length; t++) {
+                    values[t][i] = quotes[t][j];
+                    setAvailable(t, i, !Double.isNaN(quotes[t][j]));
+                }
+            }
+        }
+
+        resetInterpolators(null, epochDays);
+    }
+
+    public void addInterpolator(Interpolator interpolator, String type, String refType) {
+        assert(!quoteTypesIndex.containsKey(type));
+        assert(quoteTypesIndex.containsKey(refType));
+
+        if (!interpTypes.contains(type)) {
+            interpTypes.add(type);
+        }
+
+        interpolators.put(type, interpolator);
+        interpolator.setReference(this, refType);
+    }
+
+    @Override
+    public List<String> getQuoteTypes() {
+        return Collections.unmodifiableList(Arrays.asList(quoteTypes));
+    }
+
+    @Override
+    public List<String> getInterpolatedTypes() {
+        return Collections.unmodifiableList(interpTypes);
+    }
+
+    @Override
+    public List<Date> getQuoteDates() {
+        return dateList(Arrays.copyOf(days, count));
+    }
+
+    @Override
+    public List<Date> getAvailableQuoteDates(String type) {
+        Integer idx = quoteTypesIndex.get(type);
+        if (idx == null) return null;
+
+        long[] bits = available[idx];
+        int[] ret = new int[getAvailableCount(idx)];
+        int n = 0;
+
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                ret[n++] = days[(w << 6) + Long.numberOfTrailingZeros(word)];
+                word &= word - 1;
+            }
+        }
+
+        return dateList(ret);
+    }
+
+    @Override
+    public String getDefaultQuoteType() {
+        return defaultQuoteType;
+    }
+
+    private void addQuoteNoReset(int epochDay, Double[] quotes) {
+        assert(quotes.length == quoteTypes.length);
+        int i = insert(epochDay);
+
+        for (int t = 0; t < quotes.length; t++) {
+            double quote = (quotes[t] == null) ? Double.NaN : quotes[t];
+            values[t][i] = quote;
+            setAvailable(t, i, !Double.isNaN(quote));
+        }
+    }
+
+    /**
+     * Returns the index of the date, inserting an empty (all NaN) date if not present.
+     */
+    private int insert(int epochDay) {
+        if (count == 0 || epochDay > days[count - 1]) {
+            ensureCapacity(count + 1);
+            days[count] = epochDay;
+            for (int t = 0; t < quoteTypes.length; t++) {
+                values[t][count] = Double.NaN;
+                setAvailable(t, count, false);
+            }
+            return count++;
+        }
+
+        int i = Arrays.binarySearch(days, 0, count, epochDay);
+        if (i >= 0) return i;
+
+        i = -(i + 1);
+        ensureCapacity(count + 1);
+        System.arraycopy(days, i, days, i + 1, count - i);
+        days[i] = epochDay;
+        for (int t = 0; t < quoteTypes.length; t++) {
+            System.arraycopy(values[t], i, values[t], i + 1, count - i);
+            values[t][i] = Double.NaN;
+        }
+        count++;
+
+        // shift the availability bits from i on
+        for (int t = 0; t < quoteTypes.length; t++) {
+            for (int j = i; j < count; j++) {
+                setAvailable(t, j, !Double.isNaN(values[t][j]));
+            }
+        }
+        return i;
+    }
+
+    private boolean isAppend(int[] epochDays) {
+        int last = (count == 0) ? Integer.MIN_VALUE : days[count - 1];
+        for (int day : epochDays) {
+            if (day <= last) return false;
+            last = day;
+        }
+        return true;
+    }
+
+    private void setAvailable(int type, int i, boolean flag) {
+        if (flag) {
+            available[type][i >>> 6] |= 1L << i;
+        } else {
+            available[type][i >>> 6] &= ~(1L << i);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= days.length) return;
+
+        int newCapacity = Math.max(capacity, days.length * 2);
+        days = Arrays.copyOf(days, newCapacity);
+        for (int t = 0; t < quoteTypes.length; t++) {
+            values[t] = Arrays.copyOf(values[t], newCapacity);
+            available[t] = Arrays.copyOf(available[t], words(newCapacity));
+        }
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + count);
+        }
+    }
+
+    /**
+     * Resets the interpolators depending on the type (all if null) for the changed dates.
+     */
+    private void resetInterpolators(String type, int from, int to) {
+        if (interpolators.isEmpty()) return;
+
+        Date fromDate = DateUtil.fromEpochDay(from), toDate = DateUtil.fromEpochDay(to);
+        for (Interpolator i : interpolators.values()) {
+            if (type == null || i.dependsOn(type)) i.reset(fromDate, toDate);
+        }
+    }
+
+    private void resetInterpolators(String type, int[] epochDays) {
+        if (epochDays.length == 0) return;
+
+        int from = epochDays[0], to = epochDays[0];
+        for (int day : epochDays) {
+            from = Math.min(from, day);
+            to = Math.max(to, day);
+        }
+        resetInterpolators(type, from, to);
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static List<Date> dateList(final int[] epochDays) {
+        return new AbstractList<Date>() {
+            @Override
+            public Date get(int index) {
+                return DateUtil.fromEpochDay(epochDays[index]);
+            }
+
+            @Override
+            public int size() {
+                return epochDays.length;
+            }
+        };
+    }
+}
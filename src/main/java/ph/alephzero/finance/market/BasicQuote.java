@@ -94,6 +94,7 @@ public class BasicQuote implements Quote {
             dates.add(date);
         }
         qr.setQuote(type, quote);
+        resetInterpolators(type, date, date);
     }
     
     private void addQuoteNoReset(Date date, Double[] quotes) {
@@ -111,7 +112,7 @@ public class BasicQuote implements Quote {
     
     public void addQuote(Date date, Double[] quotes) {
         addQuoteNoReset(date, quotes);
-        resetInterpolators(null);
+        resetInterpolators(null, date, date);
     }
     
     /**
@@ -125,7 +126,7 @@ public class BasicQuote implements Quote {
         for (int i = 0; i < dates.length; i++) {
             addQuoteNoReset(dates[i], quotes[i]);
         }
-        resetInterpolators(null);
+        resetInterpolators(null, dates);
     }
     
     public void addQuotes(Date[] dates, List<Double[]> quotes) {
@@ -133,7 +134,7 @@ public class BasicQuote implements Quote {
         for (int i = 0; i < dates.length; i++) {
             addQuoteNoReset(dates[i], quotes.get(i));
         }
-        resetInterpolators(null);
+        resetInterpolators(null, dates);
     }
     
     public void addInterpolator(Interpolator interpolator, String type, String refType) {
@@ -168,10 +169,25 @@ public class BasicQuote implements Quote {
         return defaultQuoteType;
     }
     
-    private void resetInterpolators(String type) {
+    /**
+     * Resets the interpolators depending on the type (all if null) for the changed dates, so
+     * interpolators can keep their state for dates before the change (e.g. on appends).
+     */
+    private void resetInterpolators(String type, Date from, Date to) {
         for (Interpolator i : interpolators.values()) {
-            if (i.dependsOn(type)) i.reset();
+            if (type == null || i.dependsOn(type)) i.reset(from, to);
+        }
+    }
+    
+    private void resetInterpolators(String type, Date[] dates) {
+        if (dates.length == 0) return;
+        
+        Date from = dates[0], to = dates[0];
+        for (Date d : dates) {
+            if (d.before(from)) from = d;
+            if (d.after(to)) to = d;
         }
+        resetInterpolators(type, from, to);
     }
 
     @Override
@@ -1,11 +1,36 @@
 package ph.alephzero.finance.market;
 
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import ph.alephzero.finance.Compounding;
 import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.Message;
+import ph.alephzero.finance.market.interpolator.PiecewiseInterpolation;
+import ph.alephzero.finance.market.interpolator.PiecewiseInterpolation.Extrapolation;
+import ph.alephzero.finance.util.DateUtil;
 
+/**
+ * Yield curve from zero rates at node dates. Nodes are stored as log discount factors
+ * against curve time (ACT/365 years from the base date) and interpolated linearly in time
+ * from DF = 1 at the base date (a {@link PiecewiseInterpolation}, log-linear in the discount
+ * factors), i.e. forward rates are flat between nodes. Before the first node the zero rate of
+ * the first node is extended flat, after the last node the forward rate of the last segment.
+ *
+ * Node rates are interpreted with the default frequency, compounding and basis at the time
+ * they are added (defaults: annual, continuous, ACT/365).
+ *
+ * NOT THREAD-SAFE while nodes are added.
+ *
+ * @author jon
+ *
+ */
 public class BasicYieldTermStructure implements YieldTermStructure {
+    private static final double DAYS_PER_YEAR = 365.0;
+    private static final double SHORT_TIME = 1e-8;
+
     private Date baseDate;
     private String name;
     private String description;
@@ -13,19 +38,35 @@ public class BasicYieldTermStructure implements YieldTermStructure {
     private Compounding compounding;
     private DayCountBasis basis;
 
+    private int baseDay;
+    private int count;
+    private int[] nodeDays;
+    private double[] nodeTimes;          // curve time of the nodes
+    private double[] nodeLogDiscount;    // ln DF of the nodes
+    private volatile int modCount;       // node changes, see getModificationCount()
+    private volatile PiecewiseInterpolation interpolation;    // ln DF, null when nodes change
+
     public BasicYieldTermStructure(Date baseDate, String name, String description) {
-        this.baseDate = baseDate;
+        this.baseDate = DateUtil.normalize(baseDate);
         this.name = name;
         this.description = description;
+        this.frequency = 1;
+        this.compounding = Compounding.CONTINUOUS;
+        this.basis = DayCountBasis.ACT_365;
+
+        baseDay = DateUtil.toEpochDay(baseDate);
+        nodeDays = new int[8];
+        nodeTimes = new double[8];
+        nodeLogDiscount = new double[8];
     }
-    
+
     @Override
-    public String getName() {        
+    public String getName() {
         return name;
     }
 
     @Override
-    public String getDescription() {        
+    public String getDescription() {
         return description;
     }
 
@@ -34,43 +75,173 @@ public class BasicYieldTermStructure implements YieldTermStructure {
         return baseDate;
     }
 
+    /**
+     * Adds (or replaces) the node at the date, with the zero rate in the default frequency,
+     * compounding and basis.
+     *
+     * @param date node date, after the base date
+     * @param zeroRate zero rate from the base date to the node date
+     */
+    public void addNode(Date date, double zeroRate) {
+        int day = DateUtil.toEpochDay(date);
+        if (day <= baseDay) {
+            throw new UnsupportedOperationException("Node date must be after the base date.");
+        }
+
+        double logDiscount = logDiscount(zeroRate, DateUtil.yearFraction(baseDay, day, basis), frequency, compounding);
+        int i = Arrays.binarySearch(nodeDays, 0, count, day);
+
+        if (i < 0) {
+            i = -(i + 1);
+            if (count == nodeDays.length) {
+                int capacity = count * 2;
+                nodeDays = Arrays.copyOf(nodeDays, capacity);
+                nodeTimes = Arrays.copyOf(nodeTimes, capacity);
+                nodeLogDiscount = Arrays.copyOf(nodeLogDiscount, capacity);
+            }
+            System.arraycopy(nodeDays, i, nodeDays, i + 1, count - i);
+            System.arraycopy(nodeTimes, i, nodeTimes, i + 1, count - i);
+            System.arraycopy(nodeLogDiscount, i, nodeLogDiscount, i + 1, count - i);
+            count++;
+        }
+
+        nodeDays[i] = day;
+        nodeTimes[i] = (day - baseDay) / DAYS_PER_YEAR;
+        nodeLogDiscount[i] = logDiscount;
+        interpolation = null;
+        modCount++;
+    }
+
+    /**
+     * Array version of {@link #addNode(Date, double)}.
+     *
+     * @param dates
+     * @param zeroRates
+     */
+    public void addNodes(Date[] dates, double[] zeroRates) {
+        if (dates.length != zeroRates.length) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+
+        for (int i = 0; i < dates.length; i++) {
+            addNode(dates[i], zeroRates[i]);
+        }
+    }
+
+    /**
+     * Number of node changes so far, so caches of the discount factors (see
+     * {@link DiscountFactorCache}) can tell that the curve changed.
+     *
+     * @return modification count
+     */
+    public int getModificationCount() {
+        return modCount;
+    }
+
+    public int getNodeCount() {
+        return count;
+    }
+
+    public int getNodeEpochDay(int i) {
+        return nodeDays[i];
+    }
+
+    /**
+     * Curve time of node i, in ACT/365 years from the base date.
+     *
+     * @param i
+     * @return curve time
+     */
+    public double getNodeTime(int i) {
+        return nodeTimes[i];
+    }
+
+    /**
+     * Node dates, sorted.
+     *
+     * @return node dates
+     */
+    public List<Date> getNodeDates() {
+        final int[] days = Arrays.copyOf(nodeDays, count);
+
+        return new AbstractList<Date>() {
+            @Override
+            public Date get(int index) {
+                return DateUtil.fromEpochDay(days[index]);
+            }
+
+            @Override
+            public int size() {
+                return days.length;
+            }
+        };
+    }
+
+    public int getBaseEpochDay() {
+        return baseDay;
+    }
+
     @Override
     public double getDiscount(Date date) {
-        // TODO Auto-generated method stub
-        return 0;
+        return getDiscount(DateUtil.toEpochDay(date));
+    }
+
+    /**
+     * Epoch day version of {@link #getDiscount(Date)}.
+     *
+     * @param epochDay
+     * @return discount factor
+     */
+    public double getDiscount(int epochDay) {
+        return Math.exp(logDiscount((epochDay - baseDay) / DAYS_PER_YEAR));
     }
 
     @Override
-    public double getZeroRate(Date date) {        
+    public double getZeroRate(Date date) {
         return getZeroRate(date, frequency, compounding, basis);
     }
 
     @Override
-    public double getZeroRate(Date date, int frequency,
-            Compounding compounding, DayCountBasis basis) {
-        // TODO Auto-generated method stub
-        return 0;
+    public double getZeroRate(Date date, int frequency, Compounding compounding, DayCountBasis basis) {
+        int day = DateUtil.toEpochDay(date);
+        double t = DateUtil.yearFraction(baseDay, day, basis);
+
+        if (day == baseDay || t == 0.0) {
+            // limit at the base date, the zero rate is flat up to the first node
+            checkNodes();
+            double zero = -nodeLogDiscount[0] / nodeTimes[0];
+            return rate(-zero * SHORT_TIME, SHORT_TIME, frequency, compounding);
+        }
+
+        return rate(logDiscount((day - baseDay) / DAYS_PER_YEAR), t, frequency, compounding);
     }
 
     @Override
-    public double getForwardRate(Date forward, Date date) {        
+    public double getForwardRate(Date forward, Date date) {
         return getForwardRate(forward, date, frequency, compounding, basis);
     }
 
     @Override
-    public double getForwardRate(Date forward, Date date, int frequency,
-            Compounding compounding, DayCountBasis basis) {
-        // TODO Auto-generated method stub
-        return 0;
+    public double getForwardRate(Date forward, Date date, int frequency, Compounding compounding, DayCountBasis basis) {
+        int day1 = DateUtil.toEpochDay(forward);
+        int day2 = DateUtil.toEpochDay(date);
+        double t = DateUtil.yearFraction(day1, day2, basis);
+
+        if (t == 0.0) {
+            throw new UnsupportedOperationException("Forward period must not be empty.");
+        }
+
+        double logDiscount = logDiscount((day2 - baseDay) / DAYS_PER_YEAR) - logDiscount((day1 - baseDay) / DAYS_PER_YEAR);
+        return rate(logDiscount, t, frequency, compounding);
     }
 
     @Override
-    public int getDefaultFrequency() {        
+    public int getDefaultFrequency() {
         return frequency;
     }
 
     @Override
-    public void setDefaultFrequency(int frequency) {        
+    public void setDefaultFrequency(int frequency) {
         if (12 % frequency != 0) {
             throw new UnsupportedOperationException("Frequency of " + Integer.toString(frequency) + " not supported.");
         }
@@ -78,17 +249,17 @@ public class BasicYieldTermStructure implements YieldTermStructure {
     }
 
     @Override
-    public Compounding getDefaultCompounding() {        
+    public Compounding getDefaultCompounding() {
         return compounding;
     }
 
     @Override
     public void setDefaultCompounding(Compounding compounding) {
-        this.compounding = compounding;        
+        this.compounding = compounding;
     }
 
     @Override
-    public DayCountBasis getDefaultBasis() {        
+    public DayCountBasis getDefaultBasis() {
         return basis;
     }
 
@@ -97,4 +268,104 @@ public class BasicYieldTermStructure implements YieldTermStructure {
         this.basis = basis;
     }
 
+    /**
+     * Returns the interpolation weights of the nodes at the date: ln DF(date) is
+     * <code>weights[0] * ln DF(node nodes[0]) + weights[1] * ln DF(node nodes[1])</code>.
+     * Since node ln DF is <code>-z * t</code> for the continuously compounded node zero rate z,
+     * a bump h of node k's zero rate changes ln DF(date) by <code>-weight(k) * t(k) * h</code>,
+     * exactly and linearly in the bump.
+     *
+     * Before the first node (and with a single node) only one weight is non-zero, after the
+     * last node the weights of the last segment extend beyond [0, 1].
+     *
+     * @param epochDay
+     * @param nodes output, length 2
+     * @param weights output, length 2
+     */
+    public void getNodeWeights(int epochDay, int[] nodes, double[] weights) {
+        checkNodes();
+
+        double t = (epochDay - baseDay) / DAYS_PER_YEAR;
+        int n = count;
+
+        if (t <= nodeTimes[0] || n == 1) {
+            // segment from the base date, ln DF 0
+            nodes[0] = nodes[1] = 0;
+            weights[0] = t / nodeTimes[0];
+            weights[1] = 0.0;
+            return;
+        }
+
+        int lo = Arrays.binarySearch(nodeTimes, 0, n, t);
+        lo = (lo >= 0) ? Math.min(lo, n - 2) : Math.min(-(lo + 1) - 1, n - 2);
+        double w = (t - nodeTimes[lo]) / (nodeTimes[lo + 1] - nodeTimes[lo]);
+        nodes[0] = lo;
+        nodes[1] = lo + 1;
+        weights[0] = 1.0 - w;
+        weights[1] = w;
+    }
+
+    /**
+     * Interpolated ln DF at curve time t.
+     *
+     * @param t curve time
+     * @return ln DF
+     */
+    private double logDiscount(double t) {
+        return interpolation().value(t);
+    }
+
+    private PiecewiseInterpolation interpolation() {
+        PiecewiseInterpolation p = interpolation;
+
+        if (p == null) {
+            checkNodes();
+            double[] times = new double[count + 1];
+            double[] logDiscounts = new double[count + 1];
+            System.arraycopy(nodeTimes, 0, times, 1, count);
+            System.arraycopy(nodeLogDiscount, 0, logDiscounts, 1, count);
+
+            p = PiecewiseInterpolation.linear(times, logDiscounts, Extrapolation.LINEAR);
+            interpolation = p;
+        }
+        return p;
+    }
+
+    private void checkNodes() {
+        if (count == 0) {
+            throw new UnsupportedOperationException("Yield curve [" + name + "] has no nodes.");
+        }
+    }
+
+    /**
+     * ln DF for the rate over t years.
+     */
+    static double logDiscount(double rate, double t, int frequency, Compounding compounding) {
+        switch (compounding) {
+        case SIMPLE:
+            return -Math.log1p(rate * t);
+        case COMPOUNDED:
+            return -frequency * t * Math.log1p(rate / frequency);
+        case SIMPLE_THEN_COMPOUNDED:
+            return (t <= 1.0) ? -Math.log1p(rate * t) : -frequency * t * Math.log1p(rate / frequency);
+        default:
+            return -rate * t;
+        }
+    }
+
+    /**
+     * Inverse of {@link #logDiscount(double, double, int, Compounding)}.
+     */
+    static double rate(double logDiscount, double t, int frequency, Compounding compounding) {
+        switch (compounding) {
+        case SIMPLE:
+            return Math.expm1(-logDiscount) / t;
+        case COMPOUNDED:
+            return frequency * Math.expm1(-logDiscount / (frequency * t));
+        case SIMPLE_THEN_COMPOUNDED:
+            return (t <= 1.0) ? Math.expm1(-logDiscount) / t : frequency * Math.expm1(-logDiscount / (frequency * t));
+        default:
+            return -logDiscount / t;
+        }
+    }
 }
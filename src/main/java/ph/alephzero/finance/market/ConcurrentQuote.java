@@ -0,0 +1,553 @@
+package ph.alephzero.finance.market;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ph.alephzero.finance.Message;
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Thread-safe {@link Quote} for valuation threads reading while a loader writes (e.g. appends
+ * intraday prices). The quotes are held in an immutable {@link Snapshot} (columnar, as in
+ * {@link ArrayQuote}); writers build the next version and publish it with a single volatile
+ * write, readers read the current version without locking and never wait.
+ *
+ * Writers are serialized. Appending a date after the last date reuses the arrays of the
+ * current version when there is room (older versions only read up to their own count), so
+ * in-order loading is amortized O(1) per date; changing an existing date copies only the
+ * changed column, and inserting a date before the last date copies all columns.
+ *
+ * Use {@link #snapshot()} to read several quotes from one consistent version. Interpolators
+ * are reset for the changed dates after each published version, by the writer; they must be
+ * thread-safe (see {@link ph.alephzero.finance.market.interpolator.AbstractInterpolator}).
+ *
+ * NaN cannot be stored as a quote, it means missing (null in the {@link Quote} methods).
+ *
+ * @author jon
+ *
+ */
+public class ConcurrentQuote implements EpochDayQuote {
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final String symbol;
+    private final String[] quoteTypes;
+    private final String defaultQuoteType;
+    private final HashMap<String, Integer> quoteTypesIndex;
+    private final CopyOnWriteArrayList<String> interpTypes;   // interpolated types
+    private final ConcurrentHashMap<String, Interpolator> interpolators;
+
+    private volatile Snapshot current;
+
+    /**
+     * Immutable version of the quotes. Only reads <code>[0, count)</code> of its arrays, which
+     * later versions may share.
+     */
+    public static final class Snapshot implements EpochDayQuote {
+        private final ConcurrentQuote owner;
+        private final int count;
+        private final int[] days;
+        private final double[][] values;
+
+        private Snapshot(ConcurrentQuote owner, int count, int[] days, double[][] values) {
+            this.owner = owner;
+            this.count = count;
+            this.days = days;
+            this.values = values;
+        }
+
+        @Override
+        public String getSymbol() {
+            return owner.symbol;
+        }
+
+        @Override
+        public Double getQuote(Date date) {
+            return getQuote(date, owner.defaultQuoteType);
+        }
+
+        /**
+         * Quote of a stored type in this version. Interpolated types are read from the
+         * current version of the owner.
+         */
+        @Override
+        public Double getQuote(Date date, String type) {
+            Integer idx = owner.quoteTypesIndex.get(type);
+
+            if (idx != null) {
+                double quote = getValue(DateUtil.toEpochDay(date), idx);
+                return Double.isNaN(quote) ? null : quote;
+            }
+            return owner.getQuote(date, type);
+        }
+
+        /**
+         * Primitive version of {@link #getQuote(Date, String)} for stored types.
+         *
+         * @param epochDay
+         * @param type index of the quote type, see {@link ConcurrentQuote#getTypeIndex(String)}
+         * @return quote, NaN if missing
+         */
+        public double getValue(int epochDay, int type) {
+            int i = Arrays.binarySearch(days, 0, count, epochDay);
+            return (i < 0) ? Double.NaN : values[type][i];
+        }
+
+        /**
+         * Immutable, thus the snapshot itself.
+         *
+         * @return this
+         */
+        @Override
+        public Snapshot snapshot() {
+            return this;
+        }
+
+        /**
+         * Number of dates with at least 1 quote type.
+         *
+         * @return number of dates
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the index of the first date strictly after the date, or the count if there is none.
+         *
+         * @param epochDay
+         * @return index of first date after epochDay
+         */
+        public int indexAfter(int epochDay) {
+            int i = Arrays.binarySearch(days, 0, count, epochDay);
+            return (i < 0) ? -(i + 1) : i + 1;
+        }
+
+        public int getEpochDay(int i) {
+            checkIndex(i);
+            return days[i];
+        }
+
+        /**
+         * Quote at date index i.
+         *
+         * @param i date index
+         * @param type index of the quote type
+         * @return quote, NaN if missing
+         */
+        public double getValueAt(int i, int type) {
+            checkIndex(i);
+            return values[type][i];
+        }
+
+        /**
+         * Index of the quote type, or -1 if not a stored type.
+         *
+         * @param type
+         * @return index of the quote type
+         */
+        public int getTypeIndex(String type) {
+            return owner.getTypeIndex(type);
+        }
+
+        private void checkIndex(int i) {
+            if (i < 0 || i >= count) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + count);
+            }
+        }
+
+        @Override
+        public List<String> getQuoteTypes() {
+            return owner.getQuoteTypes();
+        }
+
+        @Override
+        public List<String> getInterpolatedTypes() {
+            return owner.getInterpolatedTypes();
+        }
+
+        @Override
+        public List<Date> getQuoteDates() {
+            return dateList(days, count);
+        }
+
+        @Override
+        public List<Date> getAvailableQuoteDates(String type) {
+            Integer idx = owner.quoteTypesIndex.get(type);
+            if (idx == null) return null;
+
+            double[] column = values[idx];
+            int[] ret = new int[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (!Double.isNaN(column[i])) ret[n++] = days[i];
+            }
+            return dateList(ret, n);
+        }
+
+        @Override
+        public String getDefaultQuoteType() {
+            return owner.defaultQuoteType;
+        }
+    }
+
+    public ConcurrentQuote(String symbol, String... quoteTypes) {
+        this.symbol = symbol;
+        this.quoteTypes = Arrays.copyOf(quoteTypes, quoteTypes.length);
+        this.defaultQuoteType = quoteTypes[0];
+        this.quoteTypesIndex = new HashMap<>(quoteTypes.length);
+        this.interpTypes = new CopyOnWriteArrayList<>();
+        this.interpolators = new ConcurrentHashMap<>();
+
+        for (int i = 0; i < quoteTypes.length; i++) {
+            quoteTypesIndex.put(quoteTypes[i], i);
+        }
+
+        current = new Snapshot(this, 0, new int[DEFAULT_CAPACITY], new double[quoteTypes.length][DEFAULT_CAPACITY]);
+    }
+
+    /**
+     * Current version of the quotes. It does not change when quotes are written afterwards.
+     *
+     * @return current version
+     */
+    @Override
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Number of dates in the current version. Indices of the index methods below refer to the
+     * version current at each call; read by index through {@link #snapshot()}.
+     *
+     * @return number of dates
+     */
+    @Override
+    public int getCount() {
+        return current.getCount();
+    }
+
+    @Override
+    public int getEpochDay(int i) {
+        return current.getEpochDay(i);
+    }
+
+    @Override
+    public double getValueAt(int i, int type) {
+        return current.getValueAt(i, type);
+    }
+
+    @Override
+    public int indexAfter(int epochDay) {
+        return current.indexAfter(epochDay);
+    }
+
+    @Override
+    public String getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    public Double getQuote(Date date) {
+        return getQuote(date, defaultQuoteType);
+    }
+
+    @Override
+    public Double getQuote(Date date, String type) {
+        Integer idx = quoteTypesIndex.get(type);
+
+        if (idx != null) {
+            double quote = current.getValue(DateUtil.toEpochDay(date), idx);
+            return Double.isNaN(quote) ? null : quote;
+        }
+
+        Interpolator interpolator = interpolators.get(type);
+        return (interpolator != null) ? interpolator.getQuote(date) : null;
+    }
+
+    /**
+     * Primitive version of {@link #getQuote(Date, String)} for stored types.
+     *
+     * @param epochDay
+     * @param type index of the quote type, see {@link #getTypeIndex(String)}
+     * @return quote, NaN if missing
+     */
+    public double getValue(int epochDay, int type) {
+        return current.getValue(epochDay, type);
+    }
+
+    /**
+     * Index of the quote type, or -1 if not a stored type.
+     *
+     * @param type
+     * @return index of the quote type
+     */
+    public int getTypeIndex(String type) {
+        Integer idx = quoteTypesIndex.get(type);
+        return (idx == null) ? -1 : idx;
+    }
+
+    public void setQuote(Date date, Double quote) {
+        setQuote(date, defaultQuoteType, quote);
+    }
+
+    public void setQuote(Date date, String type, Double quote) {
+        setValue(DateUtil.toEpochDay(date), quoteTypesIndex.get(type), (quote == null) ? Double.NaN : quote);
+    }
+
+    /**
+     * Primitive version of {@link #setQuote(Date, String, Double)}.
+     *
+     * @param epochDay
+     * @param type index of the quote type
+     * @param quote quote, NaN to clear
+     */
+    public void setValue(int epochDay, int type, double quote) {
+        synchronized (this) {
+            Snapshot s = current;
+            int i = Arrays.binarySearch(s.days, 0, s.count, epochDay);
+
+            if (i >= 0) {
+                // copy the changed column only
+                double[][] values = s.values.clone();
+                values[type] = Arrays.copyOf(values[type], values[type].length);
+                values[type][i] = quote;
+                current = new Snapshot(this, s.count, s.days, values);
+            } else {
+                double[] row = new double[quoteTypes.length];
+                Arrays.fill(row, Double.NaN);
+                row[type] = quote;
+                current = insert(s, epochDay, row);
+            }
+            resetInterpolators(quoteTypes[type], epochDay, epochDay);
+        }
+    }
+
+    public void addQuote(Date date, Double[] quotes) {
+        addQuotes(new Date[] { date }, new Double[][] { quotes });
+    }
+
+    /**
+     * Bulk upload quotes, published as one version.
+     *
+     * @param dates
+     * @param quotes
+     */
+    public void addQuotes(Date[] dates, Double[][] quotes) {
+        if (dates.length != quotes.length) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+
+        int m = dates.length;
+        int[] epochDays = new int[m];
+        double[][] columns = new double[quoteTypes.length][m];
+
+        for (int j = 0; j < m; j++) {
+            assert(quotes[j].length == quoteTypes.length);
+            epochDays[j] = DateUtil.toEpochDay(dates[j]);
+            for (int t = 0; t < quoteTypes.length; t++) {
+                columns[t][j] = (quotes[j][t] == null) ? Double.NaN : quotes[j][t];
+            }
+        }
+
+        appendQuotes(epochDays, columns);
+    }
+
+    /**
+     * Bulk append of columns, published as one version: <code>quotes[type][j]</code> is the
+     * quote of the type at <code>epochDays[j]</code> (NaN if missing). Existing dates are
+     * overwritten, see {@link ArrayQuote#appendQuotes(int[], double[][])}.
+     *
+     * @param epochDays dates
+     * @param quotes one column per quote type, each the same length as epochDays
+     */
+    public void appendQuotes(int[] epochDays, double[][] quotes) {
+        int m = epochDays.length;
+
+        if (quotes.length != quoteTypes.length) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+        for (double[] column : quotes) {
+            if (column.length != m) {
+                throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+            }
+        }
+
+        synchronized (this) {
+            Snapshot s = current;
+
+            if (isAppend(s, epochDays)) {
+                s = ensureCapacity(s, s.count + m);
+                System.arraycopy(epochDays, 0, s.days, s.count, m);
+                for (int t = 0; t < quoteTypes.length; t++) {
+                    System.arraycopy(quotes[t], 0, s.values[t], s.count, m);
+                }
+                s = new Snapshot(this, s.count + m, s.days, s.values);
+            } else {
+                s = copy(s, s.count + m);
+                double[] row = new double[quoteTypes.length];
+                for (int j = 0; j < m; j++) {
+                    for (int t = 0; t < quoteTypes.length; t++) {
+                        row[t] = quotes[t][j];
+                    }
+                    s = insertInPlace(s, epochDays[j], row);
+                }
+            }
+
+            current = s;
+            resetInterpolators(null, epochDays);
+        }
+    }
+
+    /**
+     * Adds the interpolator for an interpolated type. The interpolator must be thread-safe.
+     *
+     * @param interpolator
+     * @param type interpolated type
+     * @param refType reference quote type
+     */
+    public void addInterpolator(Interpolator interpolator, String type, String refType) {
+        assert(!quoteTypesIndex.containsKey(type));
+        assert(quoteTypesIndex.containsKey(refType));
+
+        interpolator.setReference(this, refType);
+        interpolators.put(type, interpolator);
+        interpTypes.addIfAbsent(type);
+    }
+
+    @Override
+    public List<String> getQuoteTypes() {
+        return Collections.unmodifiableList(Arrays.asList(quoteTypes));
+    }
+
+    @Override
+    public List<String> getInterpolatedTypes() {
+        return Collections.unmodifiableList(interpTypes);
+    }
+
+    @Override
+    public List<Date> getQuoteDates() {
+        return current.getQuoteDates();
+    }
+
+    @Override
+    public List<Date> getAvailableQuoteDates(String type) {
+        return current.getAvailableQuoteDates(type);
+    }
+
+    @Override
+    public String getDefaultQuoteType() {
+        return defaultQuoteType;
+    }
+
+    /**
+     * Next version with the row inserted (or merged into an existing date), copying all columns.
+     */
+    private Snapshot insert(Snapshot s, int epochDay, double[] row) {
+        if (s.count == 0 || epochDay > s.days[s.count - 1]) {
+            // append, older versions do not read index count
+            s = ensureCapacity(s, s.count + 1);
+            s.days[s.count] = epochDay;
+            for (int t = 0; t < quoteTypes.length; t++) {
+                s.values[t][s.count] = row[t];
+            }
+            return new Snapshot(this, s.count + 1, s.days, s.values);
+        }
+        return insertInPlace(copy(s, s.count + 1), epochDay, row);
+    }
+
+    /**
+     * Inserts into arrays not shared with published versions.
+     */
+    private Snapshot insertInPlace(Snapshot s, int epochDay, double[] row) {
+        int i = Arrays.binarySearch(s.days, 0, s.count, epochDay);
+
+        if (i >= 0) {
+            for (int t = 0; t < quoteTypes.length; t++) {
+                s.values[t][i] = row[t];
+            }
+            return s;
+        }
+
+        i = -(i + 1);
+        s = ensureCapacity(s, s.count + 1);
+        System.arraycopy(s.days, i, s.days, i + 1, s.count - i);
+        s.days[i] = epochDay;
+        for (int t = 0; t < quoteTypes.length; t++) {
+            System.arraycopy(s.values[t], i, s.values[t], i + 1, s.count - i);
+            s.values[t][i] = row[t];
+        }
+        return new Snapshot(this, s.count + 1, s.days, s.values);
+    }
+
+    /**
+     * Same version, in arrays with room for capacity dates. Shares the arrays if there is room.
+     */
+    private Snapshot ensureCapacity(Snapshot s, int capacity) {
+        if (capacity <= s.days.length) return s;
+        return copy(s, Math.max(capacity, s.days.length * 2));
+    }
+
+    private Snapshot copy(Snapshot s, int capacity) {
+        capacity = Math.max(capacity, s.days.length);
+        double[][] values = new double[quoteTypes.length][];
+        for (int t = 0; t < quoteTypes.length; t++) {
+            values[t] = Arrays.copyOf(s.values[t], capacity);
+        }
+        return new Snapshot(this, s.count, Arrays.copyOf(s.days, capacity), values);
+    }
+
+    private static boolean isAppend(Snapshot s, int[] epochDays) {
+        int last = (s.count == 0) ? Integer.MIN_VALUE : s.days[s.count - 1];
+        for (int day : epochDays) {
+            if (day <= last) return false;
+            last = day;
+        }
+        return true;
+    }
+
+    /**
+     * Resets the interpolators depending on the type (all if null) for the changed dates.
+     */
+    private void resetInterpolators(String type, int from, int to) {
+        if (interpolators.isEmpty()) return;
+
+        Date fromDate = DateUtil.fromEpochDay(from), toDate = DateUtil.fromEpochDay(to);
+        for (Interpolator i : interpolators.values()) {
+            if (type == null || i.dependsOn(type)) i.reset(fromDate, toDate);
+        }
+    }
+
+    private void resetInterpolators(String type, int[] epochDays) {
+        if (epochDays.length == 0) return;
+
+        int from = epochDays[0], to = epochDays[0];
+        for (int day : epochDays) {
+            from = Math.min(from, day);
+            to = Math.max(to, day);
+        }
+        resetInterpolators(type, from, to);
+    }
+
+    private static List<Date> dateList(final int[] epochDays, final int count) {
+        return new AbstractList<Date>() {
+            @Override
+            public Date get(int index) {
+                if (index >= count) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+                }
+                return DateUtil.fromEpochDay(epochDays[index]);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package ph.alephzero.finance.market;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Discount factors of a yield curve, computed once per date and shared across all
+ * instruments valued against the curve (e.g. bonds sharing coupon dates). Dates from the
+ * curve base date up to the horizon are cached in a dense table indexed by epoch day;
+ * dates outside are passed through to the curve.
+ *
+ * For a {@link BasicYieldTermStructure}, node changes are detected through its
+ * {@link BasicYieldTermStructure#getModificationCount() modification count} and the table is
+ * dropped; other curves must not change while the cache is in use.
+ *
+ * Thread-safe (the curve itself is not, so change it only while nobody reads it).
+ *
+ * @author jon
+ *
+ */
+public final class DiscountFactorCache {
+    /**
+     * Default horizon, about 100 years.
+     */
+    public static final int DEFAULT_HORIZON_DAYS = 36525;
+
+    private final YieldTermStructure curve;
+    private final BasicYieldTermStructure basicCurve;
+    private final int baseDay;
+    private final int horizonDays;
+    private final AtomicReference<Table> table;
+
+    /**
+     * Cached discount factors as of a modification count of the curve.
+     */
+    private static final class Table {
+        final int modCount;
+        final AtomicLongArray discount;         // raw bits, 0 = not yet computed
+
+        Table(int modCount, int length) {
+            this.modCount = modCount;
+            this.discount = new AtomicLongArray(length);
+        }
+    }
+
+    public DiscountFactorCache(YieldTermStructure curve) {
+        this(curve, DEFAULT_HORIZON_DAYS);
+    }
+
+    /**
+     *
+     * @param curve
+     * @param horizonDays number of days from the curve base date to cache
+     */
+    public DiscountFactorCache(YieldTermStructure curve, int horizonDays) {
+        this.curve = curve;
+        this.basicCurve = (curve instanceof BasicYieldTermStructure) ? (BasicYieldTermStructure) curve : null;
+        this.baseDay = DateUtil.toEpochDay(curve.getBaseDate());
+        this.horizonDays = Math.max(horizonDays, 0);
+        this.table = new AtomicReference<Table>(new Table(modCount(), this.horizonDays + 1));
+    }
+
+    public YieldTermStructure getCurve() {
+        return curve;
+    }
+
+    public double getDiscount(Date date) {
+        return getDiscount(DateUtil.toEpochDay(date));
+    }
+
+    /**
+     * Epoch day version of {@link #getDiscount(Date)}.
+     *
+     * @param epochDay
+     * @return discount factor
+     */
+    public double getDiscount(int epochDay) {
+        int i = epochDay - baseDay;
+        if (i < 0 || i > horizonDays) {
+            return compute(epochDay);
+        }
+
+        AtomicLongArray discount = table().discount;
+
+        long bits = discount.get(i);
+        if (bits == 0L) {
+            // racing threads compute the same value
+            double df = compute(epochDay);
+            discount.lazySet(i, Double.doubleToRawLongBits(df));
+            return df;
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * Current table, a new one if the curve changed since the last table was made.
+     */
+    private Table table() {
+        Table t = table.get();
+        int m = modCount();
+        if (t.modCount == m) return t;
+
+        Table fresh = new Table(m, horizonDays + 1);
+        return table.compareAndSet(t, fresh) ? fresh : table.get();
+    }
+
+    private int modCount() {
+        return (basicCurve != null) ? basicCurve.getModificationCount() : 0;
+    }
+
+    private double compute(int epochDay) {
+        return (basicCurve != null) ? basicCurve.getDiscount(epochDay) : curve.getDiscount(DateUtil.fromEpochDay(epochDay));
+    }
+}
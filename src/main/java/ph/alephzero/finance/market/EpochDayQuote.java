@@ -0,0 +1,65 @@
+package ph.alephzero.finance.market;
+
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Quotes stored as a sorted date axis of epoch days (see {@link DateUtil#toEpochDay(java.util.Date)})
+ * with primitive columns per quote type, so the quotes can be read by index without creating
+ * <code>Date</code> or <code>Double</code> objects (e.g. when loading interpolators).
+ * 
+ * Indices refer to one version of the quotes: read them through {@link #snapshot()}, which
+ * does not change while it is read.
+ * 
+ * @author jon
+ *
+ */
+public interface EpochDayQuote extends Quote {
+    
+    /**
+     * Returns a view whose dates and indices do not change while it is read: an immutable 
+     * snapshot for quotes written concurrently, or the quote itself.
+     * 
+     * @return quotes to read by index
+     */
+    EpochDayQuote snapshot();
+    
+    /**
+     * Number of dates with at least 1 quote type.
+     * 
+     * @return number of dates
+     */
+    int getCount();
+    
+    /**
+     * Returns the epoch day of the i-th date.
+     * 
+     * @param i date index
+     * @return days since 1970-01-01
+     */
+    int getEpochDay(int i);
+    
+    /**
+     * Quote at date index i.
+     * 
+     * @param i date index
+     * @param type index of the quote type, see {@link #getTypeIndex(String)}
+     * @return quote, NaN if missing
+     */
+    double getValueAt(int i, int type);
+    
+    /**
+     * Index of the quote type, or -1 if not a stored type.
+     * 
+     * @param type
+     * @return index of the quote type
+     */
+    int getTypeIndex(String type);
+    
+    /**
+     * Returns the index of the first date strictly after the date, or the count if there is none.
+     * 
+     * @param epochDay
+     * @return index of first date after epochDay
+     */
+    int indexAfter(int epochDay);
+}
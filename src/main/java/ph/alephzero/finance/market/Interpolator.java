@@ -42,5 +42,15 @@ public interface Interpolator {
      * 
      */
     void reset();
+    
+    /**
+     * Reset interpolator after quotes of the reference type changed from <code>from</code>
+     * to <code>to</code> (inclusive). Implementations may keep what is not affected, e.g. extend
+     * their state when quotes are appended after the last date, or simply {@link #reset()}.
+     * 
+     * @param from first changed date
+     * @param to last changed date
+     */
+    void reset(Date from, Date to);
 
 }
@@ -1,16 +1,163 @@
 package ph.alephzero.finance.market.interpolator;
 
+import java.util.Arrays;
 import java.util.Date;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import ph.alephzero.finance.market.ConcurrentQuote;
+import ph.alephzero.finance.market.EpochDayQuote;
 import ph.alephzero.finance.market.Interpolator;
 import ph.alephzero.finance.market.Quote;
+import ph.alephzero.finance.util.DateUtil;
 
+/**
+ * Base class of interpolators on the available quotes of a reference quote type.
+ * 
+ * The available quotes are loaded lazily into an immutable {@link Series} (sorted epoch days
+ * and values) and published atomically, so {@link #getQuote(Date)} may be called from several
+ * threads, concurrently with {@link #reset()} (e.g. from {@link ConcurrentQuote} writers).
+ * Each reset installs a new token; a series loaded across a reset is used by that call only
+ * and never published, so no stale series survives a reset. Reset is O(1), the series is
+ * reloaded on the next lookup.
+ * 
+ * {@link #reset(Date, Date)} after quotes were appended after the last loaded date only
+ * extends the loaded series with the new quotes (in place when there is room, older series
+ * only read up to their own size); any other change resets.
+ * 
+ * Lookups are binary searches in the series. Results are memoized per series in a bounded
+ * direct-mapped table of {@link #MEMO_SIZE} entries indexed by epoch day, so repeated
+ * lookups of recent dates (e.g. weekends and holidays) skip the search.
+ * 
+ * @author jon
+ *
+ */
 public abstract class AbstractInterpolator implements Interpolator {
-    protected Quote quote;
-    protected String refType;
-    protected TreeMap<Date, Double> quoteCache;
-    protected TreeMap<Date, Double> interpCache;
+    /**
+     * Number of memoized lookups per series, a power of 2.
+     */
+    public static final int MEMO_SIZE = 256;
+    
+    private static final Object NO_STATE = new Object();
+    
+    protected volatile Quote quote;
+    protected volatile String refType;
+    private final AtomicReference<Object> series = new AtomicReference<Object>(new Object());
+    
+    /**
+     * Available quotes of the reference type, sorted by date. Immutable; reads only the first
+     * {@link #size()} elements of its arrays, which later (extended) series may share.
+     */
+    protected static final class Series {
+        private final int size;
+        private final int[] days;
+        private final double[] values;
+        private final AtomicReferenceArray<Memo> memo = new AtomicReferenceArray<Memo>(MEMO_SIZE);
+        private volatile Object state;      // see getState(Series), null = not yet prepared
+        
+        Series(int size, int[] days, double[] values) {
+            this.size = size;
+            this.days = days;
+            this.values = values;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public int getEpochDay(int i) {
+            return days[i];
+        }
+        
+        public double getValue(int i) {
+            return values[i];
+        }
+        
+        /**
+         * Binary search of the date, see {@link Arrays#binarySearch(int[], int, int, int)}.
+         * 
+         * @param epochDay
+         * @return index of the date, or <code>-(insertion point) - 1</code>
+         */
+        public int search(int epochDay) {
+            return Arrays.binarySearch(days, 0, size, epochDay);
+        }
+    }
+    
+    private static final class Memo {
+        final int epochDay;
+        final double value;
+        
+        Memo(int epochDay, double value) {
+            this.epochDay = epochDay;
+            this.value = value;
+        }
+    }
+    
+    /**
+     * Collects available quotes into growable arrays.
+     */
+    private static final class Collector {
+        int size;
+        int[] days;
+        double[] values;
+        
+        Collector(int size, int[] days, double[] values) {
+            this.size = size;
+            this.days = days;
+            this.values = values;
+        }
+        
+        void add(int epochDay, double value) {
+            if (size == days.length) {
+                int capacity = Math.max(16, size * 2);
+                days = Arrays.copyOf(days, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            days[size] = epochDay;
+            values[size++] = value;
+        }
+    }
+    
+    /**
+     * Interpolated (or underlying) quote at the date.
+     * 
+     * @param series available quotes, not empty
+     * @param epochDay
+     * @return quote, NaN if none
+     */
+    protected abstract double interpolate(Series series, int epochDay);
+    
+    /**
+     * Computes state used by every {@link #interpolate(Series, int)} on the series (e.g.
+     * segment coefficients). Default is none.
+     * 
+     * @param series available quotes, may be empty
+     * @return state, see {@link #getState(Series)}
+     */
+    protected Object prepare(Series series) {
+        return null;
+    }
+    
+    /**
+     * State of the series from {@link #prepare(Series)}, computed on the first call for the
+     * series, i.e. by a reader rather than by the writer that loaded or extended it. Readers
+     * racing on a new series may each prepare it, one result is kept. The state should be
+     * immutable.
+     * 
+     * @param series
+     * @return prepared state, may be null
+     */
+    protected final Object getState(Series series) {
+        Object state = series.state;
+        if (state == null) {
+            state = prepare(series);
+            series.state = (state == null) ? NO_STATE : state;
+            return state;
+        }
+        return (state == NO_STATE) ? null : state;
+    }
     
     @Override
     public boolean dependsOn(String quoteType) {        
@@ -19,14 +166,61 @@ public abstract class AbstractInterpolator implements Interpolator {
 
     @Override
     public boolean isInterpolated(Date date) {
-        lazyInit();        
-        return !quoteCache.containsKey(date);
+        return series().search(DateUtil.toEpochDay(date)) < 0;
+    }
+    
+    @Override
+    public Double getQuote(Date date) {
+        double value = getValue(DateUtil.toEpochDay(date));
+        return Double.isNaN(value) ? null : value;
+    }
+    
+    /**
+     * Primitive version of {@link #getQuote(Date)}.
+     * 
+     * @param epochDay
+     * @return quote, NaN if none
+     */
+    public double getValue(int epochDay) {
+        Series s = series();
+        if (s.size() == 0) return Double.NaN;
+        
+        int slot = epochDay & (MEMO_SIZE - 1);
+        Memo m = s.memo.get(slot);
+        if (m != null && m.epochDay == epochDay) {
+            return m.value;
+        }
+        
+        double value = interpolate(s, epochDay);
+        s.memo.lazySet(slot, new Memo(epochDay, value));
+        return value;
     }
     
     @Override
     public void reset() {
-        quoteCache = null;
-        interpCache = null;        
+        series.set(new Object());
+    }
+    
+    /**
+     * Extends the loaded series if all changed dates are after its last date, else resets.
+     * Writers calling this are serialized.
+     */
+    @Override
+    public synchronized void reset(Date from, Date to) {
+        Object token = series.get();
+        int first = DateUtil.toEpochDay(from);
+        
+        if (token instanceof Series) {
+            Series s = (Series) token;
+            if (s.size() == 0 || first > s.getEpochDay(s.size() - 1)) {
+                // the arrays are only written here, beyond the size of any published series
+                Collector c = new Collector(s.size, s.days, s.values);
+                collect(quote, refType, first, DateUtil.toEpochDay(to), c);
+                if (series.compareAndSet(token, newSeries(c))) return;
+            }
+        }
+        
+        reset();
     }
 
     @Override
@@ -36,17 +230,67 @@ public abstract class AbstractInterpolator implements Interpolator {
         reset();
     }
     
-    protected void lazyInit() {        
-        if (quoteCache == null) {
-            quoteCache = new TreeMap<>();
-            for (Date d : quote.getQuoteDates()) {
-                Double q = quote.getQuote(d, refType);
-                if (q != null) quoteCache.put(d, q);
-            }
+    /**
+     * Available quotes of the reference type, loaded if needed. Subclasses must read the
+     * series once per call, as a later call may return a newer series.
+     * 
+     * @return available quotes
+     */
+    protected Series series() {
+        Object token = series.get();
+        if (token instanceof Series) {
+            return (Series) token;
         }
         
-        if (interpCache == null) {
-            interpCache = new TreeMap<>();
+        Collector c = new Collector(0, new int[16], new double[16]);
+        collect(quote, refType, Integer.MIN_VALUE, Integer.MAX_VALUE, c);
+        
+        Series loaded = newSeries(c);
+        series.compareAndSet(token, loaded);
+        return loaded;
+    }
+    
+    private Series newSeries(Collector c) {
+        return new Series(c.size, c.days, c.values);
+    }
+    
+    /**
+     * Adds the available quotes of the type from the first to the last date, inclusive.
+     */
+    private static void collect(Quote quote, String refType, int first, int last, Collector c) {
+        // primitive columns, no boxing
+        if (quote instanceof EpochDayQuote) {
+            EpochDayQuote q = ((EpochDayQuote) quote).snapshot();
+            int type = q.getTypeIndex(refType);
+            if (type < 0) return;
+            
+            int start = (first == Integer.MIN_VALUE) ? 0 : q.indexAfter(first - 1);
+            for (int i = start; i < q.getCount() && q.getEpochDay(i) <= last; i++) {
+                double value = q.getValueAt(i, type);
+                if (!Double.isNaN(value)) c.add(q.getEpochDay(i), value);
+            }
+        } else {
+            List<Date> dates = quote.getQuoteDates();
+            
+            // first date on or after first
+            int lo = 0, hi = dates.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (DateUtil.toEpochDay(dates.get(mid)) < first) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            
+            for (int i = lo; i < dates.size(); i++) {
+                Date d = dates.get(i);
+                int day = DateUtil.toEpochDay(d);
+                if (day > last) break;
+                
+                Double q = quote.getQuote(d, refType);
+                if (q != null) c.add(day, q);
+            }
         }
     }
 
@@ -0,0 +1,70 @@
+package ph.alephzero.finance.market.interpolator;
+
+import ph.alephzero.finance.Message;
+import ph.alephzero.finance.market.Interpolator;
+
+/**
+ * Base of interpolators over all available quotes (rather than the nearest one), with a
+ * {@link PiecewiseInterpolation} built once per loaded series over the quote dates as epoch
+ * days. A quote lookup is then a binary search plus a polynomial. The interpolation is
+ * built by the first lookup after the series is reloaded or extended, so appending quotes
+ * does not pay for it.
+ * 
+ * For yield curve nodes and other data that is not a {@link ph.alephzero.finance.market.Quote},
+ * use {@link PiecewiseInterpolation} directly.
+ * 
+ * @author jon
+ *
+ */
+public abstract class AbstractPiecewiseInterpolator extends AbstractInterpolator implements Interpolator {
+
+    /**
+     * Creates the interpolation of the quotes.
+     * 
+     * @param x quote dates as epoch days, ascending
+     * @param y quotes
+     * @return interpolation
+     */
+    protected abstract PiecewiseInterpolation create(double[] x, double[] y);
+    
+    @Override
+    protected Object prepare(Series series) {
+        int n = series.size();
+        if (n == 0) return null;
+        
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = series.getEpochDay(i);
+            y[i] = series.getValue(i);
+        }
+        return create(x, y);
+    }
+    
+    @Override
+    protected double interpolate(Series series, int epochDay) {
+        return ((PiecewiseInterpolation) getState(series)).value(epochDay);
+    }
+    
+    /**
+     * Quotes at many dates, without going through the memo. Sorted dates are evaluated in one
+     * pass over the segments.
+     * 
+     * @param epochDays
+     * @param values output, NaN if there are no quotes
+     */
+    public void getValues(int[] epochDays, double[] values) {
+        if (epochDays.length != values.length) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+        
+        PiecewiseInterpolation p = (PiecewiseInterpolation) getState(series());
+        for (int i = 0; i < epochDays.length; i++) {
+            values[i] = (p == null) ? Double.NaN : epochDays[i];
+        }
+        if (p != null) {
+            p.values(values, values);
+        }
+    }
+    
+}
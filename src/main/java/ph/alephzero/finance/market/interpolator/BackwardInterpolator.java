@@ -1,11 +1,15 @@
 package ph.alephzero.finance.market.interpolator;
 
-import java.util.ArrayList;
-import java.util.Date;
-
 import ph.alephzero.finance.market.Interpolator;
 import ph.alephzero.finance.market.Quote;
 
+/**
+ * This interpolator uses next available quote for dates without quotes. I.e. future quote is extended <i>backward</i>
+ * to the missing date. Dates after the last quote use the last quote.
+ * 
+ * @author jon
+ *
+ */
 public class BackwardInterpolator extends AbstractInterpolator implements Interpolator {
     
     public BackwardInterpolator() {
@@ -17,32 +21,16 @@ public class BackwardInterpolator extends AbstractInterpolator implements Interp
     }
     
     @Override
-    public Double getQuote(Date date) {
-        Double quote = null;
-        lazyInit();
+    protected double interpolate(Series series, int epochDay) {
+        int i = series.search(epochDay);
         
-        if (interpCache.containsKey(date)) {
-            quote = interpCache.get(date);
-        } else if (quoteCache.isEmpty()) {
-            //quote = null;
-        } else if (quoteCache.containsKey(date)) {
-            quote = quoteCache.get(date);            
-        } else if (date.compareTo(quoteCache.lastKey()) >= 0) {
-            // date is prior to first quote date, backward interpolate
-            quote = quoteCache.lastEntry().getValue();        
-        } else if (date.compareTo(quoteCache.firstKey()) > 0) {
-            ArrayList<Date> dates = new ArrayList<Date>(quoteCache.keySet());
-            for (int i = 1; i < dates.size(); i++) {
-                if (date.compareTo(dates.get(i-1)) >= 0 && date.compareTo(dates.get(i)) <= 0) {
-                    quote = quoteCache.get(dates.get(i));
-                }
-            }
-        } else {
-            quote = quoteCache.firstEntry().getValue();
+        if (i >= 0) {
+            return series.getValue(i);
         }
-
-        //assert(quote != null);
-        return quote;
+        
+        // ceiling, or the last quote if date is after last quote date
+        i = -(i + 1);
+        return series.getValue((i == series.size()) ? i - 1 : i);
     }
 
 }
@@ -0,0 +1,28 @@
+package ph.alephzero.finance.market.interpolator;
+
+import ph.alephzero.finance.market.Interpolator;
+import ph.alephzero.finance.market.Quote;
+
+/**
+ * Linear interpolation between the available quotes.
+ * Dates before the first quote use the first quote, dates after the last quote use the last quote.
+ * 
+ * @author jon
+ *
+ */
+public class LinearInterpolator extends AbstractPiecewiseInterpolator implements Interpolator {
+
+    public LinearInterpolator() {
+        reset();
+    }
+    
+    public LinearInterpolator(Quote quote, String type) {
+        setReference(quote, type);
+    }
+    
+    @Override
+    protected PiecewiseInterpolation create(double[] x, double[] y) {
+        return PiecewiseInterpolation.linear(x, y);
+    }
+    
+}
@@ -0,0 +1,28 @@
+package ph.alephzero.finance.market.interpolator;
+
+import ph.alephzero.finance.market.Interpolator;
+import ph.alephzero.finance.market.Quote;
+
+/**
+ * Linear interpolation of the logarithm of the available quotes (e.g. discount factors, prices), i.e. constant growth rate between quotes. Quotes must be positive.
+ * Dates before the first quote use the first quote, dates after the last quote use the last quote.
+ * 
+ * @author jon
+ *
+ */
+public class LogLinearInterpolator extends AbstractPiecewiseInterpolator implements Interpolator {
+
+    public LogLinearInterpolator() {
+        reset();
+    }
+    
+    public LogLinearInterpolator(Quote quote, String type) {
+        setReference(quote, type);
+    }
+    
+    @Override
+    protected PiecewiseInterpolation create(double[] x, double[] y) {
+        return PiecewiseInterpolation.logLinear(x, y);
+    }
+    
+}
@@ -0,0 +1,28 @@
+package ph.alephzero.finance.market.interpolator;
+
+import ph.alephzero.finance.market.Interpolator;
+import ph.alephzero.finance.market.Quote;
+
+/**
+ * Monotone cubic (Fritsch-Butland) interpolation between the available quotes: smooth, and never overshoots the quotes on either side of the date.
+ * Dates before the first quote use the first quote, dates after the last quote use the last quote.
+ * 
+ * @author jon
+ *
+ */
+public class MonotoneCubicInterpolator extends AbstractPiecewiseInterpolator implements Interpolator {
+
+    public MonotoneCubicInterpolator() {
+        reset();
+    }
+    
+    public MonotoneCubicInterpolator(Quote quote, String type) {
+        setReference(quote, type);
+    }
+    
+    @Override
+    protected PiecewiseInterpolation create(double[] x, double[] y) {
+        return PiecewiseInterpolation.monotoneCubic(x, y);
+    }
+    
+}
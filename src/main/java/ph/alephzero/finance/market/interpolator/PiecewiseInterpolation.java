@@ -0,0 +1,269 @@
+package ph.alephzero.finance.market.interpolator;
+
+import java.util.Arrays;
+
+import ph.alephzero.finance.Message;
+
+/**
+ * Piecewise cubic interpolation of y over ascending x (e.g. quote dates as epoch days, or
+ * yield curve node times), with the coefficients of each segment computed once on
+ * construction. An evaluation is a binary search for the segment plus a cubic polynomial in
+ * <code>x - x[i]</code>; {@link #values(double[], double[])} walks the segments for sorted
+ * inputs instead of searching.
+ *
+ * <ul>
+ * <li>{@link #linear(double[], double[])} - linear</li>
+ * <li>{@link #logLinear(double[], double[])} - linear in ln y (e.g. flat forwards on discount factors)</li>
+ * <li>{@link #monotoneCubic(double[], double[])} - Hermite cubic with Fritsch-Butland slopes, which
+ *     preserves monotonicity and never overshoots the data</li>
+ * </ul>
+ *
+ * Outside the data y is extended flat (the first or last value), or with
+ * {@link Extrapolation#LINEAR} along the end segments (in ln y for log-linear, e.g. flat forwards
+ * past the last discount factor).
+ *
+ * Immutable, thus thread-safe.
+ *
+ * @author jon
+ *
+ */
+public final class PiecewiseInterpolation {
+    private final double[] x;
+    private final double[] a, b, c, d;    // segment i: a + b*t + c*t^2 + d*t^3, t = x - x[i]
+    private final boolean log;            // a..d are for ln y
+    private final double slope0, slopeN;  // slopes outside the first and last point
+
+    /**
+     * How y is extended outside the data.
+     */
+    public enum Extrapolation {
+        /** First or last value. */
+        FLAT,
+        /** Tangent of the first or last segment at the end point, in ln y for log-linear. */
+        LINEAR
+    }
+
+    private PiecewiseInterpolation(double[] x, double[] a, double[] b, double[] c, double[] d, boolean log, Extrapolation extrapolation) {
+        this.x = x;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.d = d;
+        this.log = log;
+
+        int n = x.length;
+        if (extrapolation == Extrapolation.LINEAR && n > 1) {
+            double h = x[n - 1] - x[n - 2];
+            slope0 = b[0];
+            slopeN = (c == null) ? b[n - 2] : b[n - 2] + h * (2 * c[n - 2] + 3 * h * d[n - 2]);
+        } else {
+            slope0 = slopeN = 0.0;
+        }
+    }
+
+    /**
+     * Linear interpolation, flat outside the data.
+     *
+     * @param x ascending, distinct
+     * @param y
+     * @return interpolation
+     */
+    public static PiecewiseInterpolation linear(double[] x, double[] y) {
+        return linear(x, y, Extrapolation.FLAT);
+    }
+
+    /**
+     * Linear interpolation.
+     *
+     * @param x ascending, distinct
+     * @param y
+     * @param extrapolation outside the data
+     * @return interpolation
+     */
+    public static PiecewiseInterpolation linear(double[] x, double[] y, Extrapolation extrapolation) {
+        check(x, y);
+        int n = x.length;
+        double[] slopes = new double[Math.max(n - 1, 0)];
+
+        for (int i = 0; i < n - 1; i++) {
+            slopes[i] = (y[i + 1] - y[i]) / (x[i + 1] - x[i]);
+        }
+        return new PiecewiseInterpolation(x.clone(), y.clone(), slopes, null, null, false, extrapolation);
+    }
+
+    /**
+     * Linear interpolation of ln y, flat outside the data.
+     *
+     * @param x ascending, distinct
+     * @param y positive
+     * @return interpolation
+     */
+    public static PiecewiseInterpolation logLinear(double[] x, double[] y) {
+        return logLinear(x, y, Extrapolation.FLAT);
+    }
+
+    /**
+     * Linear interpolation of ln y.
+     *
+     * @param x ascending, distinct
+     * @param y positive
+     * @param extrapolation outside the data, linear in ln y
+     * @return interpolation
+     */
+    public static PiecewiseInterpolation logLinear(double[] x, double[] y, Extrapolation extrapolation) {
+        double[] logs = new double[y.length];
+
+        for (int i = 0; i < y.length; i++) {
+            if (!(y[i] > 0.0)) {
+                throw new UnsupportedOperationException("Log-linear interpolation requires positive values.");
+            }
+            logs[i] = Math.log(y[i]);
+        }
+
+        PiecewiseInterpolation linear = linear(x, logs);
+        return new PiecewiseInterpolation(linear.x, linear.a, linear.b, null, null, true, extrapolation);
+    }
+
+    /**
+     * Monotone cubic Hermite interpolation, flat outside the data.
+     *
+     * @param x ascending, distinct
+     * @param y
+     * @return interpolation
+     */
+    public static PiecewiseInterpolation monotoneCubic(double[] x, double[] y) {
+        return monotoneCubic(x, y, Extrapolation.FLAT);
+    }
+
+    /**
+     * Monotone cubic Hermite interpolation. Interior slopes are the weighted harmonic mean of
+     * the adjacent secants (zero at local extrema), end slopes are the end secants.
+     *
+     * @param x ascending, distinct
+     * @param y
+     * @param extrapolation outside the data, along the end slopes if linear
+     * @return interpolation
+     */
+    public static PiecewiseInterpolation monotoneCubic(double[] x, double[] y, Extrapolation extrapolation) {
+        check(x, y);
+        int n = x.length;
+
+        if (n < 3) {
+            return linear(x, y, extrapolation);
+        }
+
+        double[] h = new double[n - 1];
+        double[] delta = new double[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            h[i] = x[i + 1] - x[i];
+            delta[i] = (y[i + 1] - y[i]) / h[i];
+        }
+
+        double[] m = new double[n];
+        m[0] = delta[0];
+        m[n - 1] = delta[n - 2];
+        for (int i = 1; i < n - 1; i++) {
+            if (delta[i - 1] * delta[i] > 0.0) {
+                m[i] = 3 * (h[i - 1] + h[i]) / ((2 * h[i] + h[i - 1]) / delta[i - 1] + (h[i] + 2 * h[i - 1]) / delta[i]);
+            }
+        }
+
+        double[] c = new double[n - 1];
+        double[] d = new double[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            c[i] = (3 * delta[i] - 2 * m[i] - m[i + 1]) / h[i];
+            d[i] = (m[i] + m[i + 1] - 2 * delta[i]) / (h[i] * h[i]);
+        }
+
+        return new PiecewiseInterpolation(x.clone(), y.clone(), Arrays.copyOf(m, n - 1), c, d, false, extrapolation);
+    }
+
+    /**
+     * Number of data points.
+     *
+     * @return number of data points
+     */
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * Interpolated value at x.
+     *
+     * @param t
+     * @return value
+     */
+    public double value(double t) {
+        int n = x.length;
+
+        if (t <= x[0]) return end(0, t);
+        if (t >= x[n - 1]) return end(n - 1, t);
+
+        return segment(segment(t), t);
+    }
+
+    /**
+     * Interpolated values at many x. Sorted inputs are evaluated in one pass over the segments.
+     * The arrays may be the same array (values overwrite x).
+     *
+     * @param t
+     * @param values output
+     */
+    public void values(double[] t, double[] values) {
+        if (t.length != values.length) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+
+        int n = x.length;
+        int i = 0;
+
+        for (int k = 0; k < t.length; k++) {
+            double tk = t[k];
+
+            if (tk <= x[0]) {
+                values[k] = end(0, tk);
+            } else if (tk >= x[n - 1]) {
+                values[k] = end(n - 1, tk);
+            } else {
+                if (tk < x[i] || tk >= x[i + 1]) {
+                    // next segment, else search
+                    i = (i + 2 < n && tk >= x[i + 1] && tk < x[i + 2]) ? i + 1 : segment(tk);
+                }
+                values[k] = segment(i, tk);
+            }
+        }
+    }
+
+    /**
+     * Last point with x <= t, for t strictly inside the data.
+     */
+    private int segment(double t) {
+        int i = Arrays.binarySearch(x, t);
+        return (i >= 0) ? i : -(i + 1) - 1;
+    }
+
+    private double segment(int i, double t) {
+        double dt = t - x[i];
+        double v = (c == null) ? a[i] + b[i] * dt : a[i] + dt * (b[i] + dt * (c[i] + dt * d[i]));
+        return (log) ? Math.exp(v) : v;
+    }
+
+    private double end(int i, double t) {
+        double v = a[i] + ((i == 0) ? slope0 : slopeN) * (t - x[i]);
+        return (log) ? Math.exp(v) : v;
+    }
+
+    private static void check(double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+        if (x.length == 0) {
+            throw new UnsupportedOperationException("Interpolation requires at least 1 point.");
+        }
+        for (int i = 1; i < x.length; i++) {
+            if (!(x[i] > x[i - 1])) {
+                throw new UnsupportedOperationException("Interpolation points must be in ascending order.");
+            }
+        }
+    }
+}
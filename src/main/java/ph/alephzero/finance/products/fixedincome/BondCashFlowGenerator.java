@@ -1,14 +1,14 @@
 package ph.alephzero.finance.products.fixedincome;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import ph.alephzero.finance.DayCountBasis;
-import ph.alephzero.finance.cashflows.BasicDatedCashFlows;
+import ph.alephzero.finance.cashflows.ArrayDatedCashFlows;
+import ph.alephzero.finance.cashflows.CashFlowComponent;
 import ph.alephzero.finance.cashflows.CashFlows;
-import ph.alephzero.finance.cashflows.MergedDatedCashFlows;
+import ph.alephzero.finance.context.BusinessDayConvention;
+import ph.alephzero.finance.context.Holidays;
 import ph.alephzero.finance.util.DateUtil;
 
 /**
@@ -36,7 +36,10 @@ public final class BondCashFlowGenerator {
     /**
      * Returns cash flow schedule for RPI bonds starting right after settlement date. 
      * I.e. first cash flow is for the first interest payment <i>after</i> the settlement date.
-     * The settlement date is not included in the case that it is a coupon date.  
+     * The settlement date is not included in the case that it is a coupon date.
+     * 
+     * The full schedule of the bond is generated once and cached, see {@link CouponScheduleService}.
+     *   
      * @param settlement
      * @param maturity
      * @param frequency number of coupon payments per year
@@ -46,24 +49,25 @@ public final class BondCashFlowGenerator {
      * @return coupon and principal schedule
      */
     public static Date[] scheduleRPIBond(Date settlement, Date maturity, int frequency, DayCountBasis basis) {
-        if (12 % frequency != 0) {
-            throw new UnsupportedOperationException("Frequency of " + Integer.toString(frequency) + " not supported.");        
-        }
-        
-        ArrayList<Date> dates = new ArrayList<Date>();
-        Date date = DateUtil.normalize(maturity);
-        int months = 12 / frequency;
-        
-        while (date.compareTo(settlement) > 0) {
-            dates.add(date);
-            date = DateUtil.normalize(DateUtil.addMonths(date, - months, basis));            
-        }
-        
-        Collections.reverse(dates);
-        Date[] out = new Date[dates.size()];
-        dates.toArray(out);
-        
-        return out;
+        return CouponScheduleService.getDefault().get(settlement, maturity, null, null, frequency, basis)
+                .datesAfter(settlement);
+    }
+    
+    /**
+     * Similar to {@link #scheduleRPIBond(Date, Date, int, DayCountBasis)} but returns the payment
+     * dates, adjusted for non-working days. Coupons are selected by their unadjusted dates.
+     * 
+     * @param settlement
+     * @param maturity
+     * @param frequency number of coupon payments per year
+     * @param basis
+     * @param calendar holidays
+     * @param conv business day convention
+     * @return adjusted coupon and principal payment dates
+     */
+    public static Date[] scheduleRPIBond(Date settlement, Date maturity, int frequency, DayCountBasis basis, Holidays calendar, BusinessDayConvention conv) {
+        return CouponScheduleService.getDefault().get(settlement, maturity, null, null, frequency, basis, calendar, conv)
+                .paymentDatesAfter(settlement);
     }
     
     /**
@@ -71,6 +75,8 @@ public final class BondCashFlowGenerator {
      * Date calculation always work backwards from maturity date, or if present
      * the last coupon date, down to the settlement date.
      * 
+     * The full schedule of the bond is generated once and cached, see {@link CouponScheduleService}.
+     * 
      * @param settlement
      * @param maturity 
      * @param firstCoupon first coupon date, may be null
@@ -81,50 +87,38 @@ public final class BondCashFlowGenerator {
      * @return coupon and principal schedule
      */
     public static Date[] scheduleOddBond(Date settlement, Date maturity, Date firstCoupon, Date lastCoupon, int frequency, DayCountBasis basis) {        
-        if (12 % frequency != 0) {
-            throw new UnsupportedOperationException("Frequency of " + Integer.toString(frequency) + " not supported.");        
-        }
-        
-        ArrayList<Date> dates = new ArrayList<>();
-        Date prevDate;
-        int months = 12 / frequency;
+        return scheduleOddBond(settlement, maturity, firstCoupon, lastCoupon, frequency, basis, null, BusinessDayConvention.NONE);
+    }
+    
+    /**
+     * Similar to {@link #scheduleOddBond(Date, Date, Date, Date, int, DayCountBasis)} but returns
+     * the payment dates, adjusted for non-working days. Coupons are selected by their unadjusted dates.
+     * 
+     * @param settlement
+     * @param maturity 
+     * @param firstCoupon first coupon date, may be null
+     * @param lastCoupon last coupon date, may be null
+     * @param frequency
+     * @param basis
+     * @param calendar holidays, may be null
+     * @param conv business day convention
+     * @return adjusted coupon and principal payment dates
+     */
+    public static Date[] scheduleOddBond(Date settlement, Date maturity, Date firstCoupon, Date lastCoupon, int frequency, DayCountBasis basis, Holidays calendar, BusinessDayConvention conv) {        
+        int settle = DateUtil.toEpochDay(settlement);
+        int mat = DateUtil.toEpochDay(maturity);
         
-        if (settlement.compareTo(maturity) > 0) {
+        if (settle > mat) {
             return new Date[0];
         }
         
-        dates.add(maturity);
-        prevDate = maturity;
-        
-        if (lastCoupon != null) {
-            if (lastCoupon.compareTo(settlement) > 0) {
-                dates.add(lastCoupon);
-                prevDate = DateUtil.addMonths(lastCoupon, - months, basis);
-            } else {
-                prevDate = lastCoupon;
-            }
-        } else {
-            prevDate = DateUtil.addMonths(maturity, - months, basis);
+        CouponSchedule schedule = CouponScheduleService.getDefault().get(settlement, maturity, firstCoupon, lastCoupon, frequency, basis, calendar, conv);
+        if (settle == mat) {
+            // settlement on maturity still has the maturity cash flow
+            return new Date[] { DateUtil.fromEpochDay(schedule.getPaymentDate(schedule.size() - 1)) };
         }
         
-        while (prevDate.compareTo(settlement) > 0) {
-            if (firstCoupon != null && prevDate.compareTo(firstCoupon) <= 0) {                
-                if (prevDate.compareTo(firstCoupon) < 0) {
-                    System.out.println("WARNING: did not exactly match at firstCoupon...");
-                }
-                dates.add(firstCoupon);
-                break;
-            }
-            
-            dates.add(prevDate);
-            prevDate = DateUtil.addMonths(prevDate, - months, basis);
-        }
-        
-        Collections.reverse(dates);
-        Date[] out = new Date[dates.size()];
-        dates.toArray(out);
-        
-        return out;
+        return schedule.paymentDatesAfter(settlement);
     }
     
     /**
@@ -164,9 +158,10 @@ public final class BondCashFlowGenerator {
         }
         
         Date[] sched = scheduleRPIBond(settlement, maturity, frequency, basis);
-        BasicDatedCashFlows prin = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows intr = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows frac = new BasicDatedCashFlows(settlement);
+        ArrayDatedCashFlows out = new ArrayDatedCashFlows(settlement, sched.length + 1);
+        out.addComponent(CashFlowComponent.PRINCIPAL);
+        out.addComponent(CashFlowComponent.INTEREST);
+        if (timeFactor) out.addComponent(CashFlowComponent.TIME_FACTOR);
         
         double coupamt = principal * couponRate * 1.0 / frequency;
         Date nextCoupDate = BondUtil.nextCouponDateBackwardSmartAdjust(settlement, maturity, frequency, basis, true);
@@ -176,21 +171,15 @@ public final class BondCashFlowGenerator {
         // initial coupon fraction adjustments
         
         for (int i = 0; i < sched.length - 1; i++) {
-            prin.add(sched[i], 0.0);
-            intr.add(sched[i], coupamt);
-            frac.add(sched[i], coupFrac);
+            out.add(sched[i], coupamt, CashFlowComponent.INTEREST);
+            if (timeFactor) out.add(sched[i], coupFrac, CashFlowComponent.TIME_FACTOR);
             
             coupFrac += 1.0;
         }
         
-        prin.add(maturity, principal);
-        intr.add(maturity, coupamt);
-        frac.add(maturity, coupFrac);
-        
-        MergedDatedCashFlows out = new MergedDatedCashFlows(settlement);
-        out.merge(prin, "PRINCIPAL");
-        out.merge(intr, "INTEREST");
-        if (timeFactor) out.merge(frac, "TIME_FACTOR");
+        out.add(maturity, principal, CashFlowComponent.PRINCIPAL);
+        out.add(maturity, coupamt, CashFlowComponent.INTEREST);
+        if (timeFactor) out.add(maturity, coupFrac, CashFlowComponent.TIME_FACTOR);
         
         return out;
     }
@@ -215,9 +204,10 @@ public final class BondCashFlowGenerator {
     
     public static CashFlows cashFlowsOddBondTF(Date settlement, Date issue, Date maturity, Date firstCoupon, Date lastCoupon, double principal, double couponRate, int frequency, DayCountBasis basis, boolean timeFactor) {
         Date[] sched = scheduleOddBond(settlement, maturity, firstCoupon, lastCoupon, frequency, basis);
-        BasicDatedCashFlows prin = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows intr = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows frac = new BasicDatedCashFlows(settlement);
+        ArrayDatedCashFlows out = new ArrayDatedCashFlows(settlement, sched.length + 1);
+        out.addComponent(CashFlowComponent.PRINCIPAL);
+        out.addComponent(CashFlowComponent.INTEREST);
+        if (timeFactor) out.addComponent(CashFlowComponent.TIME_FACTOR);
         
         double coupamt = principal * couponRate * 1.0 / frequency;
         double coupFrac = 0.0;
@@ -230,19 +220,19 @@ public final class BondCashFlowGenerator {
 
             // determine #quasi-periods in 1st coup period, start from firstCoupon back to issue date                        
             coupFrac = BondUtil.quasiPeriods(issue, firstCoupon, frequency, basis, false);
-            intr.add(firstCoupon, principal * coupFrac * couponRate * 1.0 / frequency);
-            frac.add(firstCoupon, coupFrac);                       
+            out.add(firstCoupon, principal * coupFrac * couponRate * 1.0 / frequency, CashFlowComponent.INTEREST);
+            if (timeFactor) out.add(firstCoupon, coupFrac, CashFlowComponent.TIME_FACTOR);                       
         } else if (sched.length > 0) {
             coupFrac = BondUtil.couponCountFraction(settlement, sched[0], frequency, basis);
-            intr.add(sched[0], coupamt);
-            frac.add(sched[0], coupFrac);
+            out.add(sched[0], coupamt, CashFlowComponent.INTEREST);
+            if (timeFactor) out.add(sched[0], coupFrac, CashFlowComponent.TIME_FACTOR);
         }
         
         
         for (int i = 1; i < sched.length - 1; i++) {
             coupFrac += 1.0;
-            intr.add(sched[i], coupamt);
-            frac.add(sched[0], coupFrac);
+            out.add(sched[i], coupamt, CashFlowComponent.INTEREST);
+            if (timeFactor) out.add(sched[0], coupFrac, CashFlowComponent.TIME_FACTOR);
         }
         
         if (sched.length > 1) {
@@ -250,20 +240,15 @@ public final class BondCashFlowGenerator {
                 // determine #quasi-periods in last coup period, start from lastCoupon forward to maturity
                 double w = BondUtil.quasiPeriods(lastCoupon, maturity, frequency, basis, true);                
                 coupFrac += w;
-                intr.add(maturity, principal * w * couponRate * 1.0 / frequency);
+                out.add(maturity, principal * w * couponRate * 1.0 / frequency, CashFlowComponent.INTEREST);
             } else {
                 coupFrac += 1.0;
-                intr.add(maturity, coupamt);
+                out.add(maturity, coupamt, CashFlowComponent.INTEREST);
             }
-            frac.add(maturity, coupFrac);
+            if (timeFactor) out.add(maturity, coupFrac, CashFlowComponent.TIME_FACTOR);
         }
         
-        prin.add(maturity, principal);
-
-        MergedDatedCashFlows out = new MergedDatedCashFlows(settlement);
-        out.merge(prin, "PRINCIPAL");
-        out.merge(intr, "INTEREST");
-        if (timeFactor) out.merge(frac, "TIME_FACTOR");
+        out.add(maturity, principal, CashFlowComponent.PRINCIPAL);
         
         return out;
     }
@@ -308,46 +293,41 @@ public final class BondCashFlowGenerator {
         CashFlows cf = cashFlowsRPIBond(settlement, maturity, principal, couponRate, frequency, basis);
         List<Date> dates = cf.getDates();
                 
-        BasicDatedCashFlows prin = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows intr = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows coup = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows prem = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows disc = new BasicDatedCashFlows(settlement);
+        ArrayDatedCashFlows outcf = new ArrayDatedCashFlows(settlement, dates.size());
+        outcf.addComponent(CashFlowComponent.PRINCIPAL);
+        outcf.addComponent(CashFlowComponent.EFFECTIVE_INTEREST);
+        outcf.addComponent(CashFlowComponent.COUPON);
+        outcf.addComponent(CashFlowComponent.PREMIUM);
+        outcf.addComponent(CashFlowComponent.DISCOUNT);
                 
         double premamt = (price > principal) ? price - principal : 0.0;
         double discamt = (price > principal) ? 0.0 : principal - price;
         double netvalue = price;
         
         // accounting entries on settlement
-        prin.add(settlement, -price);
-        prem.add(settlement, premamt);
-        disc.add(settlement, -discamt);
+        outcf.add(settlement, -price, CashFlowComponent.PRINCIPAL);
+        outcf.add(settlement, premamt, CashFlowComponent.PREMIUM);
+        outcf.add(settlement, -discamt, CashFlowComponent.DISCOUNT);
                        
         for (int i = 1; i < dates.size(); i++) {
             Date date = dates.get(i);
-            double coupamt = cf.getCashFlow(date, "INTEREST");
-            double prinamt = cf.getCashFlow(date, "PRINCIPAL");
+            double coupamt = cf.getCashFlow(i, CashFlowComponent.INTEREST);
+            double prinamt = cf.getCashFlow(i, CashFlowComponent.PRINCIPAL);
             double intramt = netvalue * eir;
             
-            prin.add(date, prinamt);
-            intr.add(date, intramt);
-            coup.add(date, coupamt);
+            outcf.add(date, prinamt, CashFlowComponent.PRINCIPAL);
+            outcf.add(date, intramt, CashFlowComponent.EFFECTIVE_INTEREST);
+            outcf.add(date, coupamt, CashFlowComponent.COUPON);
             if (premamt > 0.0) {
-                prem.add(date, - (coupamt - intramt));  // credit premium
+                outcf.add(date, - (coupamt - intramt), CashFlowComponent.PREMIUM);  // credit premium
                 premamt -= coupamt - intramt;
             } else if (discamt > 0.0) {
-                disc.add(date, intramt - coupamt);      // debit discount
+                outcf.add(date, intramt - coupamt, CashFlowComponent.DISCOUNT);      // debit discount
                 discamt -= intramt - coupamt;
             }
             netvalue = principal + premamt - discamt;
         }
         
-        MergedDatedCashFlows outcf = new MergedDatedCashFlows(settlement);
-        outcf.merge(prin, "PRINCIPAL");
-        outcf.merge(intr, "EFFECTIVE_INTEREST");
-        outcf.merge(coup, "COUPON");
-        outcf.merge(prem, "PREMIUM");
-        outcf.merge(disc, "DISCOUNT");
         return outcf;
     }
     
@@ -389,10 +369,11 @@ public final class BondCashFlowGenerator {
         CashFlows cf = cashFlowsRPIBond(settlement, maturity, principal, couponRate, frequency, basis);
         List<Date> dates = cf.getDates();        
         
-        BasicDatedCashFlows prin = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows coup = new BasicDatedCashFlows(settlement);        
-        BasicDatedCashFlows prem = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows disc = new BasicDatedCashFlows(settlement);
+        ArrayDatedCashFlows outcf = new ArrayDatedCashFlows(settlement, dates.size());
+        outcf.addComponent(CashFlowComponent.PRINCIPAL);
+        outcf.addComponent(CashFlowComponent.COUPON);
+        outcf.addComponent(CashFlowComponent.PREMIUM);
+        outcf.addComponent(CashFlowComponent.DISCOUNT);
         
         double premamt = (price > principal) ? price - principal : 0.0;
         double discamt = (price > principal) ? 0.0 : principal - price;
@@ -402,34 +383,29 @@ public final class BondCashFlowGenerator {
         int totalDays = DateUtil.diffDays(settlement, maturity, basis);
         
         // accounting entries on settlement
-        prin.add(settlement, -price);
-        prem.add(settlement, premamt);
-        disc.add(settlement, -discamt);
+        outcf.add(settlement, -price, CashFlowComponent.PRINCIPAL);
+        outcf.add(settlement, premamt, CashFlowComponent.PREMIUM);
+        outcf.add(settlement, -discamt, CashFlowComponent.DISCOUNT);
         
         for (int i = 1; i < dates.size(); i++) {
             Date date = dates.get(i);
-            double coupamt = cf.getCashFlow(date, "INTEREST");
-            double prinamt = cf.getCashFlow(date, "PRINCIPAL");
+            double coupamt = cf.getCashFlow(i, CashFlowComponent.INTEREST);
+            double prinamt = cf.getCashFlow(i, CashFlowComponent.PRINCIPAL);
             int ndays = DateUtil.diffDays(settlement, date, basis);
             
-            prin.add(date, prinamt);            
-            coup.add(date, coupamt);
+            outcf.add(date, prinamt, CashFlowComponent.PRINCIPAL);            
+            outcf.add(date, coupamt, CashFlowComponent.COUPON);
             if (premamt > 0.0) {
                 amort = premamt * ndays * 1.0 / totalDays;
-                prem.add(date, - (amort - premamort));  // credit premium
+                outcf.add(date, - (amort - premamort), CashFlowComponent.PREMIUM);  // credit premium
                 premamort = amort;
             } else if (discamt > 0.0) {
                 amort = discamt * ndays * 1.0 / totalDays;
-                disc.add(date, amort - discamort);      // debit discount
+                outcf.add(date, amort - discamort, CashFlowComponent.DISCOUNT);      // debit discount
                 discamort = amort;
             }            
         }
         
-        MergedDatedCashFlows outcf = new MergedDatedCashFlows(settlement);
-        outcf.merge(prin, "PRINCIPAL");        
-        outcf.merge(coup, "COUPON");
-        outcf.merge(prem, "PREMIUM");
-        outcf.merge(disc, "DISCOUNT");
         return outcf;
     }
 }
@@ -21,8 +21,12 @@ public class BondContractHandler implements ContractHandler {
         try {
             c.validate();
                         
-            double price = BondValuation.price(context.getBaseDate(), c.getMaturityDate(), c.getCouponRate(), c.getYield(), c.getFrequency(), c.getBasis());
-            result.setValuation(price);
+            BondRiskMeasures risk = BondValuation.riskMeasures(context.getBaseDate(), c.getMaturityDate(), c.getCouponRate(), c.getYield(), c.getFrequency(), c.getBasis(), null);
+            result.setValuation(risk.getPrice());
+            result.setMiscAmount("DURATION_MACAULAY", risk.getDurationMacaulay());
+            result.setMiscAmount("DURATION_MODIFIED", risk.getDurationModified());
+            result.setMiscAmount("CONVEXITY", risk.getConvexity());
+            result.setMiscAmount("DV01", risk.getDv01());
             
             double accruedInterest = BondValuation.accruedInterest(c.getValueDate(), context.getBaseDate(), c.getCouponRate(), c.getFrequency(), c.getBasis());
             result.setMiscAmount("ACCRUED_INTEREST", accruedInterest);
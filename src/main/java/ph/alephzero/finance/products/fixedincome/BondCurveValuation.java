@@ -0,0 +1,286 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import java.util.Date;
+import java.util.List;
+
+import ph.alephzero.finance.Compounding;
+import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.cashflows.CashFlows;
+import ph.alephzero.finance.cashflows.EpochDayCashFlows;
+import ph.alephzero.finance.market.BasicYieldTermStructure;
+import ph.alephzero.finance.market.DiscountFactorCache;
+import ph.alephzero.finance.market.YieldTermStructure;
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Bond valuation against a yield curve instead of a flat yield.
+ *
+ * Cash flows are discounted with the curve discount factors, forward to the settlement date
+ * (divided by the discount factor of the settlement date). A Z-spread z is applied as an
+ * additional continuously compounded discount <code>exp(-z * t)</code>, t in ACT/365 years
+ * from settlement.
+ *
+ * Discount factors are read through a {@link DiscountFactorCache}; use one cache per curve
+ * for the whole portfolio (see {@link ph.alephzero.finance.context.BasicContext#getDiscountFactorCache(String)})
+ * so each distinct cash flow date is discounted once.
+ *
+ * All methods assume face/par value of 1.0.
+ *
+ * @ipc:calculator-class
+ * @author jon
+ *
+ */
+public final class BondCurveValuation {
+    public static final double DEFAULT_ACCURACY = 1e-10;
+    public static final int DEFAULT_MAX_ITERATES = 50;
+    private static final double DAYS_PER_YEAR = 365.0;
+
+    /**
+     * RPI bond price against a curve.
+     *
+     * @ipc:calculation
+     * @param settlement
+     * @param maturity
+     * @param couponRate
+     * @param frequency
+     * @param basis
+     * @param curve
+     * @param clean whether to return clean (true) or dirty (false) price
+     * @return price
+     */
+    public static double price(Date settlement, Date maturity, double couponRate, int frequency, DayCountBasis basis, YieldTermStructure curve, boolean clean) {
+        BondKernel kernel = new BondKernel(settlement, maturity, couponRate, frequency, basis);
+        double dirty = dirtyPrice(kernel.getSettlementEpochDay(), kernel.epochDays(), kernel.amounts(), null, curve, 0.0);
+        return (clean) ? dirty - kernel.accruedInterest() : dirty;
+    }
+
+    /**
+     * RPI bond price against a curve plus Z-spread.
+     *
+     * @param settlement
+     * @param maturity
+     * @param couponRate
+     * @param frequency
+     * @param basis
+     * @param curve
+     * @param zSpread
+     * @param clean whether to return clean (true) or dirty (false) price
+     * @return price
+     */
+    public static double price(Date settlement, Date maturity, double couponRate, int frequency, DayCountBasis basis, DiscountFactorCache curve, double zSpread, boolean clean) {
+        return price(new BondKernel(settlement, maturity, couponRate, frequency, basis), curve, zSpread, clean);
+    }
+
+    /**
+     * Kernel version of {@link #price(Date, Date, double, int, DayCountBasis, DiscountFactorCache, double, boolean)}.
+     *
+     * @param kernel
+     * @param curve
+     * @param zSpread
+     * @param clean whether to return clean (true) or dirty (false) price
+     * @return price
+     */
+    public static double price(BondKernel kernel, DiscountFactorCache curve, double zSpread, boolean clean) {
+        double dirty = dirtyPrice(kernel.getSettlementEpochDay(), kernel.epochDays(), kernel.amounts(), curve, null, zSpread);
+        return (clean) ? dirty - kernel.accruedInterest() : dirty;
+    }
+
+    /**
+     * Z-spread of an RPI bond given clean price.
+     *
+     * @ipc:calculation
+     * @param settlement
+     * @param maturity
+     * @param couponRate
+     * @param price clean price per 1.0 par value
+     * @param frequency
+     * @param basis
+     * @param curve
+     * @return Z-spread (continuously compounded)
+     * @throws ArithmeticException if the solver does not converge
+     */
+    public static double zSpread(Date settlement, Date maturity, double couponRate, double price, int frequency, DayCountBasis basis, YieldTermStructure curve) {
+        BondKernel kernel = new BondKernel(settlement, maturity, couponRate, frequency, basis);
+        return solveZSpread(kernel.getSettlementEpochDay(), kernel.epochDays(), kernel.amounts(), null, curve, price + kernel.accruedInterest());
+    }
+
+    /**
+     * Kernel version of {@link #zSpread(Date, Date, double, double, int, DayCountBasis, YieldTermStructure)}.
+     *
+     * @param kernel
+     * @param curve
+     * @param price clean price per 1.0 par value
+     * @return Z-spread (continuously compounded)
+     * @throws ArithmeticException if the solver does not converge
+     */
+    public static double zSpread(BondKernel kernel, DiscountFactorCache curve, double price) {
+        return solveZSpread(kernel.getSettlementEpochDay(), kernel.epochDays(), kernel.amounts(), curve, null, price + kernel.accruedInterest());
+    }
+
+    /**
+     * I-spread of an RPI bond given clean price: the yield less the curve zero rate at
+     * maturity, with the bond frequency and basis.
+     *
+     * @ipc:calculation
+     * @param settlement
+     * @param maturity
+     * @param couponRate
+     * @param price clean price per 1.0 par value
+     * @param frequency
+     * @param basis
+     * @param curve
+     * @return I-spread
+     * @throws ArithmeticException if the yield solver does not converge
+     */
+    public static double iSpread(Date settlement, Date maturity, double couponRate, double price, int frequency, DayCountBasis basis, YieldTermStructure curve) {
+        double yield = new BondKernel(settlement, maturity, couponRate, frequency, basis).yield(price);
+        return yield - curve.getZeroRate(maturity, frequency, Compounding.COMPOUNDED, basis);
+    }
+
+    /**
+     * Odd bond price against a curve plus Z-spread, see
+     * {@link BondValuation#priceOddBond(Date, Date, Date, Date, Date, double, double, int, DayCountBasis, boolean)}
+     * for the cash flows and accrued interest.
+     *
+     * @ipc:calculation
+     * @param settlement
+     * @param issue
+     * @param maturity
+     * @param firstCoupon
+     * @param lastCoupon
+     * @param couponRate
+     * @param frequency
+     * @param basis
+     * @param curve
+     * @param zSpread
+     * @param clean whether to return clean (true) or dirty (false) price
+     * @return price
+     */
+    public static double priceOddBond(Date settlement, Date issue, Date maturity, Date firstCoupon, Date lastCoupon, double couponRate, int frequency, DayCountBasis basis, DiscountFactorCache curve, double zSpread, boolean clean) {
+        CashFlows cf = BondCashFlowGenerator.cashFlowsOddBond(settlement, issue, maturity, firstCoupon, lastCoupon, 1.0, couponRate, frequency, basis);
+        double dirty = dirtyPrice(DateUtil.toEpochDay(settlement), epochDays(cf), amounts(cf), curve, null, zSpread);
+
+        return (clean) ? dirty - accruedInterestOdd(settlement, issue, firstCoupon, couponRate, frequency, basis) : dirty;
+    }
+
+    /**
+     * Z-spread of an odd bond given clean price.
+     *
+     * @ipc:calculation
+     * @param settlement
+     * @param issue
+     * @param maturity
+     * @param firstCoupon
+     * @param lastCoupon
+     * @param couponRate
+     * @param price clean price per 1.0 par value
+     * @param frequency
+     * @param basis
+     * @param curve
+     * @return Z-spread (continuously compounded)
+     * @throws ArithmeticException if the solver does not converge
+     */
+    public static double zSpreadOddBond(Date settlement, Date issue, Date maturity, Date firstCoupon, Date lastCoupon, double couponRate, double price, int frequency, DayCountBasis basis, DiscountFactorCache curve) {
+        CashFlows cf = BondCashFlowGenerator.cashFlowsOddBond(settlement, issue, maturity, firstCoupon, lastCoupon, 1.0, couponRate, frequency, basis);
+        double target = price + accruedInterestOdd(settlement, issue, firstCoupon, couponRate, frequency, basis);
+
+        return solveZSpread(DateUtil.toEpochDay(settlement), epochDays(cf), amounts(cf), curve, null, target);
+    }
+
+    /**
+     * Discount factors are read from the cache if given, else directly from the curve (for
+     * one-off valuations, where filling a cache would cost more than it saves).
+     */
+    private static double dirtyPrice(int settlement, int[] days, double[] amounts, DiscountFactorCache cache, YieldTermStructure curve, double zSpread) {
+        double pv = 0.0;
+
+        for (int i = 0; i < days.length; i++) {
+            double t = (days[i] - settlement) / DAYS_PER_YEAR;
+            pv += amounts[i] * discount(cache, curve, days[i]) * Math.exp(-zSpread * t);
+        }
+
+        return pv / discount(cache, curve, settlement);
+    }
+
+    /**
+     * Newton's method with the analytic derivative, from zero spread. The price is
+     * decreasing and convex in the spread.
+     */
+    private static double solveZSpread(int settlement, int[] days, double[] amounts, DiscountFactorCache cache, YieldTermStructure curve, double dirtyPrice) {
+        int n = days.length;
+        double[] pv0 = new double[n];
+        double[] t = new double[n];
+        double df0 = discount(cache, curve, settlement);
+
+        for (int i = 0; i < n; i++) {
+            t[i] = (days[i] - settlement) / DAYS_PER_YEAR;
+            pv0[i] = amounts[i] * discount(cache, curve, days[i]) / df0;
+        }
+
+        double z0, z1 = 0.0;
+        for (int k = 0; k < DEFAULT_MAX_ITERATES; k++) {
+            z0 = z1;
+
+            double P = 0.0, dP = 0.0;
+            for (int i = 0; i < n; i++) {
+                double pv = pv0[i] * Math.exp(-z0 * t[i]);
+                P += pv;
+                dP -= pv * t[i];
+            }
+
+            if (dP == 0.0 || Double.isNaN(P) || Double.isInfinite(P)) break;
+
+            z1 = z0 - (P - dirtyPrice) / dP;
+            if (Math.abs(z1 - z0) <= DEFAULT_ACCURACY) {
+                return z1;
+            }
+        }
+
+        throw new ArithmeticException("Failed to converge after " + Integer.toString(DEFAULT_MAX_ITERATES) + " iterations.");
+    }
+
+    private static double accruedInterestOdd(Date settlement, Date issue, Date firstCoupon, double couponRate, int frequency, DayCountBasis basis) {
+        if (firstCoupon != null) {
+            return BondValuation.accruedInterestOddFirst(issue, settlement, firstCoupon, couponRate, frequency, basis);
+        }
+        return BondValuation.accruedInterest(issue, settlement, couponRate, frequency, basis);
+    }
+
+    /**
+     * Epoch days of the cash flows after the base date.
+     */
+    private static int[] epochDays(CashFlows cf) {
+        int[] days = new int[cf.getCount() - 1];
+
+        if (cf instanceof EpochDayCashFlows) {
+            EpochDayCashFlows ecf = (EpochDayCashFlows) cf;
+            for (int i = 1; i < cf.getCount(); i++) {
+                days[i - 1] = ecf.getEpochDay(i);
+            }
+        } else {
+            List<Date> dates = cf.getDates();
+            for (int i = 1; i < cf.getCount(); i++) {
+                days[i - 1] = DateUtil.toEpochDay(dates.get(i));
+            }
+        }
+        return days;
+    }
+
+    /**
+     * Amounts of the cash flows after the base date.
+     */
+    private static double[] amounts(CashFlows cf) {
+        double[] amounts = new double[cf.getCount() - 1];
+        for (int i = 1; i < cf.getCount(); i++) {
+            amounts[i - 1] = cf.getCashFlow(i);
+        }
+        return amounts;
+    }
+
+    private static double discount(DiscountFactorCache cache, YieldTermStructure curve, int epochDay) {
+        if (cache != null) {
+            return cache.getDiscount(epochDay);
+        }
+        return (curve instanceof BasicYieldTermStructure) ? ((BasicYieldTermStructure) curve).getDiscount(epochDay) : curve.getDiscount(DateUtil.fromEpochDay(epochDay));
+    }
+}
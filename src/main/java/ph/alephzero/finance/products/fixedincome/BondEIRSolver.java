@@ -0,0 +1,187 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import java.util.Date;
+
+import ph.alephzero.finance.DayCountBasis;
+
+/**
+ * Effective interest rate solver for RPI bonds on a {@link BondKernel}, the primitive
+ * counterpart of {@link BondUtil.BondEIRResidual} with
+ * {@link BondValuation#effectiveInterestRate(Date, Date, double, double, int, DayCountBasis)}.
+ *
+ * The residual is the carrying value left at maturity after amortizing the price at the
+ * effective interest rate; the first period covers only the coupon fraction from settlement
+ * (see {@link #couponFraction(Date, Date, int, DayCountBasis)}). Residual and derivative are
+ * computed in one pass over the kernel amounts. The root is searched in the same bracket as
+ * the Pegasus solver, [0, 1] annualized, with Newton's method falling back to bisection
+ * whenever a step leaves the bracket.
+ *
+ * A price with no root in the bracket (e.g. above the sum of the remaining cash flows) gives
+ * NaN rather than an exception, so one bad position does not stop a batch run; see
+ * {@link #isConverged()}. {@link EIRAmortizationService} uses one solver per worker thread.
+ *
+ * @author jon
+ *
+ */
+public class BondEIRSolver {
+    public static final double DEFAULT_ACCURACY = 1e-10;
+    public static final int DEFAULT_MAX_ITERATES = 100;
+
+    private double accuracy;
+    private int maxIterates;
+
+    // state of the last solve()
+    private double residual, derivative;
+    private int iterations;
+    private boolean converged;
+
+    public BondEIRSolver() {
+        this(DEFAULT_ACCURACY, DEFAULT_MAX_ITERATES);
+    }
+
+    /**
+     *
+     * @param accuracy absolute accuracy of the (annualized) effective interest rate
+     * @param maxIterates max iterations
+     */
+    public BondEIRSolver(double accuracy, int maxIterates) {
+        this.accuracy = accuracy;
+        this.maxIterates = maxIterates;
+    }
+
+    /**
+     * Solves for the effective interest rate given price.
+     *
+     * @param kernel
+     * @param couponFraction fraction of the first coupon period from settlement, see {@link #couponFraction(Date, Date, int, DayCountBasis)}
+     * @param price price per 1.0 par value
+     * @return annualized effective interest rate, or NaN if no root was found (see {@link #isConverged()})
+     */
+    public double solve(BondKernel kernel, double couponFraction, double price) {
+        int frequency = kernel.getFrequency();
+        double lo = 0.0, hi = 1.0 / frequency;
+
+        iterations = 0;
+        converged = false;
+
+        double flo = residual(kernel, couponFraction, price, lo);
+        double fhi = residual(kernel, couponFraction, price, hi);
+        if (flo == 0.0 || fhi == 0.0) {
+            converged = true;
+            return (flo == 0.0) ? lo * frequency : hi * frequency;
+        }
+        if (!(flo * fhi < 0.0)) {
+            return Double.NaN;
+        }
+
+        double e = BondYieldSolver.seed(kernel, price) / frequency;
+        if (!(e > lo && e < hi)) {
+            e = 0.5 * (lo + hi);
+        }
+
+        while (iterations < maxIterates) {
+            iterations++;
+            evaluate(kernel, couponFraction, price, e);
+
+            if (residual == 0.0) {
+                converged = true;
+                return e * frequency;
+            }
+            if ((residual < 0.0) == (flo < 0.0)) {
+                lo = e;
+            } else {
+                hi = e;
+            }
+
+            double next = e - residual / derivative;
+            if (!(next > lo && next < hi)) {
+                next = 0.5 * (lo + hi);
+            }
+
+            if (Math.abs(next - e) * frequency <= accuracy) {
+                converged = true;
+                return next * frequency;
+            }
+            e = next;
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * Carrying value left at maturity when the price is amortized at the effective interest
+     * rate, as {@link BondUtil.BondEIRResidual#value(double)}.
+     *
+     * @param kernel
+     * @param couponFraction fraction of the first coupon period from settlement
+     * @param price price per 1.0 par value
+     * @param effectiveInterestRate annualized effective interest rate
+     * @return residual
+     */
+    public static double residual(BondKernel kernel, double couponFraction, double price, double effectiveInterestRate) {
+        double eir = effectiveInterestRate / kernel.getFrequency();
+        double coupon = kernel.getCouponRate() / kernel.getFrequency();
+        double prin = price;
+
+        // [settlement date, first coup date] may not cover 1 whole coup period
+        prin -= coupon * couponFraction + (kernel.getAmount(0) - coupon) - eir * prin * couponFraction;
+
+        for (int i = 1; i < kernel.getCount(); i++) {
+            prin -= kernel.getAmount(i) - eir * prin;
+        }
+
+        return prin;
+    }
+
+    /**
+     * Residual and its derivative with respect to the de-annualized rate.
+     */
+    private void evaluate(BondKernel kernel, double couponFraction, double price, double eir) {
+        double coupon = kernel.getCouponRate() / kernel.getFrequency();
+        double prin = price, dprin = 0.0;
+
+        dprin += eir * dprin * couponFraction + prin * couponFraction;
+        prin -= coupon * couponFraction + (kernel.getAmount(0) - coupon) - eir * prin * couponFraction;
+
+        for (int i = 1; i < kernel.getCount(); i++) {
+            dprin += eir * dprin + prin;
+            prin -= kernel.getAmount(i) - eir * prin;
+        }
+
+        residual = prin;
+        derivative = dprin;
+    }
+
+    /**
+     * Fraction of the coupon period from settlement to the next coupon date, as used by the
+     * effective interest rate residual.
+     *
+     * @param settlement
+     * @param maturity
+     * @param frequency
+     * @param basis
+     * @return coupon fraction
+     */
+    public static double couponFraction(Date settlement, Date maturity, int frequency, DayCountBasis basis) {
+        Date nextCoupDate = BondUtil.nextCouponDateBackward(settlement, maturity, frequency, basis);
+        return BondUtil.couponCountFraction(settlement, nextCoupDate, frequency, basis);
+    }
+
+    /**
+     * Number of iterations in the last solve.
+     *
+     * @return iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns true if the last solve found a root.
+     *
+     * @return true if converged
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+}
@@ -0,0 +1,334 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import java.util.Date;
+
+import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Compiled cash flows of an RPI bond, per 1.0 face value, for repeated valuation at different
+ * yields. The schedule, time factors (in coupon periods, see
+ * {@link BondCashFlowGenerator#cashFlowsRPIBondTF(Date, Date, double, double, int, DayCountBasis, boolean)})
+ * and amounts are computed once on construction; price, duration, convexity and PV01 are then
+ * single loops over primitive arrays and do not allocate. {@link #riskMeasures(double, BondRiskMeasures)}
+ * computes all of them in one loop.
+ *
+ * Immutable, thus thread-safe.
+ *
+ * @author jon
+ *
+ */
+public final class BondKernel {
+    private static final double BASIS_POINT = 0.0001;
+
+    private final int settlementDay;
+    private final int frequency;
+    private final double couponRate;
+    private final int[] days;            // cash flow dates as epoch days
+    private final double[] times;        // time factors in coupon periods
+    private final double[] amounts;      // principal + interest
+    private final double accruedInterest;
+
+    /**
+     *
+     * @param settlement
+     * @param maturity
+     * @param couponRate annualized coupon rate
+     * @param frequency number of coupon payments per year
+     * @param basis
+     */
+    public BondKernel(Date settlement, Date maturity, double couponRate, int frequency, DayCountBasis basis) {
+        if (12 % frequency != 0) {
+            throw new UnsupportedOperationException("Frequency of " + Integer.toString(frequency) + " not supported.");
+        }
+
+        Date[] sched = BondCashFlowGenerator.scheduleRPIBond(settlement, maturity, frequency, basis);
+        int n = sched.length;
+
+        if (n == 0) {
+            throw new UnsupportedOperationException("Settlement date must be before maturity date.");
+        }
+
+        this.settlementDay = DateUtil.toEpochDay(settlement);
+        this.frequency = frequency;
+        this.couponRate = couponRate;
+        days = new int[n];
+        times = new double[n];
+        amounts = new double[n];
+
+        double coupamt = couponRate / frequency;
+        Date nextCoupDate = BondUtil.nextCouponDateBackwardSmartAdjust(settlement, maturity, frequency, basis, true);
+        double coupFrac = BondUtil.couponCountFraction(settlement, nextCoupDate, frequency, basis);
+
+        for (int i = 0; i < n - 1; i++) {
+            days[i] = DateUtil.toEpochDay(sched[i]);
+            times[i] = coupFrac;
+            amounts[i] = coupamt;
+            coupFrac += 1.0;
+        }
+
+        days[n - 1] = DateUtil.toEpochDay(maturity);
+        times[n - 1] = coupFrac;
+        amounts[n - 1] = 1.0 + coupamt;
+
+        accruedInterest = coupamt * (1 - times[0]);
+    }
+
+    public int getSettlementEpochDay() {
+        return settlementDay;
+    }
+
+    public int getFrequency() {
+        return frequency;
+    }
+
+    public double getCouponRate() {
+        return couponRate;
+    }
+
+    /**
+     * Number of cash flows after settlement.
+     *
+     * @return number of cash flows
+     */
+    public int getCount() {
+        return amounts.length;
+    }
+
+    public int getEpochDay(int i) {
+        return days[i];
+    }
+
+    /**
+     * Time factor of cash flow i, in coupon periods from settlement.
+     *
+     * @param i
+     * @return time factor
+     */
+    public double getTimeFactor(int i) {
+        return times[i];
+    }
+
+    /**
+     * Principal plus interest of cash flow i.
+     *
+     * @param i
+     * @return amount
+     */
+    public double getAmount(int i) {
+        return amounts[i];
+    }
+
+    /**
+     * Cash flow dates as epoch days; the internal array, do not modify.
+     */
+    int[] epochDays() {
+        return days;
+    }
+
+    /**
+     * Cash flow amounts; the internal array, do not modify.
+     */
+    double[] amounts() {
+        return amounts;
+    }
+
+    /**
+     * Accrued interest at settlement.
+     *
+     * @return accrued interest
+     */
+    public double accruedInterest() {
+        return accruedInterest;
+    }
+
+    /**
+     * Returns the dirty price. With a single cash flow left, it is discounted with simple
+     * interest over the fraction of the coupon period.
+     *
+     * @param yield annualized yield
+     * @return dirty price
+     */
+    public double dirtyPrice(double yield) {
+        double y = yield / frequency;
+
+        if (amounts.length == 1) {
+            return amounts[0] / (1 + y * times[0]);
+        }
+
+        double logv = -Math.log1p(y);
+        double P0 = 0.0;
+        for (int i = 0; i < amounts.length; i++) {
+            P0 += amounts[i] * Math.exp(times[i] * logv);
+        }
+        return P0;
+    }
+
+    /**
+     * Sums over the cash flows in one discounting pass, for price and derivative together:
+     * <code>sums[0]</code> is the sum of the discounted amounts (the dirty price with more
+     * than one cash flow) and <code>sums[1]</code> their sum weighted by time factor.
+     *
+     * @param yield annualized yield
+     * @param sums output, length 2
+     */
+    void discountedSums(double yield, double[] sums) {
+        double logv = -Math.log1p(yield / frequency);
+        double P0 = 0.0, PT = 0.0;
+
+        for (int i = 0; i < amounts.length; i++) {
+            double pv = amounts[i] * Math.exp(times[i] * logv);
+            P0 += pv;
+            PT += pv * times[i];
+        }
+
+        sums[0] = P0;
+        sums[1] = PT;
+    }
+
+    /**
+     *
+     * @param yield annualized yield
+     * @return clean price
+     */
+    public double cleanPrice(double yield) {
+        return dirtyPrice(yield) - accruedInterest;
+    }
+
+    /**
+     *
+     * @param yield annualized yield
+     * @param clean whether to return clean (true) or dirty (false) price
+     * @return price
+     */
+    public double price(double yield, boolean clean) {
+        return (clean) ? cleanPrice(yield) : dirtyPrice(yield);
+    }
+
+    /**
+     * Macaulay duration in years.
+     *
+     * @param yield annualized yield
+     * @return Macaulay duration
+     */
+    public double durationMacaulay(double yield) {
+        double logv = -Math.log1p(yield / frequency);
+        double duration = 0.0;
+        double P0 = 0.0;
+
+        for (int i = 0; i < amounts.length; i++) {
+            double pv = amounts[i] * Math.exp(times[i] * logv);
+            duration += pv * times[i];
+            P0 += pv;
+        }
+
+        return duration / (frequency * P0);
+    }
+
+    /**
+     *
+     * @param yield annualized yield
+     * @return modified duration
+     */
+    public double durationModified(double yield) {
+        return durationMacaulay(yield) / (1 + yield / frequency);
+    }
+
+    /**
+     *
+     * @param yield annualized yield
+     * @return convexity
+     */
+    public double convexity(double yield) {
+        double y = yield / frequency;
+        double logv = -Math.log1p(y);
+        double convexity = 0.0;
+        double P0 = 0.0;
+
+        for (int i = 0; i < amounts.length; i++) {
+            double pv = amounts[i] * Math.exp(times[i] * logv);
+            convexity += pv * times[i] * (times[i] + 1);
+            P0 += pv;
+        }
+
+        return convexity / (frequency*frequency * P0 * (1 + y)*(1 + y));
+    }
+
+    /**
+     * Price value of a basis point: the decrease in dirty price for a 1bp increase in yield,
+     * from the derivative of {@link #dirtyPrice(double)}.
+     *
+     * @param yield annualized yield
+     * @return PV01 per 1.0 face value
+     */
+    public double pv01(double yield) {
+        double y = yield / frequency;
+
+        if (amounts.length == 1) {
+            double df = 1 + y * times[0];
+            return amounts[0] * times[0] / (frequency * df * df) * BASIS_POINT;
+        }
+
+        double logv = -Math.log1p(y);
+        double dP = 0.0;
+        for (int i = 0; i < amounts.length; i++) {
+            dP += amounts[i] * times[i] * Math.exp(times[i] * logv);
+        }
+        return dP / (frequency * (1 + y)) * BASIS_POINT;
+    }
+
+    /**
+     * Computes price, accrued interest, durations, convexity and DV01 in a single
+     * discounting pass. Same results as the individual methods.
+     *
+     * @param yield annualized yield
+     * @param result holder to fill, reused by the caller
+     * @return result
+     */
+    public BondRiskMeasures riskMeasures(double yield, BondRiskMeasures result) {
+        double y = yield / frequency;
+        double logv = -Math.log1p(y);
+        double P0 = 0.0, PT = 0.0, PTT = 0.0;
+
+        for (int i = 0; i < amounts.length; i++) {
+            double t = times[i];
+            double pv = amounts[i] * Math.exp(t * logv);
+            P0 += pv;
+            PT += pv * t;
+            PTT += pv * t * (t + 1);
+        }
+
+        double macaulay = PT / (frequency * P0);
+        double convexity = PTT / (frequency*frequency * P0 * (1 + y)*(1 + y));
+        double dirty, dv01;
+
+        if (amounts.length == 1) {
+            double df = 1 + y * times[0];
+            dirty = amounts[0] / df;
+            dv01 = amounts[0] * times[0] / (frequency * df * df) * BASIS_POINT;
+        } else {
+            dirty = P0;
+            dv01 = PT / (frequency * (1 + y)) * BASIS_POINT;
+        }
+
+        result.set(yield, dirty, accruedInterest, macaulay, macaulay / (1 + y), convexity, dv01);
+        return result;
+    }
+
+    /**
+     * Yield given clean price, see {@link BondYieldSolver}.
+     *
+     * @param price clean price per 1.0 par value
+     * @return annualized yield
+     * @throws ArithmeticException if the solver does not converge
+     */
+    public double yield(double price) {
+        BondYieldSolver solver = new BondYieldSolver();
+        double yield = solver.solve(this, price);
+
+        if (!solver.isConverged()) {
+            throw new ArithmeticException("Failed to converge after " + Integer.toString(solver.getIterations()) + " iterations.");
+        }
+        return yield;
+    }
+}
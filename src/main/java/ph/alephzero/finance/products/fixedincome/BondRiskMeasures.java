@@ -0,0 +1,77 @@
+package ph.alephzero.finance.products.fixedincome;
+
+/**
+ * Price and risk measures of a bond at a given yield, per 1.0 face value, see
+ * {@link BondValuation#riskMeasures(java.util.Date, java.util.Date, double, double, int, ph.alephzero.finance.DayCountBasis, BondRiskMeasures)}.
+ *
+ * The holder is filled in place so one instance can be reused across positions; it is
+ * NOT THREAD-SAFE.
+ *
+ * @author jon
+ *
+ */
+public final class BondRiskMeasures {
+    private double yield;
+    private double dirtyPrice;
+    private double accruedInterest;
+    private double durationMacaulay;
+    private double durationModified;
+    private double convexity;
+    private double dv01;
+
+    void set(double yield, double dirtyPrice, double accruedInterest, double durationMacaulay, double durationModified, double convexity, double dv01) {
+        this.yield = yield;
+        this.dirtyPrice = dirtyPrice;
+        this.accruedInterest = accruedInterest;
+        this.durationMacaulay = durationMacaulay;
+        this.durationModified = durationModified;
+        this.convexity = convexity;
+        this.dv01 = dv01;
+    }
+
+    /**
+     * Annualized yield the measures were computed at.
+     *
+     * @return yield
+     */
+    public double getYield() {
+        return yield;
+    }
+
+    /**
+     *
+     * @return clean price
+     */
+    public double getPrice() {
+        return dirtyPrice - accruedInterest;
+    }
+
+    public double getDirtyPrice() {
+        return dirtyPrice;
+    }
+
+    public double getAccruedInterest() {
+        return accruedInterest;
+    }
+
+    public double getDurationMacaulay() {
+        return durationMacaulay;
+    }
+
+    public double getDurationModified() {
+        return durationModified;
+    }
+
+    public double getConvexity() {
+        return convexity;
+    }
+
+    /**
+     * Decrease in dirty price for a 1bp increase in yield.
+     *
+     * @return DV01
+     */
+    public double getDv01() {
+        return dv01;
+    }
+}
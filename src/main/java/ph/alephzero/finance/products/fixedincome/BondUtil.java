@@ -3,6 +3,7 @@ package ph.alephzero.finance.products.fixedincome;
 import java.util.Date;
 
 import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.cashflows.CashFlowComponent;
 import ph.alephzero.finance.cashflows.CashFlows;
 import ph.alephzero.finance.util.DateUtil;
 
@@ -370,15 +371,15 @@ public final class BondUtil {
 
             // [settlement date, first coup date] may not cover 1 whole coup period           
             interestDue = eir * prin * couponFraction;
-            coupon = cf.getCashFlow(start, "INTEREST") * couponFraction;
-            prin2 = cf.getCashFlow(start, "PRINCIPAL");
+            coupon = cf.getCashFlow(start, CashFlowComponent.INTEREST) * couponFraction;
+            prin2 = cf.getCashFlow(start, CashFlowComponent.PRINCIPAL);
             prin -= (coupon - interestDue + prin2);
             //System.out.println("eir=" + eir + ", coupon=" + coupon + ", prin=" + prin);
             
             for (int i = start + 1; i < cf.getCount(); i++) {
                 interestDue = eir * prin;
-                coupon = cf.getCashFlow(i, "INTEREST");
-                prin2 = cf.getCashFlow(i, "PRINCIPAL");
+                coupon = cf.getCashFlow(i, CashFlowComponent.INTEREST);
+                prin2 = cf.getCashFlow(i, CashFlowComponent.PRINCIPAL);
                 prin -= (coupon - interestDue + prin2);
                 //System.out.println("eir=" + eir + ", coupon=" + coupon + ", prin=" + prin);
             }
@@ -7,8 +7,8 @@ import ph.alephzero.finance.DayCountBasis;
 import ph.alephzero.finance.Message;
 import ph.alephzero.finance.cashflows.CashFlows;
 import ph.alephzero.finance.util.DateUtil;
-import ph.alephzero.finance.util.MathUtil;
-import ph.alephzero.finance.util.MathUtil.Function1;
+import ph.alephzero.finance.util.ParallelUtil;
+import ph.alephzero.finance.util.ParallelUtil.RangeFunction;
 
 import org.apache.commons.math3.analysis.UnivariateFunction;
 import org.apache.commons.math3.analysis.solvers.BaseUnivariateSolver;
@@ -196,6 +196,39 @@ public final class BondValuation {
         
         return prices;
     }
+    
+    /**
+     * Primitive array version of {@link #price(Date, Date, double, double, int, DayCountBasis, boolean)} for rJava.
+     * Dates are epoch days (R dates can be converted with {@link DateUtil#toEpochDays(double[])}) and
+     * basis are codes (see {@link DayCountBasis#fromCode(int)}). Large arrays are priced in parallel,
+     * see {@link ParallelUtil}.
+     * 
+     * @param settlement
+     * @param maturity
+     * @param couponRate
+     * @param yield
+     * @param frequency
+     * @param basis
+     * @param clean whether to return clean (true) or dirty (false) prices
+     * @param prices output
+     */
+    public static void price(final int[] settlement, final int[] maturity, final double[] couponRate, final double[] yield, final int[] frequency, final int[] basis, final boolean clean, final double[] prices) {
+        int len = settlement.length;
+        
+        if (maturity.length != len || couponRate.length != len || yield.length != len || frequency.length != len || basis.length != len || prices.length != len) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+        
+        ParallelUtil.forRange(len, new RangeFunction() {
+            @Override
+            public void apply(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    BondKernel kernel = new BondKernel(DateUtil.fromEpochDay(settlement[i]), DateUtil.fromEpochDay(maturity[i]), couponRate[i], frequency[i], DayCountBasis.fromCode(basis[i]));
+                    prices[i] = kernel.price(yield[i], clean);
+                }
+            }
+        });
+    }
 
     /**
      * Price based on SIFMA TIPS formulas
@@ -256,37 +289,7 @@ public final class BondValuation {
      * @return
      */
     private static double priceTF(Date settlement, Date maturity, double couponRate, double yield, int frequency, DayCountBasis basis, boolean clean) {
-        CashFlows cf = BondCashFlowGenerator.cashFlowsRPIBondTF(settlement, maturity, 1.0, couponRate, frequency, basis, true);
-        
-        double P0 = 0.0;
-        double accrint = 0.0;
-        double y = yield / frequency;
-        double t, cf0, df;
-                
-        if (cf.getCount() > 2) {
-            for (int i = 1; i < cf.getCount(); i++) {
-                t = cf.getCashFlow(i, "TIME_FACTOR");
-                cf0 = cf.getCashFlow(i, "PRINCIPAL") + cf.getCashFlow(i, "INTEREST");
-                df = Math.pow(1 + y, t);
-                
-                //System.out.println("TIME_FACTOR: " + t + ", CASH_FLOW: " + cf0 + ", DF: " + df);
-                P0 += cf0 / df;
-            }
-        } else {
-            t = cf.getCashFlow(1, "TIME_FACTOR");
-            cf0 = cf.getCashFlow(1, "PRINCIPAL") + cf.getCashFlow(1, "INTEREST");
-            df = 1 + y * t;
-            
-            P0 = cf0 / df;            
-        }
-        
-        if (clean) {
-            accrint = (couponRate / frequency) * (1 - cf.getCashFlow(1, "TIME_FACTOR"));            
-        }
-        
-        //System.out.println("ACCRINT: " + accrint);
-        
-        return P0 - accrint;
+        return new BondKernel(settlement, maturity, couponRate, frequency, basis).price(yield, clean);
     }
     
     /**
@@ -411,7 +414,11 @@ public final class BondValuation {
      * @return
      */
     public static double priceDiscountedBill(Date settlement, Date maturity, double yield, DayCountBasis basis) {
-        double f =  DateUtil.diffDays(settlement, maturity, basis) * 1.0 / DateUtil.daysOfYear(basis, maturity);
+        return priceDiscountedBill(DateUtil.toEpochDay(settlement), DateUtil.toEpochDay(maturity), yield, basis);
+    }
+    
+    private static double priceDiscountedBill(int settlement, int maturity, double yield, DayCountBasis basis) {
+        double f = DateUtil.yearFraction(settlement, maturity, basis);
         return 1.0 / (1.0 + yield * f);
     }
     
@@ -439,6 +446,33 @@ public final class BondValuation {
         return prices;
     }
     
+    /**
+     * Primitive array version of {@link #priceDiscountedBill(Date, Date, double, DayCountBasis)} for rJava.
+     * Dates are epoch days and basis are codes, see {@link #price(int[], int[], double[], double[], int[], int[], boolean, double[])}.
+     * 
+     * @param settlement
+     * @param maturity
+     * @param yield
+     * @param basis
+     * @param prices output
+     */
+    public static void priceDiscountedBill(final int[] settlement, final int[] maturity, final double[] yield, final int[] basis, final double[] prices) {
+        int len = settlement.length;
+        
+        if (maturity.length != len || yield.length != len || basis.length != len || prices.length != len) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+        
+        ParallelUtil.forRange(len, new RangeFunction() {
+            @Override
+            public void apply(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    prices[i] = priceDiscountedBill(settlement[i], maturity[i], yield[i], DayCountBasis.fromCode(basis[i]));
+                }
+            }
+        });
+    }
+    
     /**
      * Returns price for discounted bills (e.g. T-Bills) plus tax due. The formula for discounted price is
      * P = 1 / (1 + yield * f) where f is the year fraction, while the formula for tax due is
@@ -471,7 +505,7 @@ public final class BondValuation {
      * @return
      */
     public static double priceDiscountedBill2(Date settlement, Date maturity, double yield, DayCountBasis basis) {
-        double f = DateUtil.diffDays(settlement, maturity, basis) * 1.0 / DateUtil.daysOfYear(basis, maturity);
+        double f = DateUtil.yearFraction(settlement, maturity, basis);
         return 1 - yield * f;
     }
     
@@ -486,16 +520,27 @@ public final class BondValuation {
      * @param frequency
      * @param basis
      * @return
+     * @throws ArithmeticException if the yield solver does not converge
      */
-    public static double yield(final Date settlement, final Date maturity, final double couponRate, final double price, final int frequency, final DayCountBasis basis) {
-        Function1 f = new Function1() {            
-            @Override
-            public double f(double x) {              
-                return price - BondValuation.price(settlement, maturity, couponRate, x, frequency, basis);
-            }
-        };
-
-        return MathUtil.rootNewton(f, 0.10);        
+    public static double yield(Date settlement, Date maturity, double couponRate, double price, int frequency, DayCountBasis basis) {
+        return new BondKernel(settlement, maturity, couponRate, frequency, basis).yield(price);
+    }
+    
+    /**
+     * RPI yield given clean price, solved with the given solver. Does not throw if the solver
+     * fails to converge, check {@link BondYieldSolver#isConverged()} instead.
+     * 
+     * @param settlement
+     * @param maturity
+     * @param couponRate
+     * @param price <b>clean price per 1.0 par value</b>
+     * @param frequency
+     * @param basis
+     * @param solver solver, also holds the status of the solve
+     * @return yield, or NaN if the solver did not converge
+     */
+    public static double yield(Date settlement, Date maturity, double couponRate, double price, int frequency, DayCountBasis basis, BondYieldSolver solver) {
+        return solver.solve(new BondKernel(settlement, maturity, couponRate, frequency, basis), price);
     }
     
     /**
@@ -525,6 +570,38 @@ public final class BondValuation {
         return yields;
     }
     
+    /**
+     * Primitive array version of {@link #yield(Date, Date, double, double, int, DayCountBasis)} for rJava.
+     * Dates are epoch days and basis are codes, see {@link #price(int[], int[], double[], double[], int[], int[], boolean, double[])}.
+     * Yields that fail to converge are NaN, see {@link BondYieldSolver}.
+     * 
+     * @param settlement
+     * @param maturity
+     * @param couponRate
+     * @param price clean prices per 1.0 par value
+     * @param frequency
+     * @param basis
+     * @param yields output
+     */
+    public static void yield(final int[] settlement, final int[] maturity, final double[] couponRate, final double[] price, final int[] frequency, final int[] basis, final double[] yields) {
+        int len = settlement.length;
+        
+        if (maturity.length != len || couponRate.length != len || price.length != len || frequency.length != len || basis.length != len || yields.length != len) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+        
+        ParallelUtil.forRange(len, new RangeFunction() {
+            @Override
+            public void apply(int from, int to) {
+                BondYieldSolver solver = new BondYieldSolver();
+                for (int i = from; i < to; i++) {
+                    BondKernel kernel = new BondKernel(DateUtil.fromEpochDay(settlement[i]), DateUtil.fromEpochDay(maturity[i]), couponRate[i], frequency[i], DayCountBasis.fromCode(basis[i]));
+                    yields[i] = solver.solve(kernel, price[i]);
+                }
+            }
+        });
+    }
+    
     /**
      * Returns yield for discounted bills (e.g. T-Bills) according to the formula  
      * yield = (1 - P) / (f*P) = (1/f) (1/P - 1), where f is the year fraction.
@@ -538,7 +615,11 @@ public final class BondValuation {
      * @return
      */
     public static double yieldDiscountedBill(Date settlement, Date maturity, double price, DayCountBasis basis) {
-        double f = DateUtil.diffDays(settlement, maturity, basis) * 1.0 / DateUtil.daysOfYear(basis, maturity);
+        return yieldDiscountedBill(DateUtil.toEpochDay(settlement), DateUtil.toEpochDay(maturity), price, basis);
+    }
+    
+    private static double yieldDiscountedBill(int settlement, int maturity, double price, DayCountBasis basis) {
+        double f = DateUtil.yearFraction(settlement, maturity, basis);
         return (1.0 - price) / (price * f);
     }
     
@@ -567,6 +648,33 @@ public final class BondValuation {
         return yields;
     }
     
+    /**
+     * Primitive array version of {@link #yieldDiscountedBill(Date, Date, double, DayCountBasis)} for rJava.
+     * Dates are epoch days and basis are codes, see {@link #price(int[], int[], double[], double[], int[], int[], boolean, double[])}.
+     * 
+     * @param settlement
+     * @param maturity
+     * @param price
+     * @param basis
+     * @param yields output
+     */
+    public static void yieldDiscountedBill(final int[] settlement, final int[] maturity, final double[] price, final int[] basis, final double[] yields) {
+        int len = settlement.length;
+        
+        if (maturity.length != len || price.length != len || basis.length != len || yields.length != len) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+        
+        ParallelUtil.forRange(len, new RangeFunction() {
+            @Override
+            public void apply(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    yields[i] = yieldDiscountedBill(settlement[i], maturity[i], price[i], DayCountBasis.fromCode(basis[i]));
+                }
+            }
+        });
+    }
+    
     /**
      * EXCEL: TBILLYIELD()
      * 
@@ -582,7 +690,7 @@ public final class BondValuation {
      * @return
      */
     public static double yieldDiscountedBill2(Date settlement, Date maturity, double price, DayCountBasis basis) {
-        double f = DateUtil.diffDays(settlement, maturity, basis) * 1.0 / DateUtil.daysOfYear(basis, maturity);
+        double f = DateUtil.yearFraction(settlement, maturity, basis);
         return (1 - price) / f;
     }
     
@@ -602,23 +710,7 @@ public final class BondValuation {
      * @return
      */
     public static double durationMacaulay(Date settlement, Date maturity, double couponRate, double yield, int frequency, DayCountBasis basis) {
-        CashFlows cf = BondCashFlowGenerator.cashFlowsRPIBondTF(settlement, maturity, 1.0, couponRate, frequency, basis, true);
-        
-        double duration = 0.0;
-        double P0 = 0.0; //price(settlement, maturity, couponRate, yield, frequency, basis, true);
-        double y = yield / frequency;
-                
-        for (int i = 1; i < cf.getCount(); i++) {
-            double t = cf.getCashFlow(i, "TIME_FACTOR");
-            double cf0 = cf.getCashFlow(i, "PRINCIPAL") + cf.getCashFlow(i, "INTEREST");
-            double df = Math.pow(1 + y, t);
-            
-            duration += cf0 * t / df;
-            P0 += cf0 / df;
-        }
-        
-        //System.out.println("PRICE: " + P0);
-        return duration / (frequency * P0);                    
+        return new BondKernel(settlement, maturity, couponRate, frequency, basis).durationMacaulay(yield);
     }
     
     /**
@@ -652,22 +744,28 @@ public final class BondValuation {
      * @return
      */
     public static double convexity(Date settlement, Date maturity, double couponRate, double yield, int frequency, DayCountBasis basis) {
-        CashFlows cf = BondCashFlowGenerator.cashFlowsRPIBondTF(settlement, maturity, 1.0, couponRate, frequency, basis, true);
-        
-        double convexity = 0.0;
-        double P0 = 0.0;
-        double y = yield / frequency;
-                
-        for (int i = 1; i < cf.getCount(); i++) {
-            double t = cf.getCashFlow(i, "TIME_FACTOR");
-            double cf0 = cf.getCashFlow(i, "PRINCIPAL") + cf.getCashFlow(i, "INTEREST");
-            double df = Math.pow(1 + y, t);
-                        
-            convexity += cf0 * t * (t + 1) / df;
-            P0 += cf0 / df;
+        return new BondKernel(settlement, maturity, couponRate, frequency, basis).convexity(yield);
+    }
+    
+    /**
+     * Returns clean and dirty price, accrued interest, Macaulay and modified duration, convexity
+     * and DV01 for RPI bond from a single discounting pass.
+     * 
+     * @param settlement
+     * @param maturity
+     * @param couponRate
+     * @param yield
+     * @param frequency
+     * @param basis
+     * @param result holder to fill, may be reused across bonds; if null a new one is created
+     * @return result
+     */
+    public static BondRiskMeasures riskMeasures(Date settlement, Date maturity, double couponRate, double yield, int frequency, DayCountBasis basis, BondRiskMeasures result) {
+        if (result == null) {
+            result = new BondRiskMeasures();
         }
         
-        return convexity / (frequency*frequency * P0 * (1 + y)*(1 + y));
+        return new BondKernel(settlement, maturity, couponRate, frequency, basis).riskMeasures(yield, result);
     }
     
     /**
@@ -0,0 +1,141 @@
+package ph.alephzero.finance.products.fixedincome;
+
+/**
+ * Yield-from-price solver for RPI bonds on a {@link BondKernel}. Newton's method is run with
+ * the analytic price derivative dP/dy, computed in the same pass over the cash flows as the
+ * price, starting from the closed-form approximate yield
+ * <code>(C + (1 - P)/n) / ((1 + P)/2)</code> (annual coupon C, clean price P, n years to
+ * maturity). With a single cash flow left the yield is solved exactly from the simple
+ * interest discount.
+ *
+ * If Newton's method does not converge within the max iterations, {@link #solve} returns NaN
+ * and {@link #isConverged()} is false; {@link BondKernel#yield(double)} throws instead.
+ * Keeps the status of the last solve, so use one instance per thread.
+ *
+ * @author jon
+ *
+ */
+public class BondYieldSolver {
+    public static final double DEFAULT_ACCURACY = 1e-10;
+    public static final int DEFAULT_MAX_ITERATES = 20;
+
+    private double accuracy;
+    private int maxIterates;
+
+    // state of the last solve()
+    private int iterations;
+    private boolean converged;
+    private final double[] sums = new double[2];
+
+    public BondYieldSolver() {
+        this(DEFAULT_ACCURACY, DEFAULT_MAX_ITERATES);
+    }
+
+    /**
+     *
+     * @param accuracy absolute accuracy of the yield
+     * @param maxIterates max Newton iterations
+     */
+    public BondYieldSolver(double accuracy, int maxIterates) {
+        this.accuracy = accuracy;
+        this.maxIterates = maxIterates;
+    }
+
+    /**
+     * Solves for the yield given clean price.
+     *
+     * @param kernel
+     * @param price clean price per 1.0 par value
+     * @return annualized yield, or NaN if no root was found (see {@link #isConverged()})
+     */
+    public double solve(BondKernel kernel, double price) {
+        return solve(kernel, price, true);
+    }
+
+    /**
+     * Solves for the yield given clean or dirty price.
+     *
+     * @param kernel
+     * @param price price per 1.0 par value
+     * @param clean whether price is clean (true) or dirty (false)
+     * @return annualized yield, or NaN if no root was found (see {@link #isConverged()})
+     */
+    public double solve(BondKernel kernel, double price, boolean clean) {
+        int frequency = kernel.getFrequency();
+        int n = kernel.getCount();
+        double target = (clean) ? price + kernel.accruedInterest() : price;
+
+        iterations = 0;
+        converged = false;
+
+        if (n == 1) {
+            // target = A / (1 + t * y/f)
+            double yield = (kernel.getAmount(0) / target - 1) * frequency / kernel.getTimeFactor(0);
+            converged = !Double.isNaN(yield) && !Double.isInfinite(yield);
+            return (converged) ? yield : Double.NaN;
+        }
+
+        double x0, x1 = seed(kernel, target - kernel.accruedInterest());
+
+        while (iterations < maxIterates) {
+            x0 = x1;
+            iterations++;
+
+            // P(y) = sum A_i v^t_i, dP/dy = -sum t_i A_i v^t_i / (f (1 + y/f))
+            kernel.discountedSums(x0, sums);
+            double P0 = sums[0];
+            double dP = -sums[1] / (frequency * (1 + x0 / frequency));
+
+            if (dP == 0.0 || Double.isNaN(P0) || Double.isInfinite(P0) || Double.isInfinite(dP)) break;
+
+            x1 = x0 - (P0 - target) / dP;
+            if (Double.isNaN(x1)) break;
+            if (x1 <= -frequency) {
+                // stay above the singularity at 1 + y/f = 0
+                x1 = (x0 - frequency) / 2;
+            }
+
+            if (Math.abs(x1 - x0) <= accuracy) {
+                converged = true;
+                return x1;
+            }
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * Closed-form approximate yield used as the starting point.
+     *
+     * @param kernel
+     * @param price clean price per 1.0 par value
+     * @return approximate annualized yield
+     */
+    public static double seed(BondKernel kernel, double price) {
+        double years = kernel.getTimeFactor(kernel.getCount() - 1) / kernel.getFrequency();
+        double yield = (kernel.getCouponRate() + (1.0 - price) / years) / ((1.0 + price) / 2);
+
+        if (Double.isNaN(yield) || Double.isInfinite(yield) || yield <= -kernel.getFrequency()) {
+            return kernel.getCouponRate();
+        }
+        return yield;
+    }
+
+    /**
+     * Number of Newton iterations in the last solve.
+     *
+     * @return Newton iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns true if the last solve found a root.
+     *
+     * @return true if converged
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+}
@@ -0,0 +1,129 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Full coupon schedule of a security as epoch days (see {@link DateUtil#toEpochDay(Date)}): 
+ * the unadjusted coupon dates, generated backwards from maturity (or the last coupon) 
+ * down to the first coupon or a horizon, and the payment dates adjusted for business days.
+ * 
+ * The schedule for a settlement date is the slice of dates strictly after it, found by 
+ * binary search on the unadjusted dates. Built by {@link CouponScheduleService}.
+ * 
+ * Immutable, thus thread-safe.
+ * 
+ * @author jon
+ *
+ */
+public final class CouponSchedule {
+    private final int[] dates;              // unadjusted, ascending
+    private final int[] paymentDates;       // adjusted, same as dates if not adjusted
+    private final int horizon;              // valid for settlement on or after this day
+    
+    CouponSchedule(int[] dates, int[] paymentDates, int horizon) {
+        this.dates = dates;
+        this.paymentDates = paymentDates;
+        this.horizon = horizon;
+    }
+    
+    /**
+     * Number of dates in the full schedule.
+     * 
+     * @return number of dates
+     */
+    public int size() {
+        return dates.length;
+    }
+    
+    /**
+     * Returns the i-th unadjusted coupon date.
+     * 
+     * @param i
+     * @return epoch day
+     */
+    public int getDate(int i) {
+        return dates[i];
+    }
+    
+    /**
+     * Returns the i-th payment date (business day adjusted).
+     * 
+     * @param i
+     * @return epoch day
+     */
+    public int getPaymentDate(int i) {
+        return paymentDates[i];
+    }
+    
+    /**
+     * Returns true if the schedule has all coupon dates after the settlement date.
+     * 
+     * @param settlement epoch day
+     * @return true if the schedule can be sliced for the settlement date
+     */
+    public boolean covers(int settlement) {
+        return settlement >= horizon;
+    }
+    
+    /**
+     * Returns the index of the first coupon date strictly after the settlement date, 
+     * or {@link #size()} if there is none.
+     * 
+     * @param settlement epoch day
+     * @return index of first date after settlement
+     */
+    public int indexAfter(int settlement) {
+        int lo = 0, hi = dates.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dates[mid] <= settlement) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+    
+    /**
+     * Returns the unadjusted coupon dates after the settlement date.
+     * 
+     * @param settlement
+     * @return coupon dates after settlement
+     */
+    public Date[] datesAfter(Date settlement) {
+        return toDates(dates, indexAfter(DateUtil.toEpochDay(settlement)));
+    }
+    
+    /**
+     * Returns the payment dates of the coupons after the settlement date (coupons are 
+     * selected by their unadjusted dates).
+     * 
+     * @param settlement
+     * @return payment dates after settlement
+     */
+    public Date[] paymentDatesAfter(Date settlement) {
+        return toDates(paymentDates, indexAfter(DateUtil.toEpochDay(settlement)));
+    }
+    
+    /**
+     * Returns a copy of the unadjusted coupon dates after the settlement date.
+     * 
+     * @param settlement epoch day
+     * @return epoch days
+     */
+    public int[] epochDaysAfter(int settlement) {
+        return Arrays.copyOfRange(dates, indexAfter(settlement), dates.length);
+    }
+    
+    private static Date[] toDates(int[] days, int from) {
+        Date[] out = new Date[days.length - from];
+        for (int i = from; i < days.length; i++) {
+            out[i - from] = DateUtil.fromEpochDay(days[i]);
+        }
+        return out;
+    }
+}
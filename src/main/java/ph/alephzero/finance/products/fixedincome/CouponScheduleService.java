@@ -0,0 +1,249 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.context.BusinessDayConvention;
+import ph.alephzero.finance.context.Holidays;
+import ph.alephzero.finance.util.DateUtil;
+
+/**
+ * Builds and caches full coupon schedules per security terms (maturity, first/last coupon, 
+ * frequency, basis, calendar and convention), so positions in the same issue and repricing
+ * across settlement dates share one schedule, sliced by binary search 
+ * (see {@link CouponSchedule#indexAfter(int)}).
+ * 
+ * Without a first coupon date, schedules go back {@link #DEFAULT_HORIZON_YEARS} years before 
+ * maturity; a settlement date before that rebuilds the schedule further back.
+ * 
+ * Calendars are compared by value (see {@link Holidays#equals(Object)}). The cache is split
+ * into {@link #SEGMENTS} segments by key hash, each locked separately and evicting its least
+ * recently used schedule when full, so a full cache never drops the whole book at once.
+ * 
+ * Thread-safe.
+ * 
+ * @author jon
+ *
+ */
+public class CouponScheduleService {
+    public static final int DEFAULT_HORIZON_YEARS = 50;
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+    
+    /**
+     * Number of cache segments, a power of 2.
+     */
+    public static final int SEGMENTS = 16;
+    
+    private static final CouponScheduleService DEFAULT = new CouponScheduleService();
+    
+    private final Segment[] segments = new Segment[SEGMENTS];
+    
+    /**
+     * Least recently used cache of one segment, guarded by itself.
+     */
+    private static final class Segment extends LinkedHashMap<Key, CouponSchedule> {
+        private static final long serialVersionUID = 1L;
+        private final int maxEntries;
+        
+        Segment(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CouponSchedule> eldest) {
+            return size() > maxEntries;
+        }
+    }
+    
+    public CouponScheduleService() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+    
+    /**
+     * 
+     * @param maxEntries max number of cached schedules, spread evenly over the segments
+     */
+    public CouponScheduleService(int maxEntries) {
+        int perSegment = Math.max(1, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+    
+    /**
+     * Shared instance, used by {@link BondCashFlowGenerator}.
+     * 
+     * @return shared schedule service
+     */
+    public static CouponScheduleService getDefault() {
+        return DEFAULT;
+    }
+    
+    /**
+     * Returns the unadjusted schedule, see 
+     * {@link #get(Date, Date, Date, Date, int, DayCountBasis, Holidays, BusinessDayConvention)}.
+     */
+    public CouponSchedule get(Date settlement, Date maturity, Date firstCoupon, Date lastCoupon, int frequency, DayCountBasis basis) {
+        return get(settlement, maturity, firstCoupon, lastCoupon, frequency, basis, null, BusinessDayConvention.NONE);
+    }
+    
+    /**
+     * Returns the full schedule for the security terms, covering the settlement date.
+     * 
+     * @param settlement settlement date, the schedule covers coupons after it
+     * @param maturity
+     * @param firstCoupon first coupon date, may be null
+     * @param lastCoupon last coupon date, may be null
+     * @param frequency number of coupon payments per year
+     * @param basis
+     * @param calendar holidays for payment dates, may be null (no adjustment)
+     * @param conv business day convention for payment dates
+     * @return coupon schedule
+     */
+    public CouponSchedule get(Date settlement, Date maturity, Date firstCoupon, Date lastCoupon, int frequency, 
+            DayCountBasis basis, Holidays calendar, BusinessDayConvention conv) {
+        if (12 % frequency != 0) {
+            throw new UnsupportedOperationException("Frequency of " + Integer.toString(frequency) + " not supported.");        
+        }
+        
+        int settle = DateUtil.toEpochDay(settlement);
+        Key key = new Key(DateUtil.toEpochDay(maturity), 
+                (firstCoupon == null) ? Integer.MIN_VALUE : DateUtil.toEpochDay(firstCoupon),
+                (lastCoupon == null) ? Integer.MIN_VALUE : DateUtil.toEpochDay(lastCoupon),
+                frequency, basis, calendar, (calendar == null) ? BusinessDayConvention.NONE : conv);
+        
+        Segment segment = segment(key);
+        CouponSchedule schedule;
+        synchronized (segment) {
+            schedule = segment.get(key);
+        }
+        
+        if (schedule == null || !schedule.covers(settle)) {
+            // built outside the lock, racing threads build the same schedule
+            schedule = build(key, settle);
+            synchronized (segment) {
+                segment.put(key, schedule);
+            }
+        }
+        
+        return schedule;
+    }
+    
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+    
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+    
+    private Segment segment(Key key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+    
+    private static CouponSchedule build(Key key, int settlement) {
+        int months = 12 / key.frequency;
+        int horizon = Math.min(settlement, DateUtil.addMonths(key.maturity, -12 * DEFAULT_HORIZON_YEARS));
+        boolean hasFirst = key.firstCoupon != Integer.MIN_VALUE;
+        
+        int[] dates = new int[16];
+        int n = 0;
+        int prev;
+        
+        // backwards from maturity, or the last coupon
+        dates[n++] = key.maturity;
+        if (key.lastCoupon != Integer.MIN_VALUE) {
+            dates[n++] = key.lastCoupon;
+            prev = DateUtil.addMonths(key.lastCoupon, -months);
+        } else {
+            prev = DateUtil.addMonths(key.maturity, -months);
+        }
+        
+        while (prev > horizon || hasFirst) {
+            if (n + 1 >= dates.length) dates = Arrays.copyOf(dates, dates.length * 2);
+            
+            if (hasFirst && prev <= key.firstCoupon) {
+                // prev < firstCoupon is an odd (short or long) first coupon period
+                if (key.firstCoupon < dates[n - 1]) {
+                    dates[n++] = key.firstCoupon;     // e.g. first coupon is maturity
+                }
+                horizon = Integer.MIN_VALUE;
+                break;
+            }
+            
+            dates[n++] = prev;
+            prev = DateUtil.addMonths(prev, -months);
+        }
+        
+        // ascending
+        dates = Arrays.copyOf(dates, n);
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int tmp = dates[i];
+            dates[i] = dates[j];
+            dates[j] = tmp;
+        }
+        
+        int[] paymentDates = dates;
+        if (key.calendar != null && key.conv != BusinessDayConvention.NONE) {
+            paymentDates = new int[n];
+            for (int i = 0; i < n; i++) {
+                paymentDates[i] = key.calendar.adjustDate(dates[i], key.conv);
+            }
+        }
+        
+        return new CouponSchedule(dates, paymentDates, horizon);
+    }
+    
+    private static final class Key {
+        final int maturity, firstCoupon, lastCoupon, frequency;
+        final DayCountBasis basis;
+        final Holidays calendar;
+        final BusinessDayConvention conv;
+        
+        Key(int maturity, int firstCoupon, int lastCoupon, int frequency, DayCountBasis basis, Holidays calendar, BusinessDayConvention conv) {
+            this.maturity = maturity;
+            this.firstCoupon = firstCoupon;
+            this.lastCoupon = lastCoupon;
+            this.frequency = frequency;
+            this.basis = basis;
+            this.calendar = calendar;
+            this.conv = conv;
+        }
+        
+        @Override
+        public int hashCode() {
+            int h = maturity;
+            h = 31 * h + firstCoupon;
+            h = 31 * h + lastCoupon;
+            h = 31 * h + frequency;
+            h = 31 * h + basis.hashCode();
+            h = 31 * h + ((calendar == null) ? 0 : calendar.hashCode());
+            h = 31 * h + conv.hashCode();
+            return h;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key k = (Key) obj;
+            return maturity == k.maturity && firstCoupon == k.firstCoupon && lastCoupon == k.lastCoupon &&
+                    frequency == k.frequency && basis == k.basis && conv == k.conv &&
+                    ((calendar == null) ? k.calendar == null : calendar.equals(k.calendar));
+        }
+    }
+}
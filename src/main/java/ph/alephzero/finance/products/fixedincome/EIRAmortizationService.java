@@ -0,0 +1,145 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import java.util.Date;
+
+import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.Message;
+import ph.alephzero.finance.util.DateUtil;
+import ph.alephzero.finance.util.ParallelUtil;
+import ph.alephzero.finance.util.ParallelUtil.RangeFunction;
+
+/**
+ * Premium/discount amortization of a book of RPI bond positions using the effective interest
+ * rate method, e.g. for month-end close of held-to-maturity positions. Positions are run in
+ * parallel (see {@link ParallelUtil}); the effective interest rate of each position is solved
+ * with a {@link BondEIRSolver} per thread, and the amortization table is streamed row by row
+ * to an {@link AmortizationSink} instead of being built as {@link ph.alephzero.finance.cashflows.CashFlows}.
+ *
+ * Rows are the same as the dates and components of
+ * {@link BondCashFlowGenerator#amortEffectiveInterestRateRPIBond(Date, Date, double, double, double, int, DayCountBasis)},
+ * with the same sign conventions: the settlement row has the purchase price as negative
+ * PRINCIPAL and the premium (debit) or discount (credit) booked, the remaining rows the
+ * PRINCIPAL, COUPON, EFFECTIVE_INTEREST and the PREMIUM/DISCOUNT amortized.
+ *
+ * Thread-safe.
+ *
+ * @author jon
+ *
+ */
+public class EIRAmortizationService {
+    private final double accuracy;
+    private final int maxIterates;
+
+    /**
+     * Receives the amortization tables. Called concurrently from worker threads for different
+     * positions, so implementations must be thread-safe; the rows of one position are passed
+     * in date order from a single thread, right after its {@link #begin(int, double)}.
+     */
+    public static interface AmortizationSink {
+        /**
+         * Called before the rows of a position.
+         *
+         * @param position index of the position
+         * @param effectiveInterestRate annualized effective interest rate, NaN if it could not
+         *    be solved (no rows follow)
+         */
+        void begin(int position, double effectiveInterestRate);
+
+        /**
+         * One row (date) of the amortization table.
+         *
+         * @param position index of the position
+         * @param epochDay date of the row
+         * @param principal PRINCIPAL component
+         * @param coupon COUPON component
+         * @param effectiveInterest EFFECTIVE_INTEREST component
+         * @param premium PREMIUM component
+         * @param discount DISCOUNT component
+         */
+        void row(int position, int epochDay, double principal, double coupon, double effectiveInterest, double premium, double discount);
+    }
+
+    public EIRAmortizationService() {
+        this(BondEIRSolver.DEFAULT_ACCURACY, BondEIRSolver.DEFAULT_MAX_ITERATES);
+    }
+
+    /**
+     *
+     * @param accuracy absolute accuracy of the effective interest rates
+     * @param maxIterates max solver iterations per position
+     */
+    public EIRAmortizationService(double accuracy, int maxIterates) {
+        this.accuracy = accuracy;
+        this.maxIterates = maxIterates;
+    }
+
+    /**
+     * Amortizes all positions. Dates are epoch days and basis are codes, see
+     * {@link BondValuation#price(int[], int[], double[], double[], int[], int[], boolean, double[])}.
+     * Returns when all positions have been passed to the sink.
+     *
+     * @param settlement
+     * @param maturity
+     * @param principal face value
+     * @param couponRate
+     * @param price purchase price (<b>not</b> price per 1.00 par)
+     * @param frequency
+     * @param basis
+     * @param sink
+     */
+    public void amortize(final int[] settlement, final int[] maturity, final double[] principal, final double[] couponRate, final double[] price, final int[] frequency, final int[] basis, final AmortizationSink sink) {
+        int len = settlement.length;
+
+        if (maturity.length != len || principal.length != len || couponRate.length != len || price.length != len || frequency.length != len || basis.length != len) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+
+        ParallelUtil.forRange(len, new RangeFunction() {
+            @Override
+            public void apply(int from, int to) {
+                BondEIRSolver solver = new BondEIRSolver(accuracy, maxIterates);
+                for (int i = from; i < to; i++) {
+                    amortize(i, settlement[i], maturity[i], principal[i], couponRate[i], price[i], frequency[i], DayCountBasis.fromCode(basis[i]), solver, sink);
+                }
+            }
+        });
+    }
+
+    private static void amortize(int position, int settlement, int maturity, double principal, double couponRate, double price, int frequency, DayCountBasis basis, BondEIRSolver solver, AmortizationSink sink) {
+        Date settlementDate = DateUtil.fromEpochDay(settlement);
+        Date maturityDate = DateUtil.fromEpochDay(maturity);
+        BondKernel kernel = new BondKernel(settlementDate, maturityDate, couponRate, frequency, basis);
+        double couponFraction = BondEIRSolver.couponFraction(settlementDate, maturityDate, frequency, basis);
+        double rate = solver.solve(kernel, couponFraction, price / principal);
+
+        sink.begin(position, rate);
+        if (Double.isNaN(rate)) return;
+
+        double eir = rate / frequency;
+        double coupamt = principal * couponRate * 1.0 / frequency;
+        double premamt = (price > principal) ? price - principal : 0.0;
+        double discamt = (price > principal) ? 0.0 : principal - price;
+        double netvalue = price;
+        int n = kernel.getCount();
+
+        // accounting entries on settlement
+        sink.row(position, settlement, -price, 0.0, 0.0, premamt, -discamt);
+
+        for (int i = 0; i < n; i++) {
+            double prinamt = (i == n - 1) ? principal : 0.0;
+            double intramt = netvalue * eir;
+            double premium = 0.0, discount = 0.0;
+
+            if (premamt > 0.0) {
+                premium = - (coupamt - intramt);    // credit premium
+                premamt -= coupamt - intramt;
+            } else if (discamt > 0.0) {
+                discount = intramt - coupamt;       // debit discount
+                discamt -= intramt - coupamt;
+            }
+            netvalue = principal + premamt - discamt;
+
+            sink.row(position, kernel.getEpochDay(i), prinamt, coupamt, intramt, premium, discount);
+        }
+    }
+}
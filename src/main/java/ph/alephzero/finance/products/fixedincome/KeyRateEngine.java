@@ -0,0 +1,150 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import java.util.Arrays;
+
+import ph.alephzero.finance.Message;
+import ph.alephzero.finance.market.BasicYieldTermStructure;
+import ph.alephzero.finance.market.DiscountFactorCache;
+import ph.alephzero.finance.util.ParallelUtil;
+import ph.alephzero.finance.util.ParallelUtil.RangeFunction;
+
+/**
+ * Key-rate (bucketed) DV01 and durations of bonds against the nodes (pillars) of a
+ * {@link BasicYieldTermStructure}, priced as in {@link BondCurveValuation}.
+ *
+ * A pillar bump is a bump of the pillar's continuously compounded zero rate. The curve
+ * interpolates ln DF linearly in the node ln DF (see
+ * {@link BasicYieldTermStructure#getNodeWeights(int, int[], double[])}), so the price
+ * derivative for every pillar comes from a single pass over the cash flows: each cash flow
+ * contributes to at most two pillars. The key-rate DV01s add up to the DV01 of a parallel
+ * shift of the zero curve.
+ *
+ * Keeps scratch arrays, so an instance must not be shared between threads; see
+ * {@link #keyRateDv01(BondKernel[], double[], DiscountFactorCache, double[][])} for
+ * portfolios.
+ *
+ * @author jon
+ *
+ */
+public class KeyRateEngine {
+    private static final double BASIS_POINT = 0.0001;
+    private static final double DAYS_PER_YEAR = 365.0;
+
+    private final DiscountFactorCache discount;
+    private final BasicYieldTermStructure curve;
+    private final int[] nodes = new int[2];
+    private final double[] weights = new double[2];
+
+    public KeyRateEngine(BasicYieldTermStructure curve) {
+        this(new DiscountFactorCache(curve));
+    }
+
+    /**
+     *
+     * @param discount discount factors of a {@link BasicYieldTermStructure}, may be shared
+     */
+    public KeyRateEngine(DiscountFactorCache discount) {
+        if (!(discount.getCurve() instanceof BasicYieldTermStructure)) {
+            throw new UnsupportedOperationException("Key rates are only supported for BasicYieldTermStructure curves.");
+        }
+
+        this.discount = discount;
+        this.curve = (BasicYieldTermStructure) discount.getCurve();
+    }
+
+    /**
+     * Number of pillars, i.e. curve nodes.
+     *
+     * @return number of pillars
+     */
+    public int getPillarCount() {
+        return curve.getNodeCount();
+    }
+
+    /**
+     * Key-rate DV01: the decrease in dirty price for a 1bp increase of each pillar's zero rate.
+     *
+     * @param kernel
+     * @param zSpread Z-spread the bond is priced at
+     * @param dv01 output, one per pillar
+     * @return dirty price
+     */
+    public double dv01(BondKernel kernel, double zSpread, double[] dv01) {
+        if (dv01.length != curve.getNodeCount()) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+
+        int settlement = kernel.getSettlementEpochDay();
+        int[] days = kernel.epochDays();
+        double[] amounts = kernel.amounts();
+        double df0 = discount.getDiscount(settlement);
+        double price = 0.0;
+
+        Arrays.fill(dv01, 0.0);
+
+        // -dP/dz(k) = sum pv(i) * t(k) * (weight(k, date i) - weight(k, settlement))
+        for (int i = 0; i < days.length; i++) {
+            double t = (days[i] - settlement) / DAYS_PER_YEAR;
+            double pv = amounts[i] * discount.getDiscount(days[i]) / df0 * Math.exp(-zSpread * t);
+            price += pv;
+
+            curve.getNodeWeights(days[i], nodes, weights);
+            dv01[nodes[0]] += pv * weights[0] * curve.getNodeTime(nodes[0]);
+            dv01[nodes[1]] += pv * weights[1] * curve.getNodeTime(nodes[1]);
+        }
+
+        curve.getNodeWeights(settlement, nodes, weights);
+        dv01[nodes[0]] -= price * weights[0] * curve.getNodeTime(nodes[0]);
+        dv01[nodes[1]] -= price * weights[1] * curve.getNodeTime(nodes[1]);
+
+        for (int k = 0; k < dv01.length; k++) {
+            dv01[k] *= BASIS_POINT;
+        }
+
+        return price;
+    }
+
+    /**
+     * Key-rate durations: key-rate DV01 per unit dirty price, per unit rate change.
+     *
+     * @param kernel
+     * @param zSpread Z-spread the bond is priced at
+     * @param durations output, one per pillar
+     * @return dirty price
+     */
+    public double durations(BondKernel kernel, double zSpread, double[] durations) {
+        double price = dv01(kernel, zSpread, durations);
+
+        for (int k = 0; k < durations.length; k++) {
+            durations[k] /= price * BASIS_POINT;
+        }
+
+        return price;
+    }
+
+    /**
+     * Key-rate DV01 of a portfolio, in parallel for large portfolios (see {@link ParallelUtil}).
+     *
+     * @param kernels
+     * @param zSpreads Z-spread of each bond
+     * @param discount discount factors of a {@link BasicYieldTermStructure}
+     * @param dv01 output, per bond one array with one element per pillar
+     */
+    public static void keyRateDv01(final BondKernel[] kernels, final double[] zSpreads, final DiscountFactorCache discount, final double[][] dv01) {
+        int len = kernels.length;
+
+        if (zSpreads.length != len || dv01.length != len) {
+            throw new IllegalArgumentException(Message.ERR_ARRAY_ARG_DIFF_LENGTH);
+        }
+
+        ParallelUtil.forRange(len, new RangeFunction() {
+            @Override
+            public void apply(int from, int to) {
+                KeyRateEngine engine = new KeyRateEngine(discount);
+                for (int i = from; i < to; i++) {
+                    engine.dv01(kernels[i], zSpreads[i], dv01[i]);
+                }
+            }
+        });
+    }
+}
@@ -3,12 +3,12 @@ package ph.alephzero.finance.products.loan;
 import java.util.Date;
 
 import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.cashflows.ArrayDatedCashFlows;
 import ph.alephzero.finance.cashflows.BasicCashFlows;
-import ph.alephzero.finance.cashflows.BasicDatedCashFlows;
 import ph.alephzero.finance.cashflows.CashFlowCalculator;
+import ph.alephzero.finance.cashflows.CashFlowComponent;
 import ph.alephzero.finance.cashflows.CashFlows;
 import ph.alephzero.finance.cashflows.MergedCashFlows;
-import ph.alephzero.finance.cashflows.MergedDatedCashFlows;
 import ph.alephzero.finance.util.DateUtil;
 
 /**
@@ -127,18 +127,16 @@ public final class LoanCashFlowGenerator {
             throw new IllegalArgumentException("Settlement (value) date must be before maturity date.");
         }
         
-        BasicDatedCashFlows prin = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows intr = new BasicDatedCashFlows(settlement);
+        ArrayDatedCashFlows out = new ArrayDatedCashFlows(settlement, 2);
+        out.addComponent(CashFlowComponent.PRINCIPAL);
+        out.addComponent(CashFlowComponent.INTEREST);
         
-        prin.add(settlement, -principal);
+        out.add(settlement, -principal, CashFlowComponent.PRINCIPAL);
         
         double timeFactor = DateUtil.diffDays(settlement, maturity, basis) * 1.0 / DateUtil.daysOfYear(basis, settlement);        
-        prin.add(maturity, principal);
-        intr.add(maturity, principal * rate * timeFactor);
+        out.add(maturity, principal, CashFlowComponent.PRINCIPAL);
+        out.add(maturity, principal * rate * timeFactor, CashFlowComponent.INTEREST);
         
-        MergedDatedCashFlows out = new MergedDatedCashFlows(settlement);
-        out.merge(prin, "PRINCIPAL");
-        out.merge(intr, "INTEREST");
         return out;
     }
     
@@ -173,19 +171,17 @@ public final class LoanCashFlowGenerator {
             throw new IllegalArgumentException("Settlement (value) date must be before maturity date.");
         }
         
-        BasicDatedCashFlows prin = new BasicDatedCashFlows(settlement);
-        BasicDatedCashFlows intr = new BasicDatedCashFlows(settlement);
+        ArrayDatedCashFlows out = new ArrayDatedCashFlows(settlement, 2);
+        out.addComponent(CashFlowComponent.PRINCIPAL);
+        out.addComponent(CashFlowComponent.INTEREST);
         
         double timeFactor = DateUtil.diffDays(settlement, maturity, basis) * 1.0 / DateUtil.daysOfYear(basis, settlement);
         double prin0 = par / (1 + rate * timeFactor);
-        prin.add(settlement, -prin0);
+        out.add(settlement, -prin0, CashFlowComponent.PRINCIPAL);
                 
-        prin.add(maturity, prin0);
-        intr.add(maturity, par - prin0);
+        out.add(maturity, prin0, CashFlowComponent.PRINCIPAL);
+        out.add(maturity, par - prin0, CashFlowComponent.INTEREST);
         
-        MergedDatedCashFlows out = new MergedDatedCashFlows(settlement);
-        out.merge(prin, "PRINCIPAL");
-        out.merge(intr, "INTEREST");
         return out;        
     }
     
@@ -2,6 +2,7 @@ package ph.alephzero.finance.util;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.TimeZone;
 
 import ph.alephzero.finance.DayCountBasis;
 import ph.alephzero.finance.Message;
@@ -10,6 +11,12 @@ import ph.alephzero.finance.Message;
  * 
  * We could have gotten away with a lot of things by using JodaTime, but the goal is 
  * to have no dependency.
+ * 
+ * The date arithmetic is done on epoch days (days since 1970-01-01, as <code>int</code>)
+ * with pure integer civil-date conversion, see the epoch day methods at the end. The 
+ * <code>Date</code> versions convert to epoch days and delegate, so they do not allocate 
+ * a <code>Calendar</code>. <code>Date</code>s are interpreted in the JVM default time zone
+ * (as of loading this class).
  *  
  * @author jon
  *
@@ -28,26 +35,15 @@ public final class DateUtil {
 		private Date date;		
 		
 		public DateTriple(Date date) {
-			Calendar cal = Calendar.getInstance();
-			cal.setTime(date);
+			int ymd = toYyyymmdd(toEpochDay(date));
 			this.date = date;
-			year = cal.get(Calendar.YEAR);
-			month = cal.get(Calendar.MONTH) - Calendar.JANUARY + 1;  // normalize, January==1
-			day = cal.get(Calendar.DAY_OF_MONTH);						
+			year = ymd / 10000;
+			month = (ymd / 100) % 100;     // January==1
+			day = ymd % 100;
 		}
 
 		public DateTriple(int year, int month, int day) {
-			Calendar cal = Calendar.getInstance();
-			cal.set(Calendar.YEAR, year);
-			cal.set(Calendar.MONTH, Calendar.JANUARY + (month - 1));
-			cal.set(Calendar.DAY_OF_MONTH, day);
-			//cal.set(Calendar.HOUR, 0);
-			cal.set(Calendar.HOUR_OF_DAY, 0);
-			cal.set(Calendar.MINUTE, 0);
-			cal.set(Calendar.SECOND, 0);
-			cal.set(Calendar.MILLISECOND, 0);
-			
-			date = cal.getTime();
+			date = createDate(year, month, day);
 			this.year = year;
 			this.month = month;
 			this.day = day;
@@ -85,66 +81,15 @@ public final class DateUtil {
 	 * @return
 	 */
 	public static int diffDays30NASD(Date date1, Date date2, int daysPerYear) {
-		int sign = 1;		
-		
-		// if date1 > date2, swap values
-		if (date1.compareTo(date2) > 0) {
-			sign = -1;
-			Date tmp = date1;
-			date1 = date2;
-			date2 = tmp;
-		}
-		
-		int year1, month1, day1, lastDayOfMonth1;
-		int year2, month2, day2, lastDayOfMonth2;
-		DateTriple dt;
-		
-		dt = new DateTriple(date1);
-		year1 = dt.getYear();
-		month1 = dt.getMonth();
-		day1 = dt.getDay();
-		lastDayOfMonth1 = lastDayOfMonth(year1, month1);
-		
-		dt = new DateTriple(date2);
-		year2 = dt.getYear();
-		month2 = dt.getMonth();
-		day2 = dt.getDay();
-		lastDayOfMonth2 = lastDayOfMonth(year2, month2);
-		
-		// follow algorithm from TIPS
-		if ((day2 == lastDayOfMonth2 && month2 == 2) && (day1 == lastDayOfMonth1 && month1 == 2)) {
-			day2 = 30;
-		} 
-		if (day1 == lastDayOfMonth1 && month1 == 2) {
-			day1 = 30;
-		} 
-		if (day2 == 31 && (day1 == 30 || day1 == 31)) {
-			day2 = 30;
-		} 
-		if (day1 == 31) {
-			day1 = 30;
-		}				
-		
-		return sign * ((year2 - year1) * daysPerYear) + ((month2 - month1) * 30) + (day2 - day1);
+		return diffDays30NASD(toEpochDay(date1), toEpochDay(date2), daysPerYear);
 	}
 	
 	public static int diffDays30European(Date date1, Date date2, int daysPerYear) {
-	    DateTriple dt1 = new DateTriple(date1);
-	    DateTriple dt2 = new DateTriple(date2);
-	    int d1 = dt1.getDay();
-	    int d2 = dt2.getDay();
-	    
-	    if (d1 == 31) d1 = 30;
-	    if (d2 == 31) d2 = 30;
-	    
-	    return 360 * (dt2.getYear() - dt1.getYear()) +
-	            30 * (dt2.getMonth() - dt1.getMonth()) +
-	            (d2 - d1);	    		
+	    return diffDays30European(toEpochDay(date1), toEpochDay(date2), daysPerYear);
 	}
 	
 	/**
-	 * Actual days between dates. Convert first to Julian date (number) then subtract.
-	 * Used formula from TIPS.
+	 * Actual days between dates.
 	 * 
 	 * TODO: what if more than 1 year for ACT/360, ACT/365?
 	 * 
@@ -153,37 +98,11 @@ public final class DateUtil {
 	 * @return
 	 */
 	public static int diffDaysActual(Date date1, Date date2) {
-		int sign = 1;		
-		
-		// if date1 > date2, swap values
-		if (date1.compareTo(date2) > 0) {
-			sign = -1;
-			Date tmp = date1;
-			date1 = date2;
-			date2 = tmp;
-		}
-		
-		int julian1 = new DateTriple(date1).getJulianDate();
-		int julian2 = new DateTriple(date2).getJulianDate();		
-				
-		return sign * (julian2 - julian1);
+		return toEpochDay(date2) - toEpochDay(date1);
 	}
 	
 	public static int diffDays(Date date1, Date date2, DayCountBasis basis) {
-		int diff = Integer.MIN_VALUE;
-		switch (basis) {
-		case NASD_30_360:
-			diff = diffDays30NASD(date1, date2, basis.getDaysPerYear());
-			break;
-		case EUR_30_360:
-			diff = diffDays30European(date1, date2, basis.getDaysPerYear());
-			break;
-		case ACT_360:
-		case ACT_365:
-		case ACT_ACT:
-			diff = diffDaysActual(date1, date2);
-		}
-		return diff;
+		return diffDays(toEpochDay(date1), toEpochDay(date2), basis);
 	}
 	
 	public static Date addDays30NASD(Date date, int days) {
@@ -194,12 +113,15 @@ public final class DateUtil {
 		return null;
 	}
 	
+	/**
+	 * Adds calendar days, the result is normalized to midnight.
+	 * 
+	 * @param date
+	 * @param days
+	 * @return
+	 */
 	public static Date addDaysActual(Date date, int days) {	    
-	    Calendar cal = Calendar.getInstance();
-	    cal.setTime(date);
-	    cal.add(Calendar.DATE, days);
-	    
-		return cal.getTime();
+		return fromEpochDay(toEpochDay(date) + days);
 	}
 	
 	public static Date addDays(Date date, int days, DayCountBasis basis) {
@@ -220,30 +142,7 @@ public final class DateUtil {
 	}
 	
 	public static Date addMonths30NASD(Date date, int months) {
-	    DateTriple dt = new DateTriple(date);
-	    int year = dt.getYear();
-	    int month = dt.getMonth();
-	    int day = dt.getDay();	    
-	    	    
-	    month += months;
-	    if (month > 12) {
-	        int nyears = (month / 12);
-	        if (month % 12 == 0) nyears -= 1;  // month==12 (December) is ok
-	        year += nyears;
-	        month -= 12 * nyears;
-	    } else if (month < 1) {
-	        int nyears = (-1*month/12) + 1;
-	        year -= nyears;
-	        month += 12 * nyears;
-	    }
-	    
-	    int lastDay2 = lastDayOfMonth(year, month);
-	    
-	    if (day > lastDay2) {
-	        day = lastDay2;
-	    }
-
-		return new DateTriple(year, month, day).getDate();
+		return fromEpochDay(addMonths(toEpochDay(date), months));
 	}
 	
 	public static Date addMonths30European(Date date, int months) {
@@ -272,44 +171,40 @@ public final class DateUtil {
 	}
 	
 	public static boolean isWeekend(Date date) {
-		Calendar cal = Calendar.getInstance();
-		cal.setTime(date);
-		int day = cal.get(Calendar.DAY_OF_WEEK);
-		return day == Calendar.SATURDAY || day == Calendar.SUNDAY;
+		return isWeekend(toEpochDay(date));
 	}		
 	
 	public static Date previousWorkingDate(Date date) {
-		Calendar cal = Calendar.getInstance();
-		while (isWeekend(date)) {
-			cal.setTime(date);
-			cal.add(Calendar.DAY_OF_MONTH, -1);
-			date = cal.getTime();
-		}
-		return date;
+		if (!isWeekend(date)) return date;
+		
+		int day = toEpochDay(date);
+		while (isWeekend(day)) day--;
+		return fromEpochDay(day);
 	}
 	
 	public static Date nextWorkingDate(Date date) {
-		Calendar cal = Calendar.getInstance();
-		while (isWeekend(date)) {
-			cal.setTime(date);
-			cal.add(Calendar.DAY_OF_MONTH, 1);
-			date = cal.getTime();
-		}
-		return date; 
+		if (!isWeekend(date)) return date;
+		
+		int day = toEpochDay(date);
+		while (isWeekend(day)) day++;
+		return fromEpochDay(day); 
 	}
 	
+	/**
+	 * Returns true if both dates are in the same month of the same year.
+	 * 
+	 * @param date1
+	 * @param date2
+	 * @return
+	 */
 	public static boolean isSameMonth(Date date1, Date date2) {
-		Calendar cal1 = Calendar.getInstance();
-		Calendar cal2 = Calendar.getInstance();
-		cal1.setTime(date1);
-		cal2.setTime(date2);
-		return cal1.get(Calendar.MONTH) == cal2.get(Calendar.MONTH);
+		return toYyyymmdd(toEpochDay(date1)) / 100 == toYyyymmdd(toEpochDay(date2)) / 100;
 	}
 	
 	public static int lastDayOfMonth(int year, int month) {
 		switch (month) {
 		case 2:
-			return (year % 4 == 0) ? 29 : 28;			
+			return isLeapYear(year) ? 29 : 28;			
 		case 1:
 		case 3:
 		case 5:
@@ -323,22 +218,33 @@ public final class DateUtil {
 		}
 	}
 	
+	public static boolean isLeapYear(int year) {
+		return (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+	}
+	
 	public static int daysOfYear(DayCountBasis basis, int year) {
 	    int ndays = basis.getDaysPerYear();
 	    if (ndays < 0) {
-	        ndays = (year % 4 == 0) ? 366 : 365; 
+	        ndays = isLeapYear(year) ? 366 : 365; 
 	    }
 	    return ndays;
 	}
 	
 	public static int daysOfYear(DayCountBasis basis, Date refDate) {
-	    Calendar cal = Calendar.getInstance();
-	    cal.setTime(refDate);
-	    return daysOfYear(basis, cal.get(Calendar.YEAR));
+	    return daysOfYear(basis, yearOf(toEpochDay(refDate)));
 	}
 	
+	/**
+	 * Creates the date at midnight. Month and day are lenient, e.g. month 13 is January of 
+	 * the next year and day 0 is the last day of the previous month.
+	 * 
+	 * @param year
+	 * @param month 1 to 12
+	 * @param day
+	 * @return
+	 */
 	public static Date createDate(int year, int month, int day) {
-		return new DateTriple(year, month, day).getDate();
+		return fromEpochDay(epochDayOf(year, month, day));
 	}
 	
 	/**
@@ -366,70 +272,306 @@ public final class DateUtil {
 	}
 	
 	public static Date normalize(Date date) {
-	    return new DateTriple(date).getDate(); 
+	    return fromEpochDay(toEpochDay(date)); 
 	}
 	
 	public static boolean isLastDayOfMonth(Date date) {
-	    DateTriple dt = new DateTriple(date);
-	    boolean isLastDay = false;
-	    
-	    switch (dt.month) {
-	    case 1:
-	    case 3:
-	    case 5:
-	    case 7:
-	    case 8:
-	    case 10:
-	    case 12:
-	        isLastDay = dt.day == 31; break;
-	    case 4:
-	    case 6:
-	    case 9:
-	    case 11:
-	        isLastDay = dt.day == 30; break;
-	    case 2:
-	        isLastDay = ((dt.year % 4 == 0) && (dt.day == 29)) || (dt.day == 28);
-	    }
-	    
-	    return isLastDay;	    
+	    return isLastDayOfMonth(toEpochDay(date));	    
 	}
 	
 	public static Date lastDayOfMonth(Date date) {
-	    DateTriple dt = new DateTriple(date);
-	    int lastDay = 0;
-	    
-	    switch (dt.month) {
-        case 1:
-        case 3:
-        case 5:
-        case 7:
-        case 8:
-        case 10:
-        case 12:
-            lastDay = 31; break;
-        case 4:
-        case 6:
-        case 9:
-        case 11:
-            lastDay = 30; break;
-        case 2:
-            lastDay = (dt.year % 4 == 0) ? 29 : 28;
-        }
-	    
-	    return createDate(dt.year, dt.month, lastDay);
+	    return fromEpochDay(lastDayOfMonth(toEpochDay(date)));
 	}
 	
 	public static boolean isMonth(Date date, int month) {
-	    DateTriple dt = new DateTriple(date);
-	    return dt.month == month;
+	    return monthOf(toEpochDay(date)) == month;
 	}
 	
 	public static int getDay(Date date) {
-	    return new DateTriple(date).day;
+	    return dayOfMonth(toEpochDay(date));
 	}
 	
 	public static int adjustEndOfMonthCount(Date date1, Date date2, DayCountBasis basis, int frequency) {
 	    // TODO
 	    return 0;
 	}
+	
+	/*
+	 * Epoch day kernel. Dates are days since 1970-01-01 (epoch day 0 is a Thursday), 
+	 * civil date conversion is pure integer arithmetic (proleptic Gregorian calendar). 
+	 * Nothing here allocates.
+	 */
+	
+	/**
+	 * Julian date of 1970-01-01, i.e. epoch day 0.
+	 */
+	public static final int EPOCH_JULIAN_DATE = 2440588;
+	
+	private static final long MILLIS_PER_DAY = 86400000L;
+	private static final TimeZone ZONE = TimeZone.getDefault();
+	
+	/**
+	 * Returns the number of days since 1970-01-01 of the (local) calendar date of <code>date</code>.
+	 * Time of day is ignored.
+	 * 
+	 * @param date
+	 * @return epoch day of the date
+	 */
+	public static int toEpochDay(Date date) {
+	    long t = date.getTime();
+	    return (int) floorDiv(t + ZONE.getOffset(t), MILLIS_PER_DAY);
+	}
+	
+	/**
+	 * Inverse of {@link #toEpochDay(Date)}, returns the normalized (midnight) date.
+	 * 
+	 * @param epochDay days since 1970-01-01
+	 * @return normalized date
+	 */
+	public static Date fromEpochDay(int epochDay) {
+	    long local = epochDay * MILLIS_PER_DAY;
+	    long t = local - ZONE.getOffset(local - ZONE.getOffset(local));
+	    
+	    if (t + ZONE.getOffset(t) != local) {
+	        // no local midnight on this day (DST change at midnight), let Calendar decide 
+	        int ymd = toYyyymmdd(epochDay);
+	        return calendarDate(ymd / 10000, (ymd / 100) % 100, ymd % 100);
+	    }
+	    
+	    return new Date(t);
+	}
+	
+	/**
+	 * Returns the epoch day of a calendar date. Month and day are lenient, see 
+	 * {@link #createDate(int, int, int)}.
+	 * 
+	 * @param year
+	 * @param month 1 to 12
+	 * @param day
+	 * @return epoch day of the date
+	 */
+	public static int epochDayOf(int year, int month, int day) {
+	    int m0 = month - 1;
+	    year += floorDiv(m0, 12);
+	    month = m0 - 12 * floorDiv(m0, 12) + 1;
+	    
+	    // days from civil, with March as the first month of the year 
+	    int y = (month <= 2) ? year - 1 : year;
+	    int era = ((y >= 0) ? y : y - 399) / 400;
+	    int yoe = y - era * 400;
+	    int doy = (153 * ((month > 2) ? month - 3 : month + 9) + 2) / 5;
+	    int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+	    
+	    return era * 146097 + doe - 719468 + (day - 1);
+	}
+	
+	/**
+	 * Returns the calendar date packed as <code>yyyymmdd</code>, e.g. 20140119.
+	 * 
+	 * @param epochDay
+	 * @return packed date
+	 */
+	public static int toYyyymmdd(int epochDay) {
+	    int z = epochDay + 719468;
+	    int era = ((z >= 0) ? z : z - 146096) / 146097;
+	    int doe = z - era * 146097;
+	    int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+	    int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+	    int mp = (5 * doy + 2) / 153;
+	    int day = doy - (153 * mp + 2) / 5 + 1;
+	    int month = (mp < 10) ? mp + 3 : mp - 9;
+	    int year = yoe + era * 400 + ((month <= 2) ? 1 : 0);
+	    
+	    return year * 10000 + month * 100 + day;
+	}
+	
+	/**
+	 * Inverse of {@link #toYyyymmdd(int)}.
+	 * 
+	 * @param yyyymmdd packed date
+	 * @return epoch day
+	 */
+	public static int fromYyyymmdd(int yyyymmdd) {
+	    return epochDayOf(yyyymmdd / 10000, (yyyymmdd / 100) % 100, yyyymmdd % 100);
+	}
+	
+	public static int yearOf(int epochDay) {
+	    return toYyyymmdd(epochDay) / 10000;
+	}
+	
+	public static int monthOf(int epochDay) {
+	    return (toYyyymmdd(epochDay) / 100) % 100;
+	}
+	
+	public static int dayOfMonth(int epochDay) {
+	    return toYyyymmdd(epochDay) % 100;
+	}
+	
+	/**
+	 * ISO day of week, Monday is 1 and Sunday is 7.
+	 * 
+	 * @param epochDay
+	 * @return day of week
+	 */
+	public static int dayOfWeek(int epochDay) {
+	    return (int) floorMod(epochDay + 3L, 7L) + 1;
+	}
+	
+	public static boolean isWeekend(int epochDay) {
+	    return dayOfWeek(epochDay) >= 6;
+	}
+	
+	public static boolean isLastDayOfMonth(int epochDay) {
+	    return monthOf(epochDay) != monthOf(epochDay + 1);
+	}
+	
+	/**
+	 * Returns the last day of the month of the date.
+	 * 
+	 * @param epochDay
+	 * @return epoch day of the last day of the month
+	 */
+	public static int lastDayOfMonth(int epochDay) {
+	    int ymd = toYyyymmdd(epochDay);
+	    int year = ymd / 10000;
+	    int month = (ymd / 100) % 100;
+	    return epochDay + lastDayOfMonth(year, month) - ymd % 100;
+	}
+	
+	/**
+	 * Adds months, the day is capped at the last day of the resulting month.
+	 * 
+	 * @param epochDay
+	 * @param months
+	 * @return epoch day
+	 */
+	public static int addMonths(int epochDay, int months) {
+	    int ymd = toYyyymmdd(epochDay);
+	    int m0 = (ymd / 100) % 100 - 1 + months;
+	    int year = ymd / 10000 + floorDiv(m0, 12);
+	    int month = m0 - 12 * floorDiv(m0, 12) + 1;
+	    int day = Math.min(ymd % 100, lastDayOfMonth(year, month));
+	    
+	    return epochDayOf(year, month, day);
+	}
+	
+	/**
+	 * NASD 30/360 days between dates, see {@link #diffDays30NASD(Date, Date, int)}.
+	 * 
+	 * @param epochDay1
+	 * @param epochDay2
+	 * @param daysPerYear
+	 * @return days between dates, negative if epochDay1 is after epochDay2
+	 */
+	public static int diffDays30NASD(int epochDay1, int epochDay2, int daysPerYear) {
+	    int sign = 1;
+	    
+	    if (epochDay1 > epochDay2) {
+	        sign = -1;
+	        int tmp = epochDay1;
+	        epochDay1 = epochDay2;
+	        epochDay2 = tmp;
+	    }
+	    
+	    int ymd1 = toYyyymmdd(epochDay1);
+	    int ymd2 = toYyyymmdd(epochDay2);
+	    int year1 = ymd1 / 10000, month1 = (ymd1 / 100) % 100, day1 = ymd1 % 100;
+	    int year2 = ymd2 / 10000, month2 = (ymd2 / 100) % 100, day2 = ymd2 % 100;
+	    boolean lastFeb1 = month1 == 2 && day1 == lastDayOfMonth(year1, month1);
+	    boolean lastFeb2 = month2 == 2 && day2 == lastDayOfMonth(year2, month2);
+	    
+	    // follow algorithm from TIPS
+	    if (lastFeb2 && lastFeb1) {
+	        day2 = 30;
+	    } 
+	    if (lastFeb1) {
+	        day1 = 30;
+	    } 
+	    if (day2 == 31 && (day1 == 30 || day1 == 31)) {
+	        day2 = 30;
+	    } 
+	    if (day1 == 31) {
+	        day1 = 30;
+	    }				
+	    
+	    return sign * ((year2 - year1) * daysPerYear + (month2 - month1) * 30 + (day2 - day1));
+	}
+	
+	public static int diffDays30European(int epochDay1, int epochDay2, int daysPerYear) {
+	    int ymd1 = toYyyymmdd(epochDay1);
+	    int ymd2 = toYyyymmdd(epochDay2);
+	    int d1 = ymd1 % 100;
+	    int d2 = ymd2 % 100;
+	    
+	    if (d1 == 31) d1 = 30;
+	    if (d2 == 31) d2 = 30;
+	    
+	    return 360 * (ymd2 / 10000 - ymd1 / 10000) +
+	            30 * ((ymd2 / 100) % 100 - (ymd1 / 100) % 100) +
+	            (d2 - d1);
+	}
+	
+	/**
+	 * Converts R <code>Date</code> values (days since 1970-01-01, possibly fractional) to
+	 * epoch days, for rJava.
+	 * 
+	 * @param rDates
+	 * @return epoch days
+	 */
+	public static int[] toEpochDays(double[] rDates) {
+	    int[] days = new int[rDates.length];
+	    for (int i = 0; i < rDates.length; i++) {
+	        days[i] = (int) Math.floor(rDates[i]);
+	    }
+	    return days;
+	}
+	
+	public static int diffDays(int epochDay1, int epochDay2, DayCountBasis basis) {
+	    switch (basis) {
+	    case NASD_30_360:
+	        return diffDays30NASD(epochDay1, epochDay2, basis.getDaysPerYear());
+	    case EUR_30_360:
+	        return diffDays30European(epochDay1, epochDay2, basis.getDaysPerYear());
+	    default:
+	        return epochDay2 - epochDay1;
+	    }
+	}
+	
+	/**
+	 * Year fraction between the dates: days between them according to basis, over the days
+	 * in the year of the second date.
+	 * 
+	 * @param epochDay1
+	 * @param epochDay2
+	 * @param basis
+	 * @return year fraction
+	 */
+	public static double yearFraction(int epochDay1, int epochDay2, DayCountBasis basis) {
+	    return diffDays(epochDay1, epochDay2, basis) * 1.0 / daysOfYear(basis, yearOf(epochDay2));
+	}
+	
+	public static double yearFraction(Date date1, Date date2, DayCountBasis basis) {
+	    return yearFraction(toEpochDay(date1), toEpochDay(date2), basis);
+	}
+	
+	private static Date calendarDate(int year, int month, int day) {
+	    Calendar cal = Calendar.getInstance(ZONE);
+	    cal.clear();
+	    cal.set(year, Calendar.JANUARY + (month - 1), day);
+	    return cal.getTime();
+	}
+	
+	private static int floorDiv(int x, int y) {
+	    int q = x / y;
+	    return ((x % y != 0) && ((x ^ y) < 0)) ? q - 1 : q;
+	}
+	
+	private static long floorDiv(long x, long y) {
+	    long q = x / y;
+	    return ((x % y != 0) && ((x ^ y) < 0)) ? q - 1 : q;
+	}
+	
+	private static long floorMod(long x, long y) {
+	    return x - floorDiv(x, y) * y;
+	}
 }
@@ -0,0 +1,72 @@
+package ph.alephzero.finance.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits index ranges of array calculations across a shared fork-join pool. Ranges below
+ * {@link #PARALLEL_THRESHOLD} are run in the calling thread.
+ *
+ * @author jon
+ *
+ */
+public final class ParallelUtil {
+    /**
+     * Minimum number of elements before work is split across threads.
+     */
+    public static final int PARALLEL_THRESHOLD = 2048;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    /**
+     * Work on the index range <code>[from, to)</code>. Called concurrently for disjoint
+     * ranges, so implementations must only write to their own range of the outputs and
+     * create any non-thread-safe helpers (e.g. solvers) per call.
+     */
+    public static interface RangeFunction {
+        void apply(int from, int to);
+    }
+
+    /**
+     * Applies the function to <code>[0, length)</code>, in parallel chunks if length is at least
+     * {@link #PARALLEL_THRESHOLD}. Returns when all chunks are done; an exception in any chunk
+     * is rethrown.
+     *
+     * @param length
+     * @param function
+     */
+    public static void forRange(int length, RangeFunction function) {
+        if (length < PARALLEL_THRESHOLD) {
+            function.apply(0, length);
+            return;
+        }
+
+        int chunk = Math.max(PARALLEL_THRESHOLD / 4, length / (4 * POOL.getParallelism()));
+        POOL.invoke(new RangeAction(function, 0, length, chunk));
+    }
+
+    private static class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeFunction function;
+        private final int from, to, chunk;
+
+        RangeAction(RangeFunction function, int from, int to, int chunk) {
+            this.function = function;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                function.apply(from, to);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeAction(function, from, mid, chunk), new RangeAction(function, mid, to, chunk));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package ph.alephzero.finance.util;
+
+import java.util.Arrays;
+
+/**
+ * Primitive <code>int</code> specialization of {@link SortedList}, intended for epoch-day
+ * keys (see {@link DateUtil#toEpochDay(java.util.Date)}). Elements are unique and kept in
+ * ascending order, no boxing.
+ *
+ * @author jon
+ *
+ */
+public class SortedIntList {
+    private static final int DEFAULT_CAPACITY = 16;
+    private int[] store;
+    private int size;
+
+    public SortedIntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SortedIntList(int capacity) {
+        store = new int[Math.max(capacity, 1)];
+        size = 0;
+    }
+
+    /**
+     * Adds an element if not yet present.
+     *
+     * @param element
+     * @return index of the element
+     */
+    public int add(int element) {
+        if (size == 0 || element > store[size - 1]) {
+            ensureCapacity(size + 1);
+            store[size] = element;
+            return size++;
+        }
+
+        int i = Arrays.binarySearch(store, 0, size, element);
+        if (i >= 0) return i;
+
+        i = -(i + 1);
+        ensureCapacity(size + 1);
+        System.arraycopy(store, i, store, i + 1, size - i);
+        store[i] = element;
+        size++;
+        return i;
+    }
+
+    /**
+     * Merges elements <code>elements[from..to)</code>, sorted in ascending order, in
+     * O(n + m). Duplicates are dropped. Elements that are not sorted are added one at a time.
+     *
+     * @param elements sorted elements
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     */
+    public void addAllSorted(int[] elements, int from, int to) {
+        int m = to - from;
+        if (m <= 0) return;
+
+        for (int j = from + 1; j < to; j++) {
+            if (elements[j] < elements[j - 1]) {
+                for (int e = from; e < to; e++) {
+                    add(elements[e]);
+                }
+                return;
+            }
+        }
+
+        // fast path: whole run is after the last element
+        if (size == 0 || elements[from] > store[size - 1]) {
+            ensureCapacity(size + m);
+            for (int j = from; j < to; j++) {
+                if (size == 0 || elements[j] > store[size - 1]) store[size++] = elements[j];
+            }
+            return;
+        }
+
+        int[] merged = new int[Math.max(size + m, store.length)];
+        int i = 0, j = from, k = 0;
+
+        while (i < size || j < to) {
+            int next;
+            if (j >= to) {
+                next = store[i++];
+            } else if (i >= size) {
+                next = elements[j++];
+            } else if (store[i] <= elements[j]) {
+                if (store[i] == elements[j]) j++;
+                next = store[i++];
+            } else {
+                next = elements[j++];
+            }
+
+            if (k == 0 || next > merged[k - 1]) merged[k++] = next;
+        }
+
+        store = merged;
+        size = k;
+    }
+
+    public void addAllSorted(int[] elements) {
+        addAllSorted(elements, 0, elements.length);
+    }
+
+    public boolean remove(int element) {
+        int i = Arrays.binarySearch(store, 0, size, element);
+        if (i < 0) return false;
+
+        System.arraycopy(store, i + 1, store, i, size - i - 1);
+        size--;
+        return true;
+    }
+
+    public int get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+        return store[i];
+    }
+
+    public int indexOf(int element) {
+        int i = Arrays.binarySearch(store, 0, size, element);
+        return (i < 0) ? -1 : i;
+    }
+
+    /**
+     * Returns the index of the greatest element less than or equal to <code>element</code>,
+     * or -1 if there is none.
+     *
+     * @param element
+     * @return index of the floor element, or -1
+     */
+    public int floorIndex(int element) {
+        int i = Arrays.binarySearch(store, 0, size, element);
+        return (i >= 0) ? i : -(i + 1) - 1;
+    }
+
+    /**
+     * Returns the index of the least element greater than or equal to <code>element</code>,
+     * or <code>size()</code> if there is none.
+     *
+     * @param element
+     * @return index of the ceiling element, or <code>size()</code>
+     */
+    public int ceilingIndex(int element) {
+        int i = Arrays.binarySearch(store, 0, size, element);
+        return (i >= 0) ? i : -(i + 1);
+    }
+
+    public boolean contains(int element) {
+        return Arrays.binarySearch(store, 0, size, element) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a copy of the elements.
+     *
+     * @return sorted elements
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(store, size);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > store.length) {
+            store = Arrays.copyOf(store, Math.max(capacity, store.length + (store.length >> 1)));
+        }
+    }
+}
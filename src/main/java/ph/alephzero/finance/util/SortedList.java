@@ -1,56 +1,225 @@
 package ph.alephzero.finance.util;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
- * Utility class, used to store dates in dated CashFlows
- * 
+ * Utility class, used to store dates in dated CashFlows. Elements are unique and kept
+ * in ascending order in an array, so lookups are O(log n) and positional access is O(1).
+ * Appending an element greater than the current last element is amortized O(1).
+ *
+ * For epoch-day keys, see {@link SortedIntList}.
+ *
  * @author jon
  *
  * @param <E>
  */
 public class SortedList<E extends Comparable<E>> {
-    private LinkedList<E> store;
-    
+    private static final int DEFAULT_CAPACITY = 16;
+    private Object[] store;
+    private int size;
+
     public SortedList() {
-        store = new LinkedList<E>();
+        this(DEFAULT_CAPACITY);
     }
-    
+
+    public SortedList(int capacity) {
+        store = new Object[Math.max(capacity, 1)];
+        size = 0;
+    }
+
     public void add(E element) {
-        if (store.contains(element)) return;
-        
-        int i = 0;
-        for (E elem : store) {
-            if (elem.compareTo(element) > 0) break;
-            i++;
+        if (size > 0 && element.compareTo(elementAt(size - 1)) > 0) {
+            ensureCapacity(size + 1);
+            store[size++] = element;
+            return;
         }
-        
-        store.add(i, element);
+
+        int i = search(element);
+        if (i >= 0) return;
+
+        i = -(i + 1);
+        ensureCapacity(size + 1);
+        System.arraycopy(store, i, store, i + 1, size - i);
+        store[i] = element;
+        size++;
     }
-    
+
+    /**
+     * Merges a run of elements that is already sorted in ascending order. Duplicates
+     * (within the run or with existing elements) are dropped, as in {@link #add(Comparable)}.
+     * This is O(n + m), compared to O(m log n) or worse for adding one at a time. A run that
+     * is not sorted is added one at a time.
+     *
+     * @param elements sorted elements
+     */
+    public void addAllSorted(List<? extends E> elements) {
+        int m = elements.size();
+        if (m == 0) return;
+
+        for (int j = 1; j < m; j++) {
+            if (elements.get(j).compareTo(elements.get(j - 1)) < 0) {
+                for (E element : elements) {
+                    add(element);
+                }
+                return;
+            }
+        }
+
+        Object[] merged = new Object[Math.max(size + m, store.length)];
+        int i = 0, j = 0, k = 0;
+
+        while (i < size || j < m) {
+            E next;
+            if (j >= m) {
+                next = elementAt(i++);
+            } else if (i >= size) {
+                next = elements.get(j++);
+            } else {
+                E a = elementAt(i);
+                E b = elements.get(j);
+                int cmp = a.compareTo(b);
+                if (cmp <= 0) {
+                    next = a;
+                    i++;
+                    if (cmp == 0) j++;
+                } else {
+                    next = b;
+                    j++;
+                }
+            }
+
+            if (k == 0 || next.compareTo(elementAt(merged, k - 1)) > 0) {
+                merged[k++] = next;
+            }
+        }
+
+        store = merged;
+        size = k;
+    }
+
     public boolean remove(E element) {
-        return store.remove(element);
+        int i = search(element);
+        if (i < 0) return false;
+
+        System.arraycopy(store, i + 1, store, i, size - i - 1);
+        store[--size] = null;
+        return true;
     }
-    
-    public E get(int i) {        
-        return store.get(i);
+
+    public E get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+        return elementAt(i);
     }
-    
+
     public int indexOf(E element) {
-        return store.indexOf(element);
+        int i = search(element);
+        return (i < 0) ? -1 : i;
     }
-    
+
+    /**
+     * Returns the index of the greatest element less than or equal to <code>element</code>,
+     * or -1 if there is none.
+     *
+     * @param element
+     * @return index of the floor element, or -1
+     */
+    public int floorIndex(E element) {
+        int i = search(element);
+        return (i >= 0) ? i : -(i + 1) - 1;
+    }
+
+    /**
+     * Returns the index of the least element greater than or equal to <code>element</code>,
+     * or <code>size()</code> if there is none.
+     *
+     * @param element
+     * @return index of the ceiling element, or <code>size()</code>
+     */
+    public int ceilingIndex(E element) {
+        int i = search(element);
+        return (i >= 0) ? i : -(i + 1);
+    }
+
     public int size() {
-        return store.size();
+        return size;
     }
-    
+
     public boolean contains(E element) {
-        return store.contains(element);
+        return search(element) >= 0;
     }
 
+    /**
+     * Returns a read-only view of the elements. The view reflects later changes.
+     *
+     * @return read-only list of the elements
+     */
     public List<E> list() {
-        return Collections.unmodifiableList(store);
+        return new AbstractList<E>() {
+            @Override
+            public E get(int index) {
+                return SortedList.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public int indexOf(Object o) {
+                return SortedList.this.indexOfObject(o);
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return indexOf(o) >= 0;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private int indexOfObject(Object o) {
+        if (o == null) return -1;
+        try {
+            return indexOf((E) o);
+        } catch (ClassCastException e) {
+            return -1;
+        }
+    }
+
+    private int search(E element) {
+        int lo = 0, hi = size - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = elementAt(mid).compareTo(element);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private E elementAt(int i) {
+        return elementAt(store, i);
+    }
+
+    @SuppressWarnings("unchecked")
+    private E elementAt(Object[] array, int i) {
+        return (E) array[i];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > store.length) {
+            store = Arrays.copyOf(store, Math.max(capacity, store.length + (store.length >> 1)));
+        }
     }
 }
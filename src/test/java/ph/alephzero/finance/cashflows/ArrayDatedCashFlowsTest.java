@@ -0,0 +1,99 @@
+package ph.alephzero.finance.cashflows;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+
+import java.util.Date;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class ArrayDatedCashFlowsTest {
+
+    @Test
+    public void testOutOfOrderAdd() {
+        ArrayDatedCashFlows cf = new ArrayDatedCashFlows(createDate(2012,1,1), 2);
+        cf.add(createDate(2012,3,1), 300.0, "PRINCIPAL");
+        cf.add(createDate(2012,2,1), 200.0, "PRINCIPAL");
+        cf.add(createDate(2012,2,1), 20.0, "INTEREST");
+        cf.add(createDate(2012,4,1), 400.0);
+        cf.add(createDate(2012,3,1), 30.0, "INTEREST");
+
+        List<Date> dates = cf.getDates();
+        assertEquals(cf.getCount(), 4);
+        assertEquals(dates.toArray(),
+                new Object[] { createDate(2012,1,1), createDate(2012,2,1),
+                               createDate(2012,3,1), createDate(2012,4,1) });
+
+        // total includes amounts added without a component
+        assertEquals(cf.getCashFlow(0), 0.0);
+        assertEquals(cf.getCashFlow(1), 220.0);
+        assertEquals(cf.getCashFlow(2), 330.0);
+        assertEquals(cf.getCashFlow(3), 400.0);
+
+        assertEquals(cf.getCashFlow(createDate(2012,3,1), "PRINCIPAL"), 300.0);
+        assertEquals(cf.getCashFlow(createDate(2012,3,1), "INTEREST"), 30.0);
+        assertEquals(cf.getCashFlow(createDate(2012,4,1), "INTEREST"), 0.0);
+        assertEquals(cf.getCashFlow(createDate(2012,5,1)), 0.0);
+    }
+
+    @Test
+    public void testRemove() {
+        ArrayDatedCashFlows cf = new ArrayDatedCashFlows(createDate(2012,1,1));
+        for (int m = 2; m <= 12; m++) {
+            cf.add(createDate(2012,m,1), m, "INTEREST");
+        }
+
+        cf.remove(createDate(2012,6,1));
+        assertEquals(cf.getCount(), 11);
+        assertEquals(cf.indexOf(createDate(2012,6,1)) < 0, true);
+        assertEquals(cf.getCashFlow(5), 7.0);
+
+        cf.remove(createDate(2012,7,1), "INTEREST");
+        assertEquals(cf.getCashFlow(createDate(2012,7,1)), 0.0);
+        assertEquals(cf.getCount(), 11);
+    }
+
+    @Test
+    public void testRemoveBaseDate() {
+        ArrayDatedCashFlows cf = new ArrayDatedCashFlows(createDate(2012,1,1));
+        cf.remove(createDate(2012,1,1));
+        assertEquals(cf.getCount(), 0);
+
+        cf.add(createDate(2012,2,1), 100.0, "PRINCIPAL");
+        cf.add(createDate(2012,1,1), 10.0);
+        assertEquals(cf.getCount(), 2);
+        assertEquals(cf.getCashFlow(0), 10.0);
+        assertEquals(cf.getCashFlow(1), 100.0);
+        assertEquals(cf.getCashFlow(1, "PRINCIPAL"), 100.0);
+    }
+
+    @Test
+    public void testComponentHandles() {
+        int custom = CashFlowComponent.register("CUSTOM_FEE");
+        assertEquals(CashFlowComponent.register("CUSTOM_FEE"), custom);
+        assertEquals(CashFlowComponent.name(custom), "CUSTOM_FEE");
+        assertEquals(CashFlowComponent.id("PRINCIPAL"), CashFlowComponent.PRINCIPAL);
+
+        ArrayDatedCashFlows cf = new ArrayDatedCashFlows(createDate(2012,1,1));
+        cf.add(createDate(2012,2,1), 100.0, CashFlowComponent.PRINCIPAL);
+        cf.add(createDate(2012,2,1), 1.5, "CUSTOM_FEE");
+
+        assertEquals(cf.getCashFlow(1, CashFlowComponent.PRINCIPAL), 100.0);
+        assertEquals(cf.getCashFlow(1, "PRINCIPAL"), 100.0);
+        assertEquals(cf.getCashFlow(createDate(2012,2,1), custom), 1.5);
+        assertEquals(cf.getCashFlow(1), 101.5);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testMissingComponent() {
+        ArrayDatedCashFlows cf = new ArrayDatedCashFlows(createDate(2012,1,1));
+        cf.getCashFlow(0, CashFlowComponent.INTEREST);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testBeforeBaseDate() {
+        ArrayDatedCashFlows cf = new ArrayDatedCashFlows(createDate(2012,1,1));
+        cf.add(createDate(2011,12,31), 100.0);
+    }
+}
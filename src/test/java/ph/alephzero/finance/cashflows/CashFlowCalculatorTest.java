@@ -1,7 +1,10 @@
 package ph.alephzero.finance.cashflows;
 
+import static ph.alephzero.finance.util.DateUtil.createDate;
 import static org.testng.Assert.assertEquals;
 
+import ph.alephzero.finance.DayCountBasis;
+
 import org.testng.annotations.Test;
 
 
@@ -23,6 +26,28 @@ public class CashFlowCalculatorTest {
         assertEquals(CashFlowCalculator.presentValue(cf, 0.08/12), 60175.660157, 0.000001);
     }
 
+    @Test
+    public void testPresentValueManyRates() {
+        CashFlows cf = BasicCashFlows.buildCashFlows(12*20, 0.0, 500.0, 0.0, true);
+        double[] rates = new double[] { 0.06/12, 0.08/12, 0.10/12 };
+        double[] values = CashFlowCalculator.presentValue(cf, rates);
+        
+        for (int j = 0; j < rates.length; j++) {
+            assertEquals(values[j], CashFlowCalculator.presentValue(rates[j], 12*20, 500, 0.0, true), 0.000001);
+        }
+        assertEquals(CashFlowCalculator.presentValue(CashFlowUtil.toArray(cf), 0.08/12), 59777.145851, 0.000001);
+    }
+    
+    @Test
+    public void testFutureValueCashFlows() {
+        CashFlows cf = new BasicCashFlows(500, 200, 200, 200, 200, 200, 200, 200, 200, 200, 200);
+        double expected = CashFlowCalculator.futureValue(0.06/12, 10, 200, 500, true);
+        
+        assertEquals(CashFlowCalculator.futureValue(cf, 0.06/12, 10), expected, 0.000001);
+        assertEquals(CashFlowCalculator.futureValue(cf, 0.06/12, -1), expected, 0.000001);
+        assertEquals(CashFlowCalculator.futureValue(CashFlowUtil.toArray(cf), 0.06/12, 10), expected, 0.000001);
+    }
+
     @Test
     public void testPresentValueFractionalPeriods() {
         assertEquals(CashFlowCalculator.presentValue(0.05, 2.5, 10, 100, true), 111.48298658, 0.00000001);
@@ -61,5 +86,26 @@ public class CashFlowCalculatorTest {
         // Scenario: periods=4 years, monthly pmt=-200, pv=8000
         assertEquals(CashFlowCalculator.internalRateOfReturn(4*12, -200.0, 8000.0, 0.0, true), 0.007701, 0.000001);
     }
+    
+    @Test
+    public void testDatedExcelExample() {
+        // Excel XNPV/XIRR example
+        CashFlows cf = new BasicDatedCashFlows(
+                createDate(2008,1,1), -10000.0,
+                createDate(2008,3,1), 2750.0,
+                createDate(2008,10,30), 4250.0,
+                createDate(2009,2,15), 3250.0,
+                createDate(2009,4,1), 2750.0);
+        
+        assertEquals(CashFlowCalculator.presentValue(cf, 0.09, DayCountBasis.ACT_365), 2086.647602, 0.000001);
+        assertEquals(CashFlowCalculator.internalRateOfReturn(cf, DayCountBasis.ACT_365), 0.373362535, 0.000001);
+    }
+    
+    @Test
+    public void testInternalRateOfReturnCashFlows() {
+        // Excel: IRR({-70000, 12000, 15000, 18000, 21000, 26000}) = 8.66%
+        CashFlows cf = new BasicCashFlows(-70000, 12000, 15000, 18000, 21000, 26000);
+        assertEquals(CashFlowCalculator.internalRateOfReturn(cf), 0.086631, 0.000001);
+    }
       
 }
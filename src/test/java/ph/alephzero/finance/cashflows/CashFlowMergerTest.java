@@ -0,0 +1,62 @@
+package ph.alephzero.finance.cashflows;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class CashFlowMergerTest {
+
+    private ArrayDatedCashFlows loan(int startMonth, int months, double principal) {
+        ArrayDatedCashFlows cf = new ArrayDatedCashFlows(createDate(2012,startMonth,1));
+        for (int m = 1; m <= months; m++) {
+            cf.add(createDate(2012,startMonth + m,1), principal / months, CashFlowComponent.PRINCIPAL);
+            cf.add(createDate(2012,startMonth + m,1), 1.0, CashFlowComponent.INTEREST);
+        }
+        return cf;
+    }
+
+    @Test
+    public void testSame() {
+        List<CashFlows> cfs = new ArrayList<CashFlows>();
+        cfs.add(loan(1, 3, 300.0));
+        cfs.add(loan(1, 6, 600.0));
+        cfs.add(new BasicDatedCashFlows(createDate(2012,1,1), -900.0, createDate(2012,5,15), 5.0));
+
+        ImmutableDatedCashFlows out = CashFlowMerger.merge(cfs, BaseDatePolicy.SAME);
+        assertEquals(out.getCount(), 8);
+        assertEquals(out.getBaseDate(), createDate(2012,1,1));
+        assertEquals(out.getCashFlow(0), -900.0, 1e-9);
+        assertEquals(out.getCashFlow(createDate(2012,2,1)), 202.0, 1e-9);
+        assertEquals(out.getCashFlow(createDate(2012,2,1), CashFlowComponent.INTEREST), 2.0, 1e-9);
+        assertEquals(out.getCashFlow(createDate(2012,5,1), "PRINCIPAL"), 100.0, 1e-9);
+        assertEquals(out.getCashFlow(createDate(2012,5,15)), 5.0, 1e-9);
+        assertEquals(out.getCashFlow(createDate(2012,7,1)), 101.0, 1e-9);
+    }
+
+    @Test
+    public void testEarliestAndSpecified() {
+        List<CashFlows> cfs = Arrays.<CashFlows>asList(loan(3, 2, 200.0), loan(1, 4, 400.0),
+                CashFlowUtil.scale(loan(2, 1, 100.0), 10.0));
+
+        ImmutableDatedCashFlows out = CashFlowMerger.merge(cfs, BaseDatePolicy.EARLIEST);
+        assertEquals(out.getBaseDate(), createDate(2012,1,1));
+        assertEquals(out.getCount(), 5);
+        assertEquals(out.getCashFlow(createDate(2012,3,1)), 101.0 + 1010.0, 1e-9);
+        assertEquals(out.getCashFlow(createDate(2012,4,1)), 101.0 + 101.0, 1e-9);
+
+        out = CashFlowMerger.merge(cfs, createDate(2012,3,15));
+        assertEquals(out.getCount(), 3);
+        assertEquals(out.getCashFlow(0), 0.0);
+        assertEquals(out.getCashFlow(createDate(2012,5,1)), 202.0, 1e-9);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testDifferentBaseDates() {
+        CashFlowMerger.merge(Arrays.asList(loan(1, 2, 1.0), loan(2, 2, 1.0)), BaseDatePolicy.SAME);
+    }
+}
@@ -0,0 +1,103 @@
+package ph.alephzero.finance.cashflows;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+
+import java.util.Date;
+
+import org.testng.annotations.Test;
+
+public class CashFlowUtilTest {
+
+    private ArrayDatedCashFlows bond() {
+        ArrayDatedCashFlows cf = new ArrayDatedCashFlows(createDate(2012,1,1));
+        for (int m = 2; m <= 12; m += 2) {
+            cf.add(createDate(2012,m,1), 0.05, CashFlowComponent.INTEREST);
+        }
+        cf.add(createDate(2012,12,1), 1.0, CashFlowComponent.PRINCIPAL);
+        return cf;
+    }
+
+    @Test
+    public void testScale() {
+        ArrayDatedCashFlows cf = bond();
+        CashFlows pos = CashFlowUtil.scale(CashFlowUtil.scale(cf, 1000.0), 2.0);
+
+        assertEquals(pos.getCount(), cf.getCount());
+        assertEquals(pos.getCashFlow(6), 2100.0, 1e-9);
+        assertEquals(pos.getCashFlow(createDate(2012,12,1), "PRINCIPAL"), 2000.0, 1e-9);
+
+        // views see changes to the source
+        cf.add(createDate(2012,4,1), 1.0);
+        assertEquals(pos.getCashFlow(2), 2100.0, 1e-9);
+    }
+
+    @Test
+    public void testExtractComponent() {
+        CashFlows interest = CashFlowUtil.extractComponent(bond(), "INTEREST");
+        assertEquals(interest.getCount(), 7);
+        assertEquals(interest.getCashFlow(6), 0.05, 1e-12);
+        assertEquals(interest.getComponents().isEmpty(), true);
+
+        CashFlows missing = CashFlowUtil.extractComponent(bond(), CashFlowComponent.COUPON);
+        assertEquals(missing.getCashFlow(6), 0.0);
+
+        CashFlows undated = CashFlowUtil.extractComponent(new BasicCashFlows(1.0, 2.0), "INTEREST");
+        assertEquals(undated.getCount(), 2);
+        assertEquals(undated.getCashFlow(1), 0.0);
+
+        // unknown names are not registered
+        int registered = CashFlowComponent.count();
+        CashFlows unknown = CashFlowUtil.extractComponent(bond(), "NOT_A_COMPONENT");
+        assertEquals(unknown.getCashFlow(6), 0.0);
+        assertEquals(CashFlowComponent.id("NOT_A_COMPONENT"), CashFlowComponent.NONE);
+        assertEquals(CashFlowComponent.count(), registered);
+    }
+
+    @Test
+    public void testWindow() {
+        CashFlows cf = CashFlowUtil.window(bond(), createDate(2012,3,15), createDate(2012,10,1));
+
+        // index 0 is the base date, with zero cash flow
+        assertEquals(cf.getBaseDate(), createDate(2012,3,15));
+        assertEquals(cf.getCount(), 5);
+        assertEquals(cf.getDates().get(0), createDate(2012,3,15));
+        assertEquals(cf.getCashFlow(0), 0.0);
+        assertEquals(cf.getDates().get(1), createDate(2012,4,1));
+        assertEquals(cf.getDates().get(4), createDate(2012,10,1));
+        assertEquals(cf.getCashFlow(4), 0.05, 1e-12);
+        assertEquals(cf.getCashFlow(createDate(2012,2,1)), 0.0);
+        assertEquals(cf.getCashFlow(createDate(2012,10,1)), 0.05, 1e-12);
+        assertEquals(cf.toMap().size(), 5);
+
+        // base date on a source date
+        cf = CashFlowUtil.window(bond(), createDate(2012,4,1), createDate(2012,10,1));
+        assertEquals(cf.getCount(), 4);
+        assertEquals(cf.getDates().get(0), createDate(2012,4,1));
+        assertEquals(cf.getCashFlow(0), bond().getCashFlow(createDate(2012,4,1)));
+    }
+
+    @Test(expectedExceptions = ArrayIndexOutOfBoundsException.class)
+    public void testWindowIndex() {
+        CashFlows cf = CashFlowUtil.window(bond(), createDate(2012,3,15), createDate(2012,10,1));
+        cf.getCashFlow(5);
+    }
+
+    @Test
+    public void testAsDated() {
+        BasicCashFlows cf = new BasicCashFlows(-100.0, 5.0, 105.0);
+        Date[] dates = { createDate(2012,1,1), createDate(2012,7,1), createDate(2013,1,1) };
+
+        CashFlows dated = CashFlowUtil.asDated(cf, dates);
+        assertEquals(dated.isDated(), true);
+        assertEquals(dated.getBaseDate(), createDate(2012,1,1));
+        assertEquals(dated.getCashFlow(createDate(2012,7,1)), 5.0);
+        assertEquals(dated.getCashFlow(createDate(2012,8,1)), 0.0);
+
+        // not ascending: copied and sorted
+        Date[] unsorted = { createDate(2012,1,1), createDate(2013,1,1), createDate(2012,7,1) };
+        dated = CashFlowUtil.asDated(cf, unsorted);
+        assertEquals(dated.getCashFlow(1), 105.0);
+        assertEquals(dated.getCashFlow(2), 5.0);
+    }
+}
@@ -0,0 +1,76 @@
+package ph.alephzero.finance.cashflows;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+
+import java.util.Date;
+
+import ph.alephzero.finance.DayCountBasis;
+
+import org.testng.annotations.Test;
+
+public class CashFlowsBuilderTest {
+
+    @Test
+    public void testUnsorted() {
+        CashFlowsBuilder builder = new CashFlowsBuilder(createDate(2012,1,1));
+        builder.add(createDate(2012,3,1), 300.0, CashFlowComponent.PRINCIPAL)
+               .add(createDate(2012,2,1), 200.0, "PRINCIPAL")
+               .add(createDate(2012,2,1), 20.0, CashFlowComponent.INTEREST)
+               .add(createDate(2012,4,1), 400.0)
+               .add(createDate(2012,3,1), 30.0, CashFlowComponent.INTEREST);
+
+        ImmutableDatedCashFlows cf = builder.build();
+        assertEquals(cf.getCount(), 4);
+        assertEquals(cf.getDates().toArray(),
+                new Object[] { createDate(2012,1,1), createDate(2012,2,1),
+                               createDate(2012,3,1), createDate(2012,4,1) });
+        assertEquals(cf.toArray(), new double[] { 0.0, 220.0, 330.0, 400.0 });
+        assertEquals(cf.getCashFlow(createDate(2012,3,1), "PRINCIPAL"), 300.0);
+        assertEquals(cf.getCashFlow(2, CashFlowComponent.INTEREST), 30.0);
+        assertEquals(cf.getCashFlow(createDate(2012,5,1)), 0.0);
+
+        // snapshot is not affected by later additions
+        builder.add(createDate(2012,5,1), 500.0);
+        assertEquals(cf.getCount(), 4);
+        assertEquals(builder.build().getCount(), 5);
+    }
+
+    @Test
+    public void testCopyOf() {
+        ArrayDatedCashFlows src = new ArrayDatedCashFlows(createDate(2012,1,1));
+        src.addComponent(CashFlowComponent.COUPON);
+        src.add(createDate(2012,6,1), 0.1, CashFlowComponent.INTEREST);
+        src.add(createDate(2012,6,1), 0.2);
+        src.add(createDate(2012,12,1), 0.0);
+
+        ImmutableDatedCashFlows cf = ImmutableDatedCashFlows.copyOf(src);
+        assertEquals(cf.getCount(), 3);
+        assertEquals(cf.getComponents(), src.getComponents());
+        assertEquals(cf.getCashFlow(1), src.getCashFlow(1));
+        assertEquals(cf.getCashFlow(1, "INTEREST"), 0.1);
+        assertEquals(cf.getCashFlow(1, CashFlowComponent.COUPON), 0.0);
+        assertEquals(cf.getBaseDate(), createDate(2012,1,1));
+        assertEquals(ImmutableDatedCashFlows.copyOf(cf) == cf, true);
+    }
+
+    @Test
+    public void testCalculator() {
+        Date[] dates = { createDate(2008,1,1), createDate(2008,3,1), createDate(2008,10,30),
+                         createDate(2009,2,15), createDate(2009,4,1) };
+        double[] amounts = { -10000.0, 2750.0, 4250.0, 3250.0, 2750.0 };
+
+        CashFlowsBuilder builder = new CashFlowsBuilder(dates[0], dates.length);
+        for (int i = dates.length - 1; i >= 0; i--) {
+            builder.add(dates[i], amounts[i]);
+        }
+
+        assertEquals(CashFlowCalculator.internalRateOfReturn(builder.build(), DayCountBasis.ACT_365),
+                0.373362535, 0.000001);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testBeforeBaseDate() {
+        new CashFlowsBuilder(createDate(2012,1,1)).add(createDate(2011,12,31), 1.0);
+    }
+}
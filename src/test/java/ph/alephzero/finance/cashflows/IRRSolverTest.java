@@ -0,0 +1,50 @@
+package ph.alephzero.finance.cashflows;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class IRRSolverTest {
+
+    @Test
+    public void testNewton() {
+        IRRSolver solver = new IRRSolver();
+        double rate = solver.solve(new double[] { -1000, 300, 400, 500 }, 0.10);
+
+        assertTrue(solver.isConverged());
+        assertFalse(solver.isBracketed());
+        assertEquals(CashFlowCalculator.presentValue(new double[] { -1000, 300, 400, 500 }, rate), 0.0, 0.000001);
+        assertEquals(solver.getEvaluations(), solver.getNewtonIterations());
+    }
+
+    @Test
+    public void testBracketingFallback() {
+        // Newton overshoots below -100% from a bad guess
+        IRRSolver solver = new IRRSolver();
+        double rate = solver.solve(new double[] { -100, 110 }, 10.0);
+
+        assertTrue(solver.isConverged());
+        assertTrue(solver.isBracketed());
+        assertEquals(rate, 0.10, 0.000001);
+    }
+
+    @Test
+    public void testNoRoot() {
+        IRRSolver solver = new IRRSolver();
+        double rate = solver.solve(new double[] { 100, 100, 100 }, 0.10);
+
+        assertFalse(solver.isConverged());
+        assertTrue(Double.isNaN(rate));
+    }
+
+    @Test
+    public void testTimes() {
+        // 2 cash flows, half a period apart: -100 at t=0, 105 at t=0.5 => (1+r)^0.5 = 1.05
+        IRRSolver solver = new IRRSolver();
+        double rate = solver.solve(new double[] { -100, 105 }, new double[] { 0.0, 0.5 }, 0.10);
+
+        assertEquals(rate, 1.05 * 1.05 - 1, 0.000001);
+    }
+}
@@ -0,0 +1,69 @@
+package ph.alephzero.finance.context;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.Arrays;
+
+import ph.alephzero.finance.market.BasicYieldTermStructure;
+
+import org.testng.annotations.Test;
+
+public class BasicContextTest {
+
+    @Test
+    public void testYieldCurves() {
+        BasicContext context = new BasicContext(createDate(2012,1,1), "PHP");
+        BasicYieldTermStructure curve = new BasicYieldTermStructure(createDate(2012,1,1), "PHP-GS", "Government securities");
+        curve.addNode(createDate(2013,1,1), 0.04);
+        context.addYieldCurve(curve);
+        context.addYieldCurve(new BasicYieldTermStructure(createDate(2012,1,1), "PHP-BVAL", "BVAL"));
+
+        assertEquals(context.getYieldCurveNames(), Arrays.asList("PHP-BVAL", "PHP-GS"));
+        assertEquals(context.getYieldCurveDates("PHP-GS"), Arrays.asList(createDate(2012,1,1)));
+        assertEquals(context.getCurve("PHP-GS"), curve);
+        assertEquals(context.getCurve("PHP-GS", createDate(2013,1,1)), curve);
+        assertNull(context.getCurve("PHP-GS", createDate(2011,1,1)));
+        assertNull(context.getDiscount("USD-LIBOR", createDate(2013,1,1)));
+
+        assertEquals(context.getDiscount("PHP-GS", createDate(2013,1,1)), Math.exp(-0.04 * 366 / 365.0), 1e-15);
+
+        // replacing the curve drops its cached discount factors
+        BasicYieldTermStructure curve2 = new BasicYieldTermStructure(createDate(2012,1,1), "PHP-GS", "Government securities");
+        curve2.addNode(createDate(2013,1,1), 0.05);
+        context.addYieldCurve(curve2);
+        assertEquals(context.getDiscount("PHP-GS", createDate(2013,1,1)), Math.exp(-0.05 * 366 / 365.0), 1e-15);
+        assertEquals(context.getDiscountFactorCache("PHP-GS").getCurve(), curve2);
+    }
+
+    @Test
+    public void testConcurrentReplace() throws InterruptedException {
+        final BasicContext context = new BasicContext(createDate(2012,1,1), "PHP");
+        final BasicYieldTermStructure[] curves = new BasicYieldTermStructure[50];
+        for (int i = 0; i < curves.length; i++) {
+            curves[i] = new BasicYieldTermStructure(createDate(2012,1,1), "PHP-GS", "Government securities");
+            curves[i].addNode(createDate(2013,1,1), 0.01 + 0.001 * i);
+        }
+        context.addYieldCurve(curves[0]);
+
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                for (int k = 0; k < 20000; k++) {
+                    context.getDiscount("PHP-GS", createDate(2013,1,1));
+                }
+            }
+        };
+        reader.start();
+        for (int i = 1; i < curves.length; i++) {
+            context.addYieldCurve(curves[i]);
+        }
+        reader.join();
+
+        // a cache installed for a replaced curve is never returned
+        BasicYieldTermStructure last = curves[curves.length - 1];
+        assertEquals(context.getDiscountFactorCache("PHP-GS").getCurve(), last);
+        assertEquals(context.getDiscount("PHP-GS", createDate(2013,1,1)), last.getDiscount(createDate(2013,1,1)), 1e-15);
+    }
+}
@@ -0,0 +1,75 @@
+package ph.alephzero.finance.context;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+
+import java.util.Date;
+
+import ph.alephzero.finance.util.DateUtil;
+
+import org.testng.annotations.Test;
+
+public class HolidaysTest {
+
+    private Holidays ph2012() {
+        return new Holidays(new Date[] {
+                createDate(2012,1,2), createDate(2012,4,5), createDate(2012,4,6),
+                createDate(2012,4,9), createDate(2012,6,12), createDate(2012,8,31),
+                createDate(2012,12,31) });
+    }
+
+    @Test
+    public void testAdjustDate() {
+        Holidays h = ph2012();
+
+        // Thursday & Friday holidays before Easter, Monday holiday after
+        assertEquals(h.adjustDate(createDate(2012,4,5), BusinessDayConvention.FORWARD), createDate(2012,4,10));
+        assertEquals(h.adjustDate(createDate(2012,4,7), BusinessDayConvention.PREVIOUS), createDate(2012,4,4));
+        assertEquals(h.adjustDate(createDate(2012,4,7), BusinessDayConvention.NONE), createDate(2012,4,7));
+        assertEquals(h.adjustDate(createDate(2012,4,4), BusinessDayConvention.FORWARD), createDate(2012,4,4));
+
+        // Friday, Aug 31 holiday, modified following goes back
+        assertEquals(h.adjustDate(createDate(2012,8,31), BusinessDayConvention.FORWARD), createDate(2012,9,3));
+        assertEquals(h.adjustDate(createDate(2012,8,31), BusinessDayConvention.FORWARD_MODIFIED), createDate(2012,8,30));
+
+        // Sunday, Jan 1 & Monday, Jan 2 holiday, modified previous goes forward
+        assertEquals(h.adjustDate(createDate(2012,1,1), BusinessDayConvention.PREVIOUS), createDate(2011,12,30));
+        assertEquals(h.adjustDate(createDate(2012,1,1), BusinessDayConvention.PREVIOUS_MODIFIED), createDate(2012,1,3));
+    }
+
+    @Test
+    public void testBusinessDays() {
+        Holidays h = ph2012();
+
+        assertEquals(h.addBusinessDays(createDate(2012,4,4), 1), createDate(2012,4,10));
+        assertEquals(h.addBusinessDays(createDate(2012,4,10), -1), createDate(2012,4,4));
+        assertEquals(h.addBusinessDays(createDate(2012,4,7), 3), createDate(2012,4,12));
+        assertEquals(h.countBusinessDays(createDate(2012,4,1), createDate(2012,5,1)), 18);
+        assertEquals(h.countBusinessDays(createDate(2012,5,1), createDate(2012,4,1)), -18);
+
+        // brute force over the year and across the compiled range
+        int[] starts = { DateUtil.epochDayOf(2011,12,1), DateUtil.epochDayOf(1899,12,20), DateUtil.epochDayOf(2199,12,20) };
+        for (int start : starts) {
+            int count = 0;
+            int day = start;
+            for (int n = 1; n <= 300; n++) {
+                do { day++; } while (h.isNonWorkingDay(day));
+                count++;
+                assertEquals(h.addBusinessDays(start, n), day);
+                assertEquals(h.addBusinessDays(day, -n), h.previousWorkingDay(start));
+                assertEquals(h.countBusinessDays(start + 1, day + 1), count);
+            }
+        }
+    }
+
+    @Test
+    public void testJoin() {
+        Holidays us = new Holidays(new Date[] { createDate(2012,7,4) });
+        Holidays joint = Holidays.join(ph2012(), us);
+
+        assertEquals(joint.isHoliday(createDate(2012,7,4)), true);
+        assertEquals(joint.isHoliday(createDate(2012,6,12)), true);
+        assertEquals(joint.getHolidays().length, 8);
+        assertEquals(new Holidays().isNonWorkingDay(createDate(2012,7,4)), false);
+    }
+}
@@ -0,0 +1,112 @@
+package ph.alephzero.finance.market;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import ph.alephzero.finance.market.interpolator.ForwardInterpolator;
+import ph.alephzero.finance.util.DateUtil;
+
+import org.testng.annotations.Test;
+
+public class ArrayQuoteTest {
+    private static final Date[] DATES = {
+            DateUtil.createDate(2010, 1, 1),
+            DateUtil.createDate(2010, 1, 5),
+            DateUtil.createDate(2010, 1, 10),
+            DateUtil.createDate(2010, 1, 15)
+    };
+    private static final Double[][] QUOTES = {
+            new Double[] { 1.0, null, null },
+            new Double[] { 2.0, 2.0,  null },
+            new Double[] { 3.0, 3.0,  3.0 },
+            new Double[] { 4.0, null,  4.0 }
+    };
+
+    @Test
+    public void testSameAsBasicQuote() {
+        ArrayQuote quote = new ArrayQuote(2, "AGI", "CLOSE1", "CLOSE2", "CLOSE3");
+        BasicQuote basic = new BasicQuote("AGI", "CLOSE1", "CLOSE2", "CLOSE3");
+
+        // out of order
+        quote.addQuotes(new Date[] { DATES[2], DATES[0] }, new Double[][] { QUOTES[2], QUOTES[0] });
+        quote.addQuotes(new Date[] { DATES[3], DATES[1] }, new Double[][] { QUOTES[3], QUOTES[1] });
+        basic.addQuotes(DATES, QUOTES);
+
+        assertEquals(quote.getQuoteDates(), basic.getQuoteDates());
+        for (String type : basic.getQuoteTypes()) {
+            assertEquals(quote.getAvailableQuoteDates(type), basic.getAvailableQuoteDates(type));
+            for (Date date : DATES) {
+                assertEquals(quote.getQuote(date, type), basic.getQuote(date, type));
+            }
+        }
+        assertEquals(quote.getQuote(DATES[1]), 2.0);
+        assertNull(quote.getQuote(DateUtil.createDate(2010, 1, 2)));
+        assertNull(quote.getAvailableQuoteDates("CLOSE4"));
+
+        quote.setQuote(DATES[1], "CLOSE2", null);
+        assertNull(quote.getQuote(DATES[1], "CLOSE2"));
+        assertEquals(quote.getAvailableQuoteDates("CLOSE2").size(), 1);
+        assertEquals(quote.getAvailableCount(quote.getTypeIndex("CLOSE2")), 1);
+    }
+
+    @Test
+    public void testAppend() {
+        int n = 20 * 365;
+        int start = DateUtil.toEpochDay(DateUtil.createDate(1995, 1, 1));
+        Random random = new Random(1);
+        int[] days = new int[n];
+        double[][] columns = new double[2][n];
+
+        for (int i = 0; i < n; i++) {
+            days[i] = start + i;
+            columns[0][i] = 100.0 + i;
+            columns[1][i] = (random.nextInt(4) == 0) ? Double.NaN : i;
+        }
+
+        ArrayQuote quote = new ArrayQuote("AGI", "CLOSE", "VOLUME");
+        quote.appendQuotes(days, columns);
+        assertEquals(quote.getCount(), n);
+
+        // not in order, merged
+        quote.appendQuotes(new int[] { start - 1, start + 10 }, new double[][] { { 1.0, 2.0 }, { Double.NaN, 3.0 } });
+        assertEquals(quote.getCount(), n + 1);
+        assertEquals(quote.getEpochDay(0), start - 1);
+        assertEquals(quote.getValue(start + 10, 0), 2.0);
+        assertEquals(quote.getValue(start + 10, 1), 3.0);
+        assertTrue(Double.isNaN(quote.getValue(start - 2, 0)));
+
+        int volume = quote.getTypeIndex("VOLUME");
+        List<Date> available = quote.getAvailableQuoteDates("VOLUME");
+        int k = 0;
+        for (int i = 0; i < quote.getCount(); i++) {
+            boolean flag = !Double.isNaN(quote.getValueAt(i, volume));
+            assertEquals(quote.isAvailable(i, volume), flag);
+            if (flag) {
+                assertEquals(available.get(k++), DateUtil.fromEpochDay(quote.getEpochDay(i)));
+            }
+        }
+        assertEquals(k, available.size());
+        assertFalse(quote.isAvailable(0, volume));
+        assertEquals(quote.getAvailableQuoteDates("CLOSE").size(), n + 1);
+    }
+
+    @Test
+    public void testInterpolator() {
+        ArrayQuote quote = new ArrayQuote("AGI", "CLOSE1", "CLOSE2", "CLOSE3");
+        quote.addQuotes(DATES, QUOTES);
+        quote.addInterpolator(new ForwardInterpolator(), "CLOSE3_F", "CLOSE3");
+
+        assertEquals(quote.getInterpolatedTypes().get(0), "CLOSE3_F");
+        assertEquals(quote.getQuote(DATES[1], "CLOSE3_F"), 3.0);
+        assertEquals(quote.getQuote(DateUtil.createDate(2010, 1, 12), "CLOSE3_F"), 3.0);
+
+        quote.setQuote(DateUtil.createDate(2010, 1, 11), "CLOSE3", 5.0);
+        assertEquals(quote.getQuote(DateUtil.createDate(2010, 1, 12), "CLOSE3_F"), 5.0);
+    }
+}
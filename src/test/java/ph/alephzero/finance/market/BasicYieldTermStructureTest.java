@@ -0,0 +1,91 @@
+package ph.alephzero.finance.market;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+
+import java.util.Date;
+
+import ph.alephzero.finance.Compounding;
+import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.util.DateUtil;
+
+import org.testng.annotations.Test;
+
+public class BasicYieldTermStructureTest {
+
+    @Test
+    public void testFlatCurve() {
+        BasicYieldTermStructure curve = new BasicYieldTermStructure(createDate(2012,1,1), "FLAT", "Flat 5%");
+        curve.addNode(createDate(2013,1,1), 0.05);
+        curve.addNode(createDate(2022,1,1), 0.05);
+
+        Date date = createDate(2017,3,15);
+        double t = DateUtil.diffDaysActual(createDate(2012,1,1), date) / 365.0;
+        assertEquals(curve.getDiscount(date), Math.exp(-0.05 * t), 1e-15);
+        assertEquals(curve.getDiscount(createDate(2030,1,1)), Math.exp(-0.05 * DateUtil.diffDaysActual(createDate(2012,1,1), createDate(2030,1,1)) / 365.0), 1e-15);
+        assertEquals(curve.getDiscount(createDate(2012,1,1)), 1.0);
+
+        assertEquals(curve.getZeroRate(date), 0.05, 1e-12);
+        assertEquals(curve.getZeroRate(createDate(2012,1,1)), 0.05, 1e-9);
+        assertEquals(curve.getZeroRate(date, 2, Compounding.COMPOUNDED, DayCountBasis.ACT_365), 2 * Math.expm1(0.05 / 2), 1e-12);
+        assertEquals(curve.getZeroRate(date, 1, Compounding.SIMPLE, DayCountBasis.ACT_365), Math.expm1(0.05 * t) / t, 1e-12);
+        assertEquals(curve.getForwardRate(createDate(2014,1,1), date), 0.05, 1e-12);
+    }
+
+    @Test
+    public void testNodes() {
+        BasicYieldTermStructure curve = new BasicYieldTermStructure(createDate(2012,1,1), "ZERO", "Zero curve");
+        curve.setDefaultFrequency(2);
+        curve.setDefaultCompounding(Compounding.COMPOUNDED);
+        curve.setDefaultBasis(DayCountBasis.ACT_365);
+
+        // out of order, with a replaced node
+        curve.addNodes(new Date[] { createDate(2017,1,1), createDate(2013,1,1), createDate(2022,1,1), createDate(2017,1,1) },
+                new double[] { 0.99, 0.03, 0.06, 0.045 });
+
+        assertEquals(curve.getNodeCount(), 3);
+        assertEquals(curve.getNodeDates().get(1), createDate(2017,1,1));
+
+        // node rates are returned in the conventions they were added with
+        assertEquals(curve.getZeroRate(createDate(2013,1,1)), 0.03, 1e-12);
+        assertEquals(curve.getZeroRate(createDate(2017,1,1)), 0.045, 1e-12);
+        assertEquals(curve.getZeroRate(createDate(2022,1,1)), 0.06, 1e-12);
+
+        // log-linear discount factors between nodes: flat forwards
+        double f1 = curve.getForwardRate(createDate(2013,1,1), createDate(2014,1,1), 1, Compounding.CONTINUOUS, DayCountBasis.ACT_365);
+        double f2 = curve.getForwardRate(createDate(2015,1,1), createDate(2016,1,1), 1, Compounding.CONTINUOUS, DayCountBasis.ACT_365);
+        assertEquals(f1, f2, 1e-12);
+        double df = curve.getDiscount(createDate(2015,1,1));
+        assertEquals(df, Math.sqrt(curve.getDiscount(createDate(2013,1,1)) * curve.getDiscount(createDate(2017,1,1))), 1e-4);
+
+        // flat zero rate before the first node, flat forward after the last node
+        assertEquals(curve.getZeroRate(createDate(2012,7,1)), 0.03, 1e-12);
+        double f3 = curve.getForwardRate(createDate(2017,1,1), createDate(2022,1,1), 1, Compounding.CONTINUOUS, DayCountBasis.ACT_365);
+        double f4 = curve.getForwardRate(createDate(2025,1,1), createDate(2030,1,1), 1, Compounding.CONTINUOUS, DayCountBasis.ACT_365);
+        assertEquals(f4, f3, 1e-12);
+    }
+
+    @Test
+    public void testDiscountFactorCache() {
+        BasicYieldTermStructure curve = new BasicYieldTermStructure(createDate(2012,1,1), "ZERO", "Zero curve");
+        curve.addNodes(new Date[] { createDate(2013,1,1), createDate(2022,1,1) }, new double[] { 0.03, 0.05 });
+
+        DiscountFactorCache cache = new DiscountFactorCache(curve, 3650);
+        for (int day = curve.getBaseEpochDay() - 10; day < curve.getBaseEpochDay() + 4000; day += 7) {
+            assertEquals(cache.getDiscount(day), curve.getDiscount(day));
+            assertEquals(cache.getDiscount(day), curve.getDiscount(day));
+        }
+        assertEquals(cache.getDiscount(createDate(2016,6,30)), curve.getDiscount(createDate(2016,6,30)));
+
+        // node changes drop the cached discount factors
+        int modCount = curve.getModificationCount();
+        curve.addNode(createDate(2015,1,1), 0.06);
+        assertEquals(curve.getModificationCount(), modCount + 1);
+        assertEquals(cache.getDiscount(createDate(2016,6,30)), curve.getDiscount(createDate(2016,6,30)));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testNoNodes() {
+        new BasicYieldTermStructure(createDate(2012,1,1), "EMPTY", "Empty").getDiscount(createDate(2013,1,1));
+    }
+}
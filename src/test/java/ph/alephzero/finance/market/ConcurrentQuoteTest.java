@@ -0,0 +1,129 @@
+package ph.alephzero.finance.market;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ph.alephzero.finance.market.interpolator.ForwardInterpolator;
+import ph.alephzero.finance.util.DateUtil;
+
+import org.testng.annotations.Test;
+
+public class ConcurrentQuoteTest {
+    private static final Date[] DATES = {
+            DateUtil.createDate(2010, 1, 1),
+            DateUtil.createDate(2010, 1, 5),
+            DateUtil.createDate(2010, 1, 10),
+            DateUtil.createDate(2010, 1, 15)
+    };
+    private static final Double[][] QUOTES = {
+            new Double[] { 1.0, null },
+            new Double[] { 2.0, 2.0 },
+            new Double[] { 3.0, null },
+            new Double[] { 4.0, 4.0 }
+    };
+
+    @Test
+    public void testSnapshot() {
+        ConcurrentQuote quote = new ConcurrentQuote("AGI", "CLOSE1", "CLOSE2");
+        quote.addQuotes(new Date[] { DATES[3], DATES[1] }, new Double[][] { QUOTES[3], QUOTES[1] });
+
+        ConcurrentQuote.Snapshot before = quote.snapshot();
+        quote.addQuotes(new Date[] { DATES[0], DATES[2] }, new Double[][] { QUOTES[0], QUOTES[2] });
+        quote.setQuote(DATES[3], "CLOSE2", 5.0);
+
+        assertEquals(before.getCount(), 2);
+        assertNull(before.getQuote(DATES[0]));
+        assertEquals(before.getQuote(DATES[3], "CLOSE2"), 4.0);
+
+        assertEquals(quote.getQuoteDates(), Arrays.asList(DATES));
+        assertEquals(quote.getQuote(DATES[0]), 1.0);
+        assertEquals(quote.getQuote(DATES[3], "CLOSE2"), 5.0);
+        assertEquals(quote.getAvailableQuoteDates("CLOSE2"), Arrays.asList(DATES[1], DATES[3]));
+
+        // append after a column copy, the older version is unchanged
+        ConcurrentQuote.Snapshot middle = quote.snapshot();
+        quote.setQuote(DateUtil.createDate(2010, 1, 20), 6.0);
+        assertEquals(middle.getCount(), 4);
+        assertEquals(quote.snapshot().getCount(), 5);
+        assertEquals(quote.getQuote(DateUtil.createDate(2010, 1, 20)), 6.0);
+    }
+
+    @Test
+    public void testEpochDayQuote() {
+        ConcurrentQuote quote = new ConcurrentQuote("AGI", "CLOSE1", "CLOSE2");
+        quote.addQuotes(DATES, QUOTES);
+
+        EpochDayQuote q = quote.snapshot();
+        quote.setQuote(DateUtil.createDate(2009, 12, 1), 0.5);
+        assertTrue(q.snapshot() == q);
+        assertEquals(q.getCount(), 4);
+        assertEquals(quote.getCount(), 5);
+
+        int type = q.getTypeIndex("CLOSE2");
+        int i = q.indexAfter(DateUtil.toEpochDay(DATES[0]));
+        assertEquals(q.getEpochDay(i), DateUtil.toEpochDay(DATES[1]));
+        assertEquals(q.getValueAt(i, type), 2.0);
+        assertTrue(Double.isNaN(q.getValueAt(i + 1, type)));
+        assertEquals(q.indexAfter(DateUtil.toEpochDay(DATES[3])), 4);
+        assertEquals(q.getTypeIndex("CLOSE3"), -1);
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        final ConcurrentQuote quote = new ConcurrentQuote("AGI", "CLOSE", "VOLUME");
+        final int start = DateUtil.toEpochDay(DateUtil.createDate(2000, 1, 1));
+        final int n = 5000;
+        final AtomicBoolean done = new AtomicBoolean();
+        quote.addInterpolator(new ForwardInterpolator(), "CLOSE_F", "CLOSE");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Future<?>[] readers = new Future<?>[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    while (!done.get()) {
+                        ConcurrentQuote.Snapshot s = quote.snapshot();
+                        int count = s.getCount();
+                        for (int i = 0; i < count; i += 97) {
+                            // every other day is appended first without VOLUME, then filled in
+                            double close = s.getValue(start + 2 * i, 0);
+                            assertEquals(close, (double) i);
+                            double volume = s.getValue(start + 2 * i, 1);
+                            assertTrue(Double.isNaN(volume) || volume == 10.0 * i);
+                        }
+                        if (count > 0) {
+                            Double filled = quote.getQuote(DateUtil.fromEpochDay(start + 1), "CLOSE_F");
+                            assertEquals(filled, 0.0);
+                        }
+                    }
+                }
+            });
+        }
+
+        for (int i = 0; i < n; i++) {
+            quote.appendQuotes(new int[] { start + 2 * i }, new double[][] { { i }, { Double.NaN } });
+            quote.setValue(start + 2 * i, 1, 10.0 * i);
+        }
+        done.set(true);
+
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(quote.snapshot().getCount(), n);
+        assertEquals(quote.getAvailableQuoteDates("VOLUME").size(), n);
+        assertEquals(quote.getQuote(DateUtil.fromEpochDay(start + 2 * n + 5), "CLOSE_F"), (double) (n - 1));
+    }
+}
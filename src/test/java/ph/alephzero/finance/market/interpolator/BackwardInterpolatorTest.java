@@ -5,6 +5,7 @@ import static org.testng.Assert.assertNull;
 
 import java.util.Date;
 
+import ph.alephzero.finance.market.ArrayQuote;
 import ph.alephzero.finance.market.BasicQuote;
 import ph.alephzero.finance.util.DateUtil;
 
@@ -127,4 +128,39 @@ public class BackwardInterpolatorTest {
         assertEquals(bi.getQuote(DateUtil.createDate(2011, 1, 1)), quotes[3][6]);
         
     }
+
+    @Test
+    public void testLongHistory() {
+        // weekdays only, some missing
+        int start = DateUtil.toEpochDay(DateUtil.createDate(2000, 1, 3));
+        int n = 1500;
+        int[] days = new int[n];
+        double[] values = new double[n];
+        double last = Double.NaN;
+        for (int i = 0; i < n; i++) {
+            days[i] = start + (i / 5) * 7 + i % 5;
+            values[i] = (i % 13 == 7) ? Double.NaN : 100.0 + i;
+            if (!Double.isNaN(values[i])) last = values[i];
+        }
+
+        ArrayQuote quote = new ArrayQuote("AGI", "CLOSE");
+        quote.appendQuotes(days, new double[][] { values });
+        BackwardInterpolator interpolator = new BackwardInterpolator(quote, "CLOSE");
+
+        for (int day = start - 3; day < days[n - 1] + 3; day++) {
+            // first quote on or after the date, else the last quote
+            Double expected = null;
+            for (int j = days.length - 1; j >= 0; j--) {
+                if (days[j] >= day && !Double.isNaN(values[j])) expected = values[j];
+            }
+            if (expected == null) expected = last;
+            assertEquals(interpolator.getQuote(DateUtil.fromEpochDay(day)), expected);
+            assertEquals(interpolator.getValue(day), expected.doubleValue());    // memoized
+        }
+
+        // reset reloads
+        quote.setQuote(DateUtil.fromEpochDay(days[n - 1] + 10), "CLOSE", 1.0);
+        interpolator.reset();
+        assertEquals(interpolator.getValue(days[n - 1] + 11), 1.0);
+    }
 }
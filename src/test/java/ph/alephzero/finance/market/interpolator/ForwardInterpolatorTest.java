@@ -2,6 +2,7 @@ package ph.alephzero.finance.market.interpolator;
 
 import java.util.Date;
 
+import ph.alephzero.finance.market.ArrayQuote;
 import ph.alephzero.finance.market.BasicQuote;
 import ph.alephzero.finance.util.DateUtil;
 
@@ -127,4 +128,78 @@ public class ForwardInterpolatorTest {
         assertEquals(fi.getQuote(DateUtil.createDate(2011, 1, 1)), quotes[3][6]);
         
     }
+
+    @Test
+    public void testLongHistory() {
+        // weekdays only, some missing
+        int start = DateUtil.toEpochDay(DateUtil.createDate(2000, 1, 3));
+        int n = 1500;
+        int[] days = new int[n];
+        double[] values = new double[n];
+        double last = Double.NaN;
+        for (int i = 0; i < n; i++) {
+            days[i] = start + (i / 5) * 7 + i % 5;
+            values[i] = (i % 13 == 7) ? Double.NaN : 100.0 + i;
+            if (!Double.isNaN(values[i])) last = values[i];
+        }
+
+        ArrayQuote quote = new ArrayQuote("AGI", "CLOSE");
+        quote.appendQuotes(days, new double[][] { values });
+        ForwardInterpolator interpolator = new ForwardInterpolator(quote, "CLOSE");
+
+        for (int day = start - 3; day < days[n - 1] + 3; day++) {
+            // last quote on or before the date, else the first quote
+            Double expected = null;
+            for (int j = 0; j < days.length; j++) {
+                if (days[j] <= day && !Double.isNaN(values[j])) expected = values[j];
+            }
+            if (expected == null) expected = 100.0;
+            assertEquals(interpolator.getQuote(DateUtil.fromEpochDay(day)), expected);
+            assertEquals(interpolator.getValue(day), expected.doubleValue());    // memoized
+        }
+
+        // reset reloads
+        quote.setQuote(DateUtil.fromEpochDay(days[n - 1] + 10), "CLOSE", 1.0);
+        interpolator.reset();
+        assertEquals(interpolator.getValue(days[n - 1] + 11), 1.0);
+    }
+
+    @Test
+    public void testIncrementalReset() {
+        final int[] reads = new int[1];
+        BasicQuote quote = new BasicQuote("AGI", "CLOSE", "VOLUME") {
+            @Override
+            public Double getQuote(Date date, String type) {
+                if (type.equals("CLOSE")) reads[0]++;
+                return super.getQuote(date, type);
+            }
+        };
+        int start = DateUtil.toEpochDay(DateUtil.createDate(2010, 1, 1));
+        for (int i = 0; i < 100; i++) {
+            quote.addQuote(DateUtil.fromEpochDay(start + 2 * i), new Double[] { 1.0 * i, 10.0 * i });
+        }
+        quote.addInterpolator(new ForwardInterpolator(), "CLOSE_F", "CLOSE");
+
+        assertEquals(quote.getQuote(DateUtil.fromEpochDay(start + 1), "CLOSE_F"), 0.0);
+        assertEquals(reads[0], 100);
+
+        // appending ticks only reads the new quotes
+        for (int i = 100; i < 150; i++) {
+            quote.setQuote(DateUtil.fromEpochDay(start + 2 * i), "CLOSE", 1.0 * i);
+            assertEquals(quote.getQuote(DateUtil.fromEpochDay(start + 2 * i + 1), "CLOSE_F"), 1.0 * i);
+        }
+        assertEquals(quote.getQuote(DateUtil.fromEpochDay(start + 199), "CLOSE_F"), 99.0);
+        assertEquals(reads[0], 150);
+
+        // other quote types do not reset
+        quote.setQuote(DateUtil.fromEpochDay(start + 10), "VOLUME", 0.0);
+        assertEquals(quote.getQuote(DateUtil.fromEpochDay(start + 11), "CLOSE_F"), 5.0);
+        assertEquals(reads[0], 150);
+
+        // changes before the last date reload
+        quote.setQuote(DateUtil.fromEpochDay(start + 11), "CLOSE", -1.0);
+        assertEquals(quote.getQuote(DateUtil.fromEpochDay(start + 12), "CLOSE_F"), 6.0);
+        assertEquals(quote.getQuote(DateUtil.fromEpochDay(start + 11), "CLOSE_F"), -1.0);
+        assertEquals(reads[0], 301);
+    }
 }
@@ -0,0 +1,272 @@
+package ph.alephzero.finance.market.interpolator;
+
+import java.util.Date;
+
+import ph.alephzero.finance.market.ArrayQuote;
+import ph.alephzero.finance.market.BasicQuote;
+import ph.alephzero.finance.market.BasicYieldTermStructure;
+import ph.alephzero.finance.util.DateUtil;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class PiecewiseInterpolatorTest {
+    private BasicQuote quote;
+    private Date[] dates;
+    private Double[][] quotes;
+    
+    public PiecewiseInterpolatorTest() {
+        quote = new BasicQuote("AGI", "CLOSE1", "CLOSE2");
+        dates = new Date[] {
+                DateUtil.createDate(2010, 1, 1),
+                DateUtil.createDate(2010, 1, 5),
+                DateUtil.createDate(2010, 1, 10),
+                DateUtil.createDate(2010, 1, 15)
+        };
+        quotes = new Double[][] {
+                new Double[] { 1.0,  1.0 },
+                new Double[] { 2.0, null },
+                new Double[] { 4.0,  3.0 },
+                new Double[] { 4.5,  2.0 }
+        };
+        
+        quote.addQuotes(dates, quotes);
+    }
+    
+    @Test
+    public void testEmpty() {
+        LinearInterpolator li = new LinearInterpolator(new BasicQuote("AGI", "CLOSE1"), "CLOSE1");
+        
+        assertNull(li.getQuote(dates[0]));
+        
+        double[] values = new double[1];
+        li.getValues(new int[] { DateUtil.toEpochDay(dates[0]) }, values);
+        assertTrue(Double.isNaN(values[0]));
+    }
+    
+    @Test
+    public void testAvailableDates() {
+        AbstractPiecewiseInterpolator[] interpolators = new AbstractPiecewiseInterpolator[] {
+                new LinearInterpolator(quote, "CLOSE1"),
+                new LogLinearInterpolator(quote, "CLOSE1"),
+                new MonotoneCubicInterpolator(quote, "CLOSE1")
+        };
+        
+        for (AbstractPiecewiseInterpolator pi : interpolators) {
+            for (int i = 0; i < dates.length; i++) {
+                assertEquals(pi.getQuote(dates[i]), quotes[i][0], 1e-12);
+                assertTrue(!pi.isInterpolated(dates[i]));
+            }
+            
+            // flat outside the quotes
+            assertEquals(pi.getQuote(DateUtil.createDate(2009, 12, 25)), quotes[0][0], 1e-12);
+            assertEquals(pi.getQuote(DateUtil.createDate(2011, 1, 1)), quotes[3][0], 1e-12);
+        }
+    }
+    
+    @Test
+    public void testLinear() {
+        LinearInterpolator li = new LinearInterpolator(quote, "CLOSE1");
+        
+        assertEquals(li.getQuote(DateUtil.createDate(2010, 1, 3)), 1.5, 1e-12);
+        assertEquals(li.getQuote(DateUtil.createDate(2010, 1, 6)), 2.4, 1e-12);
+        
+        // missing quote is skipped
+        li = new LinearInterpolator(quote, "CLOSE2");
+        assertTrue(li.isInterpolated(dates[1]));
+        assertEquals(li.getQuote(dates[1]), 1.0 + 2.0 * 4 / 9, 1e-12);
+    }
+    
+    @Test
+    public void testLogLinear() {
+        LogLinearInterpolator li = new LogLinearInterpolator(quote, "CLOSE1");
+        
+        // geometric mean at the midpoint
+        assertEquals(li.getQuote(DateUtil.createDate(2010, 1, 3)), Math.sqrt(2.0), 1e-12);
+    }
+    
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testLogLinearNonPositive() {
+        PiecewiseInterpolation.logLinear(new double[] { 0, 1 }, new double[] { 1.0, 0.0 });
+    }
+    
+    @Test
+    public void testLinearExtrapolation() {
+        double[] x = { 0.0, 1.0, 3.0 };
+        double[] y = { 1.0, 2.0, 3.0 };
+        
+        PiecewiseInterpolation p = PiecewiseInterpolation.linear(x, y);
+        assertEquals(p.value(-1.0), 1.0, 1e-12);
+        assertEquals(p.value(5.0), 3.0, 1e-12);
+        
+        // end segments extended
+        p = PiecewiseInterpolation.linear(x, y, PiecewiseInterpolation.Extrapolation.LINEAR);
+        assertEquals(p.value(-1.0), 0.0, 1e-12);
+        assertEquals(p.value(5.0), 4.0, 1e-12);
+        
+        // in ln y, constant growth past the last point
+        p = PiecewiseInterpolation.logLinear(x, y, PiecewiseInterpolation.Extrapolation.LINEAR);
+        assertEquals(p.value(5.0), 3.0 * 1.5, 1e-12);
+        
+        // along the end slope of the cubic
+        p = PiecewiseInterpolation.monotoneCubic(x, y, PiecewiseInterpolation.Extrapolation.LINEAR);
+        assertEquals(p.value(5.0), 3.0 + 2 * 0.5, 1e-12);
+    }
+    
+    @Test
+    public void testMonotoneCubic() {
+        MonotoneCubicInterpolator mi = new MonotoneCubicInterpolator(quote, "CLOSE1");
+        int first = DateUtil.toEpochDay(dates[0]);
+        int last = DateUtil.toEpochDay(dates[3]);
+        
+        // monotone data, monotone interpolation
+        double previous = mi.getValue(first);
+        for (int day = first + 1; day <= last; day++) {
+            double value = mi.getValue(day);
+            assertTrue(value >= previous);
+            previous = value;
+        }
+        
+        // no overshoot around the local max
+        mi = new MonotoneCubicInterpolator(quote, "CLOSE2");
+        for (int day = first; day <= last; day++) {
+            double value = mi.getValue(day);
+            assertTrue(value >= 1.0 && value <= 3.0);
+        }
+    }
+    
+    @Test
+    public void testGetValues() {
+        ArrayQuote quote = new ArrayQuote("AGI", "CLOSE");
+        int start = DateUtil.toEpochDay(DateUtil.createDate(2000, 1, 3));
+        int n = 1000;
+        
+        for (int i = 0; i < n; i++) {
+            quote.setValue(start + 3 * i, 0, 100.0 + 10.0 * Math.sin(i * 0.1));
+        }
+        
+        AbstractPiecewiseInterpolator[] interpolators = new AbstractPiecewiseInterpolator[] {
+                new LinearInterpolator(quote, "CLOSE"),
+                new LogLinearInterpolator(quote, "CLOSE"),
+                new MonotoneCubicInterpolator(quote, "CLOSE")
+        };
+        
+        int[] days = new int[3 * n + 20];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = start - 10 + i;
+        }
+        // unsorted
+        int[] shuffled = new int[days.length];
+        for (int i = 0; i < days.length; i++) {
+            shuffled[i] = days[(int) ((i * 7919L) % days.length)];
+        }
+        
+        double[] values = new double[days.length];
+        for (AbstractPiecewiseInterpolator pi : interpolators) {
+            pi.getValues(days, values);
+            for (int i = 0; i < days.length; i++) {
+                assertEquals(values[i], pi.getValue(days[i]), 1e-12);
+            }
+            
+            pi.getValues(shuffled, values);
+            for (int i = 0; i < days.length; i++) {
+                assertEquals(values[i], pi.getValue(shuffled[i]), 1e-12);
+            }
+        }
+    }
+    
+    @Test
+    public void testIncrementalReset() {
+        ArrayQuote quote = new ArrayQuote("AGI", "CLOSE");
+        int start = DateUtil.toEpochDay(DateUtil.createDate(2010, 1, 1));
+        quote.setValue(start, 0, 1.0);
+        quote.setValue(start + 10, 0, 2.0);
+        
+        LinearInterpolator li = new LinearInterpolator(quote, "CLOSE");
+        quote.addInterpolator(li, "CLOSE_L", "CLOSE");
+        assertEquals(li.getValue(start + 15), 2.0, 1e-12);
+        
+        // appended quote extends the series, coefficients are rebuilt
+        quote.setValue(start + 20, 0, 4.0);
+        assertEquals(li.getValue(start + 15), 3.0, 1e-12);
+    }
+    
+    @Test
+    public void testLazyPrepare() {
+        ArrayQuote quote = new ArrayQuote("AGI", "CLOSE");
+        int start = DateUtil.toEpochDay(DateUtil.createDate(2010, 1, 1));
+        quote.setValue(start, 0, 1.0);
+        
+        final int[] prepared = new int[1];
+        LinearInterpolator li = new LinearInterpolator() {
+            @Override
+            protected PiecewiseInterpolation create(double[] x, double[] y) {
+                prepared[0]++;
+                return super.create(x, y);
+            }
+        };
+        quote.addInterpolator(li, "CLOSE_L", "CLOSE");
+        assertEquals(li.getValue(start), 1.0, 1e-12);
+        assertEquals(prepared[0], 1);
+        
+        // appends only extend the series, coefficients are built by the next lookup
+        for (int i = 1; i <= 100; i++) {
+            quote.setValue(start + i, 0, 1.0 + i);
+        }
+        assertEquals(prepared[0], 1);
+        
+        assertEquals(li.getValue(start + 50), 51.0, 1e-12);
+        assertEquals(li.getValue(start + 60), 61.0, 1e-12);
+        assertEquals(prepared[0], 2);
+    }
+    
+    @Test
+    public void testCurveNodes() {
+        Date base = DateUtil.createDate(2012, 1, 2);
+        BasicYieldTermStructure curve = new BasicYieldTermStructure(base, "PHP", "PHP zero curve");
+        curve.addNodes(new Date[] {
+                DateUtil.createDate(2012, 4, 2),
+                DateUtil.createDate(2013, 1, 2),
+                DateUtil.createDate(2015, 1, 2),
+                DateUtil.createDate(2022, 1, 2)
+        }, new double[] { 0.02, 0.025, 0.035, 0.05 });
+        
+        int n = curve.getNodeCount();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = curve.getNodeEpochDay(i);
+            y[i] = curve.getDiscount(curve.getNodeEpochDay(i));
+        }
+        
+        // the curve is log-linear in the discount factors between nodes
+        PiecewiseInterpolation p = PiecewiseInterpolation.logLinear(x, y);
+        for (int day = (int) x[0]; day <= (int) x[n - 1]; day += 7) {
+            assertEquals(p.value(day), curve.getDiscount(day), 1e-12);
+        }
+        
+        // with DF 1 at the base date, the curve is the log-linear interpolation extended linearly
+        double[] xb = new double[n + 1];
+        double[] yb = new double[n + 1];
+        xb[0] = curve.getBaseEpochDay();
+        yb[0] = 1.0;
+        System.arraycopy(x, 0, xb, 1, n);
+        System.arraycopy(y, 0, yb, 1, n);
+        p = PiecewiseInterpolation.logLinear(xb, yb, PiecewiseInterpolation.Extrapolation.LINEAR);
+        for (int day = (int) xb[0] - 30; day <= (int) x[n - 1] + 3650; day += 7) {
+            assertEquals(p.value(day), curve.getDiscount(day), 1e-12);
+        }
+        
+        // monotone cubic keeps the discount factors decreasing
+        p = PiecewiseInterpolation.monotoneCubic(x, y);
+        double previous = p.value(x[0]);
+        for (int day = (int) x[0] + 1; day <= (int) x[n - 1]; day++) {
+            double value = p.value(day);
+            assertTrue(value <= previous);
+            previous = value;
+        }
+    }
+}
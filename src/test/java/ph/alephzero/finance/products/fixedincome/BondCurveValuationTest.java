@@ -0,0 +1,98 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+
+import java.util.Date;
+
+import ph.alephzero.finance.Compounding;
+import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.market.BasicYieldTermStructure;
+import ph.alephzero.finance.market.DiscountFactorCache;
+
+import org.testng.annotations.Test;
+
+public class BondCurveValuationTest {
+
+    private static BasicYieldTermStructure flatCurve(Date baseDate, double rate) {
+        BasicYieldTermStructure curve = new BasicYieldTermStructure(baseDate, "FLAT", "Flat");
+        curve.addNode(createDate(2030,1,1), rate);
+        return curve;
+    }
+
+    private static BasicYieldTermStructure zeroCurve(Date baseDate) {
+        BasicYieldTermStructure curve = new BasicYieldTermStructure(baseDate, "ZERO", "Zero");
+        curve.addNodes(new Date[] { createDate(2009,1,1), createDate(2010,1,1), createDate(2013,1,1), createDate(2018,1,1), createDate(2028,1,1) },
+                new double[] { 0.035, 0.04, 0.05, 0.06, 0.065 });
+        return curve;
+    }
+
+    @Test
+    public void testFlatCurveSpread() {
+        Date settlement = createDate(2008,2,15);
+        Date maturity = createDate(2017,11,15);
+
+        // spread over a flat curve is the same as a higher flat curve (settlement = curve base date)
+        DiscountFactorCache curve4 = new DiscountFactorCache(flatCurve(settlement, 0.04));
+        DiscountFactorCache curve5 = new DiscountFactorCache(flatCurve(settlement, 0.05));
+
+        double p = BondCurveValuation.price(settlement, maturity, 0.0575, 2, DayCountBasis.NASD_30_360, curve4, 0.01, true);
+        assertEquals(p, BondCurveValuation.price(settlement, maturity, 0.0575, 2, DayCountBasis.NASD_30_360, curve5, 0.0, true), 1e-14);
+        assertEquals(BondCurveValuation.zSpread(settlement, maturity, 0.0575, p, 2, DayCountBasis.NASD_30_360, flatCurve(settlement, 0.04)), 0.01, 1e-10);
+
+        // dirty = clean + accrued
+        assertEquals(BondCurveValuation.price(settlement, maturity, 0.0575, 2, DayCountBasis.NASD_30_360, curve4, 0.01, false),
+                p + BondValuation.accruedInterest(createDate(2007,11,15), settlement, 0.0575, 2, DayCountBasis.NASD_30_360), 1e-14);
+    }
+
+    @Test
+    public void testZSpread() {
+        Date base = createDate(2008,1,1);
+        Date settlement = createDate(2008,1,5);
+        BasicYieldTermStructure curve = zeroCurve(base);
+        DiscountFactorCache cache = new DiscountFactorCache(curve);
+        BondKernel kernel = new BondKernel(settlement, createDate(2016,1,1), 0.08, 2, DayCountBasis.ACT_ACT);
+
+        for (double z = -0.01; z < 0.05; z += 0.0075) {
+            double price = BondCurveValuation.price(kernel, cache, z, true);
+            assertEquals(BondCurveValuation.zSpread(kernel, cache, price), z, 1e-10);
+        }
+
+        // the one-off curve version matches the shared cache
+        assertEquals(BondCurveValuation.price(settlement, createDate(2016,1,1), 0.08, 2, DayCountBasis.ACT_ACT, curve, true),
+                BondCurveValuation.price(kernel, cache, 0.0, true), 1e-15);
+    }
+
+    @Test
+    public void testOddBond() {
+        Date base = createDate(2008,1,1);
+        DiscountFactorCache cache = new DiscountFactorCache(zeroCurve(base));
+        Date settlement = createDate(2008,11,11);
+        Date issue = createDate(2008,10,15);
+        Date maturity = createDate(2021,3,1);
+        Date firstCoupon = createDate(2009,3,1);
+
+        double price = BondCurveValuation.priceOddBond(settlement, issue, maturity, firstCoupon, null, 0.0785, 2, DayCountBasis.ACT_ACT, cache, 0.0125, true);
+        assertEquals(BondCurveValuation.zSpreadOddBond(settlement, issue, maturity, firstCoupon, null, 0.0785, price, 2, DayCountBasis.ACT_ACT, cache), 0.0125, 1e-10);
+
+        // on a flat curve at the bond yield the curve price is close to the yield price
+        double yieldPrice = BondValuation.priceOddBond(settlement, issue, maturity, firstCoupon, null, 0.0785, 0.0625, 2, DayCountBasis.ACT_ACT, true);
+        BasicYieldTermStructure flat = flatCurve(settlement, 0.0625);
+        flat.setDefaultFrequency(2);
+        flat.setDefaultCompounding(Compounding.COMPOUNDED);
+        flat.addNode(createDate(2030,1,1), 0.0625);
+        double curvePrice = BondCurveValuation.priceOddBond(settlement, issue, maturity, firstCoupon, null, 0.0785, 2, DayCountBasis.ACT_ACT, new DiscountFactorCache(flat), 0.0, true);
+        assertEquals(curvePrice, yieldPrice, 0.005);
+    }
+
+    @Test
+    public void testISpread() {
+        Date settlement = createDate(2008,2,15);
+        Date maturity = createDate(2017,11,15);
+        BasicYieldTermStructure curve = zeroCurve(createDate(2008,1,1));
+
+        double price = BondValuation.price(settlement, maturity, 0.0575, 0.0650, 2, DayCountBasis.NASD_30_360);
+        assertEquals(BondCurveValuation.iSpread(settlement, maturity, 0.0575, price, 2, DayCountBasis.NASD_30_360, curve),
+                0.0650 - curve.getZeroRate(maturity, 2, Compounding.COMPOUNDED, DayCountBasis.NASD_30_360), 1e-9);
+    }
+}
@@ -0,0 +1,62 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+
+import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.cashflows.CashFlowComponent;
+import ph.alephzero.finance.cashflows.CashFlows;
+
+import org.testng.annotations.Test;
+
+public class BondKernelTest {
+
+    @Test
+    public void testMatchesCashFlows() {
+        CashFlows cf = BondCashFlowGenerator.cashFlowsRPIBondTF(createDate(2008,2,15), createDate(2017,11,15), 1.0, 0.0575, 2, DayCountBasis.NASD_30_360, true);
+        BondKernel kernel = new BondKernel(createDate(2008,2,15), createDate(2017,11,15), 0.0575, 2, DayCountBasis.NASD_30_360);
+
+        assertEquals(kernel.getCount(), cf.getCount() - 1);
+        for (int i = 0; i < kernel.getCount(); i++) {
+            assertEquals(kernel.getTimeFactor(i), cf.getCashFlow(i + 1, CashFlowComponent.TIME_FACTOR));
+            assertEquals(kernel.getAmount(i), cf.getCashFlow(i + 1, CashFlowComponent.PRINCIPAL) + cf.getCashFlow(i + 1, CashFlowComponent.INTEREST), 1e-15);
+        }
+
+        // Excel PRICE() example
+        assertEquals(100 * kernel.cleanPrice(0.0650), 94.634362, 0.000001);
+        assertEquals(100 * kernel.accruedInterest(), 1.437500, 0.000001);
+        assertEquals(kernel.yield(0.94634362), 0.0650, 0.00001);
+    }
+
+    @Test
+    public void testRiskMeasures() {
+        BondKernel kernel = new BondKernel(createDate(2008,1,1), createDate(2016,1,1), 0.08, 2, DayCountBasis.ACT_ACT);
+
+        assertEquals(kernel.durationMacaulay(0.09), 5.993775, 0.000001);
+        assertEquals(kernel.durationModified(0.09), 5.735669814, 0.000001);
+        assertEquals(kernel.convexity(0.09), 41.95760284, 0.000001);
+
+        double h = 0.000001;
+        double dP = (kernel.dirtyPrice(0.09 - h) - kernel.dirtyPrice(0.09 + h)) / (2 * h);
+        assertEquals(kernel.pv01(0.09), dP * 0.0001, 1e-10);
+        assertEquals(kernel.pv01(0.09), kernel.durationModified(0.09) * kernel.dirtyPrice(0.09) * 0.0001, 1e-12);
+    }
+
+    @Test
+    public void testLastCoupon() {
+        // 1 coupon left before maturity, discounted with simple interest
+        BondKernel kernel = new BondKernel(createDate(2007,10,1), createDate(2008,1,12), 0.0925, 2, DayCountBasis.EUR_30_360);
+
+        assertEquals(kernel.getCount(), 1);
+        assertEquals(kernel.cleanPrice(0.08925), 1.00039, 0.00001);
+
+        double h = 0.000001;
+        double dP = (kernel.dirtyPrice(0.08925 - h) - kernel.dirtyPrice(0.08925 + h)) / (2 * h);
+        assertEquals(kernel.pv01(0.08925), dP * 0.0001, 1e-10);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testMatured() {
+        new BondKernel(createDate(2016,1,1), createDate(2016,1,1), 0.08, 2, DayCountBasis.ACT_ACT);
+    }
+}
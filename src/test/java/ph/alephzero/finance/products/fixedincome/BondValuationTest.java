@@ -526,4 +526,81 @@ public class BondValuationTest {
         assertEquals(BondValuation.effectiveInterestRate(createDate(2012,11,23), createDate(2031,7,19), 0.08, 1.223715077, 2, DayCountBasis.EUR_30_360, 0.000000001, 26, true), 0.059921388, 0.000000001);
         //assertEquals(BondValuation.effectiveInterestRate(createDate(2012,11,23), createDate(2031,7,19), 0.08, 1.223715077, 2, DayCountBasis.EUR_30_360, 0.000000001, 25, true), 0.059921388, 0.000000001);
     }   
+
+    @Test
+    public void testRiskMeasures() {
+        BondRiskMeasures risk = new BondRiskMeasures();
+        
+        assertEquals(BondValuation.riskMeasures(createDate(2008,1,1), createDate(2016,1,1), 0.08, 0.09, 2, DayCountBasis.ACT_ACT, risk), risk);
+        assertEquals(risk.getDurationMacaulay(), 5.993775, 0.000001);
+        assertEquals(risk.getDurationModified(), 5.735669814, 0.000001);
+        assertEquals(risk.getConvexity(), 41.95760284, 0.000001);
+        assertEquals(risk.getDv01(), risk.getDurationModified() * risk.getDirtyPrice() * 0.0001, 1e-12);
+        
+        // holder is reused
+        BondValuation.riskMeasures(createDate(2008,2,15), createDate(2017,11,15), 0.0575, 0.0650, 2, DayCountBasis.NASD_30_360, risk);
+        assertEquals(100 * risk.getPrice(), 94.634362, 0.000001);
+        assertEquals(100 * risk.getAccruedInterest(), 1.437500, 0.000001);
+        assertEquals(risk.getDirtyPrice(), BondValuation.price(createDate(2008,2,15), createDate(2017,11,15), 0.0575, 0.0650, 2, DayCountBasis.NASD_30_360, false), 1e-15);
+        assertEquals(risk.getDurationMacaulay(), BondValuation.durationMacaulay(createDate(2008,2,15), createDate(2017,11,15), 0.0575, 0.0650, 2, DayCountBasis.NASD_30_360), 1e-12);
+        assertEquals(risk.getConvexity(), BondValuation.convexity(createDate(2008,2,15), createDate(2017,11,15), 0.0575, 0.0650, 2, DayCountBasis.NASD_30_360), 1e-12);
+    }
+
+    @Test
+    public void testPrimitiveArrays() {
+        // above the parallel threshold
+        int len = 5000;
+        int[] settlement = new int[len], maturity = new int[len], frequency = new int[len], basis = new int[len];
+        double[] couponRate = new double[len], yield = new double[len];
+        int settle0 = DateUtil.toEpochDay(createDate(2008,1,5));
+        
+        for (int i = 0; i < len; i++) {
+            settlement[i] = settle0 + i % 700;
+            maturity[i] = settle0 + 800 + 3 * i;
+            frequency[i] = (i % 3 == 0) ? 4 : 2;
+            basis[i] = i % 5;
+            couponRate[i] = 0.01 * (i % 10);
+            yield[i] = 0.005 + 0.001 * (i % 90);
+        }
+        
+        double[] prices = new double[len];
+        double[] yields = new double[len];
+        BondValuation.price(settlement, maturity, couponRate, yield, frequency, basis, true, prices);
+        BondValuation.yield(settlement, maturity, couponRate, prices, frequency, basis, yields);
+        
+        for (int i = 0; i < len; i += 37) {
+            Date s = DateUtil.fromEpochDay(settlement[i]);
+            Date m = DateUtil.fromEpochDay(maturity[i]);
+            DayCountBasis b = DayCountBasis.fromCode(basis[i]);
+            
+            assertEquals(prices[i], BondValuation.price(s, m, couponRate[i], yield[i], frequency[i], b), 1e-15);
+            assertEquals(yields[i], yield[i], 1e-9);
+        }
+        
+        double[] bills = new double[len];
+        double[] billYields = new double[len];
+        BondValuation.priceDiscountedBill(settlement, maturity, yield, basis, bills);
+        BondValuation.yieldDiscountedBill(settlement, maturity, bills, basis, billYields);
+        
+        for (int i = 0; i < len; i += 37) {
+            DayCountBasis b = DayCountBasis.fromCode(basis[i]);
+            assertEquals(bills[i], BondValuation.priceDiscountedBill(DateUtil.fromEpochDay(settlement[i]), DateUtil.fromEpochDay(maturity[i]), yield[i], b), 1e-15);
+            assertEquals(billYields[i], yield[i], 1e-12);
+        }
+    }
+    
+    @Test
+    public void testBasisCodes() {
+        for (DayCountBasis basis : DayCountBasis.values()) {
+            assertEquals(DayCountBasis.fromCode(basis.getCode()), basis);
+        }
+        assertEquals(DayCountBasis.fromCode(0), DayCountBasis.NASD_30_360);
+        assertEquals(DayCountBasis.fromCode(1), DayCountBasis.ACT_ACT);
+        assertEquals(DateUtil.toEpochDays(new double[] { 0.0, 15706.0, -0.5 }), new int[] { 0, 15706, -1 });
+    }
+    
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPrimitiveArraysLength() {
+        BondValuation.priceDiscountedBill(new int[2], new int[2], new double[2], new int[2], new double[1]);
+    }
 }
@@ -0,0 +1,57 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import ph.alephzero.finance.DayCountBasis;
+
+import org.testng.annotations.Test;
+
+public class BondYieldSolverTest {
+
+    @Test
+    public void testRoundTrip() {
+        BondYieldSolver solver = new BondYieldSolver();
+        BondKernel kernel = new BondKernel(createDate(2009,5,28), createDate(2028,12,14), 0.095, 2, DayCountBasis.EUR_30_360);
+
+        for (double yield = -0.005; yield < 0.40; yield += 0.0125) {
+            assertEquals(solver.solve(kernel, kernel.cleanPrice(yield)), yield, 1e-9);
+            assertTrue(solver.isConverged());
+            assertTrue(solver.getIterations() <= 6, "iterations: " + solver.getIterations());
+
+            assertEquals(solver.solve(kernel, kernel.dirtyPrice(yield), false), yield, 1e-9);
+        }
+    }
+
+    @Test
+    public void testPDEXSAS() {
+        BondYieldSolver solver = new BondYieldSolver();
+
+        assertEquals(BondValuation.yield(createDate(2008, 6, 5), createDate(2013, 3, 3), 0.0875, 1.0059, 2, DayCountBasis.EUR_30_360, solver), 0.0859, 0.00001);
+        assertEquals(BondValuation.yield(createDate(2009, 3, 27), createDate(2016, 3, 27), 0.0, 0.53997, 2, DayCountBasis.EUR_30_360, solver), 0.09, 0.00001);
+        assertTrue(solver.isConverged());
+
+        // 1 coupon left before maturity, exact
+        assertEquals(BondValuation.yield(createDate(2007, 10, 1), createDate(2008, 1, 12), 0.0925, 1.00039, 2, DayCountBasis.EUR_30_360, solver), 0.08925, 0.0001);
+        assertEquals(solver.getIterations(), 0);
+    }
+
+    @Test
+    public void testSeed() {
+        BondKernel kernel = new BondKernel(createDate(2008,1,1), createDate(2018,1,1), 0.08, 2, DayCountBasis.ACT_ACT);
+        // par bond
+        assertEquals(BondYieldSolver.seed(kernel, 1.0), 0.08, 1e-12);
+        assertEquals(BondYieldSolver.seed(kernel, kernel.cleanPrice(0.06)), 0.06, 0.002);
+    }
+
+    @Test
+    public void testNoConvergence() {
+        BondYieldSolver solver = new BondYieldSolver(1e-10, 3);
+        BondKernel kernel = new BondKernel(createDate(2008,1,1), createDate(2018,1,1), 0.08, 2, DayCountBasis.ACT_ACT);
+
+        assertTrue(Double.isNaN(solver.solve(kernel, -0.5)));
+        assertEquals(solver.isConverged(), false);
+        assertEquals(solver.getIterations(), 3);
+    }
+}
@@ -0,0 +1,81 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.util.Date;
+
+import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.context.BusinessDayConvention;
+import ph.alephzero.finance.context.Holidays;
+
+import org.testng.annotations.Test;
+
+public class CouponScheduleServiceTest {
+
+    @Test
+    public void testCache() {
+        CouponScheduleService service = new CouponScheduleService();
+        Date maturity = createDate(2003,1,1);
+
+        CouponSchedule s1 = service.get(createDate(1993,10,1), maturity, null, null, 2, DayCountBasis.ACT_ACT);
+        CouponSchedule s2 = service.get(createDate(1999,2,1), maturity, null, null, 2, DayCountBasis.ACT_ACT);
+        assertSame(s2, s1);
+        assertEquals(service.size(), 1);
+
+        Date[] dates = s1.datesAfter(createDate(2002,1,1));
+        assertEquals(dates, new Date[] { createDate(2002,7,1), createDate(2003,1,1) });
+        assertEquals(s1.datesAfter(createDate(1993,10,1)).length, 19);
+        assertEquals(s1.datesAfter(createDate(2003,1,1)).length, 0);
+
+        // settlement before the horizon rebuilds further back
+        CouponSchedule s3 = service.get(createDate(1940,1,1), maturity, null, null, 2, DayCountBasis.ACT_ACT);
+        assertEquals(s3.datesAfter(createDate(1940,1,1))[0], createDate(1940,7,1));
+    }
+
+    @Test
+    public void testCalendarByValue() {
+        CouponScheduleService service = new CouponScheduleService();
+        Date maturity = createDate(2013,9,1);
+        Date[] holidays = { createDate(2013,3,1) };
+
+        CouponSchedule s1 = service.get(createDate(2012,6,1), maturity, null, null, 2, DayCountBasis.NASD_30_360,
+                new Holidays(holidays), BusinessDayConvention.FORWARD_MODIFIED);
+        CouponSchedule s2 = service.get(createDate(2012,6,1), maturity, null, null, 2, DayCountBasis.NASD_30_360,
+                new Holidays(holidays), BusinessDayConvention.FORWARD_MODIFIED);
+        assertSame(s2, s1);
+        assertEquals(service.size(), 1);
+        assertEquals(new Holidays(holidays), Holidays.join(new Holidays(holidays), new Holidays()));
+    }
+
+    @Test
+    public void testEviction() {
+        CouponScheduleService service = new CouponScheduleService(CouponScheduleService.SEGMENTS * 4);
+        Date settlement = createDate(2012,1,1);
+
+        for (int y = 0; y < 200; y++) {
+            service.get(settlement, createDate(2013 + y,1,1), null, null, 2, DayCountBasis.ACT_ACT);
+        }
+
+        // least recently used schedules are evicted per segment, the cache is never emptied
+        int size = service.size();
+        assertEquals(size <= CouponScheduleService.SEGMENTS * 4, true);
+        assertEquals(size > CouponScheduleService.SEGMENTS, true);
+    }
+
+    @Test
+    public void testAdjusted() {
+        // 2012-09-01 is a Saturday, 2013-03-01 is a Friday holiday, 2013-09-01 a Sunday
+        Holidays calendar = new Holidays(new Date[] { createDate(2013,3,1) });
+        Date settlement = createDate(2012,6,1);
+        Date maturity = createDate(2013,9,1);
+
+        Date[] paymentDates = BondCashFlowGenerator.scheduleRPIBond(settlement, maturity, 2, DayCountBasis.NASD_30_360,
+                calendar, BusinessDayConvention.FORWARD_MODIFIED);
+        assertEquals(paymentDates, new Date[] { createDate(2012,9,3), createDate(2013,3,4), createDate(2013,9,2) });
+
+        Date[] dates = BondCashFlowGenerator.scheduleRPIBond(settlement, maturity, 2, DayCountBasis.NASD_30_360);
+        assertEquals(dates, new Date[] { createDate(2012,9,1), createDate(2013,3,1), createDate(2013,9,1) });
+    }
+}
@@ -0,0 +1,137 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.cashflows.CashFlows;
+import ph.alephzero.finance.util.DateUtil;
+
+import org.testng.annotations.Test;
+
+public class EIRAmortizationServiceTest {
+
+    /**
+     * Keeps the table of one position.
+     */
+    private static class TableSink implements EIRAmortizationService.AmortizationSink {
+        double rate;
+        int rows;
+        int[] days = new int[100];
+        double[][] values = new double[100][];
+
+        @Override
+        public void begin(int position, double effectiveInterestRate) {
+            rate = effectiveInterestRate;
+        }
+
+        @Override
+        public void row(int position, int epochDay, double principal, double coupon, double effectiveInterest, double premium, double discount) {
+            days[rows] = epochDay;
+            values[rows++] = new double[] { principal, coupon, effectiveInterest, premium, discount };
+        }
+    }
+
+    @Test
+    public void testResidual() {
+        Date settlement = createDate(2012,11,23), maturity = createDate(2031,7,19);
+        BondKernel kernel = new BondKernel(settlement, maturity, 0.08, 2, DayCountBasis.EUR_30_360);
+        BondUtil.BondEIRResidual residual = new BondUtil.BondEIRResidual(settlement, maturity, 0.08, 1.223715077, 2, DayCountBasis.EUR_30_360);
+        double couponFraction = BondEIRSolver.couponFraction(settlement, maturity, 2, DayCountBasis.EUR_30_360);
+
+        for (double eir = 0.0; eir < 0.2; eir += 0.01) {
+            assertEquals(BondEIRSolver.residual(kernel, couponFraction, 1.223715077, eir), residual.value(eir), 1e-12);
+        }
+
+        BondEIRSolver solver = new BondEIRSolver();
+        assertEquals(solver.solve(kernel, couponFraction, 1.223715077), 0.059921388, 0.000000001);
+        assertTrue(solver.isConverged());
+
+        // no root in [0, 1]
+        assertTrue(Double.isNaN(solver.solve(kernel, couponFraction, 5.0)));
+        assertTrue(!solver.isConverged());
+    }
+
+    @Test
+    public void testAmortize() {
+        Date[][] terms = {
+            { createDate(2008,3,3), createDate(2013,3,3) },
+            { createDate(2012,11,23), createDate(2031,7,19) },
+            { createDate(2012,11,1), createDate(2019,6,8) },
+            { createDate(2012,11,1), createDate(2013,3,1) },
+        };
+        double[] couponRates = { 0.0875, 0.08, 0.062731, 0.05 };
+        double[] prices = { 100.589894, 1223715.077, 97.5, 99.8 };
+        double[] principals = { 100.0, 1000000.0, 100.0, 100.0 };
+        int[] frequencies = { 2, 2, 4, 2 };
+        EIRAmortizationService service = new EIRAmortizationService();
+
+        for (int k = 0; k < terms.length; k++) {
+            TableSink sink = new TableSink();
+            service.amortize(new int[] { DateUtil.toEpochDay(terms[k][0]) }, new int[] { DateUtil.toEpochDay(terms[k][1]) },
+                    new double[] { principals[k] }, new double[] { couponRates[k] }, new double[] { prices[k] },
+                    new int[] { frequencies[k] }, new int[] { DayCountBasis.EUR_30_360.getCode() }, sink);
+
+            CashFlows cf = BondCashFlowGenerator.amortEffectiveInterestRateRPIBond(terms[k][1], terms[k][0], principals[k], couponRates[k], prices[k], frequencies[k], DayCountBasis.EUR_30_360);
+            List<Date> dates = cf.getDates();
+            double tol = 1e-7 * principals[k];
+
+            assertEquals(sink.rate, BondValuation.effectiveInterestRate(terms[k][0], terms[k][1], couponRates[k], prices[k] / principals[k], frequencies[k], DayCountBasis.EUR_30_360), 1e-8);
+            assertEquals(sink.rows, dates.size());
+            for (int i = 0; i < sink.rows; i++) {
+                assertEquals(DateUtil.fromEpochDay(sink.days[i]), dates.get(i));
+                assertEquals(sink.values[i][0], cf.getCashFlow(i, "PRINCIPAL"), tol);
+                assertEquals(sink.values[i][1], cf.getCashFlow(i, "COUPON"), tol);
+                assertEquals(sink.values[i][2], cf.getCashFlow(i, "EFFECTIVE_INTEREST"), tol);
+                assertEquals(sink.values[i][3], cf.getCashFlow(i, "PREMIUM"), tol);
+                assertEquals(sink.values[i][4], cf.getCashFlow(i, "DISCOUNT"), tol);
+            }
+        }
+    }
+
+    @Test
+    public void testBook() {
+        int len = 3000;
+        int[] settlement = new int[len], maturity = new int[len], frequency = new int[len], basis = new int[len];
+        double[] principal = new double[len], couponRate = new double[len], price = new double[len];
+
+        for (int i = 0; i < len; i++) {
+            settlement[i] = DateUtil.toEpochDay(createDate(2012,1,1)) + i % 365;
+            maturity[i] = DateUtil.toEpochDay(createDate(2014 + i % 20,6,15));
+            principal[i] = 1000.0 * (1 + i % 7);
+            couponRate[i] = 0.04 + 0.005 * (i % 10);
+            price[i] = principal[i] * (0.95 + 0.01 * (i % 11));
+            frequency[i] = (i % 3 == 0) ? 4 : 2;
+            basis[i] = DayCountBasis.EUR_30_360.getCode();
+        }
+
+        final AtomicInteger positions = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final int[] rows = new int[len];
+
+        new EIRAmortizationService().amortize(settlement, maturity, principal, couponRate, price, frequency, basis, new EIRAmortizationService.AmortizationSink() {
+            @Override
+            public void begin(int position, double effectiveInterestRate) {
+                positions.incrementAndGet();
+                if (Double.isNaN(effectiveInterestRate)) failed.incrementAndGet();
+            }
+
+            @Override
+            public void row(int position, int epochDay, double principal, double coupon, double effectiveInterest, double premium, double discount) {
+                rows[position]++;
+            }
+        });
+
+        assertEquals(positions.get(), len);
+        assertEquals(failed.get(), 0);
+        for (int i = 0; i < len; i++) {
+            Date[] sched = BondCashFlowGenerator.scheduleRPIBond(DateUtil.fromEpochDay(settlement[i]), DateUtil.fromEpochDay(maturity[i]), frequency[i], DayCountBasis.EUR_30_360);
+            assertEquals(rows[i], sched.length + 1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ph.alephzero.finance.products.fixedincome;
+
+import static ph.alephzero.finance.util.DateUtil.createDate;
+import static org.testng.Assert.assertEquals;
+
+import java.util.Date;
+
+import ph.alephzero.finance.DayCountBasis;
+import ph.alephzero.finance.market.BasicYieldTermStructure;
+import ph.alephzero.finance.market.DiscountFactorCache;
+
+import org.testng.annotations.Test;
+
+public class KeyRateEngineTest {
+    private static final Date BASE = createDate(2008,1,1);
+    private static final Date[] PILLARS = { createDate(2009,1,1), createDate(2010,1,1), createDate(2013,1,1), createDate(2018,1,1), createDate(2028,1,1) };
+    private static final double[] RATES = { 0.035, 0.04, 0.05, 0.06, 0.065 };
+
+    private static DiscountFactorCache curve(int bumped, double h) {
+        BasicYieldTermStructure curve = new BasicYieldTermStructure(BASE, "ZERO", "Zero");
+        for (int k = 0; k < PILLARS.length; k++) {
+            curve.addNode(PILLARS[k], RATES[k] + ((k == bumped) ? h : 0.0));
+        }
+        return new DiscountFactorCache(curve);
+    }
+
+    @Test
+    public void testBumpAndReprice() {
+        BondKernel kernel = new BondKernel(createDate(2008,3,5), createDate(2020,1,1), 0.08, 2, DayCountBasis.ACT_ACT);
+        KeyRateEngine engine = new KeyRateEngine(curve(-1, 0.0));
+        double[] dv01 = new double[engine.getPillarCount()];
+        double h = 0.00001;
+
+        double price = engine.dv01(kernel, 0.005, dv01);
+        assertEquals(price, BondCurveValuation.price(kernel, curve(-1, 0.0), 0.005, false), 1e-14);
+
+        double total = 0.0;
+        for (int k = 0; k < dv01.length; k++) {
+            double up = BondCurveValuation.price(kernel, curve(k, h), 0.005, false);
+            double down = BondCurveValuation.price(kernel, curve(k, -h), 0.005, false);
+            assertEquals(dv01[k], (down - up) / (2 * h) * 0.0001, 1e-11);
+            total += dv01[k];
+        }
+
+        // parallel shift = spread shift
+        double up = BondCurveValuation.price(kernel, curve(-1, 0.0), 0.005 + h, false);
+        double down = BondCurveValuation.price(kernel, curve(-1, 0.0), 0.005 - h, false);
+        assertEquals(total, (down - up) / (2 * h) * 0.0001, 1e-11);
+
+        double[] durations = new double[dv01.length];
+        engine.durations(kernel, 0.005, durations);
+        assertEquals(durations[2], dv01[2] / (price * 0.0001), 1e-12);
+    }
+
+    @Test
+    public void testPortfolio() {
+        DiscountFactorCache discount = curve(-1, 0.0);
+        int len = 3000;
+        BondKernel[] kernels = new BondKernel[len];
+        double[] zSpreads = new double[len];
+        double[][] dv01 = new double[len][PILLARS.length];
+
+        for (int i = 0; i < len; i++) {
+            kernels[i] = new BondKernel(createDate(2008,1,2 + i % 300), createDate(2009 + i % 25,6,15), 0.01 * (i % 9), 2, DayCountBasis.ACT_ACT);
+            zSpreads[i] = 0.0001 * (i % 50);
+        }
+
+        KeyRateEngine.keyRateDv01(kernels, zSpreads, discount, dv01);
+
+        KeyRateEngine engine = new KeyRateEngine(discount);
+        double[] expected = new double[PILLARS.length];
+        for (int i = 0; i < len; i += 41) {
+            engine.dv01(kernels[i], zSpreads[i], expected);
+            assertEquals(dv01[i], expected);
+        }
+    }
+}
@@ -124,4 +124,53 @@ public class DateUtilTest {
       assertEquals(DateUtil.addDaysActual(ref, 987), createDate(2014,9,14));
       assertEquals(DateUtil.addDaysActual(ref, 1597), createDate(2016,5,16));
   }
+  
+  @Test
+  public void testEpochDayMatchesCalendar() {
+      Calendar cal = Calendar.getInstance();
+      cal.clear();
+      cal.set(1899, Calendar.DECEMBER, 25);
+      
+      int day = DateUtil.epochDayOf(1899, 12, 25);
+      for (int i = 0; i < 80000; i++, day++) {
+          int ymd = DateUtil.toYyyymmdd(day);
+          assertEquals(ymd, cal.get(Calendar.YEAR) * 10000 + (cal.get(Calendar.MONTH) + 1) * 100 + cal.get(Calendar.DAY_OF_MONTH));
+          assertEquals(DateUtil.fromEpochDay(day), cal.getTime());
+          assertEquals(DateUtil.toEpochDay(cal.getTime()), day);
+          assertEquals(DateUtil.fromYyyymmdd(ymd), day);
+          assertEquals(DateUtil.isWeekend(day), 
+                  cal.get(Calendar.DAY_OF_WEEK) == Calendar.SATURDAY || cal.get(Calendar.DAY_OF_WEEK) == Calendar.SUNDAY);
+          cal.add(Calendar.DATE, 1);
+      }
+  }
+  
+  @Test
+  public void testEpochDayKernel() {
+      assertEquals(DateUtil.epochDayOf(1970, 1, 1), 0);
+      assertEquals(DateUtil.toYyyymmdd(-1), 19691231);
+      assertEquals(DateUtil.dayOfWeek(0), 4);      // Thursday
+      assertEquals(DateUtil.epochDayOf(2012, 13, 0), DateUtil.epochDayOf(2012, 12, 31));
+      
+      int jan31 = DateUtil.epochDayOf(2008, 1, 31);
+      assertEquals(DateUtil.toYyyymmdd(DateUtil.addMonths(jan31, 1)), 20080229);
+      assertEquals(DateUtil.toYyyymmdd(DateUtil.addMonths(jan31, -2)), 20071130);
+      assertEquals(DateUtil.toYyyymmdd(DateUtil.addMonths(jan31, 13)), 20090228);
+      
+      assertEquals(DateUtil.isLastDayOfMonth(DateUtil.epochDayOf(2012, 2, 28)), false);
+      assertEquals(DateUtil.isLastDayOfMonth(DateUtil.epochDayOf(2100, 2, 28)), true);
+      assertEquals(DateUtil.toYyyymmdd(DateUtil.lastDayOfMonth(DateUtil.epochDayOf(2000, 2, 3))), 20000229);
+      
+      // negative differences
+      assertEquals(DateUtil.diffDays30NASD(createDate(2008,2,1), createDate(2008,1,30), 360), -1);
+      assertEquals(DateUtil.diffDays30NASD(createDate(2009,2,1), createDate(2008,1,1), 360), -390);
+  }
+
+  @Test
+  public void testYearFraction() {
+      // days in the year of the second date
+      assertEquals(DateUtil.yearFraction(createDate(2011,7,1), createDate(2012,1,1), DayCountBasis.ACT_ACT), 184 / 366.0, 1e-15);
+      assertEquals(DateUtil.yearFraction(createDate(2012,1,1), createDate(2012,7,1), DayCountBasis.NASD_30_360), 0.5, 1e-15);
+      assertEquals(DateUtil.yearFraction(DateUtil.toEpochDay(createDate(2012,1,1)), DateUtil.toEpochDay(createDate(2012,4,1)), DayCountBasis.ACT_360),
+              91 / 360.0, 1e-15);
+  }
 }
@@ -0,0 +1,73 @@
+package ph.alephzero.finance.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+public class SortedListTest {
+
+    @Test
+    public void testAdd() {
+        SortedList<Integer> list = new SortedList<>(2);
+        for (int i : new int[] { 5, 1, 3, 5, 9, 7, 1 }) {
+            list.add(i);
+        }
+
+        assertEquals(list.list(), Arrays.asList(1, 3, 5, 7, 9));
+        assertEquals(list.indexOf(7), 3);
+        assertEquals(list.indexOf(4), -1);
+        assertTrue(list.contains(9));
+        assertTrue(list.remove(3));
+        assertFalse(list.contains(3));
+        assertEquals(list.list(), Arrays.asList(1, 5, 7, 9));
+    }
+
+    @Test
+    public void testAddAllSorted() {
+        SortedList<Integer> list = new SortedList<>();
+        list.add(2);
+        list.add(6);
+        list.addAllSorted(Arrays.asList(1, 2, 3, 3, 7));
+
+        assertEquals(list.list(), Arrays.asList(1, 2, 3, 6, 7));
+        assertEquals(list.floorIndex(5), 2);
+        assertEquals(list.ceilingIndex(5), 3);
+        assertEquals(list.floorIndex(0), -1);
+        assertEquals(list.ceilingIndex(8), 5);
+    }
+
+    @Test
+    public void testAddAllUnsorted() {
+        SortedList<Integer> list = new SortedList<>();
+        list.add(4);
+        list.addAllSorted(Arrays.asList(9, 1, 4, 6, 1));
+        assertEquals(list.list(), Arrays.asList(1, 4, 6, 9));
+
+        SortedIntList ints = new SortedIntList();
+        ints.add(4);
+        ints.addAllSorted(new int[] { 9, 1, 4, 6, 1 });
+        assertEquals(ints.toArray(), new int[] { 1, 4, 6, 9 });
+    }
+
+    @Test
+    public void testSortedIntList() {
+        SortedIntList list = new SortedIntList(1);
+        list.add(10);
+        list.add(30);
+        list.add(20);
+        list.addAllSorted(new int[] { 5, 20, 25, 40, 40 });
+
+        assertEquals(list.toArray(), new int[] { 5, 10, 20, 25, 30, 40 });
+        assertEquals(list.indexOf(25), 3);
+        assertEquals(list.floorIndex(29), 3);
+        assertEquals(list.ceilingIndex(29), 4);
+
+        list.addAllSorted(new int[] { 50, 60 });
+        assertEquals(list.size(), 8);
+        assertEquals(list.get(7), 60);
+    }
+}